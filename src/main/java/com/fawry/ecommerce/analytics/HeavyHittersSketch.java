@@ -0,0 +1,132 @@
+package com.fawry.ecommerce.analytics;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Space-Saving sketch tracking the heaviest keys of a weighted stream in bounded memory
+ *
+ * At most {@code capacity} keys are monitored in a min-heap ordered by count. An unseen
+ * key replaces the current minimum and inherits its count as overestimation error, so
+ * every key whose true weight exceeds {@code total / capacity} is guaranteed to be kept.
+ * Updates cost O(log capacity). The sketch is not thread-safe; callers serialize updates.
+ */
+public final class HeavyHittersSketch {
+    private final int capacity;
+    private final long[] keys;
+    private final long[] counts;
+    private final long[] errors;
+    private final Map<Long, Integer> positions;
+    private int size;
+
+    /**
+     * Constructor for HeavyHittersSketch
+     * @param capacity the number of monitored keys
+     * @throws IllegalArgumentException if the capacity is not positive
+     */
+    public HeavyHittersSketch(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be greater than 0");
+        }
+        this.capacity = capacity;
+        this.keys = new long[capacity];
+        this.counts = new long[capacity];
+        this.errors = new long[capacity];
+        this.positions = new HashMap<>(capacity * 2);
+    }
+
+    /**
+     * Add weight to a key
+     * @param key the key
+     * @param weight the positive weight to add
+     */
+    public void add(long key, long weight) {
+        Integer position = positions.get(key);
+        if (position != null) {
+            counts[position] += weight;
+            siftDown(position);
+        } else if (size < capacity) {
+            keys[size] = key;
+            counts[size] = weight;
+            errors[size] = 0;
+            positions.put(key, size);
+            siftUp(size++);
+        } else {
+            positions.remove(keys[0]);
+            errors[0] = counts[0];
+            counts[0] += weight;
+            keys[0] = key;
+            positions.put(key, 0);
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Get the heaviest keys, heaviest first
+     * @param k the maximum number of entries
+     * @return rows of {key, estimated count, maximum overestimation}
+     */
+    public long[][] top(int k) {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(counts[b], counts[a]));
+        int n = Math.min(k, size);
+        long[][] top = new long[n][];
+        for (int i = 0; i < n; i++) {
+            int index = order[i];
+            top[i] = new long[] {keys[index], counts[index], errors[index]};
+        }
+        return top;
+    }
+
+    /**
+     * Get the number of monitored keys
+     * @return the monitored key count
+     */
+    public int size() {
+        return size;
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (counts[parent] <= counts[index]) {
+                return;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int left = 2 * index + 1;
+            if (left >= size) {
+                return;
+            }
+            int smallest = left + 1 < size && counts[left + 1] < counts[left] ? left + 1 : left;
+            if (counts[index] <= counts[smallest]) {
+                return;
+            }
+            swap(index, smallest);
+            index = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        long key = keys[a];
+        long count = counts[a];
+        long error = errors[a];
+        keys[a] = keys[b];
+        counts[a] = counts[b];
+        errors[a] = errors[b];
+        keys[b] = key;
+        counts[b] = count;
+        errors[b] = error;
+        positions.put(keys[a], a);
+        positions.put(keys[b], b);
+    }
+}
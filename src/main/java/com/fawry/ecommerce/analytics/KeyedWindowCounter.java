@@ -0,0 +1,103 @@
+package com.fawry.ecommerce.analytics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Counters per key over a sliding time window, sharing one ring of buckets
+ *
+ * Each bucket holds a map from key to count for the keys counted during its time span,
+ * so memory grows with the keys active inside the window rather than with every key
+ * ever counted, and one instance serves a whole catalog. A writer moving into a new
+ * epoch swaps in an empty bucket with a compare-and-set; a bucket is only replaced a
+ * full window after it was current, so writers still adding to it are not lost.
+ */
+public final class KeyedWindowCounter {
+    private final int buckets;
+    private final long bucketMillis;
+    private final AtomicReferenceArray<Bucket> ring;
+    private final LongSupplier clock;
+
+    /**
+     * Constructor for KeyedWindowCounter
+     * @param buckets the number of buckets in the window
+     * @param bucketMillis the duration of one bucket in milliseconds
+     * @param clock the time source in epoch milliseconds
+     * @throws IllegalArgumentException if a size is not positive
+     */
+    public KeyedWindowCounter(int buckets, long bucketMillis, LongSupplier clock) {
+        if (buckets <= 0 || bucketMillis <= 0) {
+            throw new IllegalArgumentException("Buckets and bucket duration must be greater than 0");
+        }
+        this.buckets = buckets;
+        this.bucketMillis = bucketMillis;
+        this.ring = new AtomicReferenceArray<>(buckets);
+        this.clock = clock;
+    }
+
+    /**
+     * Add to the count of a key in the bucket of the current time
+     * @param key the key
+     * @param delta the non-negative amount to add
+     */
+    public void add(long key, long delta) {
+        long epoch = clock.getAsLong() / bucketMillis;
+        int index = (int) (epoch % buckets);
+        Bucket bucket = ring.get(index);
+        // A bucket from a later epoch means the clock went back; count into it rather than drop
+        while (bucket == null || bucket.epoch < epoch) {
+            Bucket fresh = new Bucket(epoch);
+            if (ring.compareAndSet(index, bucket, fresh)) {
+                bucket = fresh;
+            } else {
+                bucket = ring.get(index);
+            }
+        }
+        LongAdder count = bucket.counts.get(key);
+        if (count == null) {
+            count = bucket.counts.computeIfAbsent(key, k -> new LongAdder());
+        }
+        count.add(delta);
+    }
+
+    /**
+     * Sum the counts of a key in the buckets still inside the window
+     * @param key the key
+     * @return the windowed total
+     */
+    public long sum(long key) {
+        long epoch = clock.getAsLong() / bucketMillis;
+        long total = 0;
+        for (int i = 0; i < buckets; i++) {
+            Bucket bucket = ring.get(i);
+            if (bucket != null && epoch - bucket.epoch < buckets) {
+                LongAdder count = bucket.counts.get(key);
+                total += count == null ? 0 : count.sum();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Get the length of the window
+     * @return the window duration in milliseconds
+     */
+    public long windowMillis() {
+        return buckets * bucketMillis;
+    }
+
+    /**
+     * Counts of one time bucket
+     */
+    private static final class Bucket {
+        final long epoch;
+        final Map<Long, LongAdder> counts = new ConcurrentHashMap<>();
+
+        Bucket(long epoch) {
+            this.epoch = epoch;
+        }
+    }
+}
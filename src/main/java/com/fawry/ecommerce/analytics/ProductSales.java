@@ -0,0 +1,46 @@
+package com.fawry.ecommerce.analytics;
+
+/**
+ * Immutable best-seller entry reported by the sales analytics
+ */
+public final class ProductSales {
+    private final long productId;
+    private final String productName;
+    private final long unitsSold;
+    private final long maxOverestimate;
+
+    /**
+     * Constructor for ProductSales
+     * @param productId the product id
+     * @param productName the product name
+     * @param unitsSold the estimated units sold
+     * @param maxOverestimate the maximum amount by which the estimate may exceed the true count
+     */
+    public ProductSales(long productId, String productName, long unitsSold, long maxOverestimate) {
+        this.productId = productId;
+        this.productName = productName;
+        this.unitsSold = unitsSold;
+        this.maxOverestimate = maxOverestimate;
+    }
+
+    public long getProductId() {
+        return productId;
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    public long getUnitsSold() {
+        return unitsSold;
+    }
+
+    public long getMaxOverestimate() {
+        return maxOverestimate;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d units (+/- %d)", productName, unitsSold, maxOverestimate);
+    }
+}
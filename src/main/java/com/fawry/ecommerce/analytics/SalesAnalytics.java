@@ -0,0 +1,331 @@
+package com.fawry.ecommerce.analytics;
+
+import com.fawry.ecommerce.order.Order;
+import com.fawry.ecommerce.order.OrderLine;
+import com.fawry.ecommerce.service.CheckoutListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * In-process streaming aggregation of completed checkouts
+ *
+ * Register an instance with {@code CheckoutService.addCheckoutListener}. On the checkout
+ * thread every order only updates striped, lock-free counters and is enqueued for the
+ * best-seller sketch; the sketch itself is updated by whichever thread wins a
+ * {@code tryLock}. The winner folds in at most {@value #DRAIN_BATCH} queued orders, so
+ * no single checkout pays for a backlog. The queue holds at most
+ * {@value #MAX_PENDING} orders; a checkout finding it full waits for the sketch and
+ * drains a batch itself, so a burst slows checkouts down instead of growing the heap.
+ * Windowed product counters share one ring of buckets per window across the catalog.
+ *
+ * Queries never touch the sketch: the best-seller list is a snapshot published at most
+ * every {@value #SNAPSHOT_INTERVAL_MILLIS} ms by the draining thread. Changes folded in
+ * within the interval schedule one publication on the publisher executor, so the list
+ * catches up even after checkouts stop.
+ */
+public class SalesAnalytics implements CheckoutListener {
+    public static final int DEFAULT_TOP_K = 10;
+    public static final long SNAPSHOT_INTERVAL_MILLIS = 100;
+    /** Maximum number of queued orders folded into the sketch per checkout or query */
+    public static final int DRAIN_BATCH = 64;
+    /** Maximum number of orders waiting to be folded into the sketch */
+    public static final int MAX_PENDING = 64 * 1024;
+
+    private static final long SECOND_MILLIS = 1_000;
+    private static final long MINUTE_MILLIS = 60_000;
+    private static final int BUCKETS = 60;
+    private static final int SKETCH_CAPACITY_FACTOR = 16;
+
+    private final LongSupplier clock;
+    private final int topK;
+    private final Map<Long, ProductStats> products = new ConcurrentHashMap<>();
+    private final LongAdder orders = new LongAdder();
+    private final LongAdder revenueCents = new LongAdder();
+    private final SlidingWindowCounter ordersLastMinute;
+    private final SlidingWindowCounter ordersLastHour;
+    private final SlidingWindowCounter revenueLastMinute;
+    private final SlidingWindowCounter revenueLastHour;
+    private final KeyedWindowCounter productUnitsLastMinute;
+    private final KeyedWindowCounter productUnitsLastHour;
+    private final KeyedWindowCounter productRevenueLastHour;
+    private final HeavyHittersSketch sketch;
+    private final Queue<Order> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final ReentrantLock sketchLock = new ReentrantLock();
+    private final Executor publisher;
+    private final AtomicBoolean publishScheduled = new AtomicBoolean();
+    private volatile List<ProductSales> bestSellers = Collections.emptyList();
+    private volatile long lastPublished;
+    private boolean dirty;
+
+    /**
+     * Constructor for SalesAnalytics tracking the default number of best sellers
+     */
+    public SalesAnalytics() {
+        this(DEFAULT_TOP_K, System::currentTimeMillis);
+    }
+
+    /**
+     * Constructor for SalesAnalytics publishing late snapshots one interval after they are due
+     * @param topK the number of best sellers to report
+     * @param clock the time source in epoch milliseconds
+     * @throws IllegalArgumentException if topK is not positive
+     */
+    public SalesAnalytics(int topK, LongSupplier clock) {
+        this(topK, clock, CompletableFuture.delayedExecutor(SNAPSHOT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Constructor for SalesAnalytics
+     * @param topK the number of best sellers to report
+     * @param clock the time source in epoch milliseconds
+     * @param publisher the executor running snapshot publications scheduled by checkouts
+     * @throws IllegalArgumentException if topK is not positive or the publisher is null
+     */
+    public SalesAnalytics(int topK, LongSupplier clock, Executor publisher) {
+        if (topK <= 0) {
+            throw new IllegalArgumentException("Top-K must be greater than 0");
+        }
+        if (publisher == null) {
+            throw new IllegalArgumentException("Publisher must not be null");
+        }
+        this.topK = topK;
+        this.clock = clock;
+        this.publisher = publisher;
+        int stripes = Runtime.getRuntime().availableProcessors();
+        this.ordersLastMinute = new SlidingWindowCounter(BUCKETS, SECOND_MILLIS, stripes, clock);
+        this.ordersLastHour = new SlidingWindowCounter(BUCKETS, MINUTE_MILLIS, stripes, clock);
+        this.revenueLastMinute = new SlidingWindowCounter(BUCKETS, SECOND_MILLIS, stripes, clock);
+        this.revenueLastHour = new SlidingWindowCounter(BUCKETS, MINUTE_MILLIS, stripes, clock);
+        this.productUnitsLastMinute = new KeyedWindowCounter(BUCKETS, SECOND_MILLIS, clock);
+        this.productUnitsLastHour = new KeyedWindowCounter(BUCKETS, MINUTE_MILLIS, clock);
+        this.productRevenueLastHour = new KeyedWindowCounter(BUCKETS, MINUTE_MILLIS, clock);
+        this.sketch = new HeavyHittersSketch(topK * SKETCH_CAPACITY_FACTOR);
+    }
+
+    @Override
+    public void onCheckoutCompleted(Order order) {
+        long orderRevenue = 0;
+        for (OrderLine line : order.getLines()) {
+            long lineRevenue = toCents(line.getTotalPrice());
+            statsFor(line).record(line.getQuantity(), lineRevenue);
+            productUnitsLastMinute.add(line.getProductId(), line.getQuantity());
+            productUnitsLastHour.add(line.getProductId(), line.getQuantity());
+            productRevenueLastHour.add(line.getProductId(), lineRevenue);
+            orderRevenue += lineRevenue;
+        }
+        orders.increment();
+        ordersLastMinute.add(1);
+        ordersLastHour.add(1);
+        revenueCents.add(orderRevenue);
+        revenueLastMinute.add(orderRevenue);
+        revenueLastHour.add(orderRevenue);
+
+        while (pendingCount.incrementAndGet() > MAX_PENDING) {
+            pendingCount.decrementAndGet();
+            sketchLock.lock();
+            try {
+                drain(DRAIN_BATCH, false);
+            } finally {
+                sketchLock.unlock();
+            }
+        }
+        pending.offer(order);
+        tryDrain();
+    }
+
+    /**
+     * Get the published best sellers snapshot, heaviest first, without touching the sketch
+     * @return at most topK entries with estimated units sold
+     */
+    public List<ProductSales> bestSellers() {
+        return bestSellers;
+    }
+
+    /**
+     * Fold all pending orders into the best-seller sketch and publish a fresh snapshot
+     * Blocks only the calling thread; checkouts keep going while it runs
+     */
+    public void refresh() {
+        sketchLock.lock();
+        try {
+            drain(Integer.MAX_VALUE, true);
+        } finally {
+            sketchLock.unlock();
+        }
+    }
+
+    public long totalOrders() {
+        return orders.sum();
+    }
+
+    public double totalRevenue() {
+        return fromCents(revenueCents.sum());
+    }
+
+    public long ordersLastMinute() {
+        return ordersLastMinute.sum();
+    }
+
+    public long ordersLastHour() {
+        return ordersLastHour.sum();
+    }
+
+    public double revenueLastMinute() {
+        return fromCents(revenueLastMinute.sum());
+    }
+
+    public double revenueLastHour() {
+        return fromCents(revenueLastHour.sum());
+    }
+
+    /**
+     * Get the total units sold of a product
+     * @param productId the product id
+     * @return the units sold since the analytics started
+     */
+    public long unitsSold(long productId) {
+        ProductStats stats = products.get(productId);
+        return stats == null ? 0 : stats.units.sum();
+    }
+
+    /**
+     * Get the total revenue of a product
+     * @param productId the product id
+     * @return the revenue since the analytics started
+     */
+    public double revenue(long productId) {
+        ProductStats stats = products.get(productId);
+        return stats == null ? 0 : fromCents(stats.revenueCents.sum());
+    }
+
+    public long unitsSoldLastMinute(long productId) {
+        return productUnitsLastMinute.sum(productId);
+    }
+
+    public long unitsSoldLastHour(long productId) {
+        return productUnitsLastHour.sum(productId);
+    }
+
+    public double revenueLastHour(long productId) {
+        return fromCents(productRevenueLastHour.sum(productId));
+    }
+
+    /**
+     * Get the stock depletion rate of a product averaged over the last hour
+     * @param productId the product id
+     * @return units sold per minute
+     */
+    public double depletionRatePerMinute(long productId) {
+        return unitsSoldLastHour(productId) / (double) BUCKETS;
+    }
+
+    /**
+     * Estimate when a product runs out at its current depletion rate
+     * @param productId the product id
+     * @param quantityOnHand the remaining stock
+     * @return minutes until stock-out, or positive infinity if the product is not selling
+     */
+    public double minutesToStockout(long productId, int quantityOnHand) {
+        double rate = depletionRatePerMinute(productId);
+        return rate == 0 ? Double.POSITIVE_INFINITY : quantityOnHand / rate;
+    }
+
+    private ProductStats statsFor(OrderLine line) {
+        ProductStats stats = products.get(line.getProductId());
+        if (stats == null) {
+            stats = products.computeIfAbsent(line.getProductId(), id -> new ProductStats(line.getProductName()));
+        }
+        return stats;
+    }
+
+    /**
+     * Fold one batch of pending orders into the sketch unless another thread holds the sketch
+     */
+    private void tryDrain() {
+        if (sketchLock.tryLock()) {
+            try {
+                drain(DRAIN_BATCH, false);
+            } finally {
+                sketchLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Drain pending orders into the sketch; must be called with the sketch lock held
+     * @param maxOrders the maximum number of orders to fold in
+     * @param forcePublish true to publish a snapshot regardless of its age
+     */
+    private void drain(int maxOrders, boolean forcePublish) {
+        Order order;
+        for (int drained = 0; drained < maxOrders && (order = pending.poll()) != null; drained++) {
+            pendingCount.decrementAndGet();
+            for (OrderLine line : order.getLines()) {
+                sketch.add(line.getProductId(), line.getQuantity());
+            }
+            dirty = true;
+        }
+        long now = clock.getAsLong();
+        if (dirty && (forcePublish || now - lastPublished >= SNAPSHOT_INTERVAL_MILLIS)) {
+            List<ProductSales> top = new ArrayList<>(topK);
+            for (long[] row : sketch.top(topK)) {
+                ProductStats stats = products.get(row[0]);
+                top.add(new ProductSales(row[0], stats == null ? "" : stats.name, row[1], row[2]));
+            }
+            bestSellers = Collections.unmodifiableList(top);
+            lastPublished = now;
+            dirty = false;
+        } else if (dirty && publishScheduled.compareAndSet(false, true)) {
+            publisher.execute(this::publishLate);
+        }
+    }
+
+    /**
+     * Fold in the pending orders and publish, for changes left unpublished by the draining thread
+     */
+    private void publishLate() {
+        publishScheduled.set(false);
+        refresh();
+    }
+
+    private static long toCents(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    private static double fromCents(long cents) {
+        return cents / 100.0;
+    }
+
+    /**
+     * Running sales totals of one product; its windowed counts live in the shared windows
+     */
+    private static final class ProductStats {
+        final String name;
+        final LongAdder units = new LongAdder();
+        final LongAdder revenueCents = new LongAdder();
+
+        ProductStats(String name) {
+            this.name = name;
+        }
+
+        void record(int quantity, long lineRevenueCents) {
+            units.add(quantity);
+            revenueCents.add(lineRevenueCents);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.fawry.ecommerce.analytics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free counter over a sliding time window
+ *
+ * The window is split into {@code buckets} time buckets and every bucket is replicated
+ * over a small number of stripes so concurrent writers rarely update the same cell.
+ * Each cell packs the bucket epoch in its upper 24 bits and the count in the lower 40,
+ * so a writer moving into a new epoch resets the cell with the same compare-and-set
+ * that adds to it and no increment is ever lost to a separate reset step.
+ */
+public final class SlidingWindowCounter {
+    private static final int COUNT_BITS = 40;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+    private static final long EPOCH_MASK = (1L << (64 - COUNT_BITS)) - 1;
+
+    private final int buckets;
+    private final long bucketMillis;
+    private final int stripeMask;
+    private final AtomicLongArray cells;
+    private final LongSupplier clock;
+
+    /**
+     * Constructor for SlidingWindowCounter
+     * @param buckets the number of buckets in the window
+     * @param bucketMillis the duration of one bucket in milliseconds
+     * @param stripes the requested number of stripes, rounded up to a power of two
+     * @param clock the time source in epoch milliseconds
+     * @throws IllegalArgumentException if a size is not positive
+     */
+    public SlidingWindowCounter(int buckets, long bucketMillis, int stripes, LongSupplier clock) {
+        if (buckets <= 0 || bucketMillis <= 0 || stripes <= 0) {
+            throw new IllegalArgumentException("Buckets, bucket duration and stripes must be greater than 0");
+        }
+        int stripeCount = Integer.highestOneBit(stripes);
+        if (stripeCount < stripes) {
+            stripeCount <<= 1;
+        }
+        this.buckets = buckets;
+        this.bucketMillis = bucketMillis;
+        this.stripeMask = stripeCount - 1;
+        this.cells = new AtomicLongArray(stripeCount * buckets);
+        this.clock = clock;
+    }
+
+    /**
+     * Add to the bucket of the current time
+     * @param delta the non-negative amount to add
+     */
+    public void add(long delta) {
+        long epoch = clock.getAsLong() / bucketMillis;
+        long tag = (epoch & EPOCH_MASK) << COUNT_BITS;
+        int index = stripe() * buckets + (int) (epoch % buckets);
+        while (true) {
+            long cell = cells.get(index);
+            long next = (cell & ~COUNT_MASK) == tag ? cell + delta : tag | delta;
+            if (cells.compareAndSet(index, cell, next)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Sum the counts of the buckets still inside the window
+     * @return the windowed total
+     */
+    public long sum() {
+        long epoch = (clock.getAsLong() / bucketMillis) & EPOCH_MASK;
+        long total = 0;
+        for (int i = 0; i < cells.length(); i++) {
+            long cell = cells.get(i);
+            long age = (epoch - (cell >>> COUNT_BITS)) & EPOCH_MASK;
+            if (age < buckets) {
+                total += cell & COUNT_MASK;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Get the length of the window
+     * @return the window duration in milliseconds
+     */
+    public long windowMillis() {
+        return buckets * bucketMillis;
+    }
+
+    private int stripe() {
+        long id = Thread.currentThread().getId();
+        int h = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & stripeMask;
+    }
+}
@@ -0,0 +1,84 @@
+package com.fawry.ecommerce.catalog;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable version of the catalog
+ *
+ * Views are stored in fixed-size chunks, and a new version copies only the chunk
+ * table and the chunks it changes, sharing every other chunk with the version before
+ * it. A snapshot never changes after publication, so any number of threads can read
+ * it without locks and always see one version; see {@link ProductView#of} for how
+ * closely a single view tracks writes racing its copy.
+ */
+public final class CatalogSnapshot {
+    static final int CHUNK_SHIFT = 6;
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final long version;
+    private final ProductView[][] chunks;
+    private final int size;
+    // Shared and append-only; a slot past this snapshot's size belongs to a later version
+    private final Map<Long, Integer> slots;
+
+    CatalogSnapshot(long version, ProductView[][] chunks, int size, Map<Long, Integer> slots) {
+        this.version = version;
+        this.chunks = chunks;
+        this.size = size;
+        this.slots = slots;
+    }
+
+    /**
+     * Get the version number, increasing by one per publication
+     * @return the version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Find a product's view by product id
+     * @param productId the product id
+     * @return the view, or null if the product is not in this version
+     */
+    public ProductView get(long productId) {
+        Integer slot = slots.get(productId);
+        return slot == null || slot >= size ? null : viewAt(slot);
+    }
+
+    /**
+     * Get every view of this version, in the order the products were added
+     * @return an unmodifiable list backed by the snapshot
+     */
+    public List<ProductView> views() {
+        return new AbstractList<ProductView>() {
+            @Override
+            public ProductView get(int index) {
+                if (index < 0 || index >= size) {
+                    throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+                }
+                return viewAt(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private ProductView viewAt(int slot) {
+        return chunks[slot >>> CHUNK_SHIFT][slot & CHUNK_MASK];
+    }
+
+    ProductView[][] chunks() {
+        return chunks;
+    }
+}
@@ -0,0 +1,215 @@
+package com.fawry.ecommerce.catalog;
+
+import com.fawry.ecommerce.model.product.ExpirableProduct;
+import com.fawry.ecommerce.model.product.Product;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Read-optimized catalog publishing immutable versions through one volatile reference
+ *
+ * Browsing reads the current {@link CatalogSnapshot} without locks and never sees a
+ * half-applied change. Writers collect price and stock changes in a {@link Batch};
+ * publishing applies them to the live products and swaps in a new version that shares
+ * every untouched chunk with the previous one. Publications are serialized, so the
+ * cost of a write is paid once per batch rather than by every reader. Stock changed
+ * elsewhere, e.g. by checkouts, reaches readers when the product is refreshed.
+ */
+public class ProductCatalog {
+    private final Map<Long, Integer> slots = new ConcurrentHashMap<>();
+    private volatile CatalogSnapshot current = new CatalogSnapshot(0, new ProductView[0][], 0, slots);
+
+    /**
+     * Create a catalog publishing the given products as its first version
+     * @param products the products
+     * @return the catalog
+     */
+    public static ProductCatalog of(Collection<? extends Product> products) {
+        ProductCatalog catalog = new ProductCatalog();
+        Batch batch = catalog.batch();
+        for (Product product : products) {
+            batch.add(product);
+        }
+        batch.publish();
+        return catalog;
+    }
+
+    /**
+     * Get the latest published version
+     * @return the snapshot, immutable and safe to keep
+     */
+    public CatalogSnapshot snapshot() {
+        return current;
+    }
+
+    /**
+     * Start collecting changes for the next version
+     * @return an empty batch
+     */
+    public Batch batch() {
+        return new Batch();
+    }
+
+    /**
+     * Republish the current state of some products, e.g. after checkouts sold them
+     * @param products the products to refresh, added if new
+     * @return the published version
+     */
+    public CatalogSnapshot refresh(Collection<? extends Product> products) {
+        Batch batch = batch();
+        for (Product product : products) {
+            batch.refresh(product);
+        }
+        return batch.publish();
+    }
+
+    /**
+     * Apply a batch and publish the resulting version
+     * @param changes the changes to the live products
+     * @param touched the products whose views are rebuilt
+     * @return the new version
+     */
+    private synchronized CatalogSnapshot publish(List<Runnable> changes, Set<Product> touched) {
+        for (Runnable change : changes) {
+            change.run();
+        }
+        CatalogSnapshot base = current;
+        ProductView[][] chunks = base.chunks().clone();
+        BitSet copied = new BitSet(chunks.length);
+        int size = base.size();
+        for (Product product : touched) {
+            Integer slot = slots.get(product.getId());
+            if (slot == null) {
+                slot = size++;
+                // Readers of older versions ignore slots at or past their size
+                slots.put(product.getId(), slot);
+            }
+            int chunk = slot >>> CatalogSnapshot.CHUNK_SHIFT;
+            if (chunk >= chunks.length) {
+                chunks = Arrays.copyOf(chunks, Math.max(chunk + 1, chunks.length * 2));
+            }
+            if (!copied.get(chunk)) {
+                chunks[chunk] = chunks[chunk] == null
+                        ? new ProductView[CatalogSnapshot.CHUNK_SIZE] : chunks[chunk].clone();
+                copied.set(chunk);
+            }
+            chunks[chunk][slot & CatalogSnapshot.CHUNK_MASK] = ProductView.of(product);
+        }
+        CatalogSnapshot next = new CatalogSnapshot(base.getVersion() + 1, chunks, size, slots);
+        current = next;
+        return next;
+    }
+
+    /**
+     * Changes published together as one catalog version
+     * Every product a batch touches is added to the catalog if it is not in it yet.
+     * A batch is meant for one writer thread and can be published once.
+     */
+    public final class Batch {
+        private final List<Runnable> changes = new ArrayList<>();
+        private final Set<Product> touched = new LinkedHashSet<>();
+        private boolean published;
+
+        private Batch() {
+        }
+
+        /**
+         * Add a product, or refresh it if it is already in the catalog
+         * @param product the product
+         * @return this batch
+         */
+        public Batch add(Product product) {
+            return refresh(product);
+        }
+
+        /**
+         * Republish the product's current state
+         * @param product the product
+         * @return this batch
+         */
+        public Batch refresh(Product product) {
+            checkOpen();
+            touched.add(product);
+            return this;
+        }
+
+        /**
+         * Change a product's price on publication
+         * @param product the product
+         * @param price the new price
+         * @return this batch
+         * @throws IllegalArgumentException if the price is negative
+         */
+        public Batch setPrice(Product product, double price) {
+            if (price < 0) {
+                throw new IllegalArgumentException("Price must not be negative");
+            }
+            checkOpen();
+            changes.add(() -> product.setPrice(price));
+            touched.add(product);
+            return this;
+        }
+
+        /**
+         * Change a product's stock on publication
+         * Expirable products keep their lots; use {@link #setLotQuantity} to count one lot
+         * @param product the product
+         * @param quantity the new quantity
+         * @return this batch
+         * @throws IllegalArgumentException if the quantity is negative
+         */
+        public Batch setQuantity(Product product, int quantity) {
+            if (quantity < 0) {
+                throw new IllegalArgumentException("Quantity must not be negative");
+            }
+            checkOpen();
+            changes.add(() -> product.setQuantity(quantity));
+            touched.add(product);
+            return this;
+        }
+
+        /**
+         * Change the stock of one lot of an expirable product on publication
+         * @param product the product
+         * @param expirationDate the lot's expiration date
+         * @param quantity the lot's new quantity, 0 to remove it
+         * @return this batch
+         * @throws IllegalArgumentException if the quantity is negative or the date is null or past
+         */
+        public Batch setLotQuantity(ExpirableProduct product, LocalDate expirationDate, int quantity) {
+            if (quantity < 0 || expirationDate == null || expirationDate.isBefore(LocalDate.now())) {
+                throw new IllegalArgumentException("A lot needs a quantity that is not negative and a current expiration date");
+            }
+            checkOpen();
+            changes.add(() -> product.setLotQuantity(expirationDate, quantity));
+            touched.add(product);
+            return this;
+        }
+
+        /**
+         * Apply the changes and publish the new version
+         * @return the published snapshot
+         * @throws IllegalStateException if the batch was already published
+         */
+        public CatalogSnapshot publish() {
+            checkOpen();
+            published = true;
+            return ProductCatalog.this.publish(changes, touched);
+        }
+
+        private void checkOpen() {
+            if (published) {
+                throw new IllegalStateException("Batch was already published");
+            }
+        }
+    }
+}
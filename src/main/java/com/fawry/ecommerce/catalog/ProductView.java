@@ -0,0 +1,71 @@
+package com.fawry.ecommerce.catalog;
+
+import com.fawry.ecommerce.model.product.Product;
+
+/**
+ * Immutable copy of a product's browsing data as of one catalog version
+ */
+public final class ProductView {
+    private final long id;
+    private final String name;
+    private final double price;
+    private final int quantity;
+    private final String description;
+
+    private ProductView(long id, String name, double price, int quantity, String description) {
+        this.id = id;
+        this.name = name;
+        this.price = price;
+        this.quantity = quantity;
+        this.description = description;
+    }
+
+    /**
+     * Copy a product's fields one after another under its monitor
+     * The monitor guards the quantity of products without split stock, so that quantity
+     * is current. Price changes lock the price history instead and split stock counters
+     * take no lock, so a price change or split-stock sale racing the copy may show in
+     * some fields and not others; the next catalog version picks it up.
+     * @param product the live product
+     * @return the view
+     */
+    static ProductView of(Product product) {
+        synchronized (product) {
+            return new ProductView(product.getId(), product.getName(), product.getPrice(),
+                                   product.getQuantity(), product.toString());
+        }
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    /**
+     * Check if the product was in stock in this version
+     * @return true if the quantity is positive, false otherwise
+     */
+    public boolean isInStock() {
+        return quantity > 0;
+    }
+
+    /**
+     * Get the product's own description as of this version
+     * @return the text {@link Product#toString()} returned
+     */
+    @Override
+    public String toString() {
+        return description;
+    }
+}
@@ -0,0 +1,537 @@
+package com.fawry.ecommerce.delivery;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Rolling delivery slot calendar with finite capacity per slot and zone
+ *
+ * The calendar covers a fixed number of days, each split into the same delivery
+ * windows, and always starts at today or its configured first day, whichever is later:
+ * as the clock passes midnight, the day that ended is recycled as the new last day.
+ * Slots live in a ring of one entry per day and window, and every zone keeps per slot
+ * an atomic word packing the day the slot currently stands for with its remaining
+ * capacity, plus a bitmap with one bit per slot that still had capacity when last seen.
+ * Finding the next available slot walks the ring in time order, skipping 64 slots per
+ * bitmap word, and booking claims a unit with a compare-and-set on the slot's word, so
+ * concurrent checkouts never overbook and never block each other. A word still stamped
+ * with a day that has passed counts as a fresh slot of the day now using it, so
+ * recycling a day only needs to reopen its bits; a release for a recycled day is
+ * dropped. The words are authoritative; a bit is only a hint, cleared when its slot is
+ * found full and set again when capacity is released or the day is recycled.
+ */
+public final class DeliverySchedule {
+    private final int days;
+    private final LocalTime[] windows;
+    private final Duration windowLength;
+    private final LongSupplier clock;
+    private final ZoneId timeZone;
+    private final Map<String, ZoneSlots> zones;
+    private volatile long firstDay;
+
+    private DeliverySchedule(Builder builder) {
+        this.days = builder.days;
+        this.windows = builder.windows.stream().sorted().distinct().toArray(LocalTime[]::new);
+        this.windowLength = builder.windowLength;
+        this.clock = builder.clock;
+        this.timeZone = builder.timeZone;
+        long today = today();
+        this.firstDay = builder.firstDay == null ? today : Math.max(builder.firstDay.toEpochDay(), today);
+        this.zones = new HashMap<>();
+        for (Map.Entry<String, Integer> zone : builder.capacities.entrySet()) {
+            zones.put(zone.getKey(), new ZoneSlots(days * windows.length, zone.getValue()));
+        }
+        for (ZoneSlots slots : zones.values()) {
+            for (int index = 0; index < slots.size; index++) {
+                slots.reset(index, dayAt(index, firstDay));
+            }
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Get the first day of the calendar, rolling it forward to today if needed
+     * @return the first bookable day
+     */
+    public LocalDate getFirstDay() {
+        return LocalDate.ofEpochDay(roll());
+    }
+
+    /**
+     * Get the last day of the calendar, rolling it forward to today if needed
+     * @return the last bookable day
+     */
+    public LocalDate getLastDay() {
+        return LocalDate.ofEpochDay(roll() + days - 1L);
+    }
+
+    /**
+     * Get the daily window start times
+     * @return the start times in order
+     */
+    public List<LocalTime> getWindows() {
+        return Collections.unmodifiableList(Arrays.asList(windows.clone()));
+    }
+
+    /**
+     * Find the earliest slot with capacity starting at or after a time, without booking it
+     * @param zone the delivery zone
+     * @param from the earliest acceptable start
+     * @return the slot, or empty if every later slot in the calendar is full
+     * @throws IllegalArgumentException if the zone is unknown
+     */
+    public Optional<DeliverySlot> nextAvailable(String zone, LocalDateTime from) {
+        ZoneSlots slots = slots(zone);
+        long first = roll();
+        int base = baseOf(first);
+        for (int offset = slots.nextOpen(firstOffsetFrom(from, first), base); offset >= 0;
+             offset = slots.nextOpen(offset + 1, base)) {
+            int index = (base + offset) % slots.size;
+            long day = first + offset / windows.length;
+            if (slots.remaining(index, day) > 0) {
+                return Optional.of(slot(zone, index, day));
+            }
+            markFull(slots, index);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Book the earliest slot with capacity starting from now
+     * Now is read from the schedule's own clock in its time zone, so bookings agree with
+     * the day the calendar rolls on
+     * @param zone the delivery zone
+     * @return the booking, or empty if every later slot in the calendar is full
+     * @throws IllegalArgumentException if the zone is unknown
+     */
+    public Optional<SlotBooking> bookNext(String zone) {
+        return bookNext(zone, LocalDateTime.ofInstant(Instant.ofEpochMilli(clock.getAsLong()), timeZone));
+    }
+
+    /**
+     * Book the earliest slot with capacity starting at or after a time
+     * @param zone the delivery zone
+     * @param from the earliest acceptable start
+     * @return the booking, or empty if every later slot in the calendar is full
+     * @throws IllegalArgumentException if the zone is unknown
+     */
+    public Optional<SlotBooking> bookNext(String zone, LocalDateTime from) {
+        ZoneSlots slots = slots(zone);
+        long first = roll();
+        int base = baseOf(first);
+        for (int offset = slots.nextOpen(firstOffsetFrom(from, first), base); offset >= 0;
+             offset = slots.nextOpen(offset + 1, base)) {
+            int index = (base + offset) % slots.size;
+            long day = first + offset / windows.length;
+            if (tryAcquire(slots, index, day)) {
+                return Optional.of(new SlotBooking(this, slot(zone, index, day)));
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Book a specific slot
+     * @param slot the slot, from {@link #slot(String, LocalDate, LocalTime)} or {@link #nextAvailable}
+     * @return the booking, or empty if the slot is full or its day has passed
+     * @throws IllegalArgumentException if the zone is unknown
+     */
+    public Optional<SlotBooking> book(DeliverySlot slot) {
+        ZoneSlots slots = slots(slot.getZone());
+        long day = slot.getStart().toLocalDate().toEpochDay();
+        if (day < roll()) {
+            return Optional.empty();
+        }
+        return tryAcquire(slots, slot.getIndex(), day) ? Optional.of(new SlotBooking(this, slot)) : Optional.empty();
+    }
+
+    /**
+     * Give a booking's capacity back, e.g. when the checkout fails or the order is cancelled
+     * Capacity of a day that has passed is not given back.
+     * @param booking the booking
+     * @return true if released now, false if it was already released
+     * @throws IllegalArgumentException if the booking is from another schedule
+     */
+    public boolean release(SlotBooking booking) {
+        if (booking.getSchedule() != this) {
+            throw new IllegalArgumentException("Booking is from another schedule");
+        }
+        if (!booking.markReleased()) {
+            return false;
+        }
+        DeliverySlot slot = booking.getSlot();
+        ZoneSlots slots = slots(slot.getZone());
+        if (slots.release(slot.getIndex(), slot.getStart().toLocalDate().toEpochDay())) {
+            slots.markOpen(slot.getIndex());
+        }
+        return true;
+    }
+
+    /**
+     * Get the capacity left in a slot
+     * @param slot the slot
+     * @return the number of bookings the slot still takes, 0 once its day has passed
+     */
+    public int remaining(DeliverySlot slot) {
+        long day = slot.getStart().toLocalDate().toEpochDay();
+        return day < roll() ? 0 : slots(slot.getZone()).remaining(slot.getIndex(), day);
+    }
+
+    /**
+     * Get a zone's slot by day and window
+     * @param zone the delivery zone
+     * @param day the day
+     * @param window the window start time
+     * @return the slot
+     * @throws IllegalArgumentException if the zone, day or window is not in the calendar
+     */
+    public DeliverySlot slot(String zone, LocalDate day, LocalTime window) {
+        ZoneSlots slots = slots(zone);
+        long first = roll();
+        long dayOffset = day.toEpochDay() - first;
+        int windowIndex = Arrays.binarySearch(windows, window);
+        if (dayOffset < 0 || dayOffset >= days || windowIndex < 0) {
+            throw new IllegalArgumentException("No delivery slot at " + day + " " + window);
+        }
+        int offset = (int) dayOffset * windows.length + windowIndex;
+        return slot(zone, (baseOf(first) + offset) % slots.size, day.toEpochDay());
+    }
+
+    private DeliverySlot slot(String zone, int index, long day) {
+        LocalDateTime start = LocalDate.ofEpochDay(day).atTime(windows[index % windows.length]);
+        return new DeliverySlot(zone, start, start.plus(windowLength), index);
+    }
+
+    private boolean tryAcquire(ZoneSlots slots, int index, long day) {
+        int left = slots.tryAcquire(index, day);
+        if (left <= 1) {
+            markFull(slots, index);
+        }
+        return left > 0;
+    }
+
+    /**
+     * Clear a slot's bit, restoring it if the slot has capacity for the day it now stands for
+     */
+    private void markFull(ZoneSlots slots, int index) {
+        slots.markClosed(index);
+        // Read the first day after clearing, so a concurrent roll that reopened the bit is seen
+        if (slots.remaining(index, dayAt(index, firstDay)) > 0) {
+            slots.markOpen(index);
+        }
+    }
+
+    /**
+     * Move the calendar's first day to today once the clock has passed it
+     * Days that ended are recycled at the end of the calendar by reopening their bits.
+     * @return the first day, in epoch days
+     */
+    private long roll() {
+        long first = firstDay;
+        long today = today();
+        if (today <= first) {
+            return first;
+        }
+        synchronized (this) {
+            first = firstDay;
+            if (today <= first) {
+                return first;
+            }
+            // Publish the new first day before reopening bits, see markFull
+            firstDay = today;
+            long recycled = Math.min(today - first, days);
+            for (long day = first; day < first + recycled; day++) {
+                int from = (int) Math.floorMod(day, (long) days) * windows.length;
+                for (ZoneSlots slots : zones.values()) {
+                    for (int index = from; index < from + windows.length; index++) {
+                        if (slots.capacity > 0) {
+                            slots.markOpen(index);
+                        }
+                    }
+                }
+            }
+            return today;
+        }
+    }
+
+    private long today() {
+        return LocalDate.ofInstant(Instant.ofEpochMilli(clock.getAsLong()), timeZone).toEpochDay();
+    }
+
+    /**
+     * Get the ring index holding the first window of the first day
+     */
+    private int baseOf(long first) {
+        return (int) Math.floorMod(first, (long) days) * windows.length;
+    }
+
+    /**
+     * Get the day a ring index stands for while the calendar starts at a day
+     */
+    private long dayAt(int index, long first) {
+        return first + Math.floorMod(index / windows.length - Math.floorMod(first, (long) days), days);
+    }
+
+    /**
+     * Get the offset from the calendar start of the first slot starting at or after a time
+     */
+    private int firstOffsetFrom(LocalDateTime from, long first) {
+        long dayOffset = from.toLocalDate().toEpochDay() - first;
+        if (dayOffset < 0) {
+            return 0;
+        }
+        if (dayOffset >= days) {
+            return days * windows.length;
+        }
+        LocalTime time = from.toLocalTime();
+        int window = 0;
+        while (window < windows.length && windows[window].isBefore(time)) {
+            window++;
+        }
+        return (int) dayOffset * windows.length + window;
+    }
+
+    private ZoneSlots slots(String zone) {
+        ZoneSlots slots = zones.get(zone);
+        if (slots == null) {
+            throw new IllegalArgumentException("Unknown delivery zone: " + zone);
+        }
+        return slots;
+    }
+
+    /**
+     * Day-stamped capacity words and open-slot bitmap of one zone
+     */
+    private static final class ZoneSlots {
+        private final int size;
+        private final int capacity;
+        private final AtomicLongArray slots;
+        private final AtomicLongArray open;
+
+        ZoneSlots(int size, int capacity) {
+            this.size = size;
+            this.capacity = capacity;
+            this.slots = new AtomicLongArray(size);
+            this.open = new AtomicLongArray((size + 63) >>> 6);
+        }
+
+        void reset(int index, long day) {
+            slots.set(index, pack(day, capacity));
+            if (capacity > 0) {
+                markOpen(index);
+            }
+        }
+
+        /**
+         * Get the capacity a slot has left for a day
+         * A word stamped with an earlier day stands for a fresh slot; one stamped with a
+         * later day belongs to a recycled slot, so the asked day is gone
+         */
+        int remaining(int index, long day) {
+            return remainingIn(slots.get(index), day);
+        }
+
+        private int remainingIn(long word, long day) {
+            long stamped = word >> 32;
+            return stamped == day ? (int) word : stamped < day ? capacity : 0;
+        }
+
+        /**
+         * Claim one unit of a slot for a day
+         * @return the units left before the claim; the claim failed if 0
+         */
+        int tryAcquire(int index, long day) {
+            while (true) {
+                long word = slots.get(index);
+                int left = remainingIn(word, day);
+                if (left <= 0 || slots.compareAndSet(index, word, pack(day, left - 1))) {
+                    return left;
+                }
+            }
+        }
+
+        /**
+         * Give one unit back to a slot unless its day was recycled meanwhile
+         * @return true if given back
+         */
+        boolean release(int index, long day) {
+            while (true) {
+                long word = slots.get(index);
+                int left = (int) word;
+                if (word >> 32 != day || left >= capacity) {
+                    return false;
+                }
+                if (slots.compareAndSet(index, word, pack(day, left + 1))) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Find the first set bit at or after an offset from a base index, wrapping around the ring
+         * @return the offset, or -1 if there is none
+         */
+        int nextOpen(int from, int base) {
+            if (from >= size) {
+                return -1;
+            }
+            int start = base + from;
+            if (start < size) {
+                int index = nextSet(start, size);
+                if (index >= 0) {
+                    return index - base;
+                }
+                start = size;
+            }
+            int index = nextSet(start - size, base);
+            return index < 0 ? -1 : index + size - base;
+        }
+
+        /**
+         * Find the first set bit in an index range
+         * @return the index, or -1 if there is none
+         */
+        private int nextSet(int from, int to) {
+            if (from >= to) {
+                return -1;
+            }
+            int word = from >>> 6;
+            long bits = open.get(word) & (-1L << from);
+            while (true) {
+                if (bits != 0) {
+                    int index = (word << 6) + Long.numberOfTrailingZeros(bits);
+                    return index < to ? index : -1;
+                }
+                if (++word >= open.length() || word << 6 >= to) {
+                    return -1;
+                }
+                bits = open.get(word);
+            }
+        }
+
+        void markOpen(int index) {
+            long bit = 1L << index;
+            open.getAndUpdate(index >>> 6, bits -> bits | bit);
+        }
+
+        void markClosed(int index) {
+            long bit = 1L << index;
+            open.getAndUpdate(index >>> 6, bits -> bits & ~bit);
+        }
+
+        private static long pack(long day, int remaining) {
+            return day << 32 | (remaining & 0xFFFF_FFFFL);
+        }
+    }
+
+    /**
+     * Builder for DeliverySchedule
+     */
+    public static final class Builder {
+        private LocalDate firstDay;
+        private int days = 14;
+        private final List<LocalTime> windows = new ArrayList<>();
+        private Duration windowLength = Duration.ofHours(2);
+        private final Map<String, Integer> capacities = new LinkedHashMap<>();
+        private LongSupplier clock = System::currentTimeMillis;
+        private ZoneId timeZone = ZoneId.systemDefault();
+
+        private Builder() {
+        }
+
+        /**
+         * Set the calendar's span, 14 days from today by default
+         * The calendar rolls forward once the clock passes the first day.
+         * @param firstDay the first bookable day
+         * @param days the number of days covered
+         * @return this builder
+         */
+        public Builder calendar(LocalDate firstDay, int days) {
+            if (firstDay == null || days <= 0) {
+                throw new IllegalArgumentException("Calendar needs a first day and at least one day");
+            }
+            this.firstDay = firstDay;
+            this.days = days;
+            return this;
+        }
+
+        /**
+         * Set the time source deciding which day is today, e.g. a manual clock in tests
+         * @param clock the time source in epoch milliseconds
+         * @param timeZone the time zone the calendar days are in
+         * @return this builder
+         */
+        public Builder clock(LongSupplier clock, ZoneId timeZone) {
+            if (clock == null || timeZone == null) {
+                throw new IllegalArgumentException("Clock and time zone must not be null");
+            }
+            this.clock = clock;
+            this.timeZone = timeZone;
+            return this;
+        }
+
+        /**
+         * Add a daily delivery window
+         * @param start the window start time
+         * @return this builder
+         */
+        public Builder window(LocalTime start) {
+            if (start == null) {
+                throw new IllegalArgumentException("Window start must not be null");
+            }
+            windows.add(start);
+            return this;
+        }
+
+        public Builder windowLength(Duration windowLength) {
+            if (windowLength == null || windowLength.isNegative() || windowLength.isZero()) {
+                throw new IllegalArgumentException("Window length must be positive");
+            }
+            this.windowLength = windowLength;
+            return this;
+        }
+
+        /**
+         * Serve a zone, with the same capacity in every slot
+         * @param zone the delivery zone
+         * @param capacityPerSlot the number of deliveries per slot
+         * @return this builder
+         */
+        public Builder zone(String zone, int capacityPerSlot) {
+            if (zone == null || zone.isBlank() || capacityPerSlot < 0) {
+                throw new IllegalArgumentException("Zone must not be blank and capacity must not be negative");
+            }
+            capacities.put(zone, capacityPerSlot);
+            return this;
+        }
+
+        /**
+         * Build the schedule with every slot at full capacity
+         * @return the schedule
+         * @throws IllegalArgumentException if no window was added
+         */
+        public DeliverySchedule build() {
+            if (windows.isEmpty()) {
+                throw new IllegalArgumentException("At least one delivery window is required");
+            }
+            return new DeliverySchedule(this);
+        }
+    }
+}
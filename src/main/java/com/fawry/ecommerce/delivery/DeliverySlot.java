@@ -0,0 +1,63 @@
+package com.fawry.ecommerce.delivery;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * Immutable delivery window of one zone
+ */
+public final class DeliverySlot {
+    private final String zone;
+    private final LocalDateTime start;
+    private final LocalDateTime end;
+    private final int index;
+
+    DeliverySlot(String zone, LocalDateTime start, LocalDateTime end, int index) {
+        this.zone = zone;
+        this.start = start;
+        this.end = end;
+        this.index = index;
+    }
+
+    public String getZone() {
+        return zone;
+    }
+
+    public LocalDateTime getStart() {
+        return start;
+    }
+
+    public LocalDateTime getEnd() {
+        return end;
+    }
+
+    /**
+     * Get the position of the slot in its schedule's calendar
+     * @return the slot index
+     */
+    int getIndex() {
+        return index;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof DeliverySlot)) {
+            return false;
+        }
+        DeliverySlot other = (DeliverySlot) o;
+        return index == other.index && zone.equals(other.zone) && start.equals(other.start);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(zone, index);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %s %s-%s", zone, start.toLocalDate(), start.toLocalTime(), end.toLocalTime());
+    }
+}
@@ -0,0 +1,54 @@
+package com.fawry.ecommerce.delivery;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One unit of capacity held in a delivery slot
+ */
+public final class SlotBooking {
+    private final DeliverySchedule schedule;
+    private final DeliverySlot slot;
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    SlotBooking(DeliverySchedule schedule, DeliverySlot slot) {
+        this.schedule = schedule;
+        this.slot = slot;
+    }
+
+    DeliverySchedule getSchedule() {
+        return schedule;
+    }
+
+    public DeliverySlot getSlot() {
+        return slot;
+    }
+
+    /**
+     * Give the capacity back to the schedule, e.g. when the checkout fails or the order is cancelled
+     * @return true if released now, false if it was already released
+     */
+    public boolean release() {
+        return schedule.release(this);
+    }
+
+    /**
+     * Check if the capacity was given back
+     * @return true if released, false if still held
+     */
+    public boolean isReleased() {
+        return released.get();
+    }
+
+    /**
+     * Mark the booking released
+     * @return true for the first call, false if it was already released
+     */
+    boolean markReleased() {
+        return released.compareAndSet(false, true);
+    }
+
+    @Override
+    public String toString() {
+        return "SlotBooking{" + slot + (isReleased() ? ", released" : "") + "}";
+    }
+}
@@ -0,0 +1,50 @@
+package com.fawry.ecommerce.digital;
+
+import com.fawry.ecommerce.order.Order;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Completed digital checkout: the order and the voucher codes issued for it
+ */
+public final class DigitalOrder {
+    private final Order order;
+    private final Map<Long, List<String>> vouchers;
+
+    /**
+     * Constructor for DigitalOrder
+     * @param order the order
+     * @param vouchers the issued codes by product id
+     */
+    public DigitalOrder(Order order, Map<Long, List<String>> vouchers) {
+        this.order = order;
+        this.vouchers = Map.copyOf(vouchers);
+    }
+
+    public Order getOrder() {
+        return order;
+    }
+
+    /**
+     * Get the codes issued for one product of the order
+     * @param productId the product id
+     * @return the codes, empty if the order has none for the product
+     */
+    public List<String> getVoucherCodes(long productId) {
+        return vouchers.getOrDefault(productId, List.of());
+    }
+
+    /**
+     * Get every issued code
+     * @return the codes by product id
+     */
+    public Map<Long, List<String>> getVouchers() {
+        return vouchers;
+    }
+
+    @Override
+    public String toString() {
+        return order + ", " + vouchers.values().stream().mapToInt(List::size).sum() + " vouchers";
+    }
+}
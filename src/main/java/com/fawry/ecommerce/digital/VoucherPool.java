@@ -0,0 +1,180 @@
+package com.fawry.ecommerce.digital;
+
+import java.security.SecureRandom;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pre-generated voucher codes of digital products, issued without locks
+ *
+ * Codes are stocked in batches, and each product keeps its batches in a lock-free queue
+ * with a count of the codes left. Issuing first reserves the codes with a
+ * compare-and-set on the count, so a request either gets all its codes or none, then
+ * claims a run of each batch with one atomic add on the batch cursor. Concurrent
+ * top-ups therefore never hand out a code twice and never wait for each other, and
+ * the expensive random generation happens when the pool is stocked, off the checkout path.
+ */
+public final class VoucherPool {
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final int GROUPS = 4;
+    private static final int GROUP_LENGTH = 4;
+
+    private final Map<Long, ProductPool> pools = new ConcurrentHashMap<>();
+    private final Random random;
+
+    /**
+     * Constructor for a VoucherPool generating codes from a secure random source
+     */
+    public VoucherPool() {
+        this(new SecureRandom());
+    }
+
+    /**
+     * Constructor for VoucherPool
+     * @param random the source of generated codes
+     */
+    public VoucherPool(Random random) {
+        this.random = random;
+    }
+
+    /**
+     * Generate fresh codes and add them to a product's pool
+     * @param productId the digital product
+     * @param count the number of codes
+     * @throws IllegalArgumentException if the count is not positive
+     */
+    public void generate(long productId, int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("Count must be greater than 0");
+        }
+        String[] codes = new String[count];
+        char[] code = new char[GROUPS * (GROUP_LENGTH + 1) - 1];
+        synchronized (random) {
+            for (int i = 0; i < count; i++) {
+                for (int c = 0; c < code.length; c++) {
+                    code[c] = c % (GROUP_LENGTH + 1) == GROUP_LENGTH ? '-' : ALPHABET[random.nextInt(ALPHABET.length)];
+                }
+                codes[i] = new String(code);
+            }
+        }
+        pool(productId).add(codes);
+    }
+
+    /**
+     * Add codes from an external supplier to a product's pool
+     * @param productId the digital product
+     * @param codes the codes
+     * @throws IllegalArgumentException if a code is blank
+     */
+    public void stock(long productId, List<String> codes) {
+        for (String code : codes) {
+            if (code == null || code.isBlank()) {
+                throw new IllegalArgumentException("Voucher code must not be blank");
+            }
+        }
+        if (!codes.isEmpty()) {
+            pool(productId).add(codes.toArray(new String[0]));
+        }
+    }
+
+    /**
+     * Take codes of a product, all or nothing
+     * @param productId the digital product
+     * @param count the number of codes
+     * @return the codes, or null if the pool holds fewer
+     * @throws IllegalArgumentException if the count is not positive
+     */
+    public String[] issue(long productId, int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("Count must be greater than 0");
+        }
+        ProductPool pool = pools.get(productId);
+        return pool == null ? null : pool.take(count);
+    }
+
+    /**
+     * Put issued codes back, e.g. when the order they were issued for fails
+     * @param productId the digital product
+     * @param codes the codes to reissue
+     */
+    public void restore(long productId, String[] codes) {
+        if (codes != null && codes.length > 0) {
+            pool(productId).add(codes.clone());
+        }
+    }
+
+    /**
+     * Get the number of codes left for a product
+     * @param productId the digital product
+     * @return the codes left
+     */
+    public int available(long productId) {
+        ProductPool pool = pools.get(productId);
+        return pool == null ? 0 : pool.available.get();
+    }
+
+    private ProductPool pool(long productId) {
+        return pools.computeIfAbsent(productId, id -> new ProductPool());
+    }
+
+    /**
+     * Code batches and remaining count of one product
+     */
+    private static final class ProductPool {
+        private final Queue<Batch> batches = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger available = new AtomicInteger();
+
+        void add(String[] codes) {
+            // Publish the batch before counting it, so reserved codes are always reachable
+            batches.offer(new Batch(codes));
+            available.addAndGet(codes.length);
+        }
+
+        String[] take(int count) {
+            while (true) {
+                int left = available.get();
+                if (left < count) {
+                    return null;
+                }
+                if (available.compareAndSet(left, left - count)) {
+                    break;
+                }
+            }
+            String[] taken = new String[count];
+            int filled = 0;
+            while (filled < count) {
+                Batch batch = batches.peek();
+                if (batch == null) {
+                    throw new IllegalStateException("Voucher pool lost reserved codes");
+                }
+                int start = batch.cursor.getAndAdd(count - filled);
+                int end = Math.min(start + count - filled, batch.codes.length);
+                if (start < end) {
+                    System.arraycopy(batch.codes, start, taken, filled, end - start);
+                    filled += end - start;
+                }
+                if (end == batch.codes.length) {
+                    batches.remove(batch);
+                }
+            }
+            return taken;
+        }
+    }
+
+    /**
+     * Codes stocked together, claimed front to back through a shared cursor
+     */
+    private static final class Batch {
+        final String[] codes;
+        final AtomicInteger cursor = new AtomicInteger();
+
+        Batch(String[] codes) {
+            this.codes = codes;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.fawry.ecommerce.engine;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Single writer thread owning one shard
+ *
+ * Commands are published to the shard's ring buffer and run one at a time on the
+ * worker thread, so the rows of the shard are only ever touched by that thread and
+ * need no locks. When the ring is empty the worker spins briefly, then yields, then
+ * sleeps in short intervals, trading a little idle latency for not burning a core.
+ * A failing command is reported and skipped; the worker thread outlives any failure.
+ * Once stopped, the worker refuses new commands, runs every command already accepted
+ * and aborts the transactions still prepared on it before exiting.
+ */
+final class ShardWorker implements Runnable {
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 100;
+    private static final long IDLE_PARK_NANOS = 50_000;
+
+    private final int index;
+    private final RingBuffer<Runnable> ring;
+    private final Thread thread;
+    // Undo actions of prepared cross-shard transactions, only accessed by the worker thread
+    private final Map<Long, Runnable> prepared = new HashMap<>();
+    private final ObjIntConsumer<Throwable> failures;
+    // Submitters past the running check that have not published yet; the worker exits only at zero
+    private final AtomicInteger submitting = new AtomicInteger();
+    private volatile boolean running = true;
+
+    ShardWorker(int index, int ringCapacity, ObjIntConsumer<Throwable> failures) {
+        this.index = index;
+        this.failures = failures;
+        this.ring = new RingBuffer<>(ringCapacity);
+        this.thread = new Thread(this, "checkout-shard-" + index);
+        this.thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    int index() {
+        return index;
+    }
+
+    /**
+     * Publish a command, waiting for room if the ring is full
+     * @param command the command to run on the shard thread
+     * @throws IllegalStateException if the worker has been stopped
+     */
+    void submit(Runnable command) {
+        if (!trySubmit(command)) {
+            throw new IllegalStateException("Shard " + index + " is stopped");
+        }
+    }
+
+    /**
+     * Publish a command unless the worker has been stopped, waiting for room if the ring is full
+     * An accepted command always runs, as the worker drains the ring before exiting
+     * @param command the command to run on the shard thread
+     * @return true if accepted, false if the worker has been stopped
+     */
+    boolean trySubmit(Runnable command) {
+        submitting.incrementAndGet();
+        try {
+            if (!running) {
+                return false;
+            }
+            int attempts = 0;
+            while (!ring.offer(command)) {
+                if (++attempts < SPIN_TRIES) {
+                    Thread.onSpinWait();
+                } else {
+                    Thread.yield();
+                }
+            }
+            return true;
+        } finally {
+            submitting.decrementAndGet();
+        }
+    }
+
+    /**
+     * Remember how to roll back a prepared transaction; shard thread only
+     * @param transactionId the transaction id
+     * @param undo the rollback action
+     */
+    void prepared(long transactionId, Runnable undo) {
+        prepared.put(transactionId, undo);
+    }
+
+    /**
+     * Finish a prepared transaction; shard thread only
+     * @param transactionId the transaction id
+     * @param commit true to keep its effects, false to roll them back
+     */
+    void resolve(long transactionId, boolean commit) {
+        Runnable undo = prepared.remove(transactionId);
+        if (undo != null && !commit) {
+            undo.run();
+        }
+    }
+
+    @Override
+    public void run() {
+        int idle = 0;
+        while (true) {
+            Runnable command = ring.poll();
+            if (command != null) {
+                idle = 0;
+                execute(command);
+            } else if (!running) {
+                // A submitter seen at zero has published already, so one last poll finds its command
+                if (submitting.get() > 0) {
+                    Thread.onSpinWait();
+                } else if ((command = ring.poll()) != null) {
+                    execute(command);
+                } else {
+                    abortPrepared();
+                    return;
+                }
+            } else if (++idle < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else if (idle < SPIN_TRIES + YIELD_TRIES) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    private void execute(Runnable command) {
+        try {
+            command.run();
+        } catch (Throwable e) {
+            try {
+                failures.accept(e, index);
+            } catch (Throwable ignored) {
+                // A failing handler must not take the writer thread down either
+            }
+        }
+    }
+
+    /**
+     * Roll back the transactions whose outcome never arrived, so no stock or money stays held
+     */
+    private void abortPrepared() {
+        List<Runnable> undos = new ArrayList<>(prepared.values());
+        prepared.clear();
+        for (Runnable undo : undos) {
+            execute(undo);
+        }
+    }
+
+    /**
+     * Stop accepting work, run what is queued, abort open transactions and wait for the thread to exit
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void stop() throws InterruptedException {
+        running = false;
+        thread.join();
+    }
+}
@@ -0,0 +1,559 @@
+package com.fawry.ecommerce.engine;
+
+import com.fawry.ecommerce.exception.InsufficientBalanceException;
+import com.fawry.ecommerce.exception.InsufficientStockException;
+import com.fawry.ecommerce.exception.ProductExpiredException;
+import com.fawry.ecommerce.exception.PurchaseLimitExceededException;
+import com.fawry.ecommerce.exception.RateLimitExceededException;
+import com.fawry.ecommerce.limit.PurchaseLimiter;
+import com.fawry.ecommerce.model.Cart;
+import com.fawry.ecommerce.model.CartItem;
+import com.fawry.ecommerce.model.customer.Customer;
+import com.fawry.ecommerce.model.product.ExpirableProduct;
+import com.fawry.ecommerce.model.product.Product;
+import com.fawry.ecommerce.model.product.Shippable;
+import com.fawry.ecommerce.order.Order;
+import com.fawry.ecommerce.order.OrderLine;
+import com.fawry.ecommerce.promotion.PricingResult;
+import com.fawry.ecommerce.promotion.PromotionTable;
+import com.fawry.ecommerce.service.CheckoutListener;
+import com.fawry.ecommerce.service.ShippingItem;
+import com.fawry.ecommerce.service.ShippingService;
+
+import java.io.Closeable;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Checkout engine partitioning products and customers into single-writer shards
+ *
+ * Every product and customer belongs to exactly one shard, chosen from its id, and its
+ * quantity or balance is only changed by that shard's worker thread. A checkout whose
+ * rows all live in one shard runs as a single command. A checkout spanning shards uses
+ * two phases: each participant validates and tentatively applies its part, keeping an
+ * undo record, and votes; once all votes are in, the participants are told to forget
+ * the undo record (commit) or to run it (abort). No thread ever waits on a lock.
+ *
+ * While an engine is in use, the products and customers it handles must not be changed
+ * through other paths such as {@link com.fawry.ecommerce.service.CheckoutService}. The
+ * engine prices carts with the active promotions but ships everything as one package
+ * and prints no receipts; completed orders are reported to checkout listeners.
+ *
+ * Closing refuses new checkouts and waits for the cross-shard transactions in flight
+ * to be resolved. Transactions still open when the wait runs out are rolled back by
+ * the shards, and their futures fail.
+ */
+public class ShardedCheckoutEngine implements Closeable {
+    /** How long {@link #close()} waits for cross-shard transactions in flight */
+    public static final long CLOSE_GRACE_MILLIS = 5_000;
+
+    private final ShardWorker[] shards;
+    private final ShippingService shippingService;
+    private final Executor coordinator;
+    private final AtomicLong transactionIds = new AtomicLong();
+    private final List<CheckoutListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile PromotionTable promotions = PromotionTable.EMPTY;
+    private volatile PurchaseLimiter purchaseLimiter;
+    private volatile CheckoutListener.FailureHandler listenerFailureHandler = CheckoutListener.FailureHandler.PRINT;
+    private final LongAdder listenerFailures = new LongAdder();
+    private volatile CommandFailureHandler commandFailureHandler = CommandFailureHandler.PRINT;
+    private final LongAdder commandFailures = new LongAdder();
+    // Cross-shard transactions between their first prepare and the last resolve submission
+    private final AtomicInteger openTransactions = new AtomicInteger();
+    private volatile boolean closing;
+
+    /**
+     * Receiver of shard commands that threw past their own error handling
+     */
+    @FunctionalInterface
+    public interface CommandFailureHandler {
+        /** Handler printing the failure to {@code System.err} */
+        CommandFailureHandler PRINT = (shard, error) ->
+            System.err.println("Shard " + shard + " command failed: " + error);
+
+        /**
+         * Receive a command failure; runs on the shard thread, which keeps running afterwards
+         * @param shard the shard index
+         * @param error the error the command threw
+         */
+        void onCommandFailed(int shard, Throwable error);
+    }
+
+    /**
+     * Constructor for ShardedCheckoutEngine with one shard per available processor
+     */
+    public ShardedCheckoutEngine() {
+        this(Runtime.getRuntime().availableProcessors(), 4096, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor for ShardedCheckoutEngine
+     * @param shardCount the number of shards and writer threads
+     * @param ringCapacity the command capacity of each shard's ring buffer
+     * @param coordinator the executor deciding cross-shard outcomes and notifying listeners
+     * @throws IllegalArgumentException if the shard count is not positive
+     */
+    public ShardedCheckoutEngine(int shardCount, int ringCapacity, Executor coordinator) {
+        this(shardCount, ringCapacity, coordinator, ShippingService.getInstance());
+    }
+
+    /**
+     * Constructor for ShardedCheckoutEngine
+     * @param shardCount the number of shards and writer threads
+     * @param ringCapacity the command capacity of each shard's ring buffer
+     * @param coordinator the executor deciding cross-shard outcomes and notifying listeners
+     * @param shippingService the shipping service pricing shipments
+     * @throws IllegalArgumentException if the shard count is not positive
+     */
+    public ShardedCheckoutEngine(int shardCount, int ringCapacity, Executor coordinator,
+                                 ShippingService shippingService) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Shard count must be greater than 0");
+        }
+        this.shards = new ShardWorker[shardCount];
+        this.shippingService = shippingService;
+        this.coordinator = coordinator;
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new ShardWorker(i, ringCapacity, this::commandFailed);
+        }
+        for (ShardWorker shard : shards) {
+            shard.start();
+        }
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Get the shard owning a product
+     * @param product the product
+     * @return the shard index
+     */
+    public int shardOf(Product product) {
+        return shardOf(product.getId());
+    }
+
+    /**
+     * Get the shard owning a customer
+     * @param customer the customer
+     * @return the shard index
+     */
+    public int shardOf(Customer customer) {
+        return shardOf(customer.getId());
+    }
+
+    private int shardOf(long key) {
+        // Spread sequential ids so neighbouring products land on different shards evenly
+        long mixed = key * 0x9E3779B97F4A7C15L;
+        return (int) Math.floorMod(mixed ^ (mixed >>> 32), (long) shards.length);
+    }
+
+    public void setPromotions(PromotionTable promotions) {
+        if (promotions == null) {
+            throw new IllegalArgumentException("Promotion table must not be null");
+        }
+        this.promotions = promotions;
+    }
+
+    /**
+     * Enforce per-customer request rates and purchase caps before a checkout reaches the shards
+     * @param purchaseLimiter the limiter, or null for no limits
+     */
+    public void setPurchaseLimiter(PurchaseLimiter purchaseLimiter) {
+        this.purchaseLimiter = purchaseLimiter;
+    }
+
+    public PurchaseLimiter getPurchaseLimiter() {
+        return purchaseLimiter;
+    }
+
+    public void addCheckoutListener(CheckoutListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeCheckoutListener(CheckoutListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Set the receiver of checkout listener failures, printing to {@code System.err} by default
+     * @param handler the handler
+     * @throws IllegalArgumentException if the handler is null
+     */
+    public void setListenerFailureHandler(CheckoutListener.FailureHandler handler) {
+        if (handler == null) {
+            throw new IllegalArgumentException("Listener failure handler must not be null");
+        }
+        this.listenerFailureHandler = handler;
+    }
+
+    public CheckoutListener.FailureHandler getListenerFailureHandler() {
+        return listenerFailureHandler;
+    }
+
+    /**
+     * Get the number of times a checkout listener threw
+     * @return the listener failure count
+     */
+    public long getListenerFailureCount() {
+        return listenerFailures.sum();
+    }
+
+    /**
+     * Set the receiver of failed shard commands, printing to {@code System.err} by default
+     * @param handler the handler
+     * @throws IllegalArgumentException if the handler is null
+     */
+    public void setCommandFailureHandler(CommandFailureHandler handler) {
+        if (handler == null) {
+            throw new IllegalArgumentException("Command failure handler must not be null");
+        }
+        this.commandFailureHandler = handler;
+    }
+
+    /**
+     * Get the number of shard commands that threw
+     * @return the command failure count
+     */
+    public long getCommandFailureCount() {
+        return commandFailures.sum();
+    }
+
+    private void commandFailed(Throwable error, int shard) {
+        commandFailures.increment();
+        commandFailureHandler.onCommandFailed(shard, error);
+    }
+
+    /**
+     * Submit a checkout
+     * The cart's contents are captured and the cart cleared once the order completes.
+     * The returned future fails with {@link InsufficientStockException},
+     * {@link ProductExpiredException} or {@link InsufficientBalanceException} when
+     * the order is rejected, in which case nothing has been changed.
+     * Purchases counted against the caps are given back when the order is rejected.
+     * @param customer the customer
+     * @param cart the shopping cart
+     * @return a future completed with the order
+     * @throws IllegalStateException if the cart is empty or the engine is closed
+     * @throws RateLimitExceededException if the customer sends checkouts too fast
+     * @throws PurchaseLimitExceededException if the order would exceed a purchase cap
+     */
+    public CompletableFuture<Order> checkout(Customer customer, Cart cart) {
+        if (cart.isEmpty()) {
+            throw new IllegalStateException("Cart is empty");
+        }
+        List<CartItem> items = new ArrayList<>();
+        for (CartItem item : cart.getItems()) {
+            items.add(new CartItem(item.getProduct(), item.getQuantity()));
+        }
+        // Turn away abusive traffic before it takes a ring slot on any shard
+        PurchaseLimiter limiter = purchaseLimiter;
+        if (limiter == null) {
+            return submit(customer, cart, items);
+        }
+        long key = PurchaseLimiter.keyOf(customer);
+        limiter.acquire(key);
+        limiter.reserve(key, items);
+        CompletableFuture<Order> order;
+        try {
+            order = submit(customer, cart, items);
+        } catch (RuntimeException e) {
+            limiter.release(key, items);
+            throw e;
+        }
+        return order.whenComplete((placed, failure) -> {
+            if (failure != null) {
+                limiter.release(key, items);
+            }
+        });
+    }
+
+    /**
+     * Price a captured cart and run it on the shards owning its rows
+     */
+    private CompletableFuture<Order> submit(Customer customer, Cart cart, List<CartItem> items) {
+        if (closing) {
+            throw new IllegalStateException("Checkout engine is closed");
+        }
+        PricingResult pricing = promotions.evaluate(items, cart.getCouponCodes());
+        double shippingFee = shippingService.calculateShippingFee(shippingItems(items));
+        double totalAmount = pricing.getDiscountedSubtotal() + shippingFee;
+
+        List<List<CartItem>> linesByShard = new ArrayList<>(Collections.nCopies(shards.length, null));
+        int participants = 0;
+        int customerShard = shardOf(customer);
+        for (CartItem item : items) {
+            int shard = shardOf(item.getProduct());
+            if (linesByShard.get(shard) == null) {
+                linesByShard.set(shard, new ArrayList<>());
+                participants++;
+            }
+            linesByShard.get(shard).add(item);
+        }
+
+        CompletableFuture<Void> applied;
+        if (participants == 1 && linesByShard.get(customerShard) != null) {
+            applied = runLocal(shards[customerShard], customer, items, totalAmount);
+        } else {
+            applied = runDistributed(linesByShard, customer, customerShard, totalAmount);
+        }
+        return applied.thenApplyAsync(ignored -> {
+            Order order = createOrder(customer, items, pricing, shippingFee, totalAmount);
+            cart.clear();
+            notifyListeners(order);
+            return order;
+        }, coordinator);
+    }
+
+    /**
+     * Run a checkout whose rows all live on one shard as a single command
+     */
+    private CompletableFuture<Void> runLocal(ShardWorker shard, Customer customer, List<CartItem> items,
+                                             double totalAmount) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        shard.submit(() -> {
+            try {
+                validate(items);
+                List<Map<LocalDate, Integer>> taken = reduce(items);
+                try {
+                    debit(customer, totalAmount);
+                } catch (InsufficientBalanceException e) {
+                    restock(items, taken);
+                    throw e;
+                }
+                result.complete(null);
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Run a checkout spanning shards with a two-phase protocol
+     */
+    private CompletableFuture<Void> runDistributed(List<List<CartItem>> linesByShard, Customer customer,
+                                                   int customerShard, double totalAmount) {
+        // Counted before checking the flag, so close() either waits for this transaction or it is refused
+        openTransactions.incrementAndGet();
+        if (closing) {
+            openTransactions.decrementAndGet();
+            throw new IllegalStateException("Checkout engine is closed");
+        }
+        long transactionId = transactionIds.incrementAndGet();
+        List<ShardWorker> participants = new ArrayList<>();
+        List<CompletableFuture<Void>> votes = new ArrayList<>();
+        for (ShardWorker shard : shards) {
+            List<CartItem> lines = linesByShard.get(shard.index());
+            boolean debits = shard.index() == customerShard;
+            if (lines == null && !debits) {
+                continue;
+            }
+            participants.add(shard);
+            CompletableFuture<Void> vote = new CompletableFuture<>();
+            votes.add(vote);
+            if (!shard.trySubmit(() -> prepare(shard, transactionId, lines, debits ? customer : null, totalAmount, vote))) {
+                vote.completeExceptionally(new IllegalStateException("Shard " + shard.index() + " is stopped"));
+            }
+        }
+
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        CompletableFuture.allOf(votes.toArray(new CompletableFuture<?>[0])).whenCompleteAsync((ignored, failure) -> {
+            boolean commit = failure == null;
+            boolean refused = false;
+            try {
+                for (ShardWorker shard : participants) {
+                    // A stopped shard has already rolled its part back
+                    refused |= !shard.trySubmit(() -> shard.resolve(transactionId, commit));
+                }
+            } finally {
+                openTransactions.decrementAndGet();
+                if (commit && !refused) {
+                    result.complete(null);
+                } else if (!commit) {
+                    result.completeExceptionally(failure instanceof CompletionException ? failure.getCause() : failure);
+                } else {
+                    result.completeExceptionally(new IllegalStateException(
+                        "Checkout engine closed before transaction " + transactionId + " was resolved"));
+                }
+            }
+        }, coordinator).whenComplete((ignored, rejected) -> {
+            // The coordinator refused the callback; the shards roll the transaction back when stopped
+            if (rejected != null && result.completeExceptionally(rejected)) {
+                openTransactions.decrementAndGet();
+            }
+        });
+        return result;
+    }
+
+    /**
+     * First phase on one participant: validate, apply tentatively and vote
+     */
+    private void prepare(ShardWorker shard, long transactionId, List<CartItem> lines, Customer customer,
+                         double totalAmount, CompletableFuture<Void> vote) {
+        try {
+            List<CartItem> ownLines = lines != null ? lines : List.of();
+            validate(ownLines);
+            List<Map<LocalDate, Integer>> taken = reduce(ownLines);
+            if (customer != null) {
+                try {
+                    debit(customer, totalAmount);
+                } catch (InsufficientBalanceException e) {
+                    restock(ownLines, taken);
+                    throw e;
+                }
+            }
+            shard.prepared(transactionId, () -> {
+                restock(ownLines, taken);
+                if (customer != null) {
+                    customer.addBalance(totalAmount);
+                }
+            });
+            vote.complete(null);
+        } catch (Throwable e) {
+            vote.completeExceptionally(e);
+        }
+    }
+
+    private static void validate(List<CartItem> lines) throws InsufficientStockException, ProductExpiredException {
+        for (CartItem line : lines) {
+            Product product = line.getProduct();
+            if (product instanceof ExpirableProduct && ((ExpirableProduct) product).isExpired()) {
+                throw new ProductExpiredException("Product " + product.getName() + " is expired");
+            }
+            if (!product.isAvailable(line.getQuantity())) {
+                throw new InsufficientStockException(
+                    String.format("Product %s is not available in requested quantity. Available: %d, Requested: %d",
+                                product.getName(), product.getQuantity(), line.getQuantity()));
+            }
+        }
+    }
+
+    private static void debit(Customer customer, double totalAmount) throws InsufficientBalanceException {
+        if (!customer.deductBalance(totalAmount)) {
+            throw new InsufficientBalanceException(
+                String.format("Insufficient balance. Required: $%.2f, Available: $%.2f",
+                            totalAmount, customer.getBalance()));
+        }
+    }
+
+    /**
+     * Take the lines' units from stock, all or nothing
+     * Stock changed outside the engine can make a validated line fail here
+     * @return the lots taken per line, null for products without lots
+     * @throws InsufficientStockException if a line cannot be taken; earlier lines are restocked
+     */
+    private static List<Map<LocalDate, Integer>> reduce(List<CartItem> lines) throws InsufficientStockException {
+        List<Map<LocalDate, Integer>> taken = new ArrayList<>(lines.size());
+        for (CartItem line : lines) {
+            Product product = line.getProduct();
+            Map<LocalDate, Integer> lots = null;
+            boolean reduced;
+            if (product instanceof ExpirableProduct) {
+                lots = ((ExpirableProduct) product).takeLots(line.getQuantity());
+                reduced = lots != null;
+            } else {
+                reduced = product.reduceQuantity(line.getQuantity());
+            }
+            if (!reduced) {
+                restock(lines, taken);
+                throw new InsufficientStockException("Product " + product.getName() + " sold out during checkout");
+            }
+            taken.add(lots);
+        }
+        return taken;
+    }
+
+    /**
+     * Give the taken units back, expirable ones to the lots they came from
+     * @param lines the lines, of which the first {@code taken.size()} were taken
+     * @param taken the lots taken per line
+     */
+    private static void restock(List<CartItem> lines, List<Map<LocalDate, Integer>> taken) {
+        for (int i = 0; i < taken.size(); i++) {
+            Product product = lines.get(i).getProduct();
+            if (taken.get(i) != null) {
+                ((ExpirableProduct) product).returnLots(taken.get(i));
+            } else {
+                product.increaseQuantity(lines.get(i).getQuantity());
+            }
+        }
+    }
+
+    private static List<ShippingItem> shippingItems(List<CartItem> items) {
+        List<ShippingItem> shippable = new ArrayList<>();
+        for (CartItem item : items) {
+            Product product = item.getProduct();
+            if (product instanceof Shippable && ((Shippable) product).requiresShipping()) {
+                shippable.add(product);
+            }
+        }
+        return shippable;
+    }
+
+    private static Order createOrder(Customer customer, List<CartItem> items, PricingResult pricing,
+                                     double shippingFee, double totalAmount) {
+        List<OrderLine> lines = new ArrayList<>(items.size());
+        for (CartItem item : items) {
+            Product product = item.getProduct();
+            lines.add(new OrderLine(product.getId(), product.getName(), item.getQuantity(), product.getPrice()));
+        }
+        return new Order(Order.nextOrderId(), customer.getId(), customer.getName(), System.currentTimeMillis(),
+                         lines, pricing.getSubtotal(), pricing.getTotalDiscount(), shippingFee, totalAmount);
+    }
+
+    private void notifyListeners(Order order) {
+        for (CheckoutListener listener : listeners) {
+            try {
+                listener.onCheckoutCompleted(order);
+            } catch (RuntimeException e) {
+                listenerFailures.increment();
+                listenerFailureHandler.onListenerFailed(listener, order, e);
+            }
+        }
+    }
+
+    /**
+     * Refuse new checkouts, wait up to {@value #CLOSE_GRACE_MILLIS} ms for cross-shard transactions
+     * in flight and stop the shard threads after running every command already submitted
+     */
+    @Override
+    public void close() {
+        close(CLOSE_GRACE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Refuse new checkouts, wait for cross-shard transactions in flight and stop the shard threads
+     * Transactions still open after the wait are rolled back by their shards.
+     * @param timeout the longest wait for open transactions
+     * @param unit the unit of the timeout
+     */
+    public void close(long timeout, TimeUnit unit) {
+        closing = true;
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (openTransactions.get() > 0 && System.nanoTime() - deadline < 0) {
+            LockSupport.parkNanos(100_000);
+        }
+        try {
+            for (ShardWorker shard : shards) {
+                shard.stop();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
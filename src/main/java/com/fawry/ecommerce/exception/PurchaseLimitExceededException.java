@@ -0,0 +1,16 @@
+package com.fawry.ecommerce.exception;
+
+/**
+ * Exception thrown when a customer would buy more of a product than the purchase cap allows
+ * Unchecked, so purchase caps can guard existing operations without changing their signatures
+ */
+public class PurchaseLimitExceededException extends RuntimeException {
+    
+    /**
+     * Constructor with message
+     * @param message the exception message
+     */
+    public PurchaseLimitExceededException(String message) {
+        super(message);
+    }
+}
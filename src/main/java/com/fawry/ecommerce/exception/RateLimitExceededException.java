@@ -0,0 +1,23 @@
+package com.fawry.ecommerce.exception;
+
+/**
+ * Exception thrown when a customer sends cart or checkout requests faster than allowed
+ * Unchecked, so rate limiting can guard existing operations without changing their signatures
+ */
+public class RateLimitExceededException extends RuntimeException {
+    private final long retryAfterMillis;
+    
+    /**
+     * Constructor with message
+     * @param message the exception message
+     * @param retryAfterMillis how long until the next request would be admitted, in milliseconds
+     */
+    public RateLimitExceededException(String message, long retryAfterMillis) {
+        super(message);
+        this.retryAfterMillis = retryAfterMillis;
+    }
+    
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
@@ -0,0 +1,372 @@
+package com.fawry.ecommerce.factory;
+
+import com.fawry.ecommerce.model.product.Product;
+import com.fawry.ecommerce.model.product.ProductType;
+import com.fawry.ecommerce.repository.ProductRepository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Bulk importer turning a supplier CSV feed into registered products
+ *
+ * The feed is split into chunks aligned on line boundaries; every chunk is memory-mapped
+ * and parsed on a fork/join pool straight from the mapped bytes, building products
+ * through {@link ProductFactory#create}. Products are registered only after every chunk
+ * parsed successfully, so a malformed feed leaves the repository untouched.
+ *
+ * Expected line format, with an optional header line starting with {@code type,}:
+ * {@code type,name,price,quantity,expirationDate,weight}, where type is a
+ * {@link ProductType} name, expirationDate is {@code yyyy-MM-dd} (empty for
+ * non-expirable types) and weight is in kg (empty for scratch cards).
+ * Names must not contain commas.
+ * Only CSV feeds are imported; supplier feeds in a binary format have no agreed
+ * layout yet and must be converted to CSV first.
+ */
+public class CatalogImporter {
+    public static final int DEFAULT_CHUNK_BYTES = 8 << 20;
+
+    private static final int FIELD_COUNT = 6;
+    // 10^15 < 2^53, so up to this many digits the mantissa is an exact double
+    private static final int EXACT_DIGITS = 15;
+    private static final double[] POWERS_OF_TEN = {1, 10, 100, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9,
+            1e10, 1e11, 1e12, 1e13, 1e14, 1e15};
+
+    private final ForkJoinPool pool;
+    private final int chunkBytes;
+
+    /**
+     * Constructor for CatalogImporter using the common fork/join pool
+     */
+    public CatalogImporter() {
+        this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_BYTES);
+    }
+
+    /**
+     * Constructor for CatalogImporter
+     * @param pool the pool parsing the chunks
+     * @param chunkBytes the target chunk size in bytes
+     * @throws IllegalArgumentException if the chunk size is not positive
+     */
+    public CatalogImporter(ForkJoinPool pool, int chunkBytes) {
+        if (chunkBytes <= 0) {
+            throw new IllegalArgumentException("Chunk size must be greater than 0");
+        }
+        this.pool = pool;
+        this.chunkBytes = chunkBytes;
+    }
+
+    /**
+     * Import a CSV feed into a repository
+     * @param feed the feed file
+     * @param repository the repository receiving the products
+     * @return the import statistics
+     * @throws IOException if the feed cannot be read
+     * @throws IllegalArgumentException if a record is malformed, reported with its byte offset
+     */
+    public ImportResult importCsv(Path feed, ProductRepository repository) throws IOException {
+        long started = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(feed, StandardOpenOption.READ)) {
+            long[] boundaries = chunkBoundaries(channel);
+            int chunks = boundaries.length - 1;
+            List<List<Product>> parsed = new ArrayList<>(Collections.nCopies(chunks, null));
+            try {
+                pool.invoke(new ParseChunks(channel, boundaries, parsed, 0, chunks));
+            } catch (UncheckedIOException e) {
+                // Tasks cannot throw checked exceptions; a failed mapping carries the original through
+                throw e.getCause();
+            }
+
+            int records = 0;
+            for (List<Product> chunk : parsed) {
+                repository.registerAll(chunk);
+                records += chunk.size();
+            }
+            return new ImportResult(records, chunks, channel.size(), System.nanoTime() - started);
+        }
+    }
+
+    /**
+     * Split the file into chunks of about {@code chunkBytes}, each ending right after a newline
+     */
+    private long[] chunkBoundaries(FileChannel channel) throws IOException {
+        long size = channel.size();
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(0L);
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long next = chunkBytes;
+        while (next < size) {
+            long boundary = size;
+            long position = next;
+            search:
+            while (position < size) {
+                probe.clear();
+                int read = channel.read(probe, position);
+                if (read <= 0) {
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (probe.get(i) == '\n') {
+                        boundary = position + i + 1;
+                        break search;
+                    }
+                }
+                position += read;
+            }
+            if (boundary >= size) {
+                break;
+            }
+            boundaries.add(boundary);
+            next = boundary + chunkBytes;
+        }
+        boundaries.add(size);
+        long[] result = new long[boundaries.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = boundaries.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Fork/join task halving the chunk range until single chunks are parsed
+     */
+    private static final class ParseChunks extends RecursiveAction {
+        private final FileChannel channel;
+        private final long[] boundaries;
+        private final List<List<Product>> parsed;
+        private final int from;
+        private final int to;
+
+        ParseChunks(FileChannel channel, long[] boundaries, List<List<Product>> parsed, int from, int to) {
+            this.channel = channel;
+            this.boundaries = boundaries;
+            this.parsed = parsed;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                if (to > from) {
+                    // Each task sets its own slot of the pre-sized list, a non-structural change
+                    parsed.set(from, parseChunk(from));
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ParseChunks(channel, boundaries, parsed, from, middle),
+                      new ParseChunks(channel, boundaries, parsed, middle, to));
+        }
+
+        private List<Product> parseChunk(int chunk) {
+            long start = boundaries[chunk];
+            long length = boundaries[chunk + 1] - start;
+            MappedByteBuffer buffer;
+            try {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            List<Product> products = new ArrayList<>((int) (length / 48) + 1);
+            int[] fieldStarts = new int[FIELD_COUNT];
+            int[] fieldEnds = new int[FIELD_COUNT];
+            int lineStart = 0;
+            int limit = buffer.limit();
+            while (lineStart < limit) {
+                int lineEnd = lineStart;
+                while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+                    lineEnd++;
+                }
+                int contentEnd = lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+                boolean header = start + lineStart == 0 && startsWith(buffer, lineStart, contentEnd, "type,");
+                if (contentEnd > lineStart && !header) {
+                    products.add(parseRecord(buffer, lineStart, contentEnd, start, fieldStarts, fieldEnds));
+                }
+                lineStart = lineEnd + 1;
+            }
+            return products;
+        }
+    }
+
+    private static Product parseRecord(ByteBuffer buffer, int from, int to, long chunkStart,
+                                       int[] fieldStarts, int[] fieldEnds) {
+        int field = 0;
+        fieldStarts[0] = from;
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == ',') {
+                if (field == FIELD_COUNT - 1) {
+                    throw malformed(buffer, from, to, chunkStart, "too many fields");
+                }
+                fieldEnds[field++] = i;
+                fieldStarts[field] = i + 1;
+            }
+        }
+        fieldEnds[field] = to;
+        if (field != FIELD_COUNT - 1) {
+            throw malformed(buffer, from, to, chunkStart, "expected " + FIELD_COUNT + " fields");
+        }
+        try {
+            ProductType type = ProductType.valueOf(ascii(buffer, fieldStarts[0], fieldEnds[0]).trim());
+            String name = utf8(buffer, fieldStarts[1], fieldEnds[1]).trim();
+            double price = parseDecimal(buffer, fieldStarts[2], fieldEnds[2]);
+            double quantity = parseDecimal(buffer, fieldStarts[3], fieldEnds[3]);
+            LocalDate expiration = fieldEnds[4] > fieldStarts[4] ? parseDate(buffer, fieldStarts[4], fieldEnds[4]) : null;
+            double weight = fieldEnds[5] > fieldStarts[5] ? parseDecimal(buffer, fieldStarts[5], fieldEnds[5]) : 0.0;
+            if (name.isEmpty()) {
+                throw new IllegalArgumentException("empty name");
+            }
+            if (quantity != Math.floor(quantity) || quantity > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("quantity must be a whole number");
+            }
+            return ProductFactory.create(type, name, price, (int) quantity, expiration, weight);
+        } catch (RuntimeException e) {
+            throw malformed(buffer, from, to, chunkStart, e.getMessage());
+        }
+    }
+
+    /**
+     * Parse a non-negative decimal such as {@code 1200} or {@code 0.35} without allocating
+     */
+    private static double parseDecimal(ByteBuffer buffer, int from, int to) {
+        long mantissa = 0;
+        int scale = -1;
+        int digits = 0;
+        for (int i = from; i < to; i++) {
+            byte b = buffer.get(i);
+            if (b >= '0' && b <= '9') {
+                if (++digits <= EXACT_DIGITS) {
+                    mantissa = mantissa * 10 + (b - '0');
+                }
+                if (scale >= 0) {
+                    scale++;
+                }
+            } else if (b == '.' && scale < 0) {
+                scale = 0;
+            } else if (b != ' ') {
+                throw new IllegalArgumentException("invalid number");
+            }
+        }
+        if (digits == 0) {
+            throw new IllegalArgumentException("missing number");
+        }
+        if (digits > EXACT_DIGITS) {
+            return Double.parseDouble(ascii(buffer, from, to).replace(" ", ""));
+        }
+        // Both operands are exact doubles, so the division is correctly rounded like Double.parseDouble
+        return scale <= 0 ? mantissa : mantissa / POWERS_OF_TEN[scale];
+    }
+
+    private static LocalDate parseDate(ByteBuffer buffer, int from, int to) {
+        if (to - from != 10 || buffer.get(from + 4) != '-' || buffer.get(from + 7) != '-') {
+            throw new IllegalArgumentException("expected yyyy-MM-dd date");
+        }
+        return LocalDate.of(digits(buffer, from, from + 4), digits(buffer, from + 5, from + 7),
+                            digits(buffer, from + 8, from + 10));
+    }
+
+    private static int digits(ByteBuffer buffer, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            byte b = buffer.get(i);
+            if (b < '0' || b > '9') {
+                throw new IllegalArgumentException("invalid date");
+            }
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+
+    private static boolean startsWith(ByteBuffer buffer, int from, int to, String prefix) {
+        if (to - from < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (Character.toLowerCase((char) buffer.get(from + i)) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String ascii(ByteBuffer buffer, int from, int to) {
+        return decode(buffer, from, to, true);
+    }
+
+    private static String utf8(ByteBuffer buffer, int from, int to) {
+        return decode(buffer, from, to, false);
+    }
+
+    private static String decode(ByteBuffer buffer, int from, int to, boolean ascii) {
+        byte[] bytes = new byte[to - from];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(from + i);
+        }
+        return new String(bytes, ascii ? StandardCharsets.US_ASCII : StandardCharsets.UTF_8);
+    }
+
+    private static IllegalArgumentException malformed(ByteBuffer buffer, int from, int to,
+                                                      long chunkStart, String reason) {
+        return new IllegalArgumentException(String.format("Malformed product record at byte %d (%s): %s",
+                chunkStart + from, reason, utf8(buffer, from, to)));
+    }
+
+    /**
+     * Statistics of one bulk import
+     */
+    public static final class ImportResult {
+        private final int records;
+        private final int chunks;
+        private final long bytes;
+        private final long elapsedNanos;
+
+        ImportResult(int records, int chunks, long bytes, long elapsedNanos) {
+            this.records = records;
+            this.chunks = chunks;
+            this.bytes = bytes;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public int getRecords() {
+            return records;
+        }
+
+        public int getChunks() {
+            return chunks;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * Get the import throughput
+         * @return records imported per second
+         */
+        public double recordsPerSecond() {
+            return elapsedNanos == 0 ? 0 : records * 1_000_000_000.0 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Imported %d products from %d bytes in %d chunks (%.0f records/s)",
+                               records, bytes, chunks, recordsPerSecond());
+        }
+    }
+}
@@ -72,6 +72,68 @@ public class ProductFactory {
         return new ScratchCard(name, price, quantity);
     }
     
+    /**
+     * Create a product of the given type
+     * @param type the product type
+     * @param name the name of the product
+     * @param price the price
+     * @param quantity the quantity
+     * @param expirationDate the expiration date, required for expirable types and ignored otherwise
+     * @param weight the weight in kg, ignored for scratch cards
+     * @return the created product
+     * @throws IllegalArgumentException if an expirable type has no expiration date
+     */
+    public static Product create(ProductType type, String name, double price, int quantity,
+                                 LocalDate expirationDate, double weight) {
+        if (type.isExpirable() && expirationDate == null) {
+            throw new IllegalArgumentException("Product " + name + " requires an expiration date");
+        }
+        switch (type) {
+            case CHEESE:
+                return createCheese(name, price, quantity, expirationDate, weight);
+            case BISCUITS:
+                return createBiscuits(name, price, quantity, expirationDate, weight);
+            case TV:
+                return createTV(name, price, quantity, weight);
+            case MOBILE:
+                return createMobile(name, price, quantity, weight);
+            case SCRATCH_CARD:
+                return createScratchCard(name, price, quantity);
+            default:
+                throw new IllegalArgumentException("Unsupported product type: " + type);
+        }
+    }
+    
+    /**
+     * Recreate a persisted product of the given type with its id
+     * @param id the persisted product id
+     * @param type the product type
+     * @param name the name of the product
+     * @param price the price
+     * @param quantity the quantity
+     * @param expirationDate the expiration date of the first lot, null for undated stock; ignored for non-expirable types
+     * @param weight the weight in kg, ignored for scratch cards
+     * @return the restored product
+     * @throws IllegalArgumentException if the id is not positive
+     */
+    public static Product restore(long id, ProductType type, String name, double price, int quantity,
+                                  LocalDate expirationDate, double weight) {
+        switch (type) {
+            case CHEESE:
+                return new Cheese(id, name, price, quantity, expirationDate, weight);
+            case BISCUITS:
+                return new Biscuits(id, name, price, quantity, expirationDate, weight);
+            case TV:
+                return new TV(id, name, price, quantity, weight);
+            case MOBILE:
+                return new Mobile(id, name, price, quantity, weight);
+            case SCRATCH_CARD:
+                return new ScratchCard(id, name, price, quantity);
+            default:
+                throw new IllegalArgumentException("Unsupported product type: " + type);
+        }
+    }
+    
     /**
      * Create demo products with predefined values for testing
      */
@@ -0,0 +1,69 @@
+package com.fawry.ecommerce.inventory;
+
+/**
+ * Immutable notice that a watched product crossed its low-water mark
+ */
+public final class ReplenishmentEvent {
+    /**
+     * Kind of threshold that was crossed
+     */
+    public enum Type {
+        LOW_STOCK,
+        OUT_OF_STOCK
+    }
+
+    private final Type type;
+    private final long productId;
+    private final String productName;
+    private final int quantity;
+    private final int lowWaterMark;
+    private final long timestamp;
+
+    /**
+     * Constructor for ReplenishmentEvent
+     * @param type the crossed threshold
+     * @param productId the product id
+     * @param productName the product name
+     * @param quantity the quantity right after the crossing
+     * @param lowWaterMark the configured low-water mark
+     * @param timestamp the crossing time in epoch milliseconds
+     */
+    public ReplenishmentEvent(Type type, long productId, String productName, int quantity,
+                              int lowWaterMark, long timestamp) {
+        this.type = type;
+        this.productId = productId;
+        this.productName = productName;
+        this.quantity = quantity;
+        this.lowWaterMark = lowWaterMark;
+        this.timestamp = timestamp;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getProductId() {
+        return productId;
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public int getLowWaterMark() {
+        return lowWaterMark;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %s (Qty: %d, Low-water mark: %d)", type, productName, quantity, lowWaterMark);
+    }
+}
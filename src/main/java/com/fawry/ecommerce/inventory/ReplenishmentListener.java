@@ -0,0 +1,12 @@
+package com.fawry.ecommerce.inventory;
+
+/**
+ * Interface for components that restock products when alerted
+ */
+public interface ReplenishmentListener {
+    /**
+     * Called on the alert dispatch thread when a watched product needs restocking
+     * @param event the replenishment event
+     */
+    void onReplenishmentNeeded(ReplenishmentEvent event);
+}
@@ -0,0 +1,224 @@
+package com.fawry.ecommerce.inventory;
+
+import com.fawry.ecommerce.model.product.ExpirableProduct;
+import com.fawry.ecommerce.model.product.Product;
+import com.fawry.ecommerce.model.product.StockObserver;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Service raising replenishment events when watched products cross their low-water mark
+ *
+ * Each watched product gets its own observer holding the threshold, so the decrement
+ * path does no lookup: it compares the new quantity with the mark and, on a crossing,
+ * flips an armed flag and parks the event on the product's watch. A watch is queued for
+ * dispatch at most once at a time and a newer crossing simply replaces its parked event,
+ * so bursts of decrements coalesce into one notification delivered on the dispatch
+ * executor. A threshold re-arms once the quantity rises above it again, e.g. on restock.
+ */
+public class StockAlertService {
+    private final Executor dispatcher;
+    private final ExecutorService ownedDispatcher;
+    private final LongSupplier clock;
+    private final List<ReplenishmentListener> listeners = new CopyOnWriteArrayList<>();
+    private final Queue<Watch> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean dispatchScheduled = new AtomicBoolean();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * Constructor for StockAlertService dispatching on its own daemon thread
+     */
+    public StockAlertService() {
+        this(Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stock-alert-dispatcher");
+            thread.setDaemon(true);
+            return thread;
+        }), System::currentTimeMillis, true);
+    }
+
+    /**
+     * Constructor for StockAlertService
+     * @param dispatcher the executor delivering events to listeners
+     * @param clock the time source in epoch milliseconds
+     */
+    public StockAlertService(Executor dispatcher, LongSupplier clock) {
+        this(dispatcher, clock, false);
+    }
+
+    private StockAlertService(Executor dispatcher, LongSupplier clock, boolean owned) {
+        this.dispatcher = dispatcher;
+        this.ownedDispatcher = owned ? (ExecutorService) dispatcher : null;
+        this.clock = clock;
+    }
+
+    /**
+     * Start watching a product; a product already at or below the mark alerts immediately
+     * Expirable products are compared by their sellable quantity, so expired units still on
+     * the shelf do not hide a product that can no longer be sold.
+     * Watching a product again with this service replaces its mark.
+     * @param product the product to watch
+     * @param lowWaterMark the quantity at or below which a replenishment event fires
+     * @throws IllegalArgumentException if the mark is negative
+     * @throws IllegalStateException if the product is observed by another observer
+     */
+    public void watch(Product product, int lowWaterMark) {
+        if (lowWaterMark < 0) {
+            throw new IllegalArgumentException("Low-water mark must not be negative");
+        }
+        Watch watch = new Watch(lowWaterMark);
+        StockObserver current;
+        do {
+            current = product.getStockObserver();
+            if (current != null && !isOwn(current)) {
+                throw new IllegalStateException("Product " + product.getName() + " is already observed");
+            }
+        } while (!product.replaceStockObserver(current, watch));
+        int quantity = product instanceof ExpirableProduct
+                ? ((ExpirableProduct) product).getSellableQuantity() : product.getQuantity();
+        if (quantity <= lowWaterMark) {
+            watch.onQuantityChanged(product, Integer.MAX_VALUE, quantity);
+        }
+    }
+
+    /**
+     * Stop watching a product
+     * @param product the product
+     */
+    public void unwatch(Product product) {
+        StockObserver observer = product.getStockObserver();
+        if (isOwn(observer)) {
+            product.replaceStockObserver(observer, null);
+        }
+    }
+
+    private boolean isOwn(StockObserver observer) {
+        return observer instanceof Watch && ((Watch) observer).owner() == this;
+    }
+
+    public void addListener(ReplenishmentListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(ReplenishmentListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Get the number of crossings folded into an already pending event
+     * @return the coalesced crossing count
+     */
+    public long coalescedCrossings() {
+        return coalesced.sum();
+    }
+
+    /**
+     * Stop the dispatch thread created by the default constructor
+     */
+    public void shutdown() {
+        if (ownedDispatcher != null) {
+            ownedDispatcher.shutdown();
+        }
+    }
+
+    private void scheduleDispatch() {
+        if (dispatchScheduled.compareAndSet(false, true)) {
+            dispatcher.execute(this::dispatch);
+        }
+    }
+
+    private void dispatch() {
+        do {
+            Watch watch;
+            while ((watch = pending.poll()) != null) {
+                // Clear the flag before taking the events so a concurrent crossing re-queues the watch
+                watch.queued.set(false);
+                deliver(watch.pendingOutOfStock.getAndSet(null));
+                deliver(watch.pendingLowStock.getAndSet(null));
+            }
+            dispatchScheduled.set(false);
+        } while (!pending.isEmpty() && dispatchScheduled.compareAndSet(false, true));
+    }
+
+    private void deliver(ReplenishmentEvent event) {
+        if (event == null) {
+            return;
+        }
+        for (ReplenishmentListener listener : listeners) {
+            try {
+                listener.onReplenishmentNeeded(event);
+            } catch (RuntimeException e) {
+                System.err.println("Replenishment listener failed for " + event.getProductName() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Per-product observer holding the threshold state
+     */
+    private final class Watch implements StockObserver {
+        private final int lowWaterMark;
+        private final AtomicBoolean lowStockArmed = new AtomicBoolean(true);
+        private final AtomicBoolean outOfStockArmed = new AtomicBoolean(true);
+        private final AtomicReference<ReplenishmentEvent> pendingLowStock = new AtomicReference<>();
+        private final AtomicReference<ReplenishmentEvent> pendingOutOfStock = new AtomicReference<>();
+        private final AtomicBoolean queued = new AtomicBoolean();
+
+        Watch(int lowWaterMark) {
+            this.lowWaterMark = lowWaterMark;
+        }
+
+        StockAlertService owner() {
+            return StockAlertService.this;
+        }
+
+        @Override
+        public void onQuantityChanged(Product product, int previousQuantity, int newQuantity) {
+            if (newQuantity > lowWaterMark) {
+                rearm(lowStockArmed);
+                rearm(outOfStockArmed);
+                return;
+            }
+            if (newQuantity > 0) {
+                rearm(outOfStockArmed);
+            } else if (fire(outOfStockArmed)) {
+                park(pendingOutOfStock, product, ReplenishmentEvent.Type.OUT_OF_STOCK, newQuantity);
+            }
+            if (fire(lowStockArmed)) {
+                park(pendingLowStock, product, ReplenishmentEvent.Type.LOW_STOCK, newQuantity);
+            }
+        }
+
+        private void rearm(AtomicBoolean armed) {
+            if (!armed.get()) {
+                armed.set(true);
+            }
+        }
+
+        private boolean fire(AtomicBoolean armed) {
+            return armed.get() && armed.compareAndSet(true, false);
+        }
+
+        private void park(AtomicReference<ReplenishmentEvent> slot, Product product,
+                          ReplenishmentEvent.Type type, int quantity) {
+            ReplenishmentEvent event = new ReplenishmentEvent(type, product.getId(), product.getName(),
+                                                              quantity, lowWaterMark, clock.getAsLong());
+            if (slot.getAndSet(event) != null) {
+                coalesced.increment();
+            }
+            if (queued.compareAndSet(false, true)) {
+                pending.offer(this);
+                scheduleDispatch();
+            }
+        }
+    }
+}
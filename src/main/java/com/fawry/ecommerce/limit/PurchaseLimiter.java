@@ -0,0 +1,497 @@
+package com.fawry.ecommerce.limit;
+
+import com.fawry.ecommerce.exception.PurchaseLimitExceededException;
+import com.fawry.ecommerce.exception.RateLimitExceededException;
+import com.fawry.ecommerce.model.CartItem;
+import com.fawry.ecommerce.model.customer.Customer;
+import com.fawry.ecommerce.model.product.Product;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-customer request rate limits and per-product purchase caps
+ *
+ * Each customer has a token bucket packed into a single long: the token count in
+ * thousandths in the high bits and the time of the last refill in the low bits, so a
+ * request is admitted or rejected with one compare-and-set and no lock. Purchases
+ * count against caps per product and cap period, again packed as period index and
+ * units into one long per customer and product. Checks run before any stock is read,
+ * so abusive traffic is turned away without touching hot product counters.
+ *
+ * Customers are tracked by a limit key, see {@link #keyOf(Customer)}. An entry left
+ * alone long enough for its bucket to refill and its cap period to end is no different
+ * from a new one, so idle entries are swept out at most once per idle time, and the
+ * number of tracked customers is bounded: when every slot holds an active customer,
+ * new customers are rate limited until one goes idle.
+ */
+public final class PurchaseLimiter {
+    /** Largest burst the packed token count can hold */
+    public static final int MAX_BURST = 4_000;
+    private static final int TIME_BITS = 42;
+    private static final long TIME_MASK = (1L << TIME_BITS) - 1;
+    private static final long MILLI_TOKEN = 1_000;
+    /** Customers tracked at once unless the builder sets another bound */
+    public static final int DEFAULT_MAX_CUSTOMERS = 100_000;
+    private static final long MIN_SWEEP_INTERVAL_MILLIS = 1_000;
+    private static final long RETIRED = -1;
+
+    private final double milliTokensPerMilli;
+    private final long capacity;
+    private final int defaultCap;
+    private final Map<Long, Integer> caps;
+    private final long capPeriodMillis;
+    private final LongSupplier clock;
+    private final long origin;
+    private final int maxCustomers;
+    private final long bucketIdleMillis;
+    private final long idleMillis;
+    private final Map<Long, CustomerState> customers = new ConcurrentHashMap<>();
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+    private volatile long nextSweep;
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder capRejected = new LongAdder();
+
+    private PurchaseLimiter(Builder builder) {
+        this.milliTokensPerMilli = builder.permitsPerSecond;
+        this.capacity = builder.burst * MILLI_TOKEN;
+        this.defaultCap = builder.defaultCap;
+        this.caps = new HashMap<>(builder.caps);
+        this.capPeriodMillis = builder.capPeriodMillis;
+        this.clock = builder.clock;
+        this.origin = clock.getAsLong();
+        this.maxCustomers = builder.maxCustomers;
+        long refillMillis = capacity == 0 ? 0 : (long) Math.ceil(capacity / milliTokensPerMilli);
+        long capMillis = defaultCap == 0 && caps.isEmpty() ? 0 : capPeriodMillis;
+        this.bucketIdleMillis = Math.max(1, refillMillis);
+        this.idleMillis = Math.max(bucketIdleMillis, capMillis);
+        this.nextSweep = sweepInterval();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Get the key a customer's limits are tracked under
+     * Registered customers are keyed by id. Guests get a fresh id per session, which would
+     * hand every session a full bucket and fresh caps, so they are keyed by their name
+     * instead; guests whose names hash alike share limits, which only ever limits more.
+     * @param customer the customer
+     * @return the id of a registered customer, otherwise a negative key derived from the name
+     */
+    public static long keyOf(Customer customer) {
+        if (customer.isRegistered()) {
+            return customer.getId();
+        }
+        String name = customer.getName() == null ? "" : customer.getName().trim().toLowerCase(Locale.ROOT);
+        return -1 - (name.hashCode() & 0xFFFF_FFFFL);
+    }
+
+    /**
+     * Admit one cart or checkout request of a customer
+     * @param customerId the customer's limit key
+     * @throws RateLimitExceededException if the customer's bucket is empty, or no more customers can be tracked
+     */
+    public void acquire(long customerId) {
+        if (capacity == 0) {
+            return;
+        }
+        long now = elapsed();
+        AtomicLong bucket = state(customerId, now).bucket;
+        while (true) {
+            long current = bucket.get();
+            long tokens = refill(current, now);
+            if (tokens < MILLI_TOKEN) {
+                rateLimited.increment();
+                long retryAfter = (long) Math.ceil((MILLI_TOKEN - tokens) / milliTokensPerMilli);
+                throw new RateLimitExceededException(
+                    "Too many requests from customer " + customerId + ", retry in " + retryAfter + " ms", retryAfter);
+            }
+            // A thread that read the clock earlier must not move the refill time back
+            long time = Math.max(now, current & TIME_MASK);
+            if (bucket.compareAndSet(current, pack(tokens - MILLI_TOKEN, time))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Check that a customer may hold a quantity of a product, without counting it
+     * @param customerId the customer's limit key
+     * @param product the product
+     * @param quantity the quantity the customer would buy
+     * @throws PurchaseLimitExceededException if earlier purchases plus the quantity exceed the cap
+     */
+    public void checkCap(long customerId, Product product, int quantity) {
+        int cap = capOf(product.getId());
+        if (cap == 0) {
+            return;
+        }
+        CustomerState state = customers.get(customerId);
+        AtomicLong counter = state == null ? null : state.purchased.get(product.getId());
+        long units = counter == null ? 0 : unitsIn(counter.get(), period());
+        if (units + quantity > cap) {
+            throw capExceeded(product, cap, units);
+        }
+    }
+
+    /**
+     * Count the items of an order against the customer's caps, all or nothing
+     * @param customerId the customer's limit key
+     * @param items the ordered items
+     * @throws PurchaseLimitExceededException if any item would exceed its cap; nothing is counted then
+     */
+    public void reserve(long customerId, List<CartItem> items) {
+        long now = elapsed();
+        long period = now / capPeriodMillis;
+        for (int i = 0; i < items.size(); i++) {
+            CartItem item = items.get(i);
+            int cap = capOf(item.getProduct().getId());
+            if (cap == 0) {
+                continue;
+            }
+            AtomicLong counter = state(customerId, now).purchased
+                    .computeIfAbsent(item.getProduct().getId(), id -> new AtomicLong());
+            long units = tryAdd(counter, period, item.getQuantity(), cap);
+            if (units >= 0) {
+                release(customerId, items.subList(0, i));
+                throw capExceeded(item.getProduct(), cap, units);
+            }
+        }
+    }
+
+    /**
+     * Give back counted purchases, e.g. when the order fails after {@link #reserve}
+     * Counts from an earlier cap period are left alone
+     * @param customerId the customer's limit key
+     * @param items the items to give back
+     */
+    public void release(long customerId, List<CartItem> items) {
+        for (CartItem item : items) {
+            release(customerId, item.getProduct(), item.getQuantity());
+        }
+    }
+
+    /**
+     * Give back counted purchases of one product
+     * @param customerId the customer's limit key
+     * @param product the product
+     * @param quantity the units to give back
+     */
+    public void release(long customerId, Product product, int quantity) {
+        CustomerState state = customers.get(customerId);
+        AtomicLong counter = state == null ? null : state.purchased.get(product.getId());
+        if (counter == null || quantity <= 0) {
+            return;
+        }
+        long period = period();
+        while (true) {
+            long current = counter.get();
+            long units = unitsIn(current, period);
+            if (units == 0 || counter.compareAndSet(current, period << 32 | Math.max(0, units - quantity))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Get the units of a product a customer bought in the current cap period
+     * @param customerId the customer's limit key
+     * @param productId the product id
+     * @return the counted units
+     */
+    public long purchased(long customerId, long productId) {
+        CustomerState state = customers.get(customerId);
+        AtomicLong counter = state == null ? null : state.purchased.get(productId);
+        return counter == null ? 0 : unitsIn(counter.get(), period());
+    }
+
+    /**
+     * Get the purchase cap of a product
+     * @param productId the product id
+     * @return the units a customer may buy per cap period, 0 if unlimited
+     */
+    public int capOf(long productId) {
+        return caps.getOrDefault(productId, defaultCap);
+    }
+
+    public long getRateLimitedCount() {
+        return rateLimited.sum();
+    }
+
+    public long getCapRejectedCount() {
+        return capRejected.sum();
+    }
+
+    public int getTrackedCustomerCount() {
+        return customers.size();
+    }
+
+    /**
+     * Add units to a cap counter unless the cap would be exceeded
+     * @return -1 if added, otherwise the units already counted
+     */
+    private static long tryAdd(AtomicLong counter, long period, int quantity, int cap) {
+        while (true) {
+            long current = counter.get();
+            long units = unitsIn(current, period);
+            if (units + quantity > cap) {
+                return units;
+            }
+            if (counter.compareAndSet(current, period << 32 | (units + quantity))) {
+                return -1;
+            }
+        }
+    }
+
+    private static long unitsIn(long packed, long period) {
+        return packed >>> 32 == period ? packed & 0xFFFF_FFFFL : 0;
+    }
+
+    private PurchaseLimitExceededException capExceeded(Product product, int cap, long units) {
+        capRejected.increment();
+        return new PurchaseLimitExceededException(String.format(
+            "Purchase limit for %s is %d per customer, %d already bought", product.getName(), cap, units));
+    }
+
+    /**
+     * Get the tokens of a bucket after refilling it up to a time
+     * @return the tokens in thousandths
+     */
+    private long refill(long packed, long now) {
+        long tokens = packed >>> TIME_BITS;
+        long last = packed & TIME_MASK;
+        long gained = (long) ((now - last) * milliTokensPerMilli);
+        return Math.min(capacity, tokens + Math.max(0, gained));
+    }
+
+    private static long pack(long tokens, long time) {
+        return tokens << TIME_BITS | time;
+    }
+
+    /**
+     * Get the state of a customer and mark it active, tracking the customer if new
+     * @throws RateLimitExceededException if the customer is new and every slot holds an active customer
+     */
+    private CustomerState state(long customerId, long now) {
+        if (now >= nextSweep) {
+            sweep(now);
+        }
+        while (true) {
+            CustomerState state = customers.get(customerId);
+            if (state == null) {
+                if (customers.size() >= maxCustomers) {
+                    long retryAfter = sweep(now);
+                    if (customers.size() >= maxCustomers) {
+                        rateLimited.increment();
+                        throw new RateLimitExceededException(
+                            "Too many customers are active, retry in " + retryAfter + " ms", retryAfter);
+                    }
+                }
+                state = customers.computeIfAbsent(customerId, id -> new CustomerState(pack(capacity, now)));
+            }
+            if (state.touch(now)) {
+                return state;
+            }
+            // Retired by a sweep that has not removed it yet
+            customers.remove(customerId, state);
+        }
+    }
+
+    /**
+     * Drop the customers idle for at least the idle time, unless another thread is sweeping
+     * Customers who never bought a capped product only wait for their bucket to refill
+     * @return the milliseconds until the next remaining customer goes idle
+     */
+    private long sweep(long now) {
+        if (!sweeping.compareAndSet(false, true)) {
+            return MIN_SWEEP_INTERVAL_MILLIS;
+        }
+        try {
+            long retryAfter = idleMillis;
+            for (Map.Entry<Long, CustomerState> entry : customers.entrySet()) {
+                CustomerState state = entry.getValue();
+                if (state.retireIfIdle(now, bucketIdleMillis, idleMillis)) {
+                    customers.remove(entry.getKey(), state);
+                } else {
+                    long idle = state.purchased.isEmpty() ? bucketIdleMillis : idleMillis;
+                    retryAfter = Math.min(retryAfter, Math.max(1, idle - (now - state.lastActive)));
+                }
+            }
+            nextSweep = now + sweepInterval();
+            return retryAfter;
+        } finally {
+            sweeping.set(false);
+        }
+    }
+
+    private long sweepInterval() {
+        return Math.max(MIN_SWEEP_INTERVAL_MILLIS, idleMillis);
+    }
+
+    private long elapsed() {
+        return Math.max(0, clock.getAsLong() - origin) & TIME_MASK;
+    }
+
+    private long period() {
+        return elapsed() / capPeriodMillis;
+    }
+
+    /**
+     * Rate and cap state of one customer
+     *
+     * Every use bumps a counter after recording the time, and a sweep retires the state
+     * by swapping the counter it read for {@link #RETIRED}, so a state used after the
+     * sweep judged it idle is never retired.
+     */
+    private static final class CustomerState {
+        final AtomicLong bucket;
+        final Map<Long, AtomicLong> purchased = new ConcurrentHashMap<>();
+        final AtomicLong uses = new AtomicLong();
+        volatile long lastActive;
+
+        CustomerState(long bucket) {
+            this.bucket = new AtomicLong(bucket);
+            this.lastActive = bucket & TIME_MASK;
+        }
+
+        /**
+         * Mark the state active
+         * @return false if a sweep already retired it
+         */
+        boolean touch(long now) {
+            if (now > lastActive) {
+                lastActive = now;
+            }
+            while (true) {
+                long count = uses.get();
+                if (count == RETIRED) {
+                    return false;
+                }
+                if (uses.compareAndSet(count, count + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Retire the state if it was not used for the idle time
+         * The counter is read before the time, so a use in between makes the swap fail
+         */
+        boolean retireIfIdle(long now, long bucketIdleMillis, long idleMillis) {
+            long count = uses.get();
+            long idle = purchased.isEmpty() ? bucketIdleMillis : idleMillis;
+            return count != RETIRED && now - lastActive >= idle && uses.compareAndSet(count, RETIRED);
+        }
+    }
+
+    /**
+     * Builder for PurchaseLimiter
+     */
+    public static final class Builder {
+        private double permitsPerSecond;
+        private int burst;
+        private int defaultCap;
+        private final Map<Long, Integer> caps = new HashMap<>();
+        private long capPeriodMillis = TimeUnit.DAYS.toMillis(1);
+        private LongSupplier clock = System::currentTimeMillis;
+        private int maxCustomers = DEFAULT_MAX_CUSTOMERS;
+
+        private Builder() {
+        }
+
+        /**
+         * Limit the requests of each customer
+         * @param permitsPerSecond the sustained requests per second
+         * @param burst the requests a customer may send at once after being idle
+         * @return this builder
+         * @throws IllegalArgumentException if the rate is not positive or the burst is out of range
+         */
+        public Builder requestRate(double permitsPerSecond, int burst) {
+            if (!(permitsPerSecond > 0) || burst < 1 || burst > MAX_BURST) {
+                throw new IllegalArgumentException("Rate must be positive and burst between 1 and " + MAX_BURST);
+            }
+            this.permitsPerSecond = permitsPerSecond / 1_000 * MILLI_TOKEN;
+            this.burst = burst;
+            return this;
+        }
+
+        /**
+         * Cap the units of a product each customer may buy per cap period
+         * @param productId the product id
+         * @param maxUnits the cap
+         * @return this builder
+         */
+        public Builder cap(long productId, int maxUnits) {
+            if (maxUnits <= 0) {
+                throw new IllegalArgumentException("Purchase cap must be greater than 0");
+            }
+            caps.put(productId, maxUnits);
+            return this;
+        }
+
+        /**
+         * Cap every product without its own cap
+         * @param maxUnits the cap, or 0 for no default cap
+         * @return this builder
+         */
+        public Builder defaultCap(int maxUnits) {
+            if (maxUnits < 0) {
+                throw new IllegalArgumentException("Purchase cap must not be negative");
+            }
+            this.defaultCap = maxUnits;
+            return this;
+        }
+
+        /**
+         * Set how long purchases count against the caps, one day by default
+         * @param duration the period length
+         * @param unit the unit of the length
+         * @return this builder
+         */
+        public Builder capPeriod(long duration, TimeUnit unit) {
+            if (unit.toMillis(duration) <= 0) {
+                throw new IllegalArgumentException("Cap period must be at least one millisecond");
+            }
+            this.capPeriodMillis = unit.toMillis(duration);
+            return this;
+        }
+
+        /**
+         * Bound the customers tracked at once, {@link #DEFAULT_MAX_CUSTOMERS} by default
+         * @param maxCustomers the bound
+         * @return this builder
+         * @throws IllegalArgumentException if the bound is not positive
+         */
+        public Builder maxCustomers(int maxCustomers) {
+            if (maxCustomers <= 0) {
+                throw new IllegalArgumentException("Customer bound must be greater than 0");
+            }
+            this.maxCustomers = maxCustomers;
+            return this;
+        }
+
+        /**
+         * Set the time source, e.g. a manual clock in tests
+         * @param clock the time source in epoch milliseconds
+         * @return this builder
+         */
+        public Builder clock(LongSupplier clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        public PurchaseLimiter build() {
+            return new PurchaseLimiter(this);
+        }
+    }
+}
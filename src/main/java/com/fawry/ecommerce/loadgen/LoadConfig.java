@@ -0,0 +1,210 @@
+package com.fawry.ecommerce.loadgen;
+
+/**
+ * Immutable settings of a load generation run
+ *
+ * The seed and the population settings fully determine the catalog, the customers
+ * and the traffic trace; the rate and thread count only shape how the trace is played.
+ */
+public final class LoadConfig {
+    private final long seed;
+    private final int productCount;
+    private final int customerCount;
+    private final int requestCount;
+    private final double zipfExponent;
+    private final int maxLinesPerCart;
+    private final int maxQuantityPerLine;
+    private final int initialStock;
+    private final double minBalance;
+    private final double maxBalance;
+    private final double targetRate;
+    private final int threads;
+
+    private LoadConfig(Builder builder) {
+        this.seed = builder.seed;
+        this.productCount = builder.productCount;
+        this.customerCount = builder.customerCount;
+        this.requestCount = builder.requestCount;
+        this.zipfExponent = builder.zipfExponent;
+        this.maxLinesPerCart = builder.maxLinesPerCart;
+        this.maxQuantityPerLine = builder.maxQuantityPerLine;
+        this.initialStock = builder.initialStock;
+        this.minBalance = builder.minBalance;
+        this.maxBalance = builder.maxBalance;
+        this.targetRate = builder.targetRate;
+        this.threads = builder.threads;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Create a builder starting from this configuration
+     * @return a builder holding the same settings
+     */
+    public Builder toBuilder() {
+        return new Builder()
+                .seed(seed)
+                .productCount(productCount)
+                .customerCount(customerCount)
+                .requestCount(requestCount)
+                .zipfExponent(zipfExponent)
+                .maxLinesPerCart(maxLinesPerCart)
+                .maxQuantityPerLine(maxQuantityPerLine)
+                .initialStock(initialStock)
+                .balanceRange(minBalance, maxBalance)
+                .targetRate(targetRate)
+                .threads(threads);
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getProductCount() {
+        return productCount;
+    }
+
+    public int getCustomerCount() {
+        return customerCount;
+    }
+
+    public int getRequestCount() {
+        return requestCount;
+    }
+
+    public double getZipfExponent() {
+        return zipfExponent;
+    }
+
+    public int getMaxLinesPerCart() {
+        return maxLinesPerCart;
+    }
+
+    public int getMaxQuantityPerLine() {
+        return maxQuantityPerLine;
+    }
+
+    public int getInitialStock() {
+        return initialStock;
+    }
+
+    public double getMinBalance() {
+        return minBalance;
+    }
+
+    public double getMaxBalance() {
+        return maxBalance;
+    }
+
+    /**
+     * Get the target request rate
+     * @return requests per second, or 0 to send as fast as possible
+     */
+    public double getTargetRate() {
+        return targetRate;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Builder for LoadConfig
+     */
+    public static final class Builder {
+        private long seed = 42;
+        private int productCount = 1_000;
+        private int customerCount = 10_000;
+        private int requestCount = 100_000;
+        private double zipfExponent = 1.0;
+        private int maxLinesPerCart = 5;
+        private int maxQuantityPerLine = 3;
+        private int initialStock = 1_000;
+        private double minBalance = 100;
+        private double maxBalance = 20_000;
+        private double targetRate;
+        private int threads = Runtime.getRuntime().availableProcessors();
+
+        private Builder() {
+        }
+
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public Builder productCount(int productCount) {
+            this.productCount = productCount;
+            return this;
+        }
+
+        public Builder customerCount(int customerCount) {
+            this.customerCount = customerCount;
+            return this;
+        }
+
+        public Builder requestCount(int requestCount) {
+            this.requestCount = requestCount;
+            return this;
+        }
+
+        public Builder zipfExponent(double zipfExponent) {
+            this.zipfExponent = zipfExponent;
+            return this;
+        }
+
+        public Builder maxLinesPerCart(int maxLinesPerCart) {
+            this.maxLinesPerCart = maxLinesPerCart;
+            return this;
+        }
+
+        public Builder maxQuantityPerLine(int maxQuantityPerLine) {
+            this.maxQuantityPerLine = maxQuantityPerLine;
+            return this;
+        }
+
+        public Builder initialStock(int initialStock) {
+            this.initialStock = initialStock;
+            return this;
+        }
+
+        public Builder balanceRange(double minBalance, double maxBalance) {
+            this.minBalance = minBalance;
+            this.maxBalance = maxBalance;
+            return this;
+        }
+
+        public Builder targetRate(double targetRate) {
+            this.targetRate = targetRate;
+            return this;
+        }
+
+        public Builder threads(int threads) {
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * Build the configuration
+         * @return the configuration
+         * @throws IllegalArgumentException if a setting is out of range
+         */
+        public LoadConfig build() {
+            if (productCount <= 0 || customerCount <= 0 || requestCount < 0) {
+                throw new IllegalArgumentException("Product and customer counts must be positive and request count not negative");
+            }
+            if (maxLinesPerCart <= 0 || maxQuantityPerLine <= 0 || initialStock < 0) {
+                throw new IllegalArgumentException("Cart shape must be positive and initial stock not negative");
+            }
+            if (minBalance < 0 || maxBalance < minBalance) {
+                throw new IllegalArgumentException("Balance range is invalid");
+            }
+            if (targetRate < 0 || threads <= 0 || zipfExponent < 0) {
+                throw new IllegalArgumentException("Rate and exponent must not be negative and threads must be positive");
+            }
+            return new LoadConfig(this);
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.fawry.ecommerce.loadgen;
+
+import com.fawry.ecommerce.factory.ProductFactory;
+import com.fawry.ecommerce.model.Cart;
+import com.fawry.ecommerce.model.customer.Customer;
+import com.fawry.ecommerce.model.product.Product;
+import com.fawry.ecommerce.model.product.ProductType;
+import com.fawry.ecommerce.service.CheckoutService;
+import com.fawry.ecommerce.service.ShippingRates;
+import com.fawry.ecommerce.service.ShippingService;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Load generator driving {@link Cart} and {@link CheckoutService} with a traffic trace
+ *
+ * Every run builds a fresh catalog through {@link ProductFactory} and a fresh customer
+ * population from the trace's seed, then plays the trace's requests from a pool of
+ * worker threads. With a target rate, request i is due at {@code start + i / rate} and
+ * its latency is measured from that due time, so a stalled system is charged for the
+ * requests queuing behind it. The default generator drives its own checkout service,
+ * whose receipts and shipment notices are discarded; a service handed in prints wherever
+ * its output is set, so nothing outside the run is redirected.
+ */
+public class LoadGenerator {
+    private final CheckoutService checkoutService;
+
+    /**
+     * Constructor for LoadGenerator using a quiet checkout service with the default rates
+     */
+    public LoadGenerator() {
+        this(quietCheckoutService());
+    }
+
+    /**
+     * Constructor for LoadGenerator
+     * @param checkoutService the checkout service under load
+     */
+    public LoadGenerator(CheckoutService checkoutService) {
+        this.checkoutService = checkoutService;
+    }
+
+    /**
+     * Create a checkout service with the default rates that prints nothing
+     * @return the service
+     */
+    private static CheckoutService quietCheckoutService() {
+        PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+        ShippingService shippingService = new ShippingService(ShippingRates.DEFAULT);
+        shippingService.setOutput(discard);
+        CheckoutService checkoutService = new CheckoutService(shippingService);
+        checkoutService.setOutput(discard);
+        return checkoutService;
+    }
+
+    /**
+     * Create the catalog of a configuration; the same seed always yields the same products
+     * @param config the configuration
+     * @return the products, indexed as in traffic traces
+     */
+    public static List<Product> createCatalog(LoadConfig config) {
+        Random random = new Random(config.getSeed());
+        ProductType[] types = ProductType.values();
+        LocalDate today = LocalDate.now();
+        List<Product> catalog = new ArrayList<>(config.getProductCount());
+        for (int i = 0; i < config.getProductCount(); i++) {
+            ProductType type = types[random.nextInt(types.length)];
+            double price;
+            double weight;
+            switch (type) {
+                case TV:
+                    price = 300 + random.nextInt(2_000);
+                    weight = 5 + random.nextInt(20);
+                    break;
+                case MOBILE:
+                    price = 100 + random.nextInt(1_500);
+                    weight = 0.1 + random.nextInt(4) / 10.0;
+                    break;
+                case CHEESE:
+                case BISCUITS:
+                    price = 5 + random.nextInt(100);
+                    weight = 0.1 + random.nextInt(10) / 10.0;
+                    break;
+                default:
+                    price = 10 + random.nextInt(5) * 10;
+                    weight = 0;
+            }
+            LocalDate expiration = type.isExpirable() ? today.plusDays(30 + random.nextInt(335)) : null;
+            catalog.add(ProductFactory.create(type, type.name().toLowerCase() + "-" + i, price,
+                                              config.getInitialStock(), expiration, weight));
+        }
+        return catalog;
+    }
+
+    /**
+     * Create the customer population of a configuration
+     * @param config the configuration
+     * @return the customers, indexed as in traffic traces
+     */
+    public static List<Customer> createCustomers(LoadConfig config) {
+        Random random = new Random(~config.getSeed());
+        double range = config.getMaxBalance() - config.getMinBalance();
+        List<Customer> customers = new ArrayList<>(config.getCustomerCount());
+        for (int i = 0; i < config.getCustomerCount(); i++) {
+            double balance = Math.round((config.getMinBalance() + random.nextDouble() * range) * 100) / 100.0;
+            customers.add(new Customer(i + 1, "customer-" + i, balance));
+        }
+        return customers;
+    }
+
+    /**
+     * Play a trace against fresh copies of its catalog and customers
+     * @param trace the trace
+     * @return the run report
+     * @throws InterruptedException if interrupted while waiting for the workers
+     */
+    public LoadReport run(TrafficTrace trace) throws InterruptedException {
+        LoadConfig config = trace.getConfig();
+        List<Product> catalog = createCatalog(config);
+        List<Customer> customers = createCustomers(config);
+        List<TrafficTrace.Request> requests = trace.getRequests();
+        long[] latencies = new long[requests.size()];
+        AtomicInteger next = new AtomicInteger();
+        LongAdder completed = new LongAdder();
+        Map<String, LongAdder> rejections = new ConcurrentHashMap<>();
+        double nanosPerRequest = config.getTargetRate() > 0 ? 1e9 / config.getTargetRate() : 0;
+
+        long start = System.nanoTime();
+        List<Thread> workers = new ArrayList<>(config.getThreads());
+        for (int t = 0; t < config.getThreads(); t++) {
+            Thread worker = new Thread(() -> {
+                int index;
+                while ((index = next.getAndIncrement()) < requests.size()) {
+                    long due = start + (long) (index * nanosPerRequest);
+                    long now;
+                    while ((now = System.nanoTime()) < due) {
+                        LockSupport.parkNanos(due - now);
+                    }
+                    long begin = nanosPerRequest > 0 ? due : now;
+                    String rejection = send(requests.get(index), catalog, customers);
+                    latencies[index] = System.nanoTime() - begin;
+                    if (rejection == null) {
+                        completed.increment();
+                    } else {
+                        rejections.computeIfAbsent(rejection, name -> new LongAdder()).increment();
+                    }
+                }
+            }, "load-generator-" + t);
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        Map<String, Long> rejectionCounts = new ConcurrentHashMap<>();
+        rejections.forEach((name, count) -> rejectionCounts.put(name, count.sum()));
+        return new LoadReport(completed.intValue(), rejectionCounts, elapsed, latencies);
+    }
+
+    /**
+     * Build the request's cart and check it out
+     * @return null on success, otherwise the simple name of the rejection
+     */
+    private String send(TrafficTrace.Request request, List<Product> catalog, List<Customer> customers) {
+        try {
+            Cart cart = new Cart();
+            for (int line = 0; line < request.getLineCount(); line++) {
+                cart.addProduct(catalog.get(request.getProduct(line)), request.getQuantity(line));
+            }
+            checkoutService.checkout(customers.get(request.getCustomer()), cart);
+            return null;
+        } catch (Exception e) {
+            return e.getClass().getSimpleName();
+        }
+    }
+
+    /**
+     * Run the load generator from the command line
+     * Arguments are key=value pairs: seed, products, customers, requests, zipf, rate,
+     * threads, record (write the generated trace to a file) and replay (play a recorded
+     * trace instead of generating one).
+     * @param args the command line arguments
+     * @throws Exception if the run fails
+     */
+    public static void main(String[] args) throws Exception {
+        LoadConfig.Builder builder = LoadConfig.builder();
+        Path record = null;
+        Path replay = null;
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Expected key=value but got: " + arg);
+            }
+            String value = arg.substring(separator + 1);
+            switch (arg.substring(0, separator)) {
+                case "seed":
+                    builder.seed(Long.parseLong(value));
+                    break;
+                case "products":
+                    builder.productCount(Integer.parseInt(value));
+                    break;
+                case "customers":
+                    builder.customerCount(Integer.parseInt(value));
+                    break;
+                case "requests":
+                    builder.requestCount(Integer.parseInt(value));
+                    break;
+                case "zipf":
+                    builder.zipfExponent(Double.parseDouble(value));
+                    break;
+                case "rate":
+                    builder.targetRate(Double.parseDouble(value));
+                    break;
+                case "threads":
+                    builder.threads(Integer.parseInt(value));
+                    break;
+                case "record":
+                    record = Paths.get(value);
+                    break;
+                case "replay":
+                    replay = Paths.get(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        LoadConfig config = builder.build();
+        TrafficTrace trace = replay != null ? TrafficTrace.read(replay, config) : TrafficTrace.generate(config);
+        if (record != null) {
+            writeTrace(trace, record);
+        }
+        System.out.println(new LoadGenerator().run(trace));
+    }
+
+    private static void writeTrace(TrafficTrace trace, Path path) throws IOException {
+        trace.write(path);
+        System.out.printf("Recorded %d requests to %s%n", trace.size(), path);
+    }
+}
@@ -0,0 +1,93 @@
+package com.fawry.ecommerce.loadgen;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable summary of a load run
+ */
+public final class LoadReport {
+    private final int requests;
+    private final int completed;
+    private final Map<String, Long> rejections;
+    private final long elapsedNanos;
+    private final long[] sortedLatencies;
+
+    /**
+     * Constructor for LoadReport
+     * @param completed the number of successful checkouts
+     * @param rejections the number of rejected requests per exception type
+     * @param elapsedNanos the wall-clock duration of the run
+     * @param latencies the latency of every request in nanoseconds, in any order
+     */
+    LoadReport(int completed, Map<String, Long> rejections, long elapsedNanos, long[] latencies) {
+        this.requests = latencies.length;
+        this.completed = completed;
+        this.rejections = Collections.unmodifiableMap(new TreeMap<>(rejections));
+        this.elapsedNanos = elapsedNanos;
+        this.sortedLatencies = latencies.clone();
+        Arrays.sort(sortedLatencies);
+    }
+
+    public int getRequests() {
+        return requests;
+    }
+
+    public int getCompleted() {
+        return completed;
+    }
+
+    /**
+     * Get the rejected requests by cause
+     * @return exception simple name to count, sorted by name
+     */
+    public Map<String, Long> getRejections() {
+        return rejections;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Get the achieved request rate
+     * @return requests per second
+     */
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : requests / (elapsedNanos / 1e9);
+    }
+
+    /**
+     * Get a latency percentile
+     * @param percentile the percentile between 0 and 100
+     * @return the latency in nanoseconds, or 0 if no request was sent
+     * @throws IllegalArgumentException if the percentile is out of range
+     */
+    public long getLatencyPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100");
+        }
+        if (sortedLatencies.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sortedLatencies.length) - 1;
+        return sortedLatencies[Math.max(0, index)];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Requests: %d, Completed: %d, Rejected: %d%n",
+                requests, completed, requests - completed));
+        sb.append(String.format("Throughput: %.0f req/s over %.2f s%n", getThroughput(), elapsedNanos / 1e9));
+        sb.append(String.format("Latency us: p50 %.1f, p90 %.1f, p99 %.1f, p99.9 %.1f, max %.1f%n",
+                getLatencyPercentile(50) / 1e3, getLatencyPercentile(90) / 1e3, getLatencyPercentile(99) / 1e3,
+                getLatencyPercentile(99.9) / 1e3, getLatencyPercentile(100) / 1e3));
+        for (Map.Entry<String, Long> rejection : rejections.entrySet()) {
+            sb.append(String.format("- %s: %d%n", rejection.getKey(), rejection.getValue()));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,258 @@
+package com.fawry.ecommerce.loadgen;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+
+/**
+ * Exact sequence of checkout requests of a load run
+ *
+ * A trace is generated from a configuration's seed, so the same seed always yields the
+ * same requests, and it can be written to and read back from a plain text file to
+ * replay a run offline. The file starts with the population settings needed to rebuild
+ * the same catalog and customers, followed by one request per line:
+ * {@code customer product:quantity product:quantity ...}.
+ */
+public final class TrafficTrace {
+    private static final String MAGIC = "# fawry-trace v1";
+    // Keeps the request stream independent from the catalog drawn with the same seed
+    private static final long TRAFFIC_SALT = 0x5DEECE66DL;
+
+    private final LoadConfig config;
+    private final List<Request> requests;
+
+    /**
+     * Constructor for TrafficTrace
+     * @param config the configuration the trace was generated from
+     * @param requests the requests in send order
+     */
+    public TrafficTrace(LoadConfig config, List<Request> requests) {
+        this.config = config;
+        this.requests = List.copyOf(requests);
+    }
+
+    /**
+     * Generate the trace of a configuration
+     * Product popularity follows the configured Zipf exponent; customers are uniform.
+     * @param config the configuration
+     * @return the trace
+     */
+    public static TrafficTrace generate(LoadConfig config) {
+        Random random = new Random(config.getSeed() ^ TRAFFIC_SALT);
+        ZipfDistribution popularity = new ZipfDistribution(config.getProductCount(), config.getZipfExponent());
+        List<Request> requests = new ArrayList<>(config.getRequestCount());
+        for (int i = 0; i < config.getRequestCount(); i++) {
+            int customer = random.nextInt(config.getCustomerCount());
+            int lines = 1 + random.nextInt(config.getMaxLinesPerCart());
+            int[] products = new int[lines];
+            int[] quantities = new int[lines];
+            for (int line = 0; line < lines; line++) {
+                products[line] = popularity.sample(random);
+                quantities[line] = 1 + random.nextInt(config.getMaxQuantityPerLine());
+            }
+            requests.add(new Request(customer, products, quantities));
+        }
+        return new TrafficTrace(config, requests);
+    }
+
+    public LoadConfig getConfig() {
+        return config;
+    }
+
+    public List<Request> getRequests() {
+        return requests;
+    }
+
+    public int size() {
+        return requests.size();
+    }
+
+    /**
+     * Write the trace to a file
+     * @param path the target file
+     * @throws IOException if writing fails
+     */
+    public void write(Path path) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write(MAGIC);
+            writer.newLine();
+            writer.write(String.format("seed=%d products=%d customers=%d zipf=%s maxLines=%d maxQuantity=%d "
+                            + "stock=%d minBalance=%s maxBalance=%s",
+                    config.getSeed(), config.getProductCount(), config.getCustomerCount(),
+                    config.getZipfExponent(), config.getMaxLinesPerCart(), config.getMaxQuantityPerLine(),
+                    config.getInitialStock(), config.getMinBalance(), config.getMaxBalance()));
+            writer.newLine();
+            StringBuilder line = new StringBuilder();
+            for (Request request : requests) {
+                line.setLength(0);
+                line.append(request.customer);
+                for (int i = 0; i < request.products.length; i++) {
+                    line.append(' ').append(request.products[i]).append(':').append(request.quantities[i]);
+                }
+                writer.write(line.toString());
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Read a trace written by {@link #write}
+     * @param path the trace file
+     * @param playback the configuration supplying the rate and thread count to replay with
+     * @return the trace, configured with the recorded population and the playback settings
+     * @throws IOException if reading fails
+     * @throws IllegalArgumentException if the file is not a valid trace
+     */
+    public static TrafficTrace read(Path path, LoadConfig playback) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            if (!MAGIC.equals(reader.readLine())) {
+                throw new IllegalArgumentException("Not a traffic trace: " + path);
+            }
+            Map<String, String> header = new HashMap<>();
+            String headerLine = reader.readLine();
+            if (headerLine == null) {
+                throw new IllegalArgumentException("Trace header is missing: " + path);
+            }
+            for (String field : headerLine.trim().split(" ")) {
+                int separator = field.indexOf('=');
+                if (separator > 0) {
+                    header.put(field.substring(0, separator), field.substring(separator + 1));
+                }
+            }
+
+            List<Request> requests = new ArrayList<>();
+            String line;
+            int lineNumber = 2;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                requests.add(parseRequest(line, lineNumber));
+            }
+            LoadConfig config = playback.toBuilder()
+                    .seed(Long.parseLong(field(header, "seed")))
+                    .productCount(Integer.parseInt(field(header, "products")))
+                    .customerCount(Integer.parseInt(field(header, "customers")))
+                    .zipfExponent(Double.parseDouble(field(header, "zipf")))
+                    .maxLinesPerCart(Integer.parseInt(field(header, "maxLines")))
+                    .maxQuantityPerLine(Integer.parseInt(field(header, "maxQuantity")))
+                    .initialStock(Integer.parseInt(field(header, "stock")))
+                    .balanceRange(Double.parseDouble(field(header, "minBalance")),
+                                  Double.parseDouble(field(header, "maxBalance")))
+                    .requestCount(requests.size())
+                    .build();
+            return new TrafficTrace(config, requests);
+        }
+    }
+
+    private static String field(Map<String, String> header, String name) {
+        String value = header.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Trace header is missing " + name);
+        }
+        return value;
+    }
+
+    private static Request parseRequest(String line, int lineNumber) {
+        String[] parts = line.trim().split(" ");
+        try {
+            int customer = Integer.parseInt(parts[0]);
+            int[] products = new int[parts.length - 1];
+            int[] quantities = new int[parts.length - 1];
+            for (int i = 1; i < parts.length; i++) {
+                int separator = parts[i].indexOf(':');
+                products[i - 1] = Integer.parseInt(parts[i].substring(0, separator));
+                quantities[i - 1] = Integer.parseInt(parts[i].substring(separator + 1));
+            }
+            return new Request(customer, products, quantities);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Malformed trace line " + lineNumber + ": " + line, e);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TrafficTrace)) {
+            return false;
+        }
+        return requests.equals(((TrafficTrace) o).requests);
+    }
+
+    @Override
+    public int hashCode() {
+        return requests.hashCode();
+    }
+
+    /**
+     * One checkout request: a customer and the cart lines as catalog indexes and quantities
+     */
+    public static final class Request {
+        private final int customer;
+        private final int[] products;
+        private final int[] quantities;
+
+        /**
+         * Constructor for Request
+         * @param customer the customer index in the population
+         * @param products the product index of each cart line
+         * @param quantities the quantity of each cart line
+         */
+        public Request(int customer, int[] products, int[] quantities) {
+            if (products.length != quantities.length) {
+                throw new IllegalArgumentException("Products and quantities must have the same length");
+            }
+            this.customer = customer;
+            this.products = products.clone();
+            this.quantities = quantities.clone();
+        }
+
+        public int getCustomer() {
+            return customer;
+        }
+
+        public int getLineCount() {
+            return products.length;
+        }
+
+        public int getProduct(int line) {
+            return products[line];
+        }
+
+        public int getQuantity(int line) {
+            return quantities[line];
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Request)) {
+                return false;
+            }
+            Request other = (Request) o;
+            return customer == other.customer
+                    && Arrays.equals(products, other.products)
+                    && Arrays.equals(quantities, other.quantities);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(customer, Arrays.hashCode(products), Arrays.hashCode(quantities));
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.fawry.ecommerce.loadgen;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Zipf distribution over ranks 0..n-1, where rank k is drawn with weight 1/(k+1)^s
+ *
+ * The cumulative distribution is computed once, so each draw is one uniform random
+ * number and a binary search. Draws are fully determined by the supplied Random.
+ */
+public final class ZipfDistribution {
+    private final double[] cumulative;
+
+    /**
+     * Constructor for ZipfDistribution
+     * @param size the number of ranks
+     * @param exponent the skew; 0 is uniform, around 1 is typical of retail popularity
+     * @throws IllegalArgumentException if the size is not positive or the exponent is negative
+     */
+    public ZipfDistribution(int size, double exponent) {
+        if (size <= 0 || exponent < 0) {
+            throw new IllegalArgumentException("Size must be greater than 0 and exponent must not be negative");
+        }
+        this.cumulative = new double[size];
+        double total = 0;
+        for (int rank = 0; rank < size; rank++) {
+            total += 1.0 / Math.pow(rank + 1, exponent);
+            cumulative[rank] = total;
+        }
+        for (int rank = 0; rank < size; rank++) {
+            cumulative[rank] /= total;
+        }
+    }
+
+    public int size() {
+        return cumulative.length;
+    }
+
+    /**
+     * Draw a rank
+     * @param random the source of randomness
+     * @return a rank between 0 and size - 1, lower ranks being more likely
+     */
+    public int sample(Random random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        int rank = index >= 0 ? index : -index - 1;
+        return Math.min(rank, cumulative.length - 1);
+    }
+}
@@ -1,23 +1,38 @@
 package com.fawry.ecommerce.model;
 
+import com.fawry.ecommerce.limit.PurchaseLimiter;
+import com.fawry.ecommerce.model.customer.Customer;
+import com.fawry.ecommerce.model.product.ExpirableProduct;
 import com.fawry.ecommerce.model.product.Product;
 import com.fawry.ecommerce.exception.InsufficientStockException;
 import com.fawry.ecommerce.exception.ProductExpiredException;
+import com.fawry.ecommerce.exception.PurchaseLimitExceededException;
+import com.fawry.ecommerce.exception.RateLimitExceededException;
+import com.fawry.ecommerce.text.TextRenderer;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * Cart class representing a shopping cart
  */
 public class Cart {
     private List<CartItem> items;
+    private Set<String> couponCodes;
+    private String deliveryZone;
+    private PurchaseLimiter purchaseLimiter;
+    private long ownerId;
     
     /**
      * Constructor for Cart
      */
     public Cart() {
         this.items = new ArrayList<>();
+        this.couponCodes = new LinkedHashSet<>();
     }
     
     /**
@@ -26,6 +41,8 @@ public class Cart {
      * @param quantity the quantity to add
      * @throws InsufficientStockException if not enough stock available
      * @throws ProductExpiredException if the product is expired
+     * @throws RateLimitExceededException if the cart's owner adds products too fast
+     * @throws PurchaseLimitExceededException if the cart would exceed the owner's purchase cap
      */
     public void addProduct(Product product, int quantity) 
             throws InsufficientStockException, ProductExpiredException {
@@ -42,27 +59,14 @@ public class Cart {
         int existingQuantity = 0;
         if(existingItem.isPresent()) {existingQuantity = existingItem.get().getQuantity();}
 
-
+        // Limits are checked before stock, so rejected requests never read hot product counters
+        if (purchaseLimiter != null) {
+            purchaseLimiter.acquire(ownerId);
+            purchaseLimiter.checkCap(ownerId, product, quantity + existingQuantity);
+        }
 
         // Check if product is available
-        if (!product.isAvailable(quantity + existingQuantity)) {
-            if (product.isOutOfStock()) {
-                throw new InsufficientStockException("Product " + product.getName() + " is out of stock");
-            }else if(quantity + existingQuantity > product.getQuantity()) {
-                throw new InsufficientStockException("Product " + product.getName() + " has only " + quantity + " available");
-            }
-            else {
-                // it might be due to the product being expired
-                // check if product is expired
-                if (product instanceof com.fawry.ecommerce.model.product.ExpirableProduct) {
-                    com.fawry.ecommerce.model.product.ExpirableProduct expirable =
-                            (com.fawry.ecommerce.model.product.ExpirableProduct) product;
-                    if (expirable.isExpired()) {
-                        throw new ProductExpiredException("Product " + product.getName() + " is expired");
-                    }
-                }
-            }
-        }
+        checkLine(product, quantity + existingQuantity, LIVE_STOCK);
 
         if (existingItem.isPresent()) {
             existingItem.get().addQuantity(quantity);
@@ -71,6 +75,99 @@ public class Cart {
         }
     }
     
+    /**
+     * Merge another cart into this one, e.g. a guest cart on login
+     * Quantities of products in both carts are added up, coupons are combined and the
+     * delivery zone is kept unless this cart has none. Every merged line is validated
+     * once before anything changes, so on failure neither cart is modified.
+     * @param other the cart to merge in, left unchanged
+     * @throws InsufficientStockException if a merged quantity exceeds the stock
+     * @throws ProductExpiredException if a merged product is expired
+     * @throws IllegalArgumentException if the cart is merged into itself
+     */
+    public void merge(Cart other) throws InsufficientStockException, ProductExpiredException {
+        merge(other, LIVE_STOCK);
+    }
+    
+    /**
+     * Merge another cart into this one, validating against the given stock view
+     * @param other the cart to merge in
+     * @param stock the stock and expiry source
+     */
+    void merge(Cart other, StockView stock) throws InsufficientStockException, ProductExpiredException {
+        if (other == this) {
+            throw new IllegalArgumentException("A cart cannot be merged into itself");
+        }
+        Map<Product, CartItem> index = new IdentityHashMap<>(items.size() * 2);
+        for (CartItem item : items) {
+            index.put(item.getProduct(), item);
+        }
+        for (CartItem item : other.items) {
+            CartItem existing = index.get(item.getProduct());
+            int total = item.getQuantity() + (existing == null ? 0 : existing.getQuantity());
+            checkLine(item.getProduct(), total, stock);
+        }
+        for (CartItem item : other.items) {
+            CartItem existing = index.get(item.getProduct());
+            if (existing != null) {
+                existing.addQuantity(item.getQuantity());
+            } else {
+                items.add(new CartItem(item.getProduct(), item.getQuantity()));
+            }
+        }
+        couponCodes.addAll(other.couponCodes);
+        if (deliveryZone == null) {
+            deliveryZone = other.deliveryZone;
+        }
+    }
+    
+    /**
+     * Check that a product can be held in the cart in the given quantity
+     * @param product the product
+     * @param total the quantity the cart would hold
+     * @param stock the stock and expiry source
+     * @throws InsufficientStockException if the stock does not cover the total
+     * @throws ProductExpiredException if the product is expired
+     */
+    private static void checkLine(Product product, int total, StockView stock)
+            throws InsufficientStockException, ProductExpiredException {
+        int available = stock.available(product);
+        boolean expired = stock.isExpired(product);
+        if (available >= total && !expired) {
+            return;
+        }
+        // Expired lots do not count as available, so expiry is reported first
+        if (expired) {
+            throw new ProductExpiredException("Product " + product.getName() + " is expired");
+        } else if (available <= 0) {
+            throw new InsufficientStockException("Product " + product.getName() + " is out of stock");
+        } else {
+            throw new InsufficientStockException("Product " + product.getName() + " has only " + available + " available");
+        }
+    }
+    
+    /**
+     * Source of the stock and expiry facts a cart is validated against
+     */
+    interface StockView {
+        int available(Product product);
+        
+        boolean isExpired(Product product);
+    }
+    
+    private static final StockView LIVE_STOCK = new StockView() {
+        @Override
+        public int available(Product product) {
+            return product instanceof ExpirableProduct
+                    ? ((ExpirableProduct) product).getSellableQuantity() : product.getQuantity();
+        }
+        
+        @Override
+        public boolean isExpired(Product product) {
+            return product instanceof ExpirableProduct && ((ExpirableProduct) product).isExpired();
+        }
+    };
+    
     /**
      * Remove a product from the cart
      * @param product the product to remove
@@ -80,10 +177,86 @@ public class Cart {
     }
     
     /**
-     * Clear all items from the cart
+     * Remove part of a product's quantity, dropping the line when nothing is left
+     * @param product the product
+     * @param quantity the quantity to remove
+     * @throws IllegalArgumentException if the quantity is not positive
+     */
+    public void removeQuantity(Product product, int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be greater than 0");
+        }
+        for (int i = 0; i < items.size(); i++) {
+            CartItem item = items.get(i);
+            if (item.getProduct() == product) {
+                if (item.getQuantity() <= quantity) {
+                    items.remove(i);
+                } else {
+                    item.setQuantity(item.getQuantity() - quantity);
+                }
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Apply a coupon code to the cart
+     * Codes are only checked against the active promotions at checkout
+     * @param code the coupon code
+     * @throws IllegalArgumentException if the code is blank
+     */
+    public void applyCoupon(String code) {
+        if (code == null || code.isBlank()) {
+            throw new IllegalArgumentException("Coupon code must not be blank");
+        }
+        couponCodes.add(code.trim());
+    }
+    
+    /**
+     * Remove a coupon code from the cart
+     * @param code the coupon code
+     */
+    public void removeCoupon(String code) {
+        couponCodes.remove(code);
+    }
+    
+    /**
+     * Get the coupon codes applied to the cart
+     * @return the coupon codes in the order they were applied
+     */
+    public Set<String> getCouponCodes() {
+        return new LinkedHashSet<>(couponCodes);
+    }
+    
+    /**
+     * Set the zone the order is delivered to
+     * Shipping is allocated across warehouses only when a zone is set
+     * @param deliveryZone the delivery zone, or null for none
+     */
+    public void setDeliveryZone(String deliveryZone) {
+        this.deliveryZone = deliveryZone;
+    }
+    
+    public String getDeliveryZone() {
+        return deliveryZone;
+    }
+    
+    /**
+     * Enforce a customer's request rate and purchase caps on products added to this cart
+     * @param purchaseLimiter the limiter, or null for no limits
+     * @param owner the customer owning the cart
+     */
+    public void setPurchaseLimiter(PurchaseLimiter purchaseLimiter, Customer owner) {
+        this.purchaseLimiter = purchaseLimiter;
+        this.ownerId = PurchaseLimiter.keyOf(owner);
+    }
+    
+    /**
+     * Clear all items and coupon codes from the cart
      */
     public void clear() {
         items.clear();
+        couponCodes.clear();
     }
     
     /**
@@ -102,6 +275,32 @@ public class Cart {
         return new ArrayList<>(items);
     }
     
+    /**
+     * Get the live item list, for codecs that must not copy it
+     * @return the items, not to be modified
+     */
+    List<CartItem> lines() {
+        return items;
+    }
+    
+    /**
+     * Get the live coupon codes, for codecs that must not copy them
+     * @return the coupon codes, not to be modified
+     */
+    Set<String> coupons() {
+        return couponCodes;
+    }
+    
+    /**
+     * Append a line without stock checks, restoring a cart saved earlier
+     * Stock is validated again at checkout, as for any cart
+     * @param product the product
+     * @param quantity the quantity
+     */
+    void restoreLine(Product product, int quantity) {
+        items.add(new CartItem(product, quantity));
+    }
+    
     /**
      * Calculate the subtotal of all items in the cart
      * @return the subtotal
@@ -124,15 +323,6 @@ public class Cart {
     
     @Override
     public String toString() {
-        if (isEmpty()) {
-            return "Cart is empty";
-        }
-        StringBuilder sb = new StringBuilder("Cart Contents:\n");
-        for (CartItem item : items) {
-            sb.append("- ").append(item.toString()).append(" ($")
-              .append(String.format("%.2f", item.getTotalPrice())).append(")\n");
-        }
-        sb.append("Subtotal: $").append(String.format("%.2f", getSubtotal()));
-        return sb.toString();
+        return TextRenderer.forCurrentThread().renderCartSummary(this).toString();
     }
 } 
\ No newline at end of file
@@ -54,6 +54,6 @@ public class CartItem {
     
     @Override
     public String toString() {
-        return String.format("%dx %s", quantity, product.getName());
+        return quantity + "x " + product.getName();
     }
 } 
\ No newline at end of file
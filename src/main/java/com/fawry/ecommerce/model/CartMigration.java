@@ -0,0 +1,185 @@
+package com.fawry.ecommerce.model;
+
+import com.fawry.ecommerce.exception.InsufficientStockException;
+import com.fawry.ecommerce.exception.ProductExpiredException;
+import com.fawry.ecommerce.model.product.ExpirableProduct;
+import com.fawry.ecommerce.model.product.Product;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Batched merge of many source carts into their target carts, e.g. guest carts into
+ * customer carts while compacting a session store
+ *
+ * Pairs are merged in batches on a fork/join pool. Within a batch every product's stock
+ * and expiry are read once and reused for all of its carts, so a popular product is not
+ * re-counted and the date is not re-read per line; the snapshot is as current as the
+ * per-line checks of {@link Cart#addProduct}, since carts reserve nothing. Each pair is
+ * merged all-or-nothing like {@link Cart#merge}, and a rejected pair is reported
+ * instead of failing the run. The target carts must be distinct, and no cart may be
+ * used elsewhere while a migration runs.
+ */
+public class CartMigration {
+    public static final int DEFAULT_BATCH_SIZE = 4_096;
+
+    private final ForkJoinPool pool;
+    private final int batchSize;
+
+    /**
+     * Constructor for CartMigration using the common fork/join pool
+     */
+    public CartMigration() {
+        this(ForkJoinPool.commonPool(), DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Constructor for CartMigration
+     * @param pool the pool merging the batches
+     * @param batchSize the number of pairs sharing one stock snapshot
+     * @throws IllegalArgumentException if the batch size is not positive
+     */
+    public CartMigration(ForkJoinPool pool, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be greater than 0");
+        }
+        this.pool = pool;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Merge every source cart into the target cart at the same index
+     * @param sources the carts to merge in, left unchanged
+     * @param targets the carts receiving the lines
+     * @return the number of merged pairs and the indexes of the rejected ones
+     * @throws IllegalArgumentException if the lists differ in size
+     */
+    public Result migrate(List<Cart> sources, List<Cart> targets) {
+        if (sources.size() != targets.size()) {
+            throw new IllegalArgumentException("Sources and targets must have the same size");
+        }
+        int batches = (sources.size() + batchSize - 1) / batchSize;
+        List<List<Integer>> rejected = new ArrayList<>(Collections.nCopies(batches, null));
+        long started = System.nanoTime();
+        if (batches > 0) {
+            pool.invoke(new MergeBatches(sources, targets, rejected, 0, batches));
+        }
+        List<Integer> rejectedIndexes = new ArrayList<>();
+        for (List<Integer> batch : rejected) {
+            rejectedIndexes.addAll(batch);
+        }
+        return new Result(sources.size() - rejectedIndexes.size(), rejectedIndexes, System.nanoTime() - started);
+    }
+
+    /**
+     * Merge the pairs of one batch against a shared stock snapshot
+     * @return the indexes of the rejected pairs
+     */
+    private List<Integer> mergeBatch(List<Cart> sources, List<Cart> targets, int batch) {
+        int from = batch * batchSize;
+        int to = Math.min(sources.size(), from + batchSize);
+        BatchStock stock = new BatchStock(LocalDate.now());
+        List<Integer> rejected = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            try {
+                targets.get(i).merge(sources.get(i), stock);
+            } catch (InsufficientStockException | ProductExpiredException e) {
+                rejected.add(i);
+            }
+        }
+        return rejected;
+    }
+
+    /**
+     * Stock view reading each product once per batch
+     */
+    private static final class BatchStock implements Cart.StockView {
+        private final LocalDate today;
+        private final Map<Product, Integer> available = new IdentityHashMap<>();
+        private final Map<Product, Boolean> expired = new IdentityHashMap<>();
+
+        BatchStock(LocalDate today) {
+            this.today = today;
+        }
+
+        @Override
+        public int available(Product product) {
+            return available.computeIfAbsent(product, p -> p instanceof ExpirableProduct
+                    ? ((ExpirableProduct) p).getSellableQuantity(today) : p.getQuantity());
+        }
+
+        @Override
+        public boolean isExpired(Product product) {
+            return expired.computeIfAbsent(product, p -> p instanceof ExpirableProduct
+                    && ((ExpirableProduct) p).isExpired(today));
+        }
+    }
+
+    /**
+     * Fork/join task halving the batch range until single batches are merged
+     */
+    private final class MergeBatches extends RecursiveAction {
+        private final List<Cart> sources;
+        private final List<Cart> targets;
+        private final List<List<Integer>> rejected;
+        private final int from;
+        private final int to;
+
+        MergeBatches(List<Cart> sources, List<Cart> targets, List<List<Integer>> rejected, int from, int to) {
+            this.sources = sources;
+            this.targets = targets;
+            this.rejected = rejected;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                // Each task sets its own slot of the pre-sized list, a non-structural change
+                rejected.set(from, mergeBatch(sources, targets, from));
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new MergeBatches(sources, targets, rejected, from, middle),
+                      new MergeBatches(sources, targets, rejected, middle, to));
+        }
+    }
+
+    /**
+     * Outcome of a migration run
+     */
+    public static final class Result {
+        private final int merged;
+        private final List<Integer> rejectedIndexes;
+        private final long elapsedNanos;
+
+        Result(int merged, List<Integer> rejectedIndexes, long elapsedNanos) {
+            this.merged = merged;
+            this.rejectedIndexes = Collections.unmodifiableList(rejectedIndexes);
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public int getMerged() {
+            return merged;
+        }
+
+        /**
+         * Get the pairs left unmerged because a line was out of stock or expired
+         * @return the pair indexes in ascending order
+         */
+        public List<Integer> getRejectedIndexes() {
+            return rejectedIndexes;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+    }
+}
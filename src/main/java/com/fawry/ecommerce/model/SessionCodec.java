@@ -0,0 +1,376 @@
+package com.fawry.ecommerce.model;
+
+import com.fawry.ecommerce.factory.ProductFactory;
+import com.fawry.ecommerce.model.customer.Customer;
+import com.fawry.ecommerce.model.product.Dimensions;
+import com.fawry.ecommerce.model.product.ExpirableProduct;
+import com.fawry.ecommerce.model.product.Product;
+import com.fawry.ecommerce.model.product.ProductType;
+import com.fawry.ecommerce.repository.ProductRepository;
+import com.fawry.ecommerce.util.Varint;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.function.LongFunction;
+
+/**
+ * Versioned binary encoding of customers, products and carts for session persistence
+ *
+ * Every record starts with the format version and a record type byte, so readers can
+ * reject data they do not understand. Amounts are varints in cents, weights are the
+ * raw bits of the double, and dates are signed varint epoch days.
+ * <ul>
+ *   <li>Customer: id as a signed varint, so negative guest ids stay short, name, balance.</li>
+ *   <li>Product: product id, product type ordinal, name, price, weight, dimensions if measured as a
+ *       presence byte and the raw bits of each side; then the stock quantity, or
+ *       for expirable products the expiration date and the lots on sale as date and
+ *       quantity pairs. Expired units not yet written off are not persisted.</li>
+ *   <li>Cart: delivery zone, coupon codes, then per line the product id and quantity.
+ *       Lines reference products by id and are resolved on decoding, so a cart does
+ *       not carry its products.</li>
+ * </ul>
+ * Decoding reads straight from the buffer, including heap buffer strings, without
+ * intermediate copies. Decoded products keep their product id, so carts and order
+ * histories referencing it resolve to the same product after a restart; products from
+ * records older than version 3 get a fresh id. Truncated input is rejected like any
+ * other malformed data.
+ */
+public final class SessionCodec {
+    /**
+     * Current format version, written first in every record
+     * Version 2 added product dimensions, version 3 product ids and version 4 signed customer ids;
+     * older records are still read.
+     */
+    public static final byte FORMAT_VERSION = 4;
+
+    private static final byte OLDEST_READABLE_VERSION = 1;
+
+    /**
+     * Record type of a customer
+     */
+    public static final byte CUSTOMER = 1;
+
+    /**
+     * Record type of a product
+     */
+    public static final byte PRODUCT = 2;
+
+    /**
+     * Record type of a cart
+     */
+    public static final byte CART = 3;
+
+    private static final ProductType[] TYPES = ProductType.values();
+
+    private SessionCodec() {
+        // Utility class
+    }
+
+    /**
+     * Get the exact encoded size of a customer
+     * @param customer the customer
+     * @return the number of bytes {@link #encode(Customer, ByteBuffer)} will write
+     */
+    public static int encodedSize(Customer customer) {
+        return 2 + Varint.sizeOfSigned(customer.getId())
+                + Varint.sizeOfString(customer.getName())
+                + Varint.sizeOfSigned(toCents(customer.getBalance()));
+    }
+
+    /**
+     * Encode a customer
+     * @param customer the customer
+     * @param buffer the target buffer with at least {@link #encodedSize(Customer)} bytes remaining
+     */
+    public static void encode(Customer customer, ByteBuffer buffer) {
+        buffer.put(FORMAT_VERSION).put(CUSTOMER);
+        Varint.writeSigned(buffer, customer.getId());
+        Varint.writeString(buffer, customer.getName());
+        Varint.writeSigned(buffer, toCents(customer.getBalance()));
+    }
+
+    /**
+     * Decode a customer
+     * @param buffer the source buffer positioned at the format version
+     * @return the decoded customer
+     * @throws IllegalArgumentException if the version or record type is unexpected or the data is malformed
+     */
+    public static Customer decodeCustomer(ByteBuffer buffer) {
+        try {
+            byte version = requireHeader(buffer, CUSTOMER);
+            long id = version >= 4 ? Varint.readSigned(buffer) : Varint.readUnsigned(buffer);
+            String name = Varint.readString(buffer);
+            double balance = fromCents(Varint.readSigned(buffer));
+            return new Customer(id, name, balance);
+        } catch (BufferUnderflowException e) {
+            throw truncated(e);
+        }
+    }
+
+    /**
+     * Get the exact encoded size of a product
+     * The product must not change between sizing and encoding
+     * @param product the product
+     * @return the number of bytes {@link #encode(Product, ByteBuffer)} will write
+     */
+    public static int encodedSize(Product product) {
+        int size = 3 + Varint.sizeOfUnsigned(product.getId()) + Varint.sizeOfString(product.getName())
+                + Varint.sizeOfSigned(toCents(product.getPrice())) + Long.BYTES
+                + (product.getDimensions() == null ? 1 : 1 + 3 * Long.BYTES);
+        if (!(product instanceof ExpirableProduct)) {
+            return size + Varint.sizeOfUnsigned(product.getQuantity());
+        }
+        ExpirableProduct expirable = (ExpirableProduct) product;
+        size += sizeOfDate(expirable.getExpirationDate());
+        SortedMap<LocalDate, Integer> lots = expirable.getLots();
+        size += Varint.sizeOfUnsigned(lots.size());
+        for (Map.Entry<LocalDate, Integer> lot : lots.entrySet()) {
+            size += sizeOfDate(lot.getKey()) + Varint.sizeOfUnsigned(lot.getValue());
+        }
+        return size;
+    }
+
+    /**
+     * Encode a product
+     * @param product the product, of one of the {@link ProductType} types
+     * @param buffer the target buffer with at least {@link #encodedSize(Product)} bytes remaining
+     * @throws IllegalArgumentException if the product type is unknown
+     */
+    public static void encode(Product product, ByteBuffer buffer) {
+        byte type = (byte) ProductType.of(product).ordinal();
+        buffer.put(FORMAT_VERSION).put(PRODUCT);
+        Varint.writeUnsigned(buffer, product.getId());
+        buffer.put(type);
+        Varint.writeString(buffer, product.getName());
+        Varint.writeSigned(buffer, toCents(product.getPrice()));
+        buffer.putLong(Double.doubleToRawLongBits(product.getWeight()));
+        Dimensions dimensions = product.getDimensions();
+        buffer.put((byte) (dimensions == null ? 0 : 1));
+        if (dimensions != null) {
+            buffer.putLong(Double.doubleToRawLongBits(dimensions.getLength()));
+            buffer.putLong(Double.doubleToRawLongBits(dimensions.getWidth()));
+            buffer.putLong(Double.doubleToRawLongBits(dimensions.getHeight()));
+        }
+        if (!(product instanceof ExpirableProduct)) {
+            Varint.writeUnsigned(buffer, product.getQuantity());
+            return;
+        }
+        ExpirableProduct expirable = (ExpirableProduct) product;
+        writeDate(buffer, expirable.getExpirationDate());
+        SortedMap<LocalDate, Integer> lots = expirable.getLots();
+        Varint.writeUnsigned(buffer, lots.size());
+        for (Map.Entry<LocalDate, Integer> lot : lots.entrySet()) {
+            writeDate(buffer, lot.getKey());
+            Varint.writeUnsigned(buffer, lot.getValue());
+        }
+    }
+
+    /**
+     * Decode a product
+     * @param buffer the source buffer positioned at the format version
+     * @return the decoded product, with its persisted id
+     * @throws IllegalArgumentException if the version, record or product type is unexpected or the data is malformed
+     */
+    public static Product decodeProduct(ByteBuffer buffer) {
+        try {
+            return readProduct(buffer);
+        } catch (BufferUnderflowException e) {
+            throw truncated(e);
+        }
+    }
+
+    private static Product readProduct(ByteBuffer buffer) {
+        byte version = requireHeader(buffer, PRODUCT);
+        long id = version >= 3 ? Varint.readUnsigned(buffer) : Product.nextProductId();
+        if (id <= 0) {
+            throw new IllegalArgumentException("Invalid product id: " + id);
+        }
+        int ordinal = buffer.get();
+        if (ordinal < 0 || ordinal >= TYPES.length) {
+            throw new IllegalArgumentException("Unknown product type: " + ordinal);
+        }
+        ProductType type = TYPES[ordinal];
+        String name = Varint.readString(buffer);
+        double price = fromCents(Varint.readSigned(buffer));
+        double weight = Double.longBitsToDouble(buffer.getLong());
+        Dimensions dimensions = null;
+        if (version >= 2 && buffer.get() != 0) {
+            dimensions = new Dimensions(Double.longBitsToDouble(buffer.getLong()),
+                    Double.longBitsToDouble(buffer.getLong()), Double.longBitsToDouble(buffer.getLong()));
+        }
+        Product product = type.isExpirable() ? decodeLots(buffer, id, type, name, price, weight)
+                : ProductFactory.restore(id, type, name, price, Varint.readUnsignedInt(buffer), null, weight);
+        product.setDimensions(dimensions);
+        return product;
+    }
+
+    private static Product decodeLots(ByteBuffer buffer, long id, ProductType type, String name, double price,
+                                      double weight) {
+        LocalDate expirationDate = readDate(buffer);
+        int lotCount = Varint.readUnsignedInt(buffer);
+        LocalDate firstDate = expirationDate;
+        int firstQuantity = 0;
+        if (lotCount > 0) {
+            firstDate = readDate(buffer);
+            firstQuantity = Varint.readUnsignedInt(buffer);
+        }
+        ExpirableProduct product = (ExpirableProduct) ProductFactory.restore(id, type, name, price, firstQuantity,
+                firstDate, weight);
+        for (int i = 1; i < lotCount; i++) {
+            LocalDate date = readDate(buffer);
+            int quantity = Varint.readUnsignedInt(buffer);
+            if (date == null) {
+                throw new IllegalArgumentException("Only the first lot may be undated");
+            }
+            product.addLot(quantity, date);
+        }
+        return product;
+    }
+
+    /**
+     * Get the exact encoded size of a cart
+     * @param cart the cart
+     * @return the number of bytes {@link #encode(Cart, ByteBuffer)} will write
+     */
+    public static int encodedSize(Cart cart) {
+        String zone = cart.getDeliveryZone();
+        int size = 3 + (zone == null ? 0 : Varint.sizeOfString(zone));
+        Set<String> coupons = cart.coupons();
+        size += Varint.sizeOfUnsigned(coupons.size());
+        for (String code : coupons) {
+            size += Varint.sizeOfString(code);
+        }
+        List<CartItem> lines = cart.lines();
+        size += Varint.sizeOfUnsigned(lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            CartItem line = lines.get(i);
+            size += Varint.sizeOfUnsigned(line.getProduct().getId()) + Varint.sizeOfUnsigned(line.getQuantity());
+        }
+        return size;
+    }
+
+    /**
+     * Encode a cart, referencing its products by id
+     * @param cart the cart
+     * @param buffer the target buffer with at least {@link #encodedSize(Cart)} bytes remaining
+     */
+    public static void encode(Cart cart, ByteBuffer buffer) {
+        buffer.put(FORMAT_VERSION).put(CART);
+        String zone = cart.getDeliveryZone();
+        buffer.put((byte) (zone == null ? 0 : 1));
+        if (zone != null) {
+            Varint.writeString(buffer, zone);
+        }
+        Set<String> coupons = cart.coupons();
+        Varint.writeUnsigned(buffer, coupons.size());
+        for (Iterator<String> it = coupons.iterator(); it.hasNext(); ) {
+            Varint.writeString(buffer, it.next());
+        }
+        List<CartItem> lines = cart.lines();
+        Varint.writeUnsigned(buffer, lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            CartItem line = lines.get(i);
+            Varint.writeUnsigned(buffer, line.getProduct().getId());
+            Varint.writeUnsigned(buffer, line.getQuantity());
+        }
+    }
+
+    /**
+     * Decode a cart, resolving its products in a repository
+     * @param buffer the source buffer positioned at the format version
+     * @param products the repository the products are registered in
+     * @return the decoded cart
+     * @throws IllegalArgumentException if the data is malformed or references an unknown product
+     */
+    public static Cart decodeCart(ByteBuffer buffer, ProductRepository products) {
+        return decodeCart(buffer, id -> products.findById(id).orElse(null));
+    }
+
+    /**
+     * Decode a cart
+     * Lines are restored without stock checks; checkout validates them as usual
+     * @param buffer the source buffer positioned at the format version
+     * @param products resolves a product id, returning null if unknown
+     * @return the decoded cart
+     * @throws IllegalArgumentException if the data is malformed or references an unknown product
+     */
+    public static Cart decodeCart(ByteBuffer buffer, LongFunction<Product> products) {
+        try {
+            return readCart(buffer, products);
+        } catch (BufferUnderflowException e) {
+            throw truncated(e);
+        }
+    }
+
+    private static Cart readCart(ByteBuffer buffer, LongFunction<Product> products) {
+        requireHeader(buffer, CART);
+        Cart cart = new Cart();
+        if (buffer.get() != 0) {
+            cart.setDeliveryZone(Varint.readString(buffer));
+        }
+        int couponCount = Varint.readUnsignedInt(buffer);
+        for (int i = 0; i < couponCount; i++) {
+            cart.applyCoupon(Varint.readString(buffer));
+        }
+        int lineCount = Varint.readUnsignedInt(buffer);
+        for (int i = 0; i < lineCount; i++) {
+            long productId = Varint.readUnsigned(buffer);
+            int quantity = Varint.readUnsignedInt(buffer);
+            Product product = products.apply(productId);
+            if (product == null) {
+                throw new IllegalArgumentException("Unknown product id: " + productId);
+            }
+            if (quantity <= 0) {
+                throw new IllegalArgumentException("Quantity must be greater than 0");
+            }
+            cart.restoreLine(product, quantity);
+        }
+        return cart;
+    }
+
+    private static byte requireHeader(ByteBuffer buffer, byte recordType) {
+        byte version = buffer.get();
+        if (version < OLDEST_READABLE_VERSION || version > FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported format version: " + version);
+        }
+        byte type = buffer.get();
+        if (type != recordType) {
+            throw new IllegalArgumentException("Expected record type " + recordType + " but found " + type);
+        }
+        return version;
+    }
+
+    private static IllegalArgumentException truncated(BufferUnderflowException cause) {
+        return new IllegalArgumentException("Truncated record", cause);
+    }
+
+    // A date is a presence byte followed by the signed epoch day
+    private static int sizeOfDate(LocalDate date) {
+        return date == null ? 1 : 1 + Varint.sizeOfSigned(date.toEpochDay());
+    }
+
+    private static void writeDate(ByteBuffer buffer, LocalDate date) {
+        buffer.put((byte) (date == null ? 0 : 1));
+        if (date != null) {
+            Varint.writeSigned(buffer, date.toEpochDay());
+        }
+    }
+
+    private static LocalDate readDate(ByteBuffer buffer) {
+        return buffer.get() == 0 ? null : LocalDate.ofEpochDay(Varint.readSigned(buffer));
+    }
+
+    private static long toCents(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    private static double fromCents(long cents) {
+        return cents / 100.0;
+    }
+}
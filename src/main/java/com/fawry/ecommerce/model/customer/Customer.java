@@ -1,23 +1,59 @@
 package com.fawry.ecommerce.model.customer;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Customer class representing a customer in the e-commerce system
+ *
+ * Guests, customers never registered in a CustomerRepository, get a unique negative
+ * id, so rate limits, refunds and order histories keyed by id never mix two guests.
  */
 public class Customer {
+    /**
+     * Id no repository ever assigns; a customer created with it counts as unregistered
+     */
+    public static final long UNREGISTERED_ID = 0L;
+    // Seeded from the clock like order ids, so guest ids stay unique across restarts
+    private static final AtomicLong GUEST_IDS = new AtomicLong(-(System.currentTimeMillis() << 12));
+    
+    private final long id;
     private String name;
-    private double balance;
+    private volatile double balance;
     
     /**
-     * Constructor for Customer
+     * Constructor for a guest Customer with a unique negative id
      * @param name the name of the customer
      * @param balance the initial balance of the customer
      */
     public Customer(String name, double balance) {
+        this(GUEST_IDS.decrementAndGet(), name, balance);
+    }
+    
+    /**
+     * Constructor for a registered Customer
+     * @param id the id assigned by the customer repository
+     * @param name the name of the customer
+     * @param balance the initial balance of the customer
+     */
+    public Customer(long id, String name, double balance) {
+        this.id = id;
         this.name = name;
         this.balance = balance;
     }
     
     // Getters and Setters
+    public long getId() {
+        return id;
+    }
+    
+    /**
+     * Check if the customer was registered in a customer repository
+     * @return true if the customer has a repository id, false for guests
+     */
+    public boolean isRegistered() {
+        return id > UNREGISTERED_ID;
+    }
+    
     public String getName() {
         return name;
     }
@@ -30,16 +66,17 @@ public class Customer {
         return balance;
     }
     
-    public void setBalance(double balance) {
+    public synchronized void setBalance(double balance) {
         this.balance = balance;
     }
     
     /**
      * Deduct amount from customer's balance
+     * Balance updates are atomic, so refunds may credit a customer who is checking out
      * @param amount the amount to deduct
      * @return true if successful, false if insufficient balance
      */
-    public boolean deductBalance(double amount) {
+    public synchronized boolean deductBalance(double amount) {
         if (balance >= amount) {
             balance -= amount;
             return true;
@@ -51,7 +88,7 @@ public class Customer {
      * Add amount to customer's balance
      * @param amount the amount to add
      */
-    public void addBalance(double amount) {
+    public synchronized void addBalance(double amount) {
         balance += amount;
     }
     
@@ -66,6 +103,6 @@ public class Customer {
     
     @Override
     public String toString() {
-        return String.format("Customer: %s (Balance: $%.2f)", name, balance);
+        return String.format("Customer: %s (Balance: $%.2f)", name, getBalance());
     }
 } 
\ No newline at end of file
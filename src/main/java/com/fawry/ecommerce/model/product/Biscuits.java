@@ -17,7 +17,20 @@ public class Biscuits extends ExpirableProduct {
      * @param weight the weight in kilograms
      */
     public Biscuits(String name, double price, int quantity, LocalDate expirationDate, double weight) {
-        super(name, price, quantity, expirationDate);
+        this(nextProductId(), name, price, quantity, expirationDate, weight);
+    }
+    
+    /**
+     * Constructor for Biscuits restored with a persisted id
+     * @param id the persisted product id
+     * @param name the name of the biscuits
+     * @param price the price of the biscuits
+     * @param quantity the available quantity
+     * @param expirationDate the expiration date
+     * @param weight the weight in kilograms
+     */
+    public Biscuits(long id, String name, double price, int quantity, LocalDate expirationDate, double weight) {
+        super(id, name, price, quantity, expirationDate);
         this.weight = weight;
     }
     
@@ -33,6 +46,6 @@ public class Biscuits extends ExpirableProduct {
     @Override
     public String toString() {
         return String.format("Biscuits: %s - $%.2f (Qty: %d, Expires: %s, Weight: %.1fkg)", 
-                           name, price, quantity, expirationDate, weight);
+                           name, price, getQuantity(), expirationDate, weight);
     }
 } 
\ No newline at end of file
@@ -17,7 +17,20 @@ public class Cheese extends ExpirableProduct implements Shippable {
      * @param weight the weight in kilograms
      */
     public Cheese(String name, double price, int quantity, LocalDate expirationDate, double weight) {
-        super(name, price, quantity, expirationDate);
+        this(nextProductId(), name, price, quantity, expirationDate, weight);
+    }
+    
+    /**
+     * Constructor for Cheese restored with a persisted id
+     * @param id the persisted product id
+     * @param name the name of the cheese
+     * @param price the price of the cheese
+     * @param quantity the available quantity
+     * @param expirationDate the expiration date
+     * @param weight the weight in kilograms
+     */
+    public Cheese(long id, String name, double price, int quantity, LocalDate expirationDate, double weight) {
+        super(id, name, price, quantity, expirationDate);
         this.weight = weight;
     }
     
@@ -38,6 +51,6 @@ public class Cheese extends ExpirableProduct implements Shippable {
     @Override
     public String toString() {
         return String.format("Cheese: %s - $%.2f (Qty: %d, Expires: %s, Weight: %.1fkg)", 
-                           name, price, quantity, expirationDate, weight);
+                           name, price, getQuantity(), expirationDate, weight);
     }
 } 
\ No newline at end of file
@@ -0,0 +1,119 @@
+package com.fawry.ecommerce.model.product;
+
+import java.util.Arrays;
+
+/**
+ * Immutable outer dimensions of a packed item, in centimetres
+ *
+ * The sides are also kept sorted from longest to shortest, so fitting one item into
+ * another ignores orientation.
+ */
+public final class Dimensions {
+    private final double length;
+    private final double width;
+    private final double height;
+    private final double[] sorted;
+
+    /**
+     * Constructor for Dimensions
+     * @param length the length in centimetres
+     * @param width the width in centimetres
+     * @param height the height in centimetres
+     * @throws IllegalArgumentException if a side is not positive
+     */
+    public Dimensions(double length, double width, double height) {
+        if (!(length > 0 && width > 0 && height > 0)) {
+            throw new IllegalArgumentException("Dimensions must be greater than 0");
+        }
+        this.length = length;
+        this.width = width;
+        this.height = height;
+        this.sorted = new double[] {length, width, height};
+        Arrays.sort(sorted);
+    }
+
+    public double getLength() {
+        return length;
+    }
+
+    public double getWidth() {
+        return width;
+    }
+
+    public double getHeight() {
+        return height;
+    }
+
+    /**
+     * Get the longest side
+     * @return the side in centimetres
+     */
+    public double getLongest() {
+        return sorted[2];
+    }
+
+    /**
+     * Get the middle side
+     * @return the side in centimetres
+     */
+    public double getMiddle() {
+        return sorted[1];
+    }
+
+    /**
+     * Get the shortest side
+     * @return the side in centimetres
+     */
+    public double getShortest() {
+        return sorted[0];
+    }
+
+    /**
+     * Get the volume
+     * @return the volume in cubic centimetres
+     */
+    public double getVolume() {
+        return length * width * height;
+    }
+
+    /**
+     * Get the weight carriers bill for this volume
+     * @param divisor the carrier's cubic centimetres per kilogram, e.g. 5000
+     * @return the volumetric weight in kilograms
+     */
+    public double volumetricWeight(double divisor) {
+        return getVolume() / divisor;
+    }
+
+    /**
+     * Check if these dimensions fit inside others in some orientation
+     * @param outer the enclosing dimensions
+     * @return true if every side fits, false otherwise
+     */
+    public boolean fitsIn(Dimensions outer) {
+        return sorted[2] <= outer.sorted[2] && sorted[1] <= outer.sorted[1] && sorted[0] <= outer.sorted[0];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Dimensions)) {
+            return false;
+        }
+        Dimensions other = (Dimensions) o;
+        return Double.compare(length, other.length) == 0 && Double.compare(width, other.width) == 0
+                && Double.compare(height, other.height) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(new double[] {length, width, height});
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%.1fx%.1fx%.1fcm", length, width, height);
+    }
+}
@@ -1,53 +1,411 @@
 package com.fawry.ecommerce.model.product;
 
 import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 /**
  * Abstract class for products that can expire
+ *
+ * Stock is tracked in lots, each with its own expiration date, kept in a min-heap by
+ * date. Sales pick first-expired-first-out, and lots past their date are moved off the
+ * heap top as they are met, so expiry checks look at the earliest lot only. The
+ * quantity still counts every unit on hand, expired ones included, until they are
+ * written off; the sellable quantity excludes them. Callers that undo a sale take the
+ * units with {@link #takeLots} and give them back with {@link #returnLots}, so returned
+ * units keep their own dates. Lot-tracked products never use split stock counters.
  */
 public abstract class ExpirableProduct extends Product implements Expirable {
+    // Lots without a date never expire
+    private static final long NO_EXPIRY = Long.MAX_VALUE;
+
     protected LocalDate expirationDate;
-    
+    private final LotHeap lots = new LotHeap();
+    private int expiredUnits;
+
     /**
      * Constructor for ExpirableProduct
      * @param name the name of the product
      * @param price the price of the product
-     * @param quantity the available quantity
-     * @param expirationDate the expiration date
+     * @param quantity the available quantity, forming the first lot
+     * @param expirationDate the expiration date of the first lot
      */
     public ExpirableProduct(String name, double price, int quantity, LocalDate expirationDate) {
-        super(name, price, quantity);
-        this.expirationDate = expirationDate;
+        this(nextProductId(), name, price, quantity, expirationDate);
     }
     
+    /**
+     * Constructor for ExpirableProduct restored with a persisted id
+     * @param id the persisted product id
+     * @param name the name of the product
+     * @param price the price of the product
+     * @param quantity the available quantity, forming the first lot
+     * @param expirationDate the expiration date of the first lot
+     */
+    public ExpirableProduct(long id, String name, double price, int quantity, LocalDate expirationDate) {
+        super(id, name, price, quantity);
+        this.expirationDate = expirationDate;
+        if (quantity > 0) {
+            lots.add(toDay(expirationDate), quantity);
+        }
+    }
+
+    /**
+     * Get the expiration date of the earliest lot still on sale
+     * Expired lots are skipped, not purged, so reading the date changes nothing
+     * @return the expiration date, or the last known date if no dated lot is on sale
+     */
     @Override
-    public LocalDate getExpirationDate() {
-        return expirationDate;
+    public synchronized LocalDate getExpirationDate() {
+        long day = lots.firstDayFrom(LocalDate.now().toEpochDay());
+        return day == LotHeap.NONE || day == NO_EXPIRY ? expirationDate : LocalDate.ofEpochDay(day);
     }
-    
+
+    /**
+     * Set one expiration date for every unit on hand, merging all lots into one
+     * @param expirationDate the expiration date
+     */
     @Override
-    public void setExpirationDate(LocalDate expirationDate) {
+    public synchronized void setExpirationDate(LocalDate expirationDate) {
         this.expirationDate = expirationDate;
+        lots.clear();
+        expiredUnits = 0;
+        if (quantity > 0) {
+            lots.add(toDay(expirationDate), quantity);
+        }
     }
-    
+
+    /**
+     * Restock with a new lot
+     * @param quantity the number of units in the lot
+     * @param expirationDate the lot's expiration date
+     * @throws IllegalArgumentException if the quantity is not positive or the date is null
+     */
+    public void addLot(int quantity, LocalDate expirationDate) {
+        if (quantity <= 0 || expirationDate == null) {
+            throw new IllegalArgumentException("A lot needs a positive quantity and an expiration date");
+        }
+        int previous;
+        synchronized (this) {
+            previous = this.quantity;
+            lots.add(expirationDate.toEpochDay(), quantity);
+            this.quantity += quantity;
+            refreshExpirationDate();
+        }
+        notifyQuantityChanged(previous);
+    }
+
+    /**
+     * Get the number of lots still on sale
+     * @return the lot count
+     */
+    public synchronized int getLotCount() {
+        purgeExpired(LocalDate.now());
+        return lots.size();
+    }
+
+    /**
+     * Get the lots still on sale, e.g. to persist the product
+     * @return the quantity per expiration date, undated units first under a null key, then earliest first
+     */
+    public synchronized SortedMap<LocalDate, Integer> getLots() {
+        purgeExpired(LocalDate.now());
+        SortedMap<LocalDate, Integer> result = new TreeMap<>(Comparator.nullsFirst(Comparator.naturalOrder()));
+        for (int i = 0; i < lots.size(); i++) {
+            long day = lots.dayAt(i);
+            result.merge(toDate(day), lots.quantityAt(i), Integer::sum);
+        }
+        return result;
+    }
+
+    /**
+     * Get the units on hand that have not expired
+     * @return the sellable quantity
+     */
+    public int getSellableQuantity() {
+        return getSellableQuantity(LocalDate.now());
+    }
+
+    /**
+     * Get the units on hand that have not expired on a given day
+     * Days before the current date see the current state, as expired units are not restored
+     * @param day the day to check against
+     * @return the sellable quantity
+     */
+    public synchronized int getSellableQuantity(LocalDate day) {
+        LocalDate today = LocalDate.now();
+        purgeExpired(day.isBefore(today) ? day : today);
+        int sellable = quantity - expiredUnits;
+        // Lots expiring by a future day are counted, not purged
+        return day.isAfter(today) ? sellable - lots.quantityBefore(day.toEpochDay()) : sellable;
+    }
+
+    /**
+     * Check if every unit on hand is expired
+     * @return true if no unit is sellable and units are on hand or the last date is past
+     */
     @Override
     public boolean isExpired() {
-        return LocalDate.now().isAfter(expirationDate);
+        return isExpired(LocalDate.now());
     }
-    
+
+    /**
+     * Check if every unit on hand is expired on a given day
+     * With nothing on hand the last known expiration date decides, so a sold-out product
+     * past its date still reads as expired rather than out of stock.
+     * @param day the day to check against
+     * @return true if no unit is sellable and units are on hand or the last date is before the day
+     */
+    public synchronized boolean isExpired(LocalDate day) {
+        if (quantity == 0) {
+            return expirationDate != null && expirationDate.isBefore(day);
+        }
+        return getSellableQuantity(day) == 0;
+    }
+
+    /**
+     * Remove the expired units from stock
+     * @return the number of units written off
+     */
+    public int writeOffExpired() {
+        int previous;
+        int written;
+        synchronized (this) {
+            purgeExpired(LocalDate.now());
+            written = expiredUnits;
+            previous = quantity;
+            quantity -= written;
+            expiredUnits = 0;
+        }
+        notifyQuantityChanged(previous);
+        return written;
+    }
+
     /**
      * Check if the product is available and not expired
+     * Answered from the earliest lots, skipping the expired ones
      * @param requestedQuantity the requested quantity
-     * @return true if available and not expired, false otherwise
+     * @return true if enough unexpired units are on hand, false otherwise
      */
     @Override
     public boolean isAvailable(int requestedQuantity) {
-        return super.isAvailable(requestedQuantity) && !isExpired();
+        return getSellableQuantity() >= requestedQuantity;
     }
-    
+
+    /**
+     * Sell units first-expired-first-out, skipping expired lots
+     * @param amount the amount to reduce
+     * @return true if successful, false if not enough unexpired units are on hand
+     * @throws IllegalArgumentException if the amount is negative
+     */
+    @Override
+    public boolean reduceQuantity(int amount) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("Amount must not be negative");
+        }
+        LocalDate today = LocalDate.now();
+        int previous;
+        synchronized (this) {
+            purgeExpired(today);
+            if (quantity - expiredUnits < amount) {
+                return false;
+            }
+            previous = quantity;
+            lots.take(amount);
+            quantity -= amount;
+            refreshExpirationDate();
+        }
+        notifyQuantityChanged(previous);
+        return true;
+    }
+
+    /**
+     * Sell units first-expired-first-out like {@link #reduceQuantity}, reporting their lots
+     * @param amount the amount to take
+     * @return the units taken per expiration date, undated units under a null key,
+     *         or null if not enough unexpired units are on hand
+     * @throws IllegalArgumentException if the amount is negative
+     */
+    public SortedMap<LocalDate, Integer> takeLots(int amount) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("Amount must not be negative");
+        }
+        SortedMap<LocalDate, Integer> taken = new TreeMap<>(Comparator.nullsFirst(Comparator.naturalOrder()));
+        LocalDate today = LocalDate.now();
+        int previous;
+        synchronized (this) {
+            purgeExpired(today);
+            if (quantity - expiredUnits < amount) {
+                return null;
+            }
+            previous = quantity;
+            int remaining = amount;
+            while (remaining > 0) {
+                int units = Math.min(remaining, lots.peekQuantity());
+                taken.merge(toDate(lots.peekDay()), units, Integer::sum);
+                lots.take(units);
+                remaining -= units;
+            }
+            quantity -= amount;
+            refreshExpirationDate();
+        }
+        notifyQuantityChanged(previous);
+        return taken;
+    }
+
+    /**
+     * Return units to the lots they were taken from, e.g. from a cancelled sale
+     * Units of a lot that has expired since come back as expired units
+     * @param taken the units per expiration date, as reported by {@link #takeLots}
+     * @throws IllegalArgumentException if a quantity is negative
+     */
+    public void returnLots(Map<LocalDate, Integer> taken) {
+        long today = LocalDate.now().toEpochDay();
+        int previous;
+        synchronized (this) {
+            previous = quantity;
+            for (Map.Entry<LocalDate, Integer> lot : taken.entrySet()) {
+                int units = lot.getValue();
+                if (units < 0) {
+                    throw new IllegalArgumentException("Amount must not be negative");
+                }
+                long day = toDay(lot.getKey());
+                if (day < today) {
+                    expiredUnits += units;
+                } else if (units > 0) {
+                    lots.add(day, units);
+                }
+                quantity += units;
+            }
+            refreshExpirationDate();
+        }
+        notifyQuantityChanged(previous);
+    }
+
+    /**
+     * Return units whose lot is unknown to the earliest lot on sale
+     * Callers that know where the units came from use {@link #returnLots} instead
+     * @param amount the amount to add back
+     * @throws IllegalArgumentException if the amount is negative
+     */
+    @Override
+    public void increaseQuantity(int amount) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("Amount must not be negative");
+        }
+        int previous;
+        synchronized (this) {
+            previous = quantity;
+            addUndated(amount);
+        }
+        notifyQuantityChanged(previous);
+    }
+
+    /**
+     * Set the total quantity, keeping the lots
+     * Added units join the earliest lot on sale; removed units are written off from the
+     * expired units first, then taken first-expired-first-out.
+     * @param quantity the new quantity
+     */
+    @Override
+    public void setQuantity(int quantity) {
+        int previous;
+        synchronized (this) {
+            previous = this.quantity;
+            if (quantity > previous) {
+                addUndated(quantity - previous);
+            } else if (quantity < previous) {
+                purgeExpired(LocalDate.now());
+                int removed = previous - Math.max(0, quantity);
+                int writtenOff = Math.min(removed, expiredUnits);
+                expiredUnits -= writtenOff;
+                lots.take(removed - writtenOff);
+                this.quantity = Math.max(0, quantity);
+                refreshExpirationDate();
+            }
+        }
+        notifyQuantityChanged(previous);
+    }
+
+    /**
+     * Set the quantity of one lot, e.g. after counting it, leaving the other lots alone
+     * @param expirationDate the lot's expiration date
+     * @param quantity the lot's new quantity, 0 to remove it
+     * @throws IllegalArgumentException if the quantity is negative or the date is null or past
+     */
+    public void setLotQuantity(LocalDate expirationDate, int quantity) {
+        if (quantity < 0 || expirationDate == null || expirationDate.isBefore(LocalDate.now())) {
+            throw new IllegalArgumentException("A lot needs a quantity that is not negative and a current expiration date");
+        }
+        int previous;
+        synchronized (this) {
+            previous = this.quantity;
+            purgeExpired(LocalDate.now());
+            this.quantity += quantity - lots.set(expirationDate.toEpochDay(), quantity);
+            refreshExpirationDate();
+        }
+        notifyQuantityChanged(previous);
+    }
+
+    /**
+     * Lot-tracked products keep their stock in lots, so split counters are never enabled
+     * and the call has no effect; {@link #isSplitStock()} stays false
+     */
+    @Override
+    public synchronized void enableSplitStock(int stripes, int grantSize) {
+        // Split counters cannot tell lots apart
+    }
+
+    /**
+     * Add units of unknown lot to the earliest lot on sale, or a lot with the last known date
+     */
+    private void addUndated(int amount) {
+        purgeExpired(LocalDate.now());
+        long day = lots.isEmpty() ? toDay(expirationDate) : lots.peekDay();
+        if (day < LocalDate.now().toEpochDay()) {
+            expiredUnits += amount;
+        } else if (amount > 0) {
+            lots.add(day, amount);
+        }
+        quantity += amount;
+    }
+
+    /**
+     * Move lots past their date from the heap top to the expired units
+     * @param today the day to check against
+     */
+    private void purgeExpired(LocalDate today) {
+        long day = today.toEpochDay();
+        if (lots.isEmpty() || lots.peekDay() >= day) {
+            return;
+        }
+        while (!lots.isEmpty() && lots.peekDay() < day) {
+            expiredUnits += lots.peekQuantity();
+            lots.pop();
+        }
+        refreshExpirationDate();
+    }
+
+    private void refreshExpirationDate() {
+        if (!lots.isEmpty() && lots.peekDay() != NO_EXPIRY
+                && (expirationDate == null || expirationDate.toEpochDay() != lots.peekDay())) {
+            expirationDate = LocalDate.ofEpochDay(lots.peekDay());
+        }
+    }
+
+    private static long toDay(LocalDate date) {
+        return date == null ? NO_EXPIRY : date.toEpochDay();
+    }
+
+    private static LocalDate toDate(long day) {
+        return day == NO_EXPIRY ? null : LocalDate.ofEpochDay(day);
+    }
+
     @Override
     public String toString() {
-        return String.format("%s - $%.2f (Qty: %d, Expires: %s)", 
-                           name, price, quantity, expirationDate);
+        return String.format("%s - $%.2f (Qty: %d, Expires: %s)",
+                           name, price, getQuantity(), expirationDate);
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,210 @@
+package com.fawry.ecommerce.model.product;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Binary min-heap of stock lots ordered by expiration day
+ *
+ * Lots are stored as parallel primitive arrays of epoch days and quantities, so the
+ * earliest lot is always at index 0 and adding or removing a lot costs O(log lots).
+ * Each day has at most one lot; a map from day to heap index, kept up to date as lots
+ * move, finds the lot of a day without a scan. Queries about lots before a day only
+ * descend into subtrees whose root is before that day, so they cost O(matching lots).
+ * Not thread-safe; the owning product guards it with its own monitor.
+ */
+final class LotHeap {
+    /** Returned by {@link #firstDayFrom} when no lot is on or after the day */
+    static final long NONE = Long.MIN_VALUE;
+
+    private long[] days = new long[4];
+    private int[] quantities = new int[4];
+    private final Map<Long, Integer> positions = new HashMap<>();
+    private int size;
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long peekDay() {
+        return days[0];
+    }
+
+    int peekQuantity() {
+        return quantities[0];
+    }
+
+    /**
+     * Add units to the lot of a day, creating the lot if there is none
+     * @param day the epoch day
+     * @param quantity the number of units
+     */
+    void add(long day, int quantity) {
+        int index = indexOf(day);
+        if (index >= 0) {
+            quantities[index] += quantity;
+            return;
+        }
+        if (size == days.length) {
+            days = Arrays.copyOf(days, size * 2);
+            quantities = Arrays.copyOf(quantities, size * 2);
+        }
+        siftUp(size++, day, quantity);
+    }
+
+    /**
+     * Replace the quantity of the lot of a day, removing the lot at 0
+     * @param day the epoch day
+     * @param quantity the new number of units
+     * @return the previous number of units, 0 if there was no lot
+     */
+    int set(long day, int quantity) {
+        int index = indexOf(day);
+        if (index < 0) {
+            if (quantity > 0) {
+                add(day, quantity);
+            }
+            return 0;
+        }
+        int previous = quantities[index];
+        if (quantity > 0) {
+            quantities[index] = quantity;
+        } else {
+            removeAt(index);
+        }
+        return previous;
+    }
+
+    void pop() {
+        removeAt(0);
+    }
+
+    /**
+     * Take units from the earliest lots first; the caller checked the heap holds enough
+     * @param amount the number of units to take
+     */
+    void take(int amount) {
+        while (amount > 0) {
+            int top = quantities[0];
+            if (top <= amount) {
+                amount -= top;
+                pop();
+            } else {
+                quantities[0] = top - amount;
+                amount = 0;
+            }
+        }
+    }
+
+    long dayAt(int index) {
+        return days[index];
+    }
+
+    int quantityAt(int index) {
+        return quantities[index];
+    }
+
+    /**
+     * Count the units in lots expiring before a day, without removing them
+     * @param day the epoch day
+     * @return the number of units
+     */
+    int quantityBefore(long day) {
+        return quantityBefore(0, day);
+    }
+
+    /**
+     * Find the earliest lot on or after a day, without removing the lots before it
+     * @param day the epoch day
+     * @return the epoch day of the lot, or {@link #NONE} if every lot is before the day
+     */
+    long firstDayFrom(long day) {
+        return firstDayFrom(0, day);
+    }
+
+    void clear() {
+        size = 0;
+        positions.clear();
+    }
+
+    private int quantityBefore(int i, long day) {
+        if (i >= size || days[i] >= day) {
+            return 0;
+        }
+        return quantities[i] + quantityBefore(2 * i + 1, day) + quantityBefore(2 * i + 2, day);
+    }
+
+    private long firstDayFrom(int i, long day) {
+        if (i >= size) {
+            return NONE;
+        }
+        if (days[i] >= day) {
+            return days[i];
+        }
+        long left = firstDayFrom(2 * i + 1, day);
+        long right = firstDayFrom(2 * i + 2, day);
+        return left == NONE ? right : right == NONE ? left : Math.min(left, right);
+    }
+
+    private int indexOf(long day) {
+        Integer index = positions.get(day);
+        return index == null ? -1 : index;
+    }
+
+    private void removeAt(int index) {
+        positions.remove(days[index]);
+        size--;
+        if (index == size) {
+            return;
+        }
+        long day = days[size];
+        int quantity = quantities[size];
+        siftDown(index, day, quantity);
+        if (days[index] == day) {
+            siftUp(index, day, quantity);
+        }
+    }
+
+    private void siftUp(int i, long day, int quantity) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (days[parent] <= day) {
+                break;
+            }
+            move(parent, i);
+            i = parent;
+        }
+        place(i, day, quantity);
+    }
+
+    private void siftDown(int i, long day, int quantity) {
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && days[child + 1] < days[child]) {
+                child++;
+            }
+            if (day <= days[child]) {
+                break;
+            }
+            move(child, i);
+            i = child;
+        }
+        place(i, day, quantity);
+    }
+
+    private void move(int from, int to) {
+        place(to, days[from], quantities[from]);
+    }
+
+    private void place(int i, long day, int quantity) {
+        days[i] = day;
+        quantities[i] = quantity;
+        positions.put(day, i);
+    }
+}
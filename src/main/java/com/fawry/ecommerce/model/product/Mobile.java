@@ -14,7 +14,19 @@ public class Mobile extends Product {
      * @param weight the weight in kilograms
      */
     public Mobile(String name, double price, int quantity, double weight) {
-        super(name, price, quantity);
+        this(nextProductId(), name, price, quantity, weight);
+    }
+    
+    /**
+     * Constructor for Mobile restored with a persisted id
+     * @param id the persisted product id
+     * @param name the name of the mobile
+     * @param price the price of the mobile
+     * @param quantity the available quantity
+     * @param weight the weight in kilograms
+     */
+    public Mobile(long id, String name, double price, int quantity, double weight) {
+        super(id, name, price, quantity);
         this.weight = weight;
     }
     
@@ -30,6 +42,6 @@ public class Mobile extends Product {
     @Override
     public String toString() {
         return String.format("Mobile: %s - $%.2f (Qty: %d, Weight: %.1fkg)", 
-                           name, price, quantity, weight);
+                           name, price, getQuantity(), weight);
     }
 } 
\ No newline at end of file
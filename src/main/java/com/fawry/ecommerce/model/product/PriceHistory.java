@@ -0,0 +1,327 @@
+package com.fawry.ecommerce.model.product;
+
+import java.util.Arrays;
+
+/**
+ * Append-only record of a product's price changes, for point-in-time and range queries
+ *
+ * Changes are stored in blocks of up to {@value #BLOCK_SIZE}: each block keeps its first
+ * time and price in cents as absolute longs, and every change as int deltas from the
+ * previous one, so a change costs eight bytes however long the history grows. A lookup
+ * binary-searches the block starts and scans at most one block. Writers are serialized,
+ * while readers take no lock: a change becomes visible when the size is published, and
+ * arrays are only ever replaced by larger copies.
+ */
+public final class PriceHistory {
+    /** Maximum number of changes delta-encoded against one block start */
+    public static final int BLOCK_SIZE = 64;
+    private static final int INITIAL_CAPACITY = 4;
+
+    private volatile State state = new State(INITIAL_CAPACITY, 1);
+    private volatile int size;
+    private int blocks;
+    private long lastTime;
+    private long lastCents;
+
+    /**
+     * Receiver of price changes, taking primitives so range scans do not allocate
+     */
+    @FunctionalInterface
+    public interface PriceChangeConsumer {
+        /**
+         * Receive one price change
+         * @param timeMillis the change time in epoch milliseconds
+         * @param price the new price
+         */
+        void accept(long timeMillis, double price);
+    }
+
+    /**
+     * Record a price change
+     * Changes must arrive in time order; an earlier time is treated as the last recorded time.
+     * @param timeMillis the change time in epoch milliseconds
+     * @param price the new price, kept in cents
+     */
+    public synchronized void record(long timeMillis, double price) {
+        int index = size;
+        long time = index == 0 ? timeMillis : Math.max(timeMillis, lastTime);
+        long cents = Math.round(price * 100);
+        State current = state;
+        long timeDelta = time - lastTime;
+        long centsDelta = cents - lastCents;
+        boolean newBlock = index == 0 || index - current.blockOffsets[blocks - 1] >= BLOCK_SIZE
+                || timeDelta > Integer.MAX_VALUE || centsDelta != (int) centsDelta;
+        if (index == current.timeDeltas.length || (newBlock && blocks == current.blockOffsets.length)) {
+            current = current.grow(index == current.timeDeltas.length, newBlock && blocks == current.blockOffsets.length);
+            state = current;
+        }
+        if (newBlock) {
+            current.blockTimes[blocks] = time;
+            current.blockCents[blocks] = cents;
+            current.blockOffsets[blocks] = index;
+            blocks++;
+        } else {
+            current.timeDeltas[index] = (int) timeDelta;
+            current.centDeltas[index] = (int) centsDelta;
+        }
+        lastTime = time;
+        lastCents = cents;
+        size = index + 1;
+    }
+
+    /**
+     * Get the number of recorded changes
+     * @return the number of changes
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the price in effect at a time
+     * @param timeMillis the time in epoch milliseconds
+     * @return the price, or NaN if the time is before the first change
+     */
+    public double priceAt(long timeMillis) {
+        int n = size;
+        State s = state;
+        int block = lastBlockAtOrBefore(s, n, timeMillis);
+        if (block < 0) {
+            return Double.NaN;
+        }
+        long cents = s.blockCents[block];
+        long time = s.blockTimes[block];
+        int end = blockEnd(s, n, block);
+        for (int i = s.blockOffsets[block] + 1; i < end; i++) {
+            time += s.timeDeltas[i];
+            if (time > timeMillis) {
+                break;
+            }
+            cents += s.centDeltas[i];
+        }
+        return cents / 100.0;
+    }
+
+    /**
+     * Get the first recorded price
+     * @return the price, or NaN if nothing was recorded
+     */
+    public double earliestPrice() {
+        int n = size;
+        return n == 0 ? Double.NaN : state.blockCents[0] / 100.0;
+    }
+
+    /**
+     * Visit the price changes within a time range, oldest first
+     * @param fromMillis the range start, inclusive
+     * @param toMillis the range end, inclusive
+     * @param action the receiver of each change
+     */
+    public void forEach(long fromMillis, long toMillis, PriceChangeConsumer action) {
+        int n = size;
+        State s = state;
+        int blockCount = blockCount(s, n);
+        for (int block = firstBlockOf(s, n, fromMillis); block < blockCount; block++) {
+            long time = s.blockTimes[block];
+            long cents = s.blockCents[block];
+            int end = blockEnd(s, n, block);
+            for (int i = s.blockOffsets[block]; i < end; i++) {
+                if (i > s.blockOffsets[block]) {
+                    time += s.timeDeltas[i];
+                    cents += s.centDeltas[i];
+                }
+                if (time > toMillis) {
+                    return;
+                }
+                if (time >= fromMillis) {
+                    action.accept(time, cents / 100.0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Count the price changes within a time range
+     * @param fromMillis the range start, inclusive
+     * @param toMillis the range end, inclusive
+     * @return the number of changes
+     */
+    public int countBetween(long fromMillis, long toMillis) {
+        int n = size;
+        State s = state;
+        int count = 0;
+        int blockCount = blockCount(s, n);
+        for (int block = firstBlockOf(s, n, fromMillis); block < blockCount; block++) {
+            long time = s.blockTimes[block];
+            int start = s.blockOffsets[block];
+            int end = blockEnd(s, n, block);
+            for (int i = start; i < end; i++) {
+                if (i > start) {
+                    time += s.timeDeltas[i];
+                }
+                if (time > toMillis) {
+                    return count;
+                }
+                if (time >= fromMillis) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Get the lowest price in effect at any time within a range
+     * @param fromMillis the range start, inclusive
+     * @param toMillis the range end, inclusive
+     * @return the lowest price, or NaN if no price was in effect during the range
+     */
+    public double lowestBetween(long fromMillis, long toMillis) {
+        return extremeBetween(fromMillis, toMillis, true);
+    }
+
+    /**
+     * Get the highest price in effect at any time within a range
+     * @param fromMillis the range start, inclusive
+     * @param toMillis the range end, inclusive
+     * @return the highest price, or NaN if no price was in effect during the range
+     */
+    public double highestBetween(long fromMillis, long toMillis) {
+        return extremeBetween(fromMillis, toMillis, false);
+    }
+
+    /**
+     * Scan the blocks covering a range for the lowest or highest price in effect
+     * @return the price, or NaN if no price was in effect during the range
+     */
+    private double extremeBetween(long fromMillis, long toMillis, boolean lowest) {
+        int n = size;
+        State s = state;
+        int blockCount = blockCount(s, n);
+        // The last change before the range is still in effect at its start
+        boolean before = false;
+        long beforeCents = 0;
+        boolean found = false;
+        long extreme = 0;
+        scan:
+        for (int block = firstBlockOf(s, n, fromMillis); block < blockCount; block++) {
+            long time = s.blockTimes[block];
+            long cents = s.blockCents[block];
+            int start = s.blockOffsets[block];
+            int end = blockEnd(s, n, block);
+            for (int i = start; i < end; i++) {
+                if (i > start) {
+                    time += s.timeDeltas[i];
+                    cents += s.centDeltas[i];
+                }
+                if (time > toMillis) {
+                    break scan;
+                }
+                if (time < fromMillis) {
+                    before = true;
+                    beforeCents = cents;
+                    continue;
+                }
+                if (time == fromMillis) {
+                    // Replaced right at the start, so the earlier price never applied
+                    before = false;
+                }
+                if (!found || (lowest ? cents < extreme : cents > extreme)) {
+                    extreme = cents;
+                    found = true;
+                }
+            }
+        }
+        if (before && (!found || (lowest ? beforeCents < extreme : beforeCents > extreme))) {
+            return beforeCents / 100.0;
+        }
+        return found ? extreme / 100.0 : Double.NaN;
+    }
+
+    /**
+     * Find the last published block starting at or before a time
+     * Unused block slots hold the largest offset, so the predicate stays monotonic
+     * @return the block index, or -1 if none
+     */
+    private static int lastBlockAtOrBefore(State s, int n, long timeMillis) {
+        int low = 0;
+        int high = s.blockOffsets.length - 1;
+        int found = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (s.blockOffsets[middle] < n && s.blockTimes[middle] <= timeMillis) {
+                found = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Find the block a range scan starts at
+     * Equal times may span blocks, so this is the last block strictly before the range
+     */
+    private static int firstBlockOf(State s, int n, long fromMillis) {
+        return fromMillis == Long.MIN_VALUE ? 0 : Math.max(0, lastBlockAtOrBefore(s, n, fromMillis - 1));
+    }
+
+    private static int blockCount(State s, int n) {
+        int low = 0;
+        int high = s.blockOffsets.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (s.blockOffsets[middle] < n) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static int blockEnd(State s, int n, int block) {
+        return block + 1 < s.blockOffsets.length ? Math.min(n, s.blockOffsets[block + 1]) : n;
+    }
+
+    /**
+     * Storage arrays, replaced by a larger copy when full
+     */
+    private static final class State {
+        final int[] timeDeltas;
+        final int[] centDeltas;
+        final long[] blockTimes;
+        final long[] blockCents;
+        final int[] blockOffsets;
+
+        State(int capacity, int blockCapacity) {
+            this(new int[capacity], new int[capacity], new long[blockCapacity], new long[blockCapacity],
+                 unusedOffsets(blockCapacity, 0));
+        }
+
+        private State(int[] timeDeltas, int[] centDeltas, long[] blockTimes, long[] blockCents, int[] blockOffsets) {
+            this.timeDeltas = timeDeltas;
+            this.centDeltas = centDeltas;
+            this.blockTimes = blockTimes;
+            this.blockCents = blockCents;
+            this.blockOffsets = blockOffsets;
+        }
+
+        State grow(boolean entries, boolean blocks) {
+            int capacity = entries ? timeDeltas.length * 2 : timeDeltas.length;
+            int blockCapacity = blocks ? blockOffsets.length * 2 : blockOffsets.length;
+            int[] offsets = unusedOffsets(blockCapacity, blockOffsets.length);
+            System.arraycopy(blockOffsets, 0, offsets, 0, blockOffsets.length);
+            return new State(Arrays.copyOf(timeDeltas, capacity), Arrays.copyOf(centDeltas, capacity),
+                             Arrays.copyOf(blockTimes, blockCapacity), Arrays.copyOf(blockCents, blockCapacity),
+                             offsets);
+        }
+
+        private static int[] unusedOffsets(int capacity, int from) {
+            int[] offsets = new int[capacity];
+            Arrays.fill(offsets, from, capacity, Integer.MAX_VALUE);
+            return offsets;
+        }
+    }
+}
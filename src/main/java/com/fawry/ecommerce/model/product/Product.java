@@ -1,14 +1,28 @@
 package com.fawry.ecommerce.model.product;
 
 import com.fawry.ecommerce.service.ShippingItem;
+import com.fawry.ecommerce.text.NameTable;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
 
 /**
  * Abstract base class for all products in the e-commerce system
  */
 public abstract class Product implements ShippingItem {
+    // Seeded from the clock like order ids, so ids of persisted products are not handed out again after a restart
+    private static final AtomicLong ID_SEQUENCE = new AtomicLong(System.currentTimeMillis() << 12);
+    
+    private final long id;
     protected String name;
-    protected double price;
+    private int nameId;
+    protected volatile double price;
     protected int quantity;
+    private volatile StockObserver stockObserver;
+    private volatile SplitStockCounter splitStock;
+    private volatile Dimensions dimensions;
+    private final PriceHistory priceHistory = new PriceHistory();
+    private volatile LongSupplier priceClock = System::currentTimeMillis;
     
     /**
      * Constructor for Product
@@ -17,34 +31,214 @@ public abstract class Product implements ShippingItem {
      * @param quantity the available quantity
      */
     public Product(String name, double price, int quantity) {
-        this.name = name;
+        this(nextProductId(), name, price, quantity);
+    }
+    
+    /**
+     * Constructor for a Product restored with a persisted id
+     * Later products get ids above it, so a restored product never shares its id with a new one.
+     * @param id the persisted product id
+     * @param name the name of the product
+     * @param price the price of the product
+     * @param quantity the available quantity
+     * @throws IllegalArgumentException if the id is not positive
+     */
+    public Product(long id, String name, double price, int quantity) {
+        if (id <= 0) {
+            throw new IllegalArgumentException("Product id must be greater than 0");
+        }
+        long issued;
+        while ((issued = ID_SEQUENCE.get()) < id && !ID_SEQUENCE.compareAndSet(issued, id)) {
+            // Retry until the sequence is past the restored id
+        }
+        this.id = id;
+        internName(name);
         this.price = price;
         this.quantity = quantity;
+        priceHistory.record(System.currentTimeMillis(), price);
+    }
+    
+    /**
+     * Generate a new product id
+     * @return an id no product created or restored so far carries
+     */
+    public static long nextProductId() {
+        return ID_SEQUENCE.incrementAndGet();
     }
     
     // Getters and Setters
+    /**
+     * Get the id of the product, kept when the product is persisted and restored
+     * @return the product id
+     */
+    public long getId() {
+        return id;
+    }
+    
     public String getName() {
         return name;
     }
     
+    /**
+     * Set the name, interning it in the product name table
+     * @param name the name of the product
+     */
     public void setName(String name) {
-        this.name = name;
+        internName(name);
+    }
+    
+    private void internName(String name) {
+        if (name == null) {
+            this.name = null;
+            this.nameId = -1;
+            return;
+        }
+        NameTable names = NameTable.productNames();
+        this.nameId = names.intern(name);
+        this.name = nameId < 0 ? name : names.name(nameId);
+    }
+    
+    /**
+     * Get the id of the name in {@link NameTable#productNames()}
+     * @return the name id, or -1 if the product has no name or the table was full
+     */
+    public int getNameId() {
+        return nameId;
     }
     
     public double getPrice() {
         return price;
     }
     
+    /**
+     * Set the price, recording the change in the price history
+     * @param price the new price
+     */
     public void setPrice(double price) {
-        this.price = price;
+        // The history's monitor orders concurrent changes the same in the field and the history
+        synchronized (priceHistory) {
+            this.price = price;
+            priceHistory.record(priceClock.getAsLong(), price);
+        }
+    }
+    
+    /**
+     * Get the price in effect at a time, e.g. when an order was placed
+     * @param timeMillis the time in epoch milliseconds
+     * @return the price, or the initial price for times before the product was created
+     */
+    public double getPriceAt(long timeMillis) {
+        double historical = priceHistory.priceAt(timeMillis);
+        return Double.isNaN(historical) ? priceHistory.earliestPrice() : historical;
+    }
+    
+    public PriceHistory getPriceHistory() {
+        return priceHistory;
+    }
+    
+    /**
+     * Set the time source stamping later price changes in the price history
+     * @param priceClock the time source in epoch milliseconds
+     * @throws IllegalArgumentException if the clock is null
+     */
+    public void setPriceClock(LongSupplier priceClock) {
+        if (priceClock == null) {
+            throw new IllegalArgumentException("Price clock must not be null");
+        }
+        this.priceClock = priceClock;
     }
     
     public int getQuantity() {
-        return quantity;
+        SplitStockCounter split = splitStock;
+        return split != null ? split.available() : quantity;
     }
     
     public void setQuantity(int quantity) {
-        this.quantity = quantity;
+        SplitStockCounter split = splitStock;
+        if (split != null) {
+            int previous = split.available();
+            split.reset(quantity);
+            notifyQuantityChanged(previous, quantity);
+            return;
+        }
+        int previous;
+        synchronized (this) {
+            previous = this.quantity;
+            this.quantity = quantity;
+        }
+        notifyQuantityChanged(previous);
+    }
+    
+    /**
+     * Get the packed dimensions used for volumetric shipping
+     * @return the dimensions, or null if not measured
+     */
+    @Override
+    public Dimensions getDimensions() {
+        return dimensions;
+    }
+    
+    /**
+     * Set the packed dimensions used for volumetric shipping
+     * @param dimensions the dimensions, or null to bill shipping by weight only
+     */
+    public void setDimensions(Dimensions dimensions) {
+        this.dimensions = dimensions;
+    }
+    
+    /**
+     * Designate the product as hot, moving its quantity into per-core split counters
+     * so concurrent sales of it rarely touch shared memory. Must be called before the
+     * product is sold concurrently; calling it again has no effect.
+     * @param stripes the number of sub-counters, usually the number of processors
+     * @param grantSize the maximum number of units handed to a sub-counter at a time
+     */
+    public synchronized void enableSplitStock(int stripes, int grantSize) {
+        if (splitStock == null) {
+            splitStock = new SplitStockCounter(quantity, stripes, grantSize);
+        }
+    }
+    
+    /**
+     * Check if the product keeps its quantity in split counters
+     * @return true if designated hot, false otherwise
+     */
+    public boolean isSplitStock() {
+        return splitStock != null;
+    }
+    
+    /**
+     * Get the split counters of a hot product, e.g. to rebalance them periodically
+     * @return the counters, or null if the product is not designated hot
+     */
+    public SplitStockCounter getSplitStock() {
+        return splitStock;
+    }
+    
+    /**
+     * Set the observer notified of every quantity change
+     * @param stockObserver the observer, or null to stop observing
+     */
+    public synchronized void setStockObserver(StockObserver stockObserver) {
+        this.stockObserver = stockObserver;
+    }
+    
+    public StockObserver getStockObserver() {
+        return stockObserver;
+    }
+    
+    /**
+     * Replace the observer only if it is still the expected one, so observers are not silently overwritten
+     * @param expected the observer believed to be set, or null
+     * @param stockObserver the new observer, or null to stop observing
+     * @return true if replaced, false if another observer was set meanwhile
+     */
+    public synchronized boolean replaceStockObserver(StockObserver expected, StockObserver stockObserver) {
+        if (this.stockObserver != expected) {
+            return false;
+        }
+        this.stockObserver = stockObserver;
+        return true;
     }
     
     /**
@@ -53,11 +247,76 @@ public abstract class Product implements ShippingItem {
      * @return true if successful, false if insufficient quantity
      */
     public boolean reduceQuantity(int amount) {
-        if (quantity >= amount) {
-            quantity -= amount;
+        SplitStockCounter split = splitStock;
+        if (split != null) {
+            if (!split.tryAcquire(amount)) {
+                return false;
+            }
+            // Only observed products pay for summing the stripes, once for both ends of the change
+            if (stockObserver != null) {
+                int current = split.available();
+                notifyQuantityChanged(current + amount, current);
+            }
             return true;
         }
-        return false;
+        int previous;
+        synchronized (this) {
+            if (quantity < amount) {
+                return false;
+            }
+            previous = quantity;
+            quantity -= amount;
+        }
+        notifyQuantityChanged(previous);
+        return true;
+    }
+    
+    /**
+     * Return units to stock, e.g. from a cancelled sale
+     * @param amount the amount to add back
+     * @throws IllegalArgumentException if the amount is negative
+     */
+    public void increaseQuantity(int amount) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("Amount must not be negative");
+        }
+        SplitStockCounter split = splitStock;
+        if (split != null) {
+            split.release(amount);
+            if (stockObserver != null) {
+                int current = split.available();
+                notifyQuantityChanged(current - amount, current);
+            }
+            return;
+        }
+        int previous;
+        synchronized (this) {
+            previous = quantity;
+            quantity += amount;
+        }
+        notifyQuantityChanged(previous);
+    }
+    
+    /**
+     * Notify the stock observer, if any, that the quantity moved away from a previous value
+     * @param previousQuantity the quantity before the change
+     */
+    protected void notifyQuantityChanged(int previousQuantity) {
+        if (stockObserver != null) {
+            notifyQuantityChanged(previousQuantity, getQuantity());
+        }
+    }
+    
+    /**
+     * Notify the stock observer, if any, of a change between two quantities read together
+     * @param previousQuantity the quantity before the change
+     * @param currentQuantity the quantity after the change
+     */
+    private void notifyQuantityChanged(int previousQuantity, int currentQuantity) {
+        StockObserver observer = stockObserver;
+        if (observer != null && previousQuantity != currentQuantity) {
+            observer.onQuantityChanged(this, previousQuantity, currentQuantity);
+        }
     }
     
     /**
@@ -66,7 +325,7 @@ public abstract class Product implements ShippingItem {
      * @return true if available, false otherwise
      */
     public boolean isAvailable(int requestedQuantity) {
-        return quantity >= requestedQuantity;
+        return getQuantity() >= requestedQuantity;
     }
     
     /**
@@ -74,11 +333,11 @@ public abstract class Product implements ShippingItem {
      * @return true if out of stock, false otherwise
      */
     public boolean isOutOfStock() {
-        return quantity <= 0;
+        return getQuantity() <= 0;
     }
     
     @Override
     public String toString() {
-        return String.format("%s - $%.2f (Qty: %d)", name, price, quantity);
+        return String.format("%s - $%.2f (Qty: %d)", name, price, getQuantity());
     }
 } 
\ No newline at end of file
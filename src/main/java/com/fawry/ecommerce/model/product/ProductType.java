@@ -0,0 +1,57 @@
+package com.fawry.ecommerce.model.product;
+
+/**
+ * Enumeration of the concrete product types
+ */
+public enum ProductType {
+    CHEESE(true, true),
+    BISCUITS(true, false),
+    TV(false, true),
+    MOBILE(false, false),
+    SCRATCH_CARD(false, false);
+
+    private final boolean expirable;
+    private final boolean shippable;
+
+    ProductType(boolean expirable, boolean shippable) {
+        this.expirable = expirable;
+        this.shippable = shippable;
+    }
+
+    /**
+     * Check if products of this type carry an expiration date
+     * @return true if expirable, false otherwise
+     */
+    public boolean isExpirable() {
+        return expirable;
+    }
+
+    /**
+     * Check if products of this type require shipping
+     * @return true if shippable, false otherwise
+     */
+    public boolean isShippable() {
+        return shippable;
+    }
+
+    /**
+     * Get the type of a product
+     * @param product the product
+     * @return the product type
+     * @throws IllegalArgumentException if the product is not one of the known types
+     */
+    public static ProductType of(Product product) {
+        if (product instanceof Cheese) {
+            return CHEESE;
+        } else if (product instanceof Biscuits) {
+            return BISCUITS;
+        } else if (product instanceof TV) {
+            return TV;
+        } else if (product instanceof Mobile) {
+            return MOBILE;
+        } else if (product instanceof ScratchCard) {
+            return SCRATCH_CARD;
+        }
+        throw new IllegalArgumentException("Unknown product type: " + product.getClass().getName());
+    }
+}
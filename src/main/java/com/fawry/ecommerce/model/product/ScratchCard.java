@@ -13,7 +13,18 @@ public class ScratchCard extends Product {
      * @param quantity the available quantity
      */
     public ScratchCard(String name, double price, int quantity) {
-        super(name, price, quantity);
+        this(nextProductId(), name, price, quantity);
+    }
+    
+    /**
+     * Constructor for ScratchCard restored with a persisted id
+     * @param id the persisted product id
+     * @param name the name of the scratch card
+     * @param price the price of the scratch card
+     * @param quantity the available quantity
+     */
+    public ScratchCard(long id, String name, double price, int quantity) {
+        super(id, name, price, quantity);
     }
     
     @Override
@@ -24,6 +35,6 @@ public class ScratchCard extends Product {
     @Override
     public String toString() {
         return String.format("ScratchCard: %s - $%.2f (Qty: %d)", 
-                           name, price, quantity);
+                           name, price, getQuantity());
     }
 } 
\ No newline at end of file
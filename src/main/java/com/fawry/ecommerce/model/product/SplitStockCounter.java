@@ -0,0 +1,219 @@
+package com.fawry.ecommerce.model.product;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Stock counter split into per-core sub-counters for heavily contended products
+ *
+ * The quantity lives in a shared pool plus one local grant per stripe, each on its own
+ * cache line. A thread takes units from its stripe's grant and only touches the pool
+ * when the grant runs dry, refilling it with a batch whose size shrinks as the pool
+ * empties. When the pool cannot cover a request, every grant is swept back into the
+ * pool under a lock before giving up. Each unit is always in exactly one place, so the
+ * global total is never oversold; near exhaustion a request may be refused while a few
+ * units sit in another stripe's grant, until the next {@link #rebalance()}.
+ * A grant on its way from the pool to a stripe is in neither, so a {@link #reset} waits
+ * for refills in flight: refills share a read lock, taken once per grant, that a reset
+ * takes exclusively.
+ */
+public final class SplitStockCounter {
+    /**
+     * Default number of units granted to a stripe at a time
+     */
+    public static final int DEFAULT_GRANT = 64;
+
+    // 16 longs = 128 bytes apart, covering adjacent-line prefetch on common CPUs
+    private static final int PAD = 16;
+    private static final int POOL = 0;
+
+    private final AtomicLongArray cells;
+    private final int stripeMask;
+    private final int grantSize;
+    private final Object rebalanceLock = new Object();
+    private final ReentrantReadWriteLock refillLock = new ReentrantReadWriteLock();
+    private final Lock refill = refillLock.readLock();
+
+    /**
+     * Constructor for SplitStockCounter with one stripe per available processor
+     * @param quantity the initial quantity
+     */
+    public SplitStockCounter(int quantity) {
+        this(quantity, Runtime.getRuntime().availableProcessors(), DEFAULT_GRANT);
+    }
+
+    /**
+     * Constructor for SplitStockCounter
+     * @param quantity the initial quantity
+     * @param stripes the minimum number of sub-counters, rounded up to a power of two
+     * @param grantSize the maximum number of units moved to a stripe at a time
+     * @throws IllegalArgumentException if an argument is out of range
+     */
+    public SplitStockCounter(int quantity, int stripes, int grantSize) {
+        if (quantity < 0 || stripes <= 0 || stripes > 1024 || grantSize <= 0) {
+            throw new IllegalArgumentException("Quantity must not be negative, stripes in 1..1024 and grant positive");
+        }
+        int size = 1;
+        while (size < stripes) {
+            size <<= 1;
+        }
+        this.cells = new AtomicLongArray((size + 1) * PAD);
+        this.stripeMask = size - 1;
+        this.grantSize = grantSize;
+        cells.set(POOL, quantity);
+    }
+
+    public int getStripeCount() {
+        return stripeMask + 1;
+    }
+
+    /**
+     * Take units for a sale
+     * @param amount the number of units
+     * @return true if taken, false if not enough stock is left
+     * @throws IllegalArgumentException if the amount is not positive
+     */
+    public boolean tryAcquire(int amount) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Amount must be greater than 0");
+        }
+        int stripe = stripeIndex();
+        while (true) {
+            long local = cells.get(stripe);
+            if (local >= amount) {
+                if (cells.compareAndSet(stripe, local, local - amount)) {
+                    return true;
+                }
+                continue;
+            }
+            if (!refill(stripe, amount - local)) {
+                return acquireAfterRebalance(amount);
+            }
+        }
+    }
+
+    /**
+     * Return units, e.g. from a cancelled sale or a delivery
+     * @param amount the number of units
+     * @throws IllegalArgumentException if the amount is negative
+     */
+    public void release(int amount) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("Amount must not be negative");
+        }
+        cells.getAndAdd(stripeIndex(), amount);
+    }
+
+    /**
+     * Get the quantity across the pool and all grants
+     * Exact when no update is in flight, otherwise a value the counter held recently.
+     * @return the available quantity
+     */
+    public int available() {
+        long total = cells.get(POOL);
+        for (int stripe = 1; stripe <= stripeMask + 1; stripe++) {
+            total += cells.get(stripe * PAD);
+        }
+        return (int) Math.min(total, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Sweep every stripe's grant back into the shared pool
+     * Safe to call at any time, e.g. periodically from a maintenance thread.
+     */
+    public void rebalance() {
+        synchronized (rebalanceLock) {
+            sweep();
+        }
+    }
+
+    /**
+     * Replace the quantity, e.g. after a stock count
+     * @param quantity the new quantity
+     * @throws IllegalArgumentException if the quantity is negative
+     */
+    public void reset(int quantity) {
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Quantity must not be negative");
+        }
+        refillLock.writeLock().lock();
+        try {
+            synchronized (rebalanceLock) {
+                sweep();
+                cells.set(POOL, quantity);
+            }
+        } finally {
+            refillLock.writeLock().unlock();
+        }
+    }
+
+    private int stripeIndex() {
+        long id = Thread.currentThread().getId();
+        int hash = (int) (id * 0x9E3779B97F4A7C15L >>> 32);
+        return ((hash & stripeMask) + 1) * PAD;
+    }
+
+    /**
+     * Move a grant from the pool into a stripe, so a concurrent reset cannot overwrite the pool in between
+     * @return false if the pool cannot cover the missing amount
+     */
+    private boolean refill(int stripe, long missing) {
+        refill.lock();
+        try {
+            long granted = takeFromPool(missing);
+            if (granted == 0) {
+                return false;
+            }
+            cells.getAndAdd(stripe, granted);
+            return true;
+        } finally {
+            refill.unlock();
+        }
+    }
+
+    /**
+     * Move a grant from the pool, at least the missing amount and at most the pool's fair share
+     */
+    private long takeFromPool(long missing) {
+        while (true) {
+            long pool = cells.get(POOL);
+            if (pool < missing) {
+                return 0;
+            }
+            long fairShare = pool / (stripeMask + 1);
+            long grant = Math.min(pool, Math.max(missing, Math.min(grantSize, fairShare)));
+            if (cells.compareAndSet(POOL, pool, pool - grant)) {
+                return grant;
+            }
+        }
+    }
+
+    private boolean acquireAfterRebalance(int amount) {
+        // Sold out products are read-only, so checking the total first keeps refusals off the lock
+        if (available() < amount) {
+            return false;
+        }
+        synchronized (rebalanceLock) {
+            sweep();
+            while (true) {
+                long pool = cells.get(POOL);
+                if (pool < amount) {
+                    return false;
+                }
+                if (cells.compareAndSet(POOL, pool, pool - amount)) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    private void sweep() {
+        for (int stripe = 1; stripe <= stripeMask + 1; stripe++) {
+            long local = cells.getAndSet(stripe * PAD, 0);
+            if (local != 0) {
+                cells.getAndAdd(POOL, local);
+            }
+        }
+    }
+}
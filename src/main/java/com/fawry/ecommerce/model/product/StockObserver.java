@@ -0,0 +1,15 @@
+package com.fawry.ecommerce.model.product;
+
+/**
+ * Interface for components observing stock changes of a product
+ * Called on the thread that changed the quantity, so implementations must not block
+ */
+public interface StockObserver {
+    /**
+     * Called after the quantity of a product changed
+     * @param product the product
+     * @param previousQuantity the quantity before the change
+     * @param newQuantity the quantity after the change
+     */
+    void onQuantityChanged(Product product, int previousQuantity, int newQuantity);
+}
@@ -14,7 +14,19 @@ public class TV extends Product implements Shippable {
      * @param weight the weight in kilograms
      */
     public TV(String name, double price, int quantity, double weight) {
-        super(name, price, quantity);
+        this(nextProductId(), name, price, quantity, weight);
+    }
+    
+    /**
+     * Constructor for TV restored with a persisted id
+     * @param id the persisted product id
+     * @param name the name of the TV
+     * @param price the price of the TV
+     * @param quantity the available quantity
+     * @param weight the weight in kilograms
+     */
+    public TV(long id, String name, double price, int quantity, double weight) {
+        super(id, name, price, quantity);
         this.weight = weight;
     }
     
@@ -35,6 +47,6 @@ public class TV extends Product implements Shippable {
     @Override
     public String toString() {
         return String.format("TV: %s - $%.2f (Qty: %d, Weight: %.1fkg)", 
-                           name, price, quantity, weight);
+                           name, price, getQuantity(), weight);
     }
 } 
\ No newline at end of file
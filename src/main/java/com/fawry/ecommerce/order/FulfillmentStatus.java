@@ -0,0 +1,15 @@
+package com.fawry.ecommerce.order;
+
+/**
+ * Outcome of one cart line in a partial-fulfillment checkout
+ */
+public enum FulfillmentStatus {
+    /** The full requested quantity was charged and shipped */
+    FULFILLED,
+    /** Only part of the requested quantity was in stock; that part was charged and shipped */
+    SHORT_SHIPPED,
+    /** The product is expired; nothing was charged */
+    EXPIRED,
+    /** The product is out of stock; nothing was charged */
+    REJECTED
+}
@@ -0,0 +1,62 @@
+package com.fawry.ecommerce.order;
+
+/**
+ * Immutable outcome of one cart line in a partial-fulfillment checkout
+ */
+public final class LineOutcome {
+    private final long productId;
+    private final String productName;
+    private final int requestedQuantity;
+    private final int fulfilledQuantity;
+    private final FulfillmentStatus status;
+
+    /**
+     * Constructor for LineOutcome
+     * @param productId the id of the product
+     * @param productName the product name at checkout time
+     * @param requestedQuantity the quantity in the cart
+     * @param fulfilledQuantity the quantity charged and shipped
+     * @param status the line outcome
+     */
+    public LineOutcome(long productId, String productName, int requestedQuantity, int fulfilledQuantity,
+                       FulfillmentStatus status) {
+        this.productId = productId;
+        this.productName = productName;
+        this.requestedQuantity = requestedQuantity;
+        this.fulfilledQuantity = fulfilledQuantity;
+        this.status = status;
+    }
+
+    public long getProductId() {
+        return productId;
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    public int getRequestedQuantity() {
+        return requestedQuantity;
+    }
+
+    public int getFulfilledQuantity() {
+        return fulfilledQuantity;
+    }
+
+    /**
+     * Get the quantity left unfulfilled, which stays in the cart
+     * @return the requested minus the fulfilled quantity
+     */
+    public int getMissingQuantity() {
+        return requestedQuantity - fulfilledQuantity;
+    }
+
+    public FulfillmentStatus getStatus() {
+        return status;
+    }
+
+    @Override
+    public String toString() {
+        return status + ": " + fulfilledQuantity + " of " + requestedQuantity + "x " + productName;
+    }
+}
@@ -0,0 +1,139 @@
+package com.fawry.ecommerce.order;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Immutable record of a completed checkout
+ */
+public final class Order {
+    // Seeded from the clock so ids stay increasing across restarts unless more than 4096 orders/ms are placed
+    private static final AtomicLong ID_SEQUENCE = new AtomicLong(System.currentTimeMillis() << 12);
+
+    private final long orderId;
+    private final long customerId;
+    private final String customerName;
+    private final long timestamp;
+    private final List<OrderLine> lines;
+    private final double subtotal;
+    private final double discount;
+    private final double shippingFee;
+    private final double totalAmount;
+
+    /**
+     * Constructor for Order
+     * @param orderId the order id
+     * @param customerId the repository id of the customer
+     * @param customerName the customer name at order time
+     * @param timestamp the order time in epoch milliseconds
+     * @param lines the ordered lines
+     * @param subtotal the subtotal
+     * @param shippingFee the shipping fee
+     * @param totalAmount the amount charged to the customer
+     */
+    public Order(long orderId, long customerId, String customerName, long timestamp, List<OrderLine> lines,
+                 double subtotal, double shippingFee, double totalAmount) {
+        this(orderId, customerId, customerName, timestamp, lines, subtotal, 0.0, shippingFee, totalAmount);
+    }
+
+    /**
+     * Constructor for an Order with promotional discounts
+     * @param orderId the order id
+     * @param customerId the repository id of the customer
+     * @param customerName the customer name at order time
+     * @param timestamp the order time in epoch milliseconds
+     * @param lines the ordered lines
+     * @param subtotal the subtotal before discounts
+     * @param discount the total promotional discount
+     * @param shippingFee the shipping fee
+     * @param totalAmount the amount charged to the customer
+     */
+    public Order(long orderId, long customerId, String customerName, long timestamp, List<OrderLine> lines,
+                 double subtotal, double discount, double shippingFee, double totalAmount) {
+        this.orderId = orderId;
+        this.customerId = customerId;
+        this.customerName = customerName;
+        this.timestamp = timestamp;
+        this.lines = List.copyOf(lines);
+        this.subtotal = subtotal;
+        this.discount = discount;
+        this.shippingFee = shippingFee;
+        this.totalAmount = totalAmount;
+    }
+
+    /**
+     * Generate a new order id
+     * @return a process-unique, increasing order id
+     */
+    public static long nextOrderId() {
+        return ID_SEQUENCE.incrementAndGet();
+    }
+
+    public long getOrderId() {
+        return orderId;
+    }
+
+    public long getCustomerId() {
+        return customerId;
+    }
+
+    public String getCustomerName() {
+        return customerName;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public List<OrderLine> getLines() {
+        return lines;
+    }
+
+    public double getSubtotal() {
+        return subtotal;
+    }
+
+    public double getDiscount() {
+        return discount;
+    }
+
+    public double getShippingFee() {
+        return shippingFee;
+    }
+
+    public double getTotalAmount() {
+        return totalAmount;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Order)) {
+            return false;
+        }
+        Order other = (Order) o;
+        return orderId == other.orderId
+                && customerId == other.customerId
+                && timestamp == other.timestamp
+                && Double.compare(subtotal, other.subtotal) == 0
+                && Double.compare(discount, other.discount) == 0
+                && Double.compare(shippingFee, other.shippingFee) == 0
+                && Double.compare(totalAmount, other.totalAmount) == 0
+                && customerName.equals(other.customerName)
+                && lines.equals(other.lines);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(orderId, customerId, customerName, timestamp, lines, subtotal, discount, shippingFee, totalAmount);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Order #%d for %s: %d lines, Total: $%.2f",
+                           orderId, customerName, lines.size(), totalAmount);
+    }
+}
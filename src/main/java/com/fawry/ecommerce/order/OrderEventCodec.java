@@ -0,0 +1,154 @@
+package com.fawry.ecommerce.order;
+
+import com.fawry.ecommerce.util.Varint;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary encoding of order events
+ *
+ * Layout: event type byte, then varints for order id, customer id, customer name,
+ * timestamp and the amounts in cents (plus the discount for discounted orders),
+ * followed by the line count and for each line the product id, product name,
+ * quantity and unit price in cents. The customer id is written right after the
+ * order id so indexers can read it without decoding the rest; it is zig-zag encoded,
+ * as guests have negative ids. Events of the legacy types 1 and 2, written before
+ * that, hold the id unsigned and are still decoded. Order ids and product
+ * ids are never reissued after a restart, and products restored from sessions keep
+ * theirs, so events written by an earlier process still name the same orders and products.
+ */
+public final class OrderEventCodec {
+    /**
+     * Event type of a completed checkout
+     */
+    public static final byte ORDER_PLACED = 3;
+
+    /**
+     * Event type of a completed checkout with a promotional discount
+     */
+    public static final byte DISCOUNTED_ORDER_PLACED = 4;
+
+    // Earlier types holding the customer id as an unsigned varint
+    private static final byte LEGACY_ORDER_PLACED = 1;
+    private static final byte LEGACY_DISCOUNTED_ORDER_PLACED = 2;
+
+    private OrderEventCodec() {
+        // Utility class
+    }
+
+    /**
+     * Get the exact encoded size of an order
+     * @param order the order
+     * @return the number of bytes {@link #encode} will write
+     */
+    public static int encodedSize(Order order) {
+        int size = 1
+                + (order.getDiscount() != 0 ? Varint.sizeOfSigned(toCents(order.getDiscount())) : 0)
+                + Varint.sizeOfUnsigned(order.getOrderId())
+                + Varint.sizeOfSigned(order.getCustomerId())
+                + Varint.sizeOfString(order.getCustomerName())
+                + Varint.sizeOfUnsigned(order.getTimestamp())
+                + Varint.sizeOfSigned(toCents(order.getSubtotal()))
+                + Varint.sizeOfSigned(toCents(order.getShippingFee()))
+                + Varint.sizeOfSigned(toCents(order.getTotalAmount()))
+                + Varint.sizeOfUnsigned(order.getLines().size());
+        for (OrderLine line : order.getLines()) {
+            size += Varint.sizeOfUnsigned(line.getProductId())
+                    + Varint.sizeOfString(line.getProductName())
+                    + Varint.sizeOfUnsigned(line.getQuantity())
+                    + Varint.sizeOfSigned(toCents(line.getUnitPrice()));
+        }
+        return size;
+    }
+
+    /**
+     * Encode an order placed event
+     * @param order the order
+     * @param buffer the target buffer with at least {@link #encodedSize} bytes remaining
+     */
+    public static void encode(Order order, ByteBuffer buffer) {
+        boolean discounted = order.getDiscount() != 0;
+        buffer.put(discounted ? DISCOUNTED_ORDER_PLACED : ORDER_PLACED);
+        Varint.writeUnsigned(buffer, order.getOrderId());
+        Varint.writeSigned(buffer, order.getCustomerId());
+        Varint.writeString(buffer, order.getCustomerName());
+        Varint.writeUnsigned(buffer, order.getTimestamp());
+        Varint.writeSigned(buffer, toCents(order.getSubtotal()));
+        Varint.writeSigned(buffer, toCents(order.getShippingFee()));
+        Varint.writeSigned(buffer, toCents(order.getTotalAmount()));
+        if (discounted) {
+            Varint.writeSigned(buffer, toCents(order.getDiscount()));
+        }
+        Varint.writeUnsigned(buffer, order.getLines().size());
+        for (OrderLine line : order.getLines()) {
+            Varint.writeUnsigned(buffer, line.getProductId());
+            Varint.writeString(buffer, line.getProductName());
+            Varint.writeUnsigned(buffer, line.getQuantity());
+            Varint.writeSigned(buffer, toCents(line.getUnitPrice()));
+        }
+    }
+
+    /**
+     * Decode an order placed event
+     * @param buffer the source buffer positioned at the event type byte
+     * @return the decoded order
+     * @throws IllegalArgumentException if the event type is unknown or the data is malformed
+     */
+    public static Order decode(ByteBuffer buffer) {
+        byte type = requireType(buffer.get());
+        long orderId = Varint.readUnsigned(buffer);
+        long customerId = readCustomerId(buffer, type);
+        String customerName = Varint.readString(buffer);
+        long timestamp = Varint.readUnsigned(buffer);
+        double subtotal = fromCents(Varint.readSigned(buffer));
+        double shippingFee = fromCents(Varint.readSigned(buffer));
+        double totalAmount = fromCents(Varint.readSigned(buffer));
+        boolean discounted = type == DISCOUNTED_ORDER_PLACED || type == LEGACY_DISCOUNTED_ORDER_PLACED;
+        double discount = discounted ? fromCents(Varint.readSigned(buffer)) : 0.0;
+        int lineCount = Varint.readUnsignedInt(buffer);
+        List<OrderLine> lines = new ArrayList<>(Math.min(lineCount, buffer.remaining()));
+        for (int i = 0; i < lineCount; i++) {
+            long productId = Varint.readUnsigned(buffer);
+            String productName = Varint.readString(buffer);
+            int quantity = Varint.readUnsignedInt(buffer);
+            double unitPrice = fromCents(Varint.readSigned(buffer));
+            lines.add(new OrderLine(productId, productName, quantity, unitPrice));
+        }
+        return new Order(orderId, customerId, customerName, timestamp, lines, subtotal, discount, shippingFee, totalAmount);
+    }
+
+    /**
+     * Read only the customer id of an encoded event, leaving the buffer position untouched
+     * @param buffer the source buffer positioned at the event type byte
+     * @return the customer id
+     */
+    public static long peekCustomerId(ByteBuffer buffer) {
+        ByteBuffer view = buffer.duplicate();
+        byte type = requireType(view.get());
+        Varint.readUnsigned(view);
+        return readCustomerId(view, type);
+    }
+
+    private static long readCustomerId(ByteBuffer buffer, byte type) {
+        return type == ORDER_PLACED || type == DISCOUNTED_ORDER_PLACED
+                ? Varint.readSigned(buffer) : Varint.readUnsigned(buffer);
+    }
+
+    private static byte requireType(byte type) {
+        if (type != ORDER_PLACED && type != DISCOUNTED_ORDER_PLACED
+                && type != LEGACY_ORDER_PLACED && type != LEGACY_DISCOUNTED_ORDER_PLACED) {
+            throw new IllegalArgumentException("Unknown order event type: " + type);
+        }
+        return type;
+    }
+
+    private static long toCents(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    private static double fromCents(long cents) {
+        return cents / 100.0;
+    }
+}
@@ -0,0 +1,836 @@
+package com.fawry.ecommerce.order;
+
+import com.fawry.ecommerce.service.CheckoutListener;
+import com.fawry.ecommerce.util.Varint;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, segmented event log of completed orders
+ *
+ * Every checkout is appended as one record {@code [varint length][crc32][payload]} to the
+ * active segment file; segments roll once they reach the configured size and are named
+ * after the offset of their first event. Each segment keeps a sparse offset index with
+ * one entry every {@code indexIntervalBytes}, so reading an event seeks to the nearest
+ * indexed record and scans forward over at most one interval. Each segment lists the
+ * offsets of every customer's events, so a customer's history is read back without
+ * scanning the log.
+ *
+ * When a segment is sealed its sparse index and customer postings, sorted by customer
+ * id, are written to a companion {@code .idx} file, so reopening the store only scans
+ * the active segment. Only the active segment keeps its postings on the heap; sealed
+ * segments keep every 32nd customer id with its file position
+ * and read one block of the index file per lookup. A torn record at the tail of a
+ * segment, e.g. after a crash, is truncated on open.
+ *
+ * Orders completing checkout are handed to a single writer thread through a bounded
+ * queue, so checkout threads neither wait for the disk nor contend for the store; they
+ * only block while the queue is full. {@link #flush()} waits for the orders handed
+ * over before it was called.
+ */
+public class OrderHistoryStore implements CheckoutListener, Closeable {
+    public static final int DEFAULT_SEGMENT_BYTES = 64 << 20;
+    public static final int DEFAULT_INDEX_INTERVAL_BYTES = 4096;
+    public static final int DEFAULT_QUEUE_CAPACITY = 8192;
+
+    private static final String LOG_SUFFIX = ".log";
+    private static final String INDEX_SUFFIX = ".idx";
+    // Bumped when postings became sorted with zig-zag customer ids; older files are rebuilt
+    private static final int INDEX_MAGIC = 0x4F484959;
+    private static final int CRC_BYTES = 4;
+    private static final int MAX_LENGTH_BYTES = 5;
+    private static final int POSTINGS_BLOCK = 32;
+    private static final int MAX_BATCH = 256;
+    private static final long[] NO_OFFSETS = new long[0];
+    // Queued by close after the last order the writer accepts
+    private static final Order STOP = new Order(-1, 0, "", 0, List.of(), 0, 0, 0);
+
+    private final Path directory;
+    private final int maxSegmentBytes;
+    private final int indexIntervalBytes;
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final CRC32 writeCrc = new CRC32();
+    private final BlockingQueue<Order> queue = new ArrayBlockingQueue<>(DEFAULT_QUEUE_CAPACITY);
+    private final AtomicLong handedOver = new AtomicLong();
+    private final Object progress = new Object();
+    private final LongAdder failedAppends = new LongAdder();
+    private final Thread writer;
+    private volatile CheckoutListener.FailureHandler failureHandler = CheckoutListener.FailureHandler.PRINT;
+    private ByteBuffer writeBuffer = ByteBuffer.allocate(4096);
+    private Segment active;
+    private long written;
+    private volatile long nextOffset;
+    private volatile boolean closing;
+    private volatile boolean closed;
+
+    /**
+     * Open or create a store with default segment and index sizes
+     * @param directory the directory holding the segment files
+     * @throws IOException if the directory cannot be created or read
+     */
+    public OrderHistoryStore(Path directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_BYTES, DEFAULT_INDEX_INTERVAL_BYTES);
+    }
+
+    /**
+     * Open or create a store
+     * @param directory the directory holding the segment files
+     * @param maxSegmentBytes the size after which the active segment is rolled
+     * @param indexIntervalBytes the number of bytes between two sparse index entries
+     * @throws IOException if the directory cannot be created or read
+     * @throws IllegalArgumentException if a size is not positive
+     */
+    public OrderHistoryStore(Path directory, int maxSegmentBytes, int indexIntervalBytes) throws IOException {
+        if (maxSegmentBytes <= 0 || indexIntervalBytes <= 0) {
+            throw new IllegalArgumentException("Segment and index interval sizes must be greater than 0");
+        }
+        this.directory = directory;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.indexIntervalBytes = indexIntervalBytes;
+        Files.createDirectories(directory);
+        recover();
+        this.writer = new Thread(this::drainQueue, "order-history-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Append an order to the log
+     * @param order the completed order
+     * @return the offset assigned to the event
+     * @throws IOException if the event cannot be written
+     */
+    public synchronized long append(Order order) throws IOException {
+        ensureOpen();
+        return appendRecord(order);
+    }
+
+    private long appendRecord(Order order) throws IOException {
+        int payloadSize = OrderEventCodec.encodedSize(order);
+        int recordSize = Varint.sizeOfUnsigned(payloadSize) + CRC_BYTES + payloadSize;
+        if (active.size > 0 && (long) active.size + recordSize > maxSegmentBytes) {
+            roll();
+        }
+
+        if (writeBuffer.capacity() < recordSize) {
+            writeBuffer = ByteBuffer.allocate(Integer.highestOneBit(recordSize) << 1);
+        }
+        ByteBuffer buffer = writeBuffer;
+        buffer.clear();
+        Varint.writeUnsigned(buffer, payloadSize);
+        int crcPosition = buffer.position();
+        buffer.putInt(0);
+        int payloadStart = buffer.position();
+        OrderEventCodec.encode(order, buffer);
+        writeCrc.reset();
+        writeCrc.update(buffer.array(), payloadStart, payloadSize);
+        buffer.putInt(crcPosition, (int) writeCrc.getValue());
+        buffer.flip();
+
+        int position = active.size;
+        while (buffer.hasRemaining()) {
+            active.channel.write(buffer, position + buffer.position());
+        }
+
+        long offset = nextOffset;
+        active.recordAppended(offset, position, recordSize, indexIntervalBytes);
+        nextOffset = offset + 1;
+        // Listed only once readable, so history readers never see an unwritten offset
+        active.postings.computeIfAbsent(order.getCustomerId(), id -> new OffsetList()).add(offset);
+        return offset;
+    }
+
+    /**
+     * Hand an order to the writer thread as it completes checkout
+     * Blocks only while the queue is full; write failures go to the failure handler
+     * @param order the completed order
+     * @throws IllegalStateException if the store is closed or the thread is interrupted while waiting
+     */
+    @Override
+    public void onCheckoutCompleted(Order order) {
+        ensureOpen();
+        handedOver.incrementAndGet();
+        try {
+            queue.put(order);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            markWritten(1);
+            throw new IllegalStateException("Interrupted while recording order " + order.getOrderId(), e);
+        }
+        // Close may have stopped the writer before it reached this order
+        if (closing && queue.remove(order)) {
+            markWritten(1);
+            throw new IllegalStateException("Order history store is closed");
+        }
+    }
+
+    /**
+     * Set the receiver of orders the writer thread failed to append, printing to {@code System.err} by default
+     * @param handler the failure handler
+     * @throws IllegalArgumentException if the handler is null
+     */
+    public void setFailureHandler(CheckoutListener.FailureHandler handler) {
+        if (handler == null) {
+            throw new IllegalArgumentException("Failure handler must not be null");
+        }
+        this.failureHandler = handler;
+    }
+
+    /**
+     * Get the number of orders handed over at checkout that could not be appended
+     * @return the failed append count
+     */
+    public long getFailedAppendCount() {
+        return failedAppends.sum();
+    }
+
+    /**
+     * Read a single event
+     * @param offset the event offset
+     * @return the order stored at that offset
+     * @throws IOException if the segment cannot be read
+     * @throws IllegalArgumentException if the offset has not been written
+     */
+    public Order read(long offset) throws IOException {
+        ensureOpen();
+        if (offset < 0 || offset >= nextOffset) {
+            throw new IllegalArgumentException("Unknown order event offset: " + offset);
+        }
+        Segment segment = segments.floorEntry(offset).getValue();
+        int relative = (int) (offset - segment.baseOffset);
+        long indexed = segment.lookup(relative);
+        int current = (int) (indexed >>> 32);
+        RecordReader reader = new RecordReader(segment.channel, (int) indexed, segment.size, indexIntervalBytes * 2);
+        ByteBuffer payload;
+        while ((payload = reader.next()) != null) {
+            if (current++ == relative) {
+                return OrderEventCodec.decode(payload);
+            }
+        }
+        throw new IOException("Order event " + offset + " is missing from segment " + segment.logPath);
+    }
+
+    /**
+     * Read every order placed by a customer, oldest first
+     * @param customerId the customer id
+     * @return the customer's orders
+     * @throws IOException if a segment cannot be read
+     */
+    public List<Order> historyOf(long customerId) throws IOException {
+        ensureOpen();
+        List<Order> history = new ArrayList<>();
+        for (Segment segment : segments.values()) {
+            for (long offset : segment.offsetsOf(customerId)) {
+                history.add(read(offset));
+            }
+        }
+        return history;
+    }
+
+    /**
+     * Get the offset the next appended event will receive
+     * @return the next offset, equal to the number of stored events
+     */
+    public long nextOffset() {
+        return nextOffset;
+    }
+
+    /**
+     * Get the number of segment files
+     * @return the segment count
+     */
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Wait for the orders handed over at checkout so far, then force appended events to disk
+     * @throws IOException if the active segment cannot be synced or the wait is interrupted
+     */
+    public void flush() throws IOException {
+        ensureOpen();
+        long target = handedOver.get();
+        synchronized (progress) {
+            while (written < target && writer.isAlive()) {
+                try {
+                    progress.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for queued orders");
+                }
+            }
+        }
+        synchronized (this) {
+            ensureOpen();
+            active.channel.force(false);
+        }
+    }
+
+    /**
+     * Write the orders already handed over, stop the writer thread and close the segments
+     * @throws IOException if the active segment cannot be synced
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closing) {
+                return;
+            }
+            closing = true;
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(STOP);
+                writer.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        try {
+            synchronized (this) {
+                closed = true;
+                active.channel.force(true);
+                for (Segment segment : segments.values()) {
+                    segment.close();
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void ensureOpen() {
+        if (closing) {
+            throw new IllegalStateException("Order history store is closed");
+        }
+    }
+
+    /**
+     * Append queued orders in batches until close queues {@link #STOP}
+     */
+    private void drainQueue() {
+        List<Order> batch = new ArrayList<>(MAX_BATCH);
+        try {
+            boolean stop = false;
+            while (!stop) {
+                try {
+                    batch.add(queue.take());
+                } catch (InterruptedException e) {
+                    continue;
+                }
+                queue.drainTo(batch, MAX_BATCH - 1);
+                stop = writeBatch(batch);
+                batch.clear();
+            }
+        } finally {
+            synchronized (progress) {
+                progress.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Append a batch under one lock, reporting the orders that failed
+     * @return true if the batch held {@link #STOP}
+     */
+    private boolean writeBatch(List<Order> batch) {
+        boolean stop = false;
+        int count = 0;
+        List<Order> failedOrders = null;
+        List<Exception> failures = null;
+        synchronized (this) {
+            for (Order order : batch) {
+                if (order == STOP) {
+                    stop = true;
+                    continue;
+                }
+                count++;
+                try {
+                    appendRecord(order);
+                } catch (IOException | RuntimeException e) {
+                    if (failedOrders == null) {
+                        failedOrders = new ArrayList<>();
+                        failures = new ArrayList<>();
+                    }
+                    failedOrders.add(order);
+                    failures.add(e);
+                }
+            }
+        }
+        for (int i = 0; failedOrders != null && i < failedOrders.size(); i++) {
+            Order order = failedOrders.get(i);
+            Exception e = failures.get(i);
+            failedAppends.increment();
+            try {
+                failureHandler.onListenerFailed(this, order, e instanceof RuntimeException ? (RuntimeException) e
+                        : new UncheckedIOException("Failed to record order " + order.getOrderId(), (IOException) e));
+            } catch (RuntimeException ignored) {
+                // A failing handler must not stop the writer
+            }
+        }
+        markWritten(count);
+        return stop;
+    }
+
+    private void markWritten(int count) {
+        synchronized (progress) {
+            written += count;
+            progress.notifyAll();
+        }
+    }
+
+    private void roll() throws IOException {
+        active.seal();
+        active = Segment.create(directory, nextOffset);
+        segments.put(active.baseOffset, active);
+    }
+
+    private void recover() throws IOException {
+        List<Long> baseOffsets = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(LOG_SUFFIX))
+                    .forEach(name -> baseOffsets.add(Long.parseLong(name.substring(0, name.length() - LOG_SUFFIX.length()))));
+        }
+        baseOffsets.sort(null);
+        if (baseOffsets.isEmpty()) {
+            active = Segment.create(directory, 0);
+            segments.put(0L, active);
+            return;
+        }
+        for (int i = 0; i < baseOffsets.size(); i++) {
+            boolean last = i == baseOffsets.size() - 1;
+            Segment segment = Segment.open(directory, baseOffsets.get(i));
+            if (last) {
+                // The active segment may have grown after an earlier seal attempt
+                Files.deleteIfExists(segment.indexPath);
+            }
+            if (last || !segment.loadIndex()) {
+                segment.scan(indexIntervalBytes);
+                if (!last) {
+                    segment.seal();
+                }
+            }
+            segments.put(segment.baseOffset, segment);
+            nextOffset = segment.baseOffset + segment.recordCount;
+            active = segment;
+        }
+    }
+
+    /**
+     * One log file with its in-memory sparse index
+     */
+    private static final class Segment {
+        final long baseOffset;
+        final Path logPath;
+        final Path indexPath;
+        final FileChannel channel;
+        // Postings of the active segment; sealed segments read theirs from the index file
+        final Map<Long, OffsetList> postings = new ConcurrentHashMap<>();
+        private volatile SealedPostings sealedPostings;
+        volatile int size;
+        int recordCount;
+        private int[] indexOffsets = new int[16];
+        private int[] indexPositions = new int[16];
+        private volatile int indexCount;
+        private int bytesSinceIndex;
+
+        private Segment(long baseOffset, Path logPath, Path indexPath, FileChannel channel) {
+            this.baseOffset = baseOffset;
+            this.logPath = logPath;
+            this.indexPath = indexPath;
+            this.channel = channel;
+        }
+
+        static Segment create(Path directory, long baseOffset) throws IOException {
+            Path log = directory.resolve(fileName(baseOffset, LOG_SUFFIX));
+            FileChannel channel = FileChannel.open(log, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            return new Segment(baseOffset, log, directory.resolve(fileName(baseOffset, INDEX_SUFFIX)), channel);
+        }
+
+        static Segment open(Path directory, long baseOffset) throws IOException {
+            Path log = directory.resolve(fileName(baseOffset, LOG_SUFFIX));
+            FileChannel channel = FileChannel.open(log, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            return new Segment(baseOffset, log, directory.resolve(fileName(baseOffset, INDEX_SUFFIX)), channel);
+        }
+
+        private static String fileName(long baseOffset, String suffix) {
+            return String.format("%020d%s", baseOffset, suffix);
+        }
+
+        /**
+         * Get the offsets of a customer's events in this segment, oldest first
+         */
+        long[] offsetsOf(long customerId) throws IOException {
+            OffsetList offsets = postings.get(customerId);
+            if (offsets != null) {
+                return offsets.snapshot();
+            }
+            // Sealing publishes the index file before clearing the postings
+            SealedPostings sealed = sealedPostings;
+            return sealed == null ? NO_OFFSETS : sealed.offsetsOf(customerId);
+        }
+
+        void close() throws IOException {
+            channel.close();
+            SealedPostings sealed = sealedPostings;
+            if (sealed != null) {
+                sealed.channel.close();
+            }
+        }
+
+        void recordAppended(long offset, int position, int recordSize, int indexInterval) {
+            if (recordCount == 0 || bytesSinceIndex >= indexInterval) {
+                addIndexEntry((int) (offset - baseOffset), position);
+                bytesSinceIndex = 0;
+            }
+            bytesSinceIndex += recordSize;
+            recordCount++;
+            size = position + recordSize;
+        }
+
+        private synchronized void addIndexEntry(int relativeOffset, int position) {
+            if (indexCount == indexOffsets.length) {
+                indexOffsets = Arrays.copyOf(indexOffsets, indexCount * 2);
+                indexPositions = Arrays.copyOf(indexPositions, indexCount * 2);
+            }
+            indexOffsets[indexCount] = relativeOffset;
+            indexPositions[indexCount] = position;
+            indexCount++;
+        }
+
+        /**
+         * Find the closest indexed record at or before a relative offset
+         * @return the indexed relative offset in the high 32 bits and its file position in the low 32 bits
+         */
+        synchronized long lookup(int relativeOffset) {
+            int index = Arrays.binarySearch(indexOffsets, 0, indexCount, relativeOffset);
+            if (index < 0) {
+                index = -index - 2;
+            }
+            return ((long) indexOffsets[index] << 32) | (indexPositions[index] & 0xFFFFFFFFL);
+        }
+
+        /**
+         * Rebuild the sparse index and postings by reading every record, truncating a torn tail
+         */
+        void scan(int indexInterval) throws IOException {
+            int fileSize = (int) Math.min(channel.size(), Integer.MAX_VALUE);
+            RecordReader reader = new RecordReader(channel, 0, fileSize, 64 * 1024);
+            ByteBuffer payload;
+            int position = 0;
+            while ((payload = reader.next()) != null) {
+                long offset = baseOffset + recordCount;
+                int next = (int) reader.position();
+                recordAppended(offset, position, next - position, indexInterval);
+                postings.computeIfAbsent(OrderEventCodec.peekCustomerId(payload), id -> new OffsetList()).add(offset);
+                position = next;
+            }
+            if (position < fileSize) {
+                channel.truncate(position);
+            }
+            size = position;
+        }
+
+        /**
+         * Persist the sparse index and customer postings so the segment does not need a rescan
+         */
+        void seal() throws IOException {
+            channel.force(true);
+            int capacity = 40 + indexCount * 8 + postings.size() * (Varint.MAX_LONG_BYTES + 5) + recordCount * 5;
+            ByteBuffer buffer = ByteBuffer.allocate(capacity);
+            buffer.putInt(INDEX_MAGIC);
+            buffer.putLong(baseOffset);
+            buffer.putInt(recordCount);
+            buffer.putInt(size);
+            buffer.putInt(indexCount);
+            for (int i = 0; i < indexCount; i++) {
+                buffer.putInt(indexOffsets[i]);
+                buffer.putInt(indexPositions[i]);
+            }
+            long[] customerIds = new long[postings.size()];
+            int count = 0;
+            for (long customerId : postings.keySet()) {
+                customerIds[count++] = customerId;
+            }
+            Arrays.sort(customerIds);
+            long[] blockIds = new long[(count + POSTINGS_BLOCK - 1) / POSTINGS_BLOCK];
+            int[] blockPositions = new int[blockIds.length];
+            buffer.putInt(count);
+            for (int i = 0; i < count; i++) {
+                if (i % POSTINGS_BLOCK == 0) {
+                    blockIds[i / POSTINGS_BLOCK] = customerIds[i];
+                    blockPositions[i / POSTINGS_BLOCK] = buffer.position();
+                }
+                long[] offsets = postings.get(customerIds[i]).snapshot();
+                Varint.writeSigned(buffer, customerIds[i]);
+                Varint.writeUnsigned(buffer, offsets.length);
+                long previous = baseOffset;
+                for (long offset : offsets) {
+                    Varint.writeUnsigned(buffer, offset - previous);
+                    previous = offset;
+                }
+            }
+            int postingsEnd = buffer.position();
+            CRC32 crc = new CRC32();
+            crc.update(buffer.array(), 0, buffer.position());
+            buffer.putInt((int) crc.getValue());
+            buffer.flip();
+            try (FileChannel out = FileChannel.open(indexPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                out.force(true);
+            }
+            sealedPostings = new SealedPostings(FileChannel.open(indexPath, StandardOpenOption.READ),
+                    baseOffset, blockIds, blockPositions, postingsEnd);
+            postings.clear();
+        }
+
+        /**
+         * Load a sealed segment's index file
+         * @return true if the index was present and consistent with the log, false if a rescan is needed
+         */
+        boolean loadIndex() throws IOException {
+            if (!Files.exists(indexPath)) {
+                return false;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(indexPath));
+            if (buffer.remaining() < 28) {
+                return false;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(buffer.array(), 0, buffer.limit() - CRC_BYTES);
+            if ((int) crc.getValue() != buffer.getInt(buffer.limit() - CRC_BYTES)
+                    || buffer.getInt() != INDEX_MAGIC || buffer.getLong() != baseOffset) {
+                return false;
+            }
+            int records = buffer.getInt();
+            int bytes = buffer.getInt();
+            if (bytes != channel.size()) {
+                return false;
+            }
+            int entries = buffer.getInt();
+            for (int i = 0; i < entries; i++) {
+                addIndexEntry(buffer.getInt(), buffer.getInt());
+            }
+            int customers = buffer.getInt();
+            long[] blockIds = new long[(customers + POSTINGS_BLOCK - 1) / POSTINGS_BLOCK];
+            int[] blockPositions = new int[blockIds.length];
+            for (int i = 0; i < customers; i++) {
+                int position = buffer.position();
+                long customerId = Varint.readSigned(buffer);
+                if (i % POSTINGS_BLOCK == 0) {
+                    blockIds[i / POSTINGS_BLOCK] = customerId;
+                    blockPositions[i / POSTINGS_BLOCK] = position;
+                }
+                int count = Varint.readUnsignedInt(buffer);
+                for (int j = 0; j < count; j++) {
+                    Varint.readUnsigned(buffer);
+                }
+            }
+            sealedPostings = new SealedPostings(FileChannel.open(indexPath, StandardOpenOption.READ),
+                    baseOffset, blockIds, blockPositions, buffer.position());
+            recordCount = records;
+            size = bytes;
+            return true;
+        }
+    }
+
+    /**
+     * Sparse directory over the customer postings of a sealed segment's index file
+     */
+    private static final class SealedPostings {
+        final FileChannel channel;
+        private final long baseOffset;
+        private final long[] blockIds;
+        private final int[] blockPositions;
+        private final int end;
+
+        SealedPostings(FileChannel channel, long baseOffset, long[] blockIds, int[] blockPositions, int end) {
+            this.channel = channel;
+            this.baseOffset = baseOffset;
+            this.blockIds = blockIds;
+            this.blockPositions = blockPositions;
+            this.end = end;
+        }
+
+        /**
+         * Read the block that would hold a customer and decode the customer's offsets
+         */
+        long[] offsetsOf(long customerId) throws IOException {
+            int block = Arrays.binarySearch(blockIds, customerId);
+            if (block < 0) {
+                block = -block - 2;
+            }
+            if (block < 0) {
+                return NO_OFFSETS;
+            }
+            int start = blockPositions[block];
+            int stop = block + 1 < blockPositions.length ? blockPositions[block + 1] : end;
+            ByteBuffer buffer = ByteBuffer.allocate(stop - start);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) < 0) {
+                    throw new IOException("Customer postings are truncated");
+                }
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                long id = Varint.readSigned(buffer);
+                int count = Varint.readUnsignedInt(buffer);
+                if (id > customerId) {
+                    break;
+                }
+                long[] offsets = id == customerId ? new long[count] : null;
+                long offset = baseOffset;
+                for (int i = 0; i < count; i++) {
+                    offset += Varint.readUnsigned(buffer);
+                    if (offsets != null) {
+                        offsets[i] = offset;
+                    }
+                }
+                if (offsets != null) {
+                    return offsets;
+                }
+            }
+            return NO_OFFSETS;
+        }
+    }
+
+    /**
+     * Buffered sequential reader over the records of one segment
+     */
+    private static final class RecordReader {
+        private final FileChannel channel;
+        private final long limit;
+        private ByteBuffer buffer;
+        private long readPosition;
+
+        RecordReader(FileChannel channel, long position, long limit, int bufferSize) {
+            this.channel = channel;
+            this.limit = limit;
+            this.readPosition = position;
+            this.buffer = ByteBuffer.allocate(bufferSize);
+            this.buffer.limit(0);
+        }
+
+        /**
+         * Get the file position just after the last record returned
+         */
+        long position() {
+            return readPosition - buffer.remaining();
+        }
+
+        /**
+         * Read the next record
+         * @return the payload, valid until the next call, or null at the end of the segment or at a torn record
+         */
+        ByteBuffer next() throws IOException {
+            if (!fill(1)) {
+                return null;
+            }
+            int start = buffer.position();
+            int length = 0;
+            int lengthBytes = 0;
+            while (true) {
+                if (lengthBytes == MAX_LENGTH_BYTES || !fill(lengthBytes + 1)) {
+                    return null;
+                }
+                start = buffer.position();
+                byte b = buffer.get(start + lengthBytes);
+                length |= (b & 0x7F) << (7 * lengthBytes);
+                lengthBytes++;
+                if (b >= 0) {
+                    break;
+                }
+            }
+            if (length < 0 || !fill(lengthBytes + CRC_BYTES + length)) {
+                return null;
+            }
+            start = buffer.position();
+            int payloadStart = start + lengthBytes + CRC_BYTES;
+            CRC32 crc = new CRC32();
+            crc.update(buffer.array(), payloadStart, length);
+            if ((int) crc.getValue() != buffer.getInt(start + lengthBytes)) {
+                return null;
+            }
+            ByteBuffer payload = buffer.duplicate();
+            payload.position(payloadStart).limit(payloadStart + length);
+            buffer.position(payloadStart + length);
+            return payload;
+        }
+
+        private boolean fill(int needed) throws IOException {
+            if (buffer.remaining() >= needed) {
+                return true;
+            }
+            if (readPosition + needed - buffer.remaining() > limit) {
+                return false;
+            }
+            if (buffer.capacity() < needed) {
+                ByteBuffer grown = ByteBuffer.allocate(Integer.highestOneBit(needed) << 1);
+                grown.put(buffer);
+                buffer = grown;
+            } else {
+                buffer.compact();
+            }
+            while (buffer.position() < needed) {
+                int toRead = (int) Math.min(buffer.capacity() - buffer.position(), limit - readPosition);
+                buffer.limit(buffer.position() + toRead);
+                int read = channel.read(buffer, readPosition);
+                if (read <= 0) {
+                    buffer.flip();
+                    return false;
+                }
+                readPosition += read;
+            }
+            buffer.flip();
+            return true;
+        }
+    }
+
+    /**
+     * Growable, thread-safe list of event offsets
+     */
+    private static final class OffsetList {
+        private long[] offsets = new long[4];
+        private int size;
+
+        synchronized void add(long offset) {
+            if (size == offsets.length) {
+                offsets = Arrays.copyOf(offsets, size * 2);
+            }
+            offsets[size++] = offset;
+        }
+
+        synchronized long[] snapshot() {
+            return Arrays.copyOf(offsets, size);
+        }
+    }
+}
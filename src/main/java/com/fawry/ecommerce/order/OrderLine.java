@@ -0,0 +1,77 @@
+package com.fawry.ecommerce.order;
+
+/**
+ * Immutable line of a completed order
+ */
+public final class OrderLine {
+    private final long productId;
+    private final String productName;
+    private final int quantity;
+    private final double unitPrice;
+
+    /**
+     * Constructor for OrderLine
+     * @param productId the id of the ordered product
+     * @param productName the product name at order time
+     * @param quantity the ordered quantity
+     * @param unitPrice the unit price at order time
+     */
+    public OrderLine(long productId, String productName, int quantity, double unitPrice) {
+        this.productId = productId;
+        this.productName = productName;
+        this.quantity = quantity;
+        this.unitPrice = unitPrice;
+    }
+
+    public long getProductId() {
+        return productId;
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public double getUnitPrice() {
+        return unitPrice;
+    }
+
+    /**
+     * Get the total price of this line
+     * @return the total price (unit price * quantity)
+     */
+    public double getTotalPrice() {
+        return unitPrice * quantity;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof OrderLine)) {
+            return false;
+        }
+        OrderLine other = (OrderLine) o;
+        return productId == other.productId
+                && quantity == other.quantity
+                && Double.compare(unitPrice, other.unitPrice) == 0
+                && productName.equals(other.productName);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Long.hashCode(productId);
+        result = 31 * result + productName.hashCode();
+        result = 31 * result + quantity;
+        return 31 * result + Double.hashCode(unitPrice);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%dx %s @ $%.2f", quantity, productName, unitPrice);
+    }
+}
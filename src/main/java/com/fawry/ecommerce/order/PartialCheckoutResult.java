@@ -0,0 +1,51 @@
+package com.fawry.ecommerce.order;
+
+import java.util.List;
+
+/**
+ * Immutable result of a partial-fulfillment checkout: the order placed for the lines
+ * that could be fulfilled, if any, and the outcome of every cart line
+ */
+public final class PartialCheckoutResult {
+    private final Order order;
+    private final List<LineOutcome> lines;
+
+    /**
+     * Constructor for PartialCheckoutResult
+     * @param order the placed order, or null if no line could be fulfilled
+     * @param lines the outcome of every cart line, in cart order
+     */
+    public PartialCheckoutResult(Order order, List<LineOutcome> lines) {
+        this.order = order;
+        this.lines = List.copyOf(lines);
+    }
+
+    /**
+     * Get the placed order
+     * @return the order, or null if nothing was charged
+     */
+    public Order getOrder() {
+        return order;
+    }
+
+    public boolean hasOrder() {
+        return order != null;
+    }
+
+    public List<LineOutcome> getLines() {
+        return lines;
+    }
+
+    /**
+     * Check if every line was fulfilled in full
+     * @return true if nothing was short-shipped, expired or rejected
+     */
+    public boolean isFullyFulfilled() {
+        for (LineOutcome line : lines) {
+            if (line.getStatus() != FulfillmentStatus.FULFILLED) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
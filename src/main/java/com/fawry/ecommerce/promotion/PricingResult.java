@@ -0,0 +1,88 @@
+package com.fawry.ecommerce.promotion;
+
+/**
+ * Immutable outcome of evaluating a cart against a promotion table
+ */
+public final class PricingResult {
+    private final double subtotal;
+    private final double[] lineDiscounts;
+    private final String[] linePromotionIds;
+    private final double basketDiscount;
+    private final String basketPromotionId;
+
+    /**
+     * Constructor for PricingResult
+     * @param subtotal the subtotal before discounts
+     * @param lineDiscounts the discount of each cart line, in cart order
+     * @param linePromotionIds the promotion applied to each cart line, or null entries for none
+     * @param basketDiscount the basket level discount
+     * @param basketPromotionId the applied basket promotion, or null for none
+     */
+    PricingResult(double subtotal, double[] lineDiscounts, String[] linePromotionIds,
+                  double basketDiscount, String basketPromotionId) {
+        this.subtotal = subtotal;
+        this.lineDiscounts = lineDiscounts;
+        this.linePromotionIds = linePromotionIds;
+        this.basketDiscount = basketDiscount;
+        this.basketPromotionId = basketPromotionId;
+    }
+
+    public double getSubtotal() {
+        return subtotal;
+    }
+
+    public int getLineCount() {
+        return lineDiscounts.length;
+    }
+
+    /**
+     * Get the discount granted on a cart line
+     * @param index the line index in cart order
+     * @return the line discount
+     */
+    public double getLineDiscount(int index) {
+        return lineDiscounts[index];
+    }
+
+    /**
+     * Get the promotion applied to a cart line
+     * @param index the line index in cart order
+     * @return the promotion id, or null if no promotion applied
+     */
+    public String getLinePromotionId(int index) {
+        return linePromotionIds[index];
+    }
+
+    public double getBasketDiscount() {
+        return basketDiscount;
+    }
+
+    public String getBasketPromotionId() {
+        return basketPromotionId;
+    }
+
+    /**
+     * Get the sum of all line and basket discounts
+     * @return the total discount
+     */
+    public double getTotalDiscount() {
+        double total = basketDiscount;
+        for (double discount : lineDiscounts) {
+            total += discount;
+        }
+        return total;
+    }
+
+    /**
+     * Get the subtotal after all discounts
+     * @return the discounted subtotal
+     */
+    public double getDiscountedSubtotal() {
+        return subtotal - getTotalDiscount();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Subtotal: $%.2f, Discount: $%.2f", subtotal, getTotalDiscount());
+    }
+}
@@ -0,0 +1,183 @@
+package com.fawry.ecommerce.promotion;
+
+import com.fawry.ecommerce.model.CartItem;
+import com.fawry.ecommerce.model.product.ProductType;
+
+/**
+ * Immutable declaration of a promotion
+ *
+ * Promotions are plain data created through the static factory methods and compiled
+ * into a {@link PromotionTable} for evaluation. Line promotions never stack: each cart
+ * line receives the single best discount among the promotions that apply to it.
+ */
+public final class Promotion {
+    /**
+     * Kind of promotion
+     */
+    public enum Type {
+        BUY_X_GET_Y,
+        PERCENT_OFF,
+        CATEGORY_COUPON,
+        BASKET_THRESHOLD
+    }
+
+    private final String id;
+    private final Type type;
+    private final long productId;
+    private final ProductType category;
+    private final String couponCode;
+    private final int buyQuantity;
+    private final int freeQuantity;
+    private final double percentOff;
+    private final double minimumSubtotal;
+    private final double amountOff;
+
+    private Promotion(String id, Type type, long productId, ProductType category, String couponCode,
+                      int buyQuantity, int freeQuantity, double percentOff,
+                      double minimumSubtotal, double amountOff) {
+        if (id == null || id.isBlank()) {
+            throw new IllegalArgumentException("Promotion id must not be blank");
+        }
+        this.id = id;
+        this.type = type;
+        this.productId = productId;
+        this.category = category;
+        this.couponCode = couponCode;
+        this.buyQuantity = buyQuantity;
+        this.freeQuantity = freeQuantity;
+        this.percentOff = percentOff;
+        this.minimumSubtotal = minimumSubtotal;
+        this.amountOff = amountOff;
+    }
+
+    /**
+     * Buy {@code buyQuantity} units of a product and get {@code freeQuantity} more for free
+     * @param id the promotion id
+     * @param productId the promoted product
+     * @param buyQuantity the units to pay for
+     * @param freeQuantity the free units per group
+     * @return the promotion
+     * @throws IllegalArgumentException if a quantity is not positive
+     */
+    public static Promotion buyXGetY(String id, long productId, int buyQuantity, int freeQuantity) {
+        if (buyQuantity <= 0 || freeQuantity <= 0) {
+            throw new IllegalArgumentException("Buy and free quantities must be greater than 0");
+        }
+        return new Promotion(id, Type.BUY_X_GET_Y, productId, null, null, buyQuantity, freeQuantity, 0, 0, 0);
+    }
+
+    /**
+     * Percentage off every unit of a product
+     * @param id the promotion id
+     * @param productId the promoted product
+     * @param percentOff the discount percentage
+     * @return the promotion
+     * @throws IllegalArgumentException if the percentage is not in (0, 100]
+     */
+    public static Promotion percentOff(String id, long productId, double percentOff) {
+        requirePercent(percentOff);
+        return new Promotion(id, Type.PERCENT_OFF, productId, null, null, 0, 0, percentOff, 0, 0);
+    }
+
+    /**
+     * Percentage off every product of a category, unlocked by a coupon code
+     * @param id the promotion id
+     * @param category the promoted product type
+     * @param couponCode the coupon code the cart must carry
+     * @param percentOff the discount percentage
+     * @return the promotion
+     * @throws IllegalArgumentException if the code is blank or the percentage is not in (0, 100]
+     */
+    public static Promotion categoryCoupon(String id, ProductType category, String couponCode, double percentOff) {
+        requirePercent(percentOff);
+        if (couponCode == null || couponCode.isBlank()) {
+            throw new IllegalArgumentException("Coupon code must not be blank");
+        }
+        return new Promotion(id, Type.CATEGORY_COUPON, 0, category, couponCode, 0, 0, percentOff, 0, 0);
+    }
+
+    /**
+     * Fixed amount off the basket once its discounted subtotal reaches a threshold
+     * @param id the promotion id
+     * @param minimumSubtotal the subtotal the basket must reach
+     * @param amountOff the amount taken off the basket
+     * @return the promotion
+     * @throws IllegalArgumentException if an amount is negative or the discount is not positive
+     */
+    public static Promotion basketThreshold(String id, double minimumSubtotal, double amountOff) {
+        if (minimumSubtotal < 0 || amountOff <= 0) {
+            throw new IllegalArgumentException("Threshold must not be negative and amount off must be greater than 0");
+        }
+        return new Promotion(id, Type.BASKET_THRESHOLD, 0, null, null, 0, 0, 0, minimumSubtotal, amountOff);
+    }
+
+    private static void requirePercent(double percentOff) {
+        if (!(percentOff > 0 && percentOff <= 100)) {
+            throw new IllegalArgumentException("Percent off must be in (0, 100]");
+        }
+    }
+
+    /**
+     * Compute the discount this line promotion grants on a cart line
+     * @param item the cart line, assumed to match the promotion's product or category
+     * @return the discount amount
+     */
+    public double lineDiscount(CartItem item) {
+        double unitPrice = item.getProduct().getPrice();
+        switch (type) {
+            case BUY_X_GET_Y:
+                int freeUnits = item.getQuantity() / (buyQuantity + freeQuantity) * freeQuantity;
+                return freeUnits * unitPrice;
+            case PERCENT_OFF:
+            case CATEGORY_COUPON:
+                return item.getTotalPrice() * percentOff / 100.0;
+            default:
+                return 0.0;
+        }
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getProductId() {
+        return productId;
+    }
+
+    public ProductType getCategory() {
+        return category;
+    }
+
+    public String getCouponCode() {
+        return couponCode;
+    }
+
+    public int getBuyQuantity() {
+        return buyQuantity;
+    }
+
+    public int getFreeQuantity() {
+        return freeQuantity;
+    }
+
+    public double getPercentOff() {
+        return percentOff;
+    }
+
+    public double getMinimumSubtotal() {
+        return minimumSubtotal;
+    }
+
+    public double getAmountOff() {
+        return amountOff;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Promotion %s (%s)", id, type);
+    }
+}
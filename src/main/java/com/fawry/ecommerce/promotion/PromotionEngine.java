@@ -0,0 +1,98 @@
+package com.fawry.ecommerce.promotion;
+
+import com.fawry.ecommerce.model.product.ProductType;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compiler turning promotion declarations into a {@link PromotionTable}
+ */
+public final class PromotionEngine {
+
+    private PromotionEngine() {
+        // Utility class
+    }
+
+    /**
+     * Compile promotions into an immutable decision table
+     * @param promotions the active promotions
+     * @return the compiled table
+     * @throws IllegalArgumentException if two promotions share an id
+     */
+    public static PromotionTable compile(Collection<Promotion> promotions) {
+        if (promotions.isEmpty()) {
+            return PromotionTable.EMPTY;
+        }
+        Set<String> ids = new HashSet<>();
+        Map<Long, List<Promotion>> buyXGetY = new HashMap<>();
+        Map<Long, Promotion> bestPercentOff = new HashMap<>();
+        Map<ProductType, Map<String, Promotion>> byCategory = new EnumMap<>(ProductType.class);
+        List<Promotion> thresholds = new ArrayList<>();
+
+        for (Promotion promotion : promotions) {
+            if (!ids.add(promotion.getId())) {
+                throw new IllegalArgumentException("Duplicate promotion id: " + promotion.getId());
+            }
+            switch (promotion.getType()) {
+                case BUY_X_GET_Y:
+                    buyXGetY.computeIfAbsent(promotion.getProductId(), id -> new ArrayList<>()).add(promotion);
+                    break;
+                case PERCENT_OFF:
+                    bestPercentOff.merge(promotion.getProductId(), promotion, PromotionEngine::higherPercent);
+                    break;
+                case CATEGORY_COUPON:
+                    byCategory.computeIfAbsent(promotion.getCategory(), type -> new HashMap<>())
+                              .merge(promotion.getCouponCode(), promotion, PromotionEngine::higherPercent);
+                    break;
+                case BASKET_THRESHOLD:
+                    thresholds.add(promotion);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported promotion type: " + promotion.getType());
+            }
+        }
+
+        Map<Long, Promotion[]> byProduct = new HashMap<>();
+        for (Map.Entry<Long, List<Promotion>> entry : buyXGetY.entrySet()) {
+            List<Promotion> candidates = entry.getValue();
+            Promotion percent = bestPercentOff.remove(entry.getKey());
+            if (percent != null) {
+                candidates.add(percent);
+            }
+            byProduct.put(entry.getKey(), candidates.toArray(new Promotion[0]));
+        }
+        for (Map.Entry<Long, Promotion> entry : bestPercentOff.entrySet()) {
+            byProduct.put(entry.getKey(), new Promotion[] {entry.getValue()});
+        }
+
+        // Sorted thresholds with a running best, so reaching a threshold also unlocks every lower one
+        thresholds.sort((a, b) -> Double.compare(a.getMinimumSubtotal(), b.getMinimumSubtotal()));
+        int count = thresholds.size();
+        double[] minimums = new double[count];
+        double[] bestAmountOff = new double[count];
+        String[] bestIds = new String[count];
+        for (int i = 0; i < count; i++) {
+            Promotion threshold = thresholds.get(i);
+            minimums[i] = threshold.getMinimumSubtotal();
+            if (i > 0 && bestAmountOff[i - 1] >= threshold.getAmountOff()) {
+                bestAmountOff[i] = bestAmountOff[i - 1];
+                bestIds[i] = bestIds[i - 1];
+            } else {
+                bestAmountOff[i] = threshold.getAmountOff();
+                bestIds[i] = threshold.getId();
+            }
+        }
+        return new PromotionTable(byProduct, byCategory, minimums, bestAmountOff, bestIds, promotions.size());
+    }
+
+    private static Promotion higherPercent(Promotion current, Promotion candidate) {
+        return candidate.getPercentOff() > current.getPercentOff() ? candidate : current;
+    }
+}
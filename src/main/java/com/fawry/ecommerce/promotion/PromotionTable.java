@@ -0,0 +1,139 @@
+package com.fawry.ecommerce.promotion;
+
+import com.fawry.ecommerce.model.CartItem;
+import com.fawry.ecommerce.model.product.Product;
+import com.fawry.ecommerce.model.product.ProductType;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable decision table compiled from a set of promotions
+ *
+ * Product promotions are indexed by product id, with all percentage offers on the same
+ * product collapsed into the best one at compile time. Category coupons are indexed by
+ * product type and coupon code, and basket thresholds are kept sorted with a running
+ * best discount so the applicable one is found by binary search. Pricing a cart therefore
+ * costs one or two hash lookups per line regardless of how many promotions are active.
+ * Tables are safe to share between threads.
+ */
+public final class PromotionTable {
+    /**
+     * Table without any promotion
+     */
+    public static final PromotionTable EMPTY = new PromotionTable(Collections.emptyMap(),
+            new EnumMap<>(ProductType.class), new double[0], new double[0], new String[0], 0);
+
+    private final Map<Long, Promotion[]> byProduct;
+    private final Map<ProductType, Map<String, Promotion>> byCategory;
+    private final double[] thresholds;
+    private final double[] bestAmountOff;
+    private final String[] bestThresholdIds;
+    private final int size;
+
+    PromotionTable(Map<Long, Promotion[]> byProduct, Map<ProductType, Map<String, Promotion>> byCategory,
+                   double[] thresholds, double[] bestAmountOff, String[] bestThresholdIds, int size) {
+        this.byProduct = byProduct;
+        this.byCategory = byCategory;
+        this.thresholds = thresholds;
+        this.bestAmountOff = bestAmountOff;
+        this.bestThresholdIds = bestThresholdIds;
+        this.size = size;
+    }
+
+    /**
+     * Get the number of promotions compiled into this table
+     * @return the promotion count
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Price a cart
+     * Each line receives the best single line promotion that applies to it, then the best
+     * basket threshold reached by the discounted subtotal is taken off the basket.
+     * @param items the cart lines
+     * @param couponCodes the coupon codes applied to the cart
+     * @return the pricing result
+     */
+    public PricingResult evaluate(List<CartItem> items, Collection<String> couponCodes) {
+        int lineCount = items.size();
+        double[] lineDiscounts = new double[lineCount];
+        String[] linePromotionIds = new String[lineCount];
+        double subtotal = 0;
+        double lineDiscountTotal = 0;
+
+        for (int i = 0; i < lineCount; i++) {
+            CartItem item = items.get(i);
+            double lineTotal = item.getTotalPrice();
+            subtotal += lineTotal;
+
+            Promotion best = null;
+            double bestDiscount = 0;
+            Product product = item.getProduct();
+            Promotion[] candidates = byProduct.get(product.getId());
+            if (candidates != null) {
+                for (Promotion candidate : candidates) {
+                    double discount = candidate.lineDiscount(item);
+                    if (discount > bestDiscount) {
+                        best = candidate;
+                        bestDiscount = discount;
+                    }
+                }
+            }
+            if (!couponCodes.isEmpty()) {
+                Map<String, Promotion> coupons = byCategory.get(ProductType.of(product));
+                if (coupons != null) {
+                    for (String code : couponCodes) {
+                        Promotion candidate = coupons.get(code);
+                        if (candidate != null) {
+                            double discount = candidate.lineDiscount(item);
+                            if (discount > bestDiscount) {
+                                best = candidate;
+                                bestDiscount = discount;
+                            }
+                        }
+                    }
+                }
+            }
+            if (best != null) {
+                bestDiscount = Math.min(bestDiscount, lineTotal);
+                lineDiscounts[i] = bestDiscount;
+                linePromotionIds[i] = best.getId();
+                lineDiscountTotal += bestDiscount;
+            }
+        }
+
+        double basketDiscount = 0;
+        String basketPromotionId = null;
+        double discountedSubtotal = subtotal - lineDiscountTotal;
+        int threshold = floorIndex(discountedSubtotal);
+        if (threshold >= 0) {
+            basketDiscount = Math.min(bestAmountOff[threshold], discountedSubtotal);
+            basketPromotionId = bestThresholdIds[threshold];
+        }
+        return new PricingResult(subtotal, lineDiscounts, linePromotionIds, basketDiscount, basketPromotionId);
+    }
+
+    /**
+     * Find the last threshold not above a subtotal
+     * @param subtotal the subtotal
+     * @return the threshold index, or -1 if none is reached
+     */
+    private int floorIndex(double subtotal) {
+        int index = Arrays.binarySearch(thresholds, subtotal);
+        if (index >= 0) {
+            // Equal thresholds may repeat; the running best makes the last one authoritative
+            while (index + 1 < thresholds.length && thresholds[index + 1] == subtotal) {
+                index++;
+            }
+            return index;
+        }
+        return -index - 2;
+    }
+}
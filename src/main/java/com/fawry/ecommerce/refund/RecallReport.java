@@ -0,0 +1,69 @@
+package com.fawry.ecommerce.refund;
+
+import java.time.LocalDate;
+
+/**
+ * Immutable summary of a product recall
+ */
+public final class RecallReport {
+    private final long productId;
+    private final LocalDate expirationDate;
+    private final int cancelledOrders;
+    private final int skippedOrders;
+    private final double refundedAmount;
+    private final long elapsedNanos;
+
+    /**
+     * Constructor for RecallReport
+     * @param productId the recalled product
+     * @param expirationDate the expiration date of the recalled lot, or null if every lot was recalled
+     * @param cancelledOrders the number of orders cancelled by the recall
+     * @param skippedOrders the number of matching orders that were already cancelled, issued voucher codes or failed to refund
+     * @param refundedAmount the total amount credited
+     * @param elapsedNanos the wall-clock duration of the recall
+     */
+    RecallReport(long productId, LocalDate expirationDate, int cancelledOrders, int skippedOrders,
+                 double refundedAmount, long elapsedNanos) {
+        this.productId = productId;
+        this.expirationDate = expirationDate;
+        this.cancelledOrders = cancelledOrders;
+        this.skippedOrders = skippedOrders;
+        this.refundedAmount = refundedAmount;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long getProductId() {
+        return productId;
+    }
+
+    /**
+     * Get the expiration date of the recalled lot
+     * @return the date, or null if every lot of the product was recalled
+     */
+    public LocalDate getExpirationDate() {
+        return expirationDate;
+    }
+
+    public int getCancelledOrders() {
+        return cancelledOrders;
+    }
+
+    public int getSkippedOrders() {
+        return skippedOrders;
+    }
+
+    public double getRefundedAmount() {
+        return refundedAmount;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Recall of product %d%s: %d orders cancelled, %d skipped, $%.2f refunded in %.1f ms",
+                productId, expirationDate == null ? "" : " lot " + expirationDate,
+                cancelledOrders, skippedOrders, refundedAmount, elapsedNanos / 1e6);
+    }
+}
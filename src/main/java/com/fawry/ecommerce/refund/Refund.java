@@ -0,0 +1,55 @@
+package com.fawry.ecommerce.refund;
+
+/**
+ * Immutable record of a cancelled order or of a price adjustment
+ */
+public final class Refund {
+    private final long orderId;
+    private final long customerId;
+    private final double amount;
+    private final int returnedUnits;
+    private final long timestamp;
+
+    /**
+     * Constructor for Refund
+     * @param orderId the cancelled or adjusted order
+     * @param customerId the credited customer
+     * @param amount the credited amount: the order's total including shipping, less any earlier
+     *               price adjustment, or the adjustment itself
+     * @param returnedUnits the number of units put back in stock, 0 for a price adjustment
+     * @param timestamp the refund time in epoch milliseconds
+     */
+    public Refund(long orderId, long customerId, double amount, int returnedUnits, long timestamp) {
+        this.orderId = orderId;
+        this.customerId = customerId;
+        this.amount = amount;
+        this.returnedUnits = returnedUnits;
+        this.timestamp = timestamp;
+    }
+
+    public long getOrderId() {
+        return orderId;
+    }
+
+    public long getCustomerId() {
+        return customerId;
+    }
+
+    public double getAmount() {
+        return amount;
+    }
+
+    public int getReturnedUnits() {
+        return returnedUnits;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Refund{order=%d, customer=%d, amount=%.2f, units=%d}",
+                orderId, customerId, amount, returnedUnits);
+    }
+}
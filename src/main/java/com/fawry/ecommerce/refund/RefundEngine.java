@@ -0,0 +1,538 @@
+package com.fawry.ecommerce.refund;
+
+import com.fawry.ecommerce.model.product.ExpirableProduct;
+import com.fawry.ecommerce.model.product.Product;
+import com.fawry.ecommerce.order.Order;
+import com.fawry.ecommerce.order.OrderLine;
+import com.fawry.ecommerce.repository.ProductRepository;
+import com.fawry.ecommerce.service.CheckoutListener;
+import com.fawry.ecommerce.service.OrderReservations;
+import com.fawry.ecommerce.service.ShippingService;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Reverse path of checkout: cancels completed orders, crediting the customer's wallet,
+ * returning the stock, warehouse allocation and delivery slot, and voiding the shipment
+ *
+ * Register the engine as a {@link CheckoutListener} so it learns every placed order and
+ * what it holds. Each order can be cancelled once: the cancellation is claimed with a
+ * compare-and-set before anything is changed, so concurrent cancels and recalls never
+ * refund twice. No global lock is taken; the wallet and the products update atomically
+ * on their own, so live checkouts keep running during a recall, which fans out over its
+ * own pool. Orders are retained for a bounded time and number, oldest evicted first;
+ * an evicted order can no longer be cancelled here. Orders that issued voucher codes
+ * are never cancelled, since the codes cannot be taken back from the customer.
+ */
+public class RefundEngine implements CheckoutListener {
+    public static final int DEFAULT_MAX_ORDERS = 1_000_000;
+    public static final long DEFAULT_RETENTION_MILLIS = TimeUnit.DAYS.toMillis(30);
+    private static final int RECALL_BATCH = 256;
+
+    private final ProductRepository products;
+    private final Wallet wallet;
+    private final ShippingService shippingService;
+    private final ForkJoinPool recallPool;
+    private final int maxOrders;
+    private final long retentionMillis;
+    private final LongSupplier clock;
+    private final Map<Long, PlacedOrder> orders = new ConcurrentHashMap<>();
+    private final Queue<PlacedOrder> arrivals = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger retained = new AtomicInteger();
+    private final Map<Long, Queue<PlacedOrder>> ordersByProduct = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor for RefundEngine recalling on a pool sized to half the processors
+     * @param products the repository resolving ordered products
+     * @param wallet the wallet credited with refunds
+     * @param shippingService the service voiding shipments, the one that created them
+     */
+    public RefundEngine(ProductRepository products, Wallet wallet, ShippingService shippingService) {
+        this(products, wallet, shippingService,
+             new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() / 2)));
+    }
+
+    /**
+     * Constructor for RefundEngine
+     * @param products the repository resolving ordered products
+     * @param wallet the wallet credited with refunds
+     * @param shippingService the service voiding shipments
+     * @param recallPool the pool cancelling recalled orders, kept apart from checkout threads
+     */
+    public RefundEngine(ProductRepository products, Wallet wallet, ShippingService shippingService,
+                        ForkJoinPool recallPool) {
+        this(products, wallet, shippingService, recallPool, DEFAULT_MAX_ORDERS, DEFAULT_RETENTION_MILLIS);
+    }
+
+    /**
+     * Constructor for RefundEngine with bounded order retention
+     * @param products the repository resolving ordered products
+     * @param wallet the wallet credited with refunds
+     * @param shippingService the service voiding shipments
+     * @param recallPool the pool cancelling recalled orders, kept apart from checkout threads
+     * @param maxOrders the most orders retained for cancellation
+     * @param retentionMillis how long after placement an order can be cancelled
+     * @throws IllegalArgumentException if a bound is not positive or the shipping service is null
+     */
+    public RefundEngine(ProductRepository products, Wallet wallet, ShippingService shippingService,
+                        ForkJoinPool recallPool, int maxOrders, long retentionMillis) {
+        this(products, wallet, shippingService, recallPool, maxOrders, retentionMillis, System::currentTimeMillis);
+    }
+
+    /**
+     * Constructor for RefundEngine with bounded order retention and its own time source
+     * @param products the repository resolving ordered products
+     * @param wallet the wallet credited with refunds
+     * @param shippingService the service voiding shipments
+     * @param recallPool the pool cancelling recalled orders, kept apart from checkout threads
+     * @param maxOrders the most orders retained for cancellation
+     * @param retentionMillis how long after placement an order can be cancelled
+     * @param clock the time source in epoch milliseconds for retention, price windows and refund times
+     * @throws IllegalArgumentException if a bound is not positive or the shipping service or clock is null
+     */
+    public RefundEngine(ProductRepository products, Wallet wallet, ShippingService shippingService,
+                        ForkJoinPool recallPool, int maxOrders, long retentionMillis, LongSupplier clock) {
+        if (maxOrders <= 0 || retentionMillis <= 0) {
+            throw new IllegalArgumentException("Order retention bounds must be positive");
+        }
+        if (shippingService == null) {
+            throw new IllegalArgumentException("Shipping service must not be null");
+        }
+        if (clock == null) {
+            throw new IllegalArgumentException("Clock must not be null");
+        }
+        this.products = products;
+        this.wallet = wallet;
+        this.shippingService = shippingService;
+        this.recallPool = recallPool;
+        this.maxOrders = maxOrders;
+        this.retentionMillis = retentionMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Record a placed order so it can be cancelled later, without reservations to give back
+     * @param order the order
+     */
+    public void record(Order order) {
+        record(order, OrderReservations.NONE);
+    }
+
+    /**
+     * Record a placed order so it can be cancelled later
+     * @param order the order
+     * @param reservations what the order holds, given back on cancellation
+     */
+    public void record(Order order, OrderReservations reservations) {
+        PlacedOrder placed = new PlacedOrder(order, reservations);
+        if (orders.putIfAbsent(order.getOrderId(), placed) != null) {
+            return;
+        }
+        arrivals.add(placed);
+        retained.incrementAndGet();
+        for (OrderLine line : order.getLines()) {
+            Queue<PlacedOrder> byProduct = ordersByProduct.computeIfAbsent(line.getProductId(),
+                                                                         id -> new ConcurrentLinkedQueue<>());
+            byProduct.add(placed);
+            dropEvicted(byProduct);
+        }
+        evict(clock.getAsLong());
+    }
+
+    @Override
+    public void onCheckoutCompleted(Order order) {
+        record(order);
+    }
+
+    @Override
+    public void onCheckoutCompleted(Order order, OrderReservations reservations) {
+        record(order, reservations);
+    }
+
+    /**
+     * Get the number of orders retained for cancellation
+     * @return the order count
+     */
+    public int getRetainedOrders() {
+        return retained.get();
+    }
+
+    /**
+     * Check if an order was cancelled
+     * @param orderId the order id
+     * @return true if cancelled, false if placed, unknown or no longer retained
+     */
+    public boolean isCancelled(long orderId) {
+        PlacedOrder placed = orders.get(orderId);
+        return placed != null && placed.cancelled.get();
+    }
+
+    /**
+     * Cancel an order and refund its total, shipping included
+     * @param orderId the order id
+     * @return the refund
+     * @throws IllegalArgumentException if the order is unknown or no longer retained
+     * @throws IllegalStateException if the order is already cancelled, issued voucher codes or
+     *                               has a product that is not registered
+     */
+    public Refund cancel(long orderId) {
+        PlacedOrder placed = orders.get(orderId);
+        if (placed == null) {
+            throw new IllegalArgumentException("Unknown order: " + orderId);
+        }
+        if (placed.reservations.hasVouchers()) {
+            throw new IllegalStateException("Order " + orderId + " issued voucher codes and cannot be cancelled");
+        }
+        Refund refund = tryCancel(placed, null);
+        if (refund == null) {
+            throw new IllegalStateException("Order " + orderId + " is already cancelled");
+        }
+        return refund;
+    }
+
+    /**
+     * Refund the difference when ordered products get cheaper soon after the order
+     * Each line is credited the gap between its paid unit price and the lowest price in
+     * effect, according to the product's price history, between the order and the end of
+     * the protection window. An order is adjusted at most once and never once cancelled;
+     * a later cancellation refunds only what the adjustment left.
+     * @param orderId the order id
+     * @param windowMillis how long after the order price drops are honoured
+     * @return the adjustment, with no returned units; its amount is 0 if no price dropped
+     * @throws IllegalArgumentException if the order is unknown or no longer retained
+     * @throws IllegalStateException if the order is cancelled or already adjusted, or an ordered product is not registered
+     */
+    public Refund adjustPrices(long orderId, long windowMillis) {
+        PlacedOrder placed = orders.get(orderId);
+        if (placed == null) {
+            throw new IllegalArgumentException("Unknown order: " + orderId);
+        }
+        Order order = placed.order;
+        List<OrderLine> lines = order.getLines();
+        Product[] resolved = resolve(order);
+        long now = clock.getAsLong();
+        long windowEnd = Math.min(now, order.getTimestamp() + Math.max(0, windowMillis));
+        double amount = 0;
+        for (int i = 0; i < resolved.length; i++) {
+            OrderLine line = lines.get(i);
+            double lowest = resolved[i].getPriceHistory().lowestBetween(order.getTimestamp(), windowEnd);
+            if (lowest < line.getUnitPrice()) {
+                amount += (line.getUnitPrice() - lowest) * line.getQuantity();
+            }
+        }
+        // Never refund more than was paid for the goods
+        amount = Math.min(amount, order.getTotalAmount() - order.getShippingFee());
+        synchronized (placed) {
+            if (placed.cancelled.get()) {
+                throw new IllegalStateException("Order " + orderId + " is already cancelled");
+            }
+            if (placed.adjusted) {
+                throw new IllegalStateException("Order " + orderId + " is already adjusted");
+            }
+            placed.adjusted = true;
+            placed.adjustment = amount;
+        }
+        if (amount > 0) {
+            try {
+                wallet.credit(order.getCustomerId(), amount);
+            } catch (RuntimeException e) {
+                synchronized (placed) {
+                    placed.adjusted = false;
+                    placed.adjustment = 0;
+                }
+                throw e;
+            }
+        }
+        return new Refund(orderId, order.getCustomerId(), amount, 0, now);
+    }
+
+    /**
+     * Cancel every retained order containing a product, whatever lot it came from
+     * Orders that issued voucher codes, or whose refund fails, are skipped.
+     * The recalled units are refunded but not put back in stock; the orders' other
+     * units are. Units of the product still in stock are left for the caller to write off.
+     * @param productId the recalled product
+     * @return the recall summary
+     * @throws IllegalStateException if an ordered product is not registered
+     */
+    public RecallReport recall(long productId) {
+        return recall(new Recall(productId, null));
+    }
+
+    /**
+     * Cancel every retained order holding units of one lot of a product
+     * Orders whose lots were not recorded are included, as they may hold the lot. The
+     * recalled lot's units are refunded but not put back in stock; units of other lots
+     * go back to their own lots, as do the orders' other products. Orders whose refund
+     * fails are skipped.
+     * @param productId the recalled product
+     * @param expirationDate the expiration date identifying the recalled lot
+     * @return the recall summary
+     * @throws IllegalArgumentException if the date is null
+     * @throws IllegalStateException if an ordered product is not registered
+     */
+    public RecallReport recall(long productId, LocalDate expirationDate) {
+        if (expirationDate == null) {
+            throw new IllegalArgumentException("A lot recall needs an expiration date");
+        }
+        return recall(new Recall(productId, expirationDate));
+    }
+
+    private RecallReport recall(Recall recall) {
+        long started = System.nanoTime();
+        Queue<PlacedOrder> affected = ordersByProduct.get(recall.productId);
+        if (affected != null) {
+            dropEvicted(affected);
+        }
+        PlacedOrder[] batch = affected == null ? new PlacedOrder[0] : affected.stream()
+                .filter(placed -> !placed.evicted && recall.matches(placed))
+                .toArray(PlacedOrder[]::new);
+        // Resolve every order before the first is cancelled, so an unknown product fails the recall untouched
+        Product[][] resolved = new Product[batch.length][];
+        for (int i = 0; i < batch.length; i++) {
+            resolved[i] = resolve(batch[i].order);
+        }
+        Tally tally = batch.length == 0 ? new Tally()
+                : recallPool.invoke(new CancelOrders(batch, resolved, 0, batch.length, recall));
+        return new RecallReport(recall.productId, recall.expirationDate, tally.cancelled, tally.skipped,
+                                tally.refunded, System.nanoTime() - started);
+    }
+
+    /**
+     * Cancel an order unless it was already cancelled or issued voucher codes
+     * @param placed the order
+     * @param recall the recall whose units are not put back in stock, or null
+     * @return the refund, or null if another caller cancelled the order first or it issued codes
+     */
+    private Refund tryCancel(PlacedOrder placed, Recall recall) {
+        if (placed.reservations.hasVouchers()) {
+            return null;
+        }
+        // Resolve before changing anything so an unknown product cannot leave a half-cancelled order
+        return tryCancel(placed, resolve(placed.order), recall);
+    }
+
+    /**
+     * Cancel an order whose products are resolved unless it was already cancelled or issued voucher codes
+     * @param placed the order
+     * @param resolved the products of the order's lines
+     * @param recall the recall whose units are not put back in stock, or null
+     * @return the refund, or null if another caller cancelled the order first or it issued codes
+     */
+    private Refund tryCancel(PlacedOrder placed, Product[] resolved, Recall recall) {
+        if (placed.reservations.hasVouchers()) {
+            return null;
+        }
+        Order order = placed.order;
+        List<OrderLine> lines = order.getLines();
+        double amount;
+        synchronized (placed) {
+            if (!placed.cancelled.compareAndSet(false, true)) {
+                return null;
+            }
+            amount = order.getTotalAmount() - placed.adjustment;
+        }
+        try {
+            wallet.credit(order.getCustomerId(), amount);
+        } catch (RuntimeException e) {
+            placed.cancelled.set(false);
+            throw e;
+        }
+        placed.reservations.release();
+        int units = 0;
+        for (int i = 0; i < resolved.length; i++) {
+            units += restock(resolved[i], lines.get(i), placed.reservations.getLots(lines.get(i).getProductId()), recall);
+        }
+        if (order.getShippingFee() > 0) {
+            shippingService.voidShipment(order.getOrderId());
+        }
+        return new Refund(order.getOrderId(), order.getCustomerId(), amount, units, clock.getAsLong());
+    }
+
+    /**
+     * Put a cancelled line's units back in stock, lot-tracked units into the lots they came from
+     * @param product the line's product
+     * @param line the line
+     * @param lots the lots the line's units were taken from, empty if not recorded
+     * @param recall the recall whose units stay out of stock, or null
+     * @return the number of units put back
+     */
+    private static int restock(Product product, OrderLine line, SortedMap<LocalDate, Integer> lots, Recall recall) {
+        boolean recalled = recall != null && recall.productId == line.getProductId();
+        if (lots.isEmpty() || !(product instanceof ExpirableProduct)) {
+            if (recalled) {
+                return 0;
+            }
+            product.increaseQuantity(line.getQuantity());
+            return line.getQuantity();
+        }
+        SortedMap<LocalDate, Integer> returned = lots;
+        if (recalled) {
+            if (recall.expirationDate == null) {
+                return 0;
+            }
+            returned = new TreeMap<>(lots);
+            returned.remove(recall.expirationDate);
+        }
+        ((ExpirableProduct) product).returnLots(returned);
+        int units = 0;
+        for (int quantity : returned.values()) {
+            units += quantity;
+        }
+        return units;
+    }
+
+    /**
+     * Forget the oldest orders beyond the retention bounds
+     * @param now the current time in epoch milliseconds
+     */
+    private void evict(long now) {
+        long oldest = now - retentionMillis;
+        while (true) {
+            PlacedOrder head = arrivals.peek();
+            if (head == null || (retained.get() <= maxOrders && head.order.getTimestamp() >= oldest)) {
+                return;
+            }
+            PlacedOrder evicted = arrivals.poll();
+            if (evicted == null) {
+                return;
+            }
+            retained.decrementAndGet();
+            evicted.evicted = true;
+            orders.remove(evicted.order.getOrderId(), evicted);
+        }
+    }
+
+    /**
+     * Drop evicted orders from the head of a product's queue; they arrived before any retained one
+     */
+    private static void dropEvicted(Queue<PlacedOrder> byProduct) {
+        PlacedOrder head;
+        while ((head = byProduct.peek()) != null && head.evicted) {
+            byProduct.remove(head);
+        }
+    }
+
+    /**
+     * Resolve the products of an order's lines
+     * @throws IllegalStateException if an ordered product is not registered
+     */
+    private Product[] resolve(Order order) {
+        List<OrderLine> lines = order.getLines();
+        Product[] resolved = new Product[lines.size()];
+        for (int i = 0; i < resolved.length; i++) {
+            long productId = lines.get(i).getProductId();
+            resolved[i] = products.findById(productId).orElseThrow(() -> new IllegalStateException(
+                    "Product " + productId + " of order " + order.getOrderId() + " is not registered"));
+        }
+        return resolved;
+    }
+
+    private static final class PlacedOrder {
+        private final Order order;
+        private final OrderReservations reservations;
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        private volatile boolean evicted;
+        // Guarded by the PlacedOrder monitor, together with the cancellation claim
+        private boolean adjusted;
+        private double adjustment;
+
+        PlacedOrder(Order order, OrderReservations reservations) {
+            this.order = order;
+            this.reservations = reservations;
+        }
+    }
+
+    /**
+     * Recalled product, and lot if the recall is limited to one
+     */
+    private static final class Recall {
+        private final long productId;
+        private final LocalDate expirationDate;
+
+        Recall(long productId, LocalDate expirationDate) {
+            this.productId = productId;
+            this.expirationDate = expirationDate;
+        }
+
+        boolean matches(PlacedOrder placed) {
+            if (expirationDate == null) {
+                return true;
+            }
+            SortedMap<LocalDate, Integer> lots = placed.reservations.getLots(productId);
+            return lots.isEmpty() || lots.containsKey(expirationDate);
+        }
+    }
+
+    private static final class Tally {
+        private int cancelled;
+        private int skipped;
+        private double refunded;
+
+        Tally add(Tally other) {
+            cancelled += other.cancelled;
+            skipped += other.skipped;
+            refunded += other.refunded;
+            return this;
+        }
+    }
+
+    /**
+     * Fork/join task halving the recalled orders until small batches are cancelled in turn
+     */
+    private final class CancelOrders extends RecursiveTask<Tally> {
+        private final PlacedOrder[] batch;
+        private final Product[][] resolved;
+        private final int from;
+        private final int to;
+        private final Recall recall;
+
+        CancelOrders(PlacedOrder[] batch, Product[][] resolved, int from, int to, Recall recall) {
+            this.batch = batch;
+            this.resolved = resolved;
+            this.from = from;
+            this.to = to;
+            this.recall = recall;
+        }
+
+        @Override
+        protected Tally compute() {
+            if (to - from <= RECALL_BATCH) {
+                Tally tally = new Tally();
+                for (int i = from; i < to; i++) {
+                    Refund refund;
+                    try {
+                        refund = tryCancel(batch[i], resolved[i], recall);
+                    } catch (RuntimeException e) {
+                        // Sibling batches keep cancelling, so one failed refund must not abort the report
+                        refund = null;
+                    }
+                    if (refund == null) {
+                        tally.skipped++;
+                    } else {
+                        tally.cancelled++;
+                        tally.refunded += refund.getAmount();
+                    }
+                }
+                return tally;
+            }
+            int middle = (from + to) >>> 1;
+            CancelOrders right = new CancelOrders(batch, resolved, middle, to, recall);
+            right.fork();
+            return new CancelOrders(batch, resolved, from, middle, recall).compute().add(right.join());
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.fawry.ecommerce.refund;
+
+import com.fawry.ecommerce.model.customer.Customer;
+import com.fawry.ecommerce.repository.CustomerRepository;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Destination of refunded money, keyed by the customer id recorded on orders
+ */
+@FunctionalInterface
+public interface Wallet {
+
+    /**
+     * Atomically credit a customer
+     * @param customerId the customer id
+     * @param amount the amount to credit
+     * @throws IllegalArgumentException if the customer is unknown
+     */
+    void credit(long customerId, double amount);
+
+    /**
+     * Wallet backed by the balances of a customer repository
+     * @param repository the repository
+     * @return the wallet
+     */
+    static Wallet of(CustomerRepository repository) {
+        return repository::addBalance;
+    }
+
+    /**
+     * Wallet backed by in-memory customers
+     * @param customers the customers, identified by their ids; later additions are not seen
+     * @return the wallet
+     * @throws IllegalArgumentException if two different customers share an id
+     */
+    static Wallet of(Collection<Customer> customers) {
+        Map<Long, Customer> byId = new ConcurrentHashMap<>();
+        for (Customer customer : customers) {
+            Customer previous = byId.putIfAbsent(customer.getId(), customer);
+            if (previous != null && previous != customer) {
+                throw new IllegalArgumentException("Duplicate customer id: " + customer.getId());
+            }
+        }
+        return (customerId, amount) -> {
+            Customer customer = byId.get(customerId);
+            if (customer == null) {
+                throw new IllegalArgumentException("Unknown customer id: " + customerId);
+            }
+            customer.addBalance(amount);
+        };
+    }
+}
@@ -0,0 +1,483 @@
+package com.fawry.ecommerce.repository;
+
+import com.fawry.ecommerce.model.customer.Customer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Repository storing customers in a sharded, array-backed layout
+ *
+ * Customers are spread over a power-of-two number of shards by the hash of their name,
+ * so a lookup by name only ever touches one shard. Inside a shard every customer owns a
+ * slot in fixed-size pages: names live in {@code String[]} pages and balances, kept in
+ * cents, live in primitive {@code long[]} pages that are read and updated atomically.
+ * Each entry therefore costs one reference and one long plus its name index entry,
+ * and growing a shard only allocates a new page instead of copying existing data.
+ *
+ * Ids are stable for the lifetime of the repository and encode the shard and slot:
+ * {@code id = ((slot << shardBits) | shard) + 1}, which keeps {@link Customer#UNREGISTERED_ID} unused.
+ * Customers found here are live handles: their balance reads and updates go straight
+ * to the repository, so a checkout debiting the handle and a refund crediting the
+ * repository see the same money.
+ */
+public class CustomerRepository {
+    private static final int PAGE_BITS = 16;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final int MAX_SHARDS = 1 << 12;
+    private static final VarHandle BALANCES = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final long[] NO_IDS = new long[0];
+
+    private final Shard[] shards;
+    private final int shardBits;
+    private final int shardMask;
+
+    /**
+     * Constructor for CustomerRepository with a shard count derived from the available processors
+     */
+    public CustomerRepository() {
+        this(Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    /**
+     * Constructor for CustomerRepository
+     * @param shardCount the requested number of shards, rounded up to a power of two
+     * @throws IllegalArgumentException if the shard count is not positive
+     */
+    public CustomerRepository(int shardCount) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Shard count must be greater than 0");
+        }
+        // Capped before rounding, since rounding a count above 2^30 up would overflow
+        int size = shardCount >= MAX_SHARDS ? MAX_SHARDS
+                : shardCount == 1 ? 1 : Integer.highestOneBit(shardCount - 1) << 1;
+        this.shardBits = Integer.numberOfTrailingZeros(size);
+        this.shardMask = size - 1;
+        this.shards = new Shard[size];
+        for (int i = 0; i < size; i++) {
+            shards[i] = new Shard();
+        }
+    }
+
+    /**
+     * Register a new customer
+     * @param name the name of the customer
+     * @param balance the initial balance of the customer
+     * @return the id assigned to the customer
+     * @throws IllegalArgumentException if the name is blank or the balance is negative
+     */
+    public long register(String name, double balance) {
+        validate(name, balance);
+        int shardIndex = shardIndexFor(name);
+        Shard shard = shards[shardIndex];
+        shard.writeLock.lock();
+        try {
+            long id = encodeId(shardIndex, shard.append(name, toCents(balance)));
+            shard.index(name, id);
+            return id;
+        } finally {
+            shard.writeLock.unlock();
+        }
+    }
+
+    /**
+     * Find a customer by id
+     * @param id the customer id
+     * @return a live handle carrying the id, whose balance is read and written through, or empty if the id is unknown
+     */
+    public Optional<Customer> findById(long id) {
+        Shard shard = shardOf(id);
+        int slot = slotOf(id);
+        if (shard == null || !shard.contains(slot)) {
+            return Optional.empty();
+        }
+        return Optional.of(new StoredCustomer(id, shard, slot));
+    }
+
+    /**
+     * Find the first registered customer with the given name
+     * @param name the customer name
+     * @return a live handle, or empty if no customer has that name
+     */
+    public Optional<Customer> findByName(String name) {
+        long[] ids = findIdsByName(name);
+        return ids.length == 0 ? Optional.empty() : findById(ids[0]);
+    }
+
+    /**
+     * Find the ids of all customers registered with the given name, in registration order
+     * @param name the customer name
+     * @return the matching ids, empty if none
+     */
+    public long[] findIdsByName(String name) {
+        if (name == null) {
+            return NO_IDS;
+        }
+        long[] ids = shards[shardIndexFor(name)].nameIndex.get(name);
+        return ids == null ? NO_IDS : ids.clone();
+    }
+
+    /**
+     * Get the balance of a customer
+     * @param id the customer id
+     * @return the current balance
+     * @throws IllegalArgumentException if the id is unknown
+     */
+    public double getBalance(long id) {
+        return fromCents(requireShard(id).balance(slotOf(id)));
+    }
+
+    /**
+     * Check if a customer has sufficient balance
+     * @param id the customer id
+     * @param amount the amount to check
+     * @return true if sufficient balance, false otherwise
+     * @throws IllegalArgumentException if the id is unknown
+     */
+    public boolean hasSufficientBalance(long id, double amount) {
+        return requireShard(id).balance(slotOf(id)) >= toCents(amount);
+    }
+
+    /**
+     * Atomically deduct an amount from a customer's balance
+     * @param id the customer id
+     * @param amount the amount to deduct
+     * @return true if successful, false if insufficient balance
+     * @throws IllegalArgumentException if the id is unknown
+     */
+    public boolean deductBalance(long id, double amount) {
+        return requireShard(id).deduct(slotOf(id), toCents(amount));
+    }
+
+    /**
+     * Atomically add an amount to a customer's balance
+     * @param id the customer id
+     * @param amount the amount to add
+     * @throws IllegalArgumentException if the id is unknown
+     */
+    public void addBalance(long id, double amount) {
+        requireShard(id).add(slotOf(id), toCents(amount));
+    }
+
+    /**
+     * Get the number of registered customers
+     * @return the customer count
+     */
+    public long size() {
+        long total = 0;
+        for (Shard shard : shards) {
+            total += shard.size;
+        }
+        return total;
+    }
+
+    /**
+     * Bulk import customers from a CSV file
+     * @param file the CSV file
+     * @return the number of imported customers
+     * @throws IOException if the file cannot be read
+     * @see #importCsv(Reader)
+     */
+    public int importCsv(Path file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return importCsv(reader);
+        }
+    }
+
+    /**
+     * Bulk import customers from CSV lines of the form {@code name,balance}
+     *
+     * An optional {@code name,balance} header line is skipped, blank lines are ignored and
+     * the balance is taken after the last comma so names may themselves contain commas.
+     * Lines are registered in batches grouped by shard so each shard lock is taken once per batch.
+     * The whole source is read and validated before the first batch is registered, so a
+     * malformed line or a read error leaves the repository unchanged.
+     * @param reader the CSV source
+     * @return the number of imported customers
+     * @throws IOException if the source cannot be read
+     * @throws IllegalArgumentException if a line is malformed, reported with its line number
+     */
+    public int importCsv(Reader reader) throws IOException {
+        BufferedReader in = reader instanceof BufferedReader
+                ? (BufferedReader) reader : new BufferedReader(reader);
+        List<ImportBatch> batches = new ArrayList<>();
+        ImportBatch batch = new ImportBatch(shards.length);
+        batches.add(batch);
+        int lineNumber = 0;
+        String line;
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank() || (lineNumber == 1 && line.trim().equalsIgnoreCase("name,balance"))) {
+                continue;
+            }
+            int comma = line.lastIndexOf(',');
+            if (comma <= 0) {
+                throw new IllegalArgumentException("Malformed customer CSV line " + lineNumber + ": " + line);
+            }
+            String name = line.substring(0, comma).trim();
+            double balance;
+            try {
+                balance = Double.parseDouble(line.substring(comma + 1).trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid balance on customer CSV line " + lineNumber + ": " + line);
+            }
+            validate(name, balance);
+            if (batch.size == ImportBatch.CAPACITY) {
+                batch = new ImportBatch(shards.length);
+                batches.add(batch);
+            }
+            batch.add(shardIndexFor(name), name, toCents(balance));
+        }
+        int imported = 0;
+        for (ImportBatch staged : batches) {
+            imported += staged.flush(shards);
+        }
+        return imported;
+    }
+
+    private int shardIndexFor(String name) {
+        int h = name.hashCode();
+        return (h ^ (h >>> 16)) & shardMask;
+    }
+
+    private long encodeId(int shardIndex, int slot) {
+        return (((long) slot << shardBits) | shardIndex) + 1;
+    }
+
+    private Shard shardOf(long id) {
+        return id <= 0 ? null : shards[(int) ((id - 1) & shardMask)];
+    }
+
+    private int slotOf(long id) {
+        long slot = (id - 1) >>> shardBits;
+        return slot > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) slot;
+    }
+
+    private Shard requireShard(long id) {
+        Shard shard = shardOf(id);
+        if (shard == null || !shard.contains(slotOf(id))) {
+            throw new IllegalArgumentException("Unknown customer id: " + id);
+        }
+        return shard;
+    }
+
+    private static void validate(String name, double balance) {
+        if (name == null || name.isBlank()) {
+            throw new IllegalArgumentException("Customer name must not be blank");
+        }
+        if (balance < 0 || Double.isNaN(balance) || Double.isInfinite(balance)) {
+            throw new IllegalArgumentException("Customer balance must be a non-negative amount");
+        }
+    }
+
+    private static long toCents(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    private static double fromCents(long cents) {
+        return cents / 100.0;
+    }
+
+    /**
+     * One shard of the repository; writers serialize on the shard lock, readers never lock
+     */
+    private static final class Shard {
+        private final ReentrantLock writeLock = new ReentrantLock();
+        private final Map<String, long[]> nameIndex = new ConcurrentHashMap<>();
+        private volatile String[][] namePages = new String[0][];
+        private volatile long[][] balancePages = new long[0][];
+        private volatile int size;
+
+        boolean contains(int slot) {
+            return slot >= 0 && slot < size;
+        }
+
+        String name(int slot) {
+            return namePages[slot >>> PAGE_BITS][slot & PAGE_MASK];
+        }
+
+        long balance(int slot) {
+            return (long) BALANCES.getVolatile(balancePages[slot >>> PAGE_BITS], slot & PAGE_MASK);
+        }
+
+        boolean deduct(int slot, long cents) {
+            long[] page = balancePages[slot >>> PAGE_BITS];
+            int index = slot & PAGE_MASK;
+            long current;
+            do {
+                current = (long) BALANCES.getVolatile(page, index);
+                if (current < cents) {
+                    return false;
+                }
+            } while (!BALANCES.compareAndSet(page, index, current, current - cents));
+            return true;
+        }
+
+        void add(int slot, long cents) {
+            BALANCES.getAndAdd(balancePages[slot >>> PAGE_BITS], slot & PAGE_MASK, cents);
+        }
+
+        void set(int slot, long cents) {
+            BALANCES.setVolatile(balancePages[slot >>> PAGE_BITS], slot & PAGE_MASK, cents);
+        }
+
+        /**
+         * Append an entry; must be called with the write lock held. The volatile size
+         * write at the end publishes the new slot to lock-free readers.
+         */
+        private int append(String name, long balanceCents) {
+            int slot = size;
+            if (slot == Integer.MAX_VALUE) {
+                throw new IllegalStateException("Customer shard is full");
+            }
+            int page = slot >>> PAGE_BITS;
+            if (page == namePages.length) {
+                String[][] names = Arrays.copyOf(namePages, page + 1);
+                long[][] balances = Arrays.copyOf(balancePages, page + 1);
+                names[page] = new String[PAGE_SIZE];
+                balances[page] = new long[PAGE_SIZE];
+                namePages = names;
+                balancePages = balances;
+            }
+            namePages[page][slot & PAGE_MASK] = name;
+            BALANCES.setVolatile(balancePages[page], slot & PAGE_MASK, balanceCents);
+            size = slot + 1;
+            return slot;
+        }
+
+        /**
+         * Add an id to the name index; must be called with the write lock held.
+         * Duplicate names are rare, so the id array is simply copied on growth.
+         */
+        private void index(String name, long id) {
+            long[] existing = nameIndex.get(name);
+            if (existing == null) {
+                nameIndex.put(name, new long[] {id});
+            } else {
+                long[] grown = Arrays.copyOf(existing, existing.length + 1);
+                grown[existing.length] = id;
+                nameIndex.put(name, grown);
+            }
+        }
+    }
+
+    /**
+     * Customer handle whose balance lives in its shard slot rather than in the object
+     * The name is fixed at registration; renaming a handle does not change the repository.
+     */
+    private static final class StoredCustomer extends Customer {
+        private final Shard shard;
+        private final int slot;
+
+        StoredCustomer(long id, Shard shard, int slot) {
+            super(id, shard.name(slot), 0);
+            this.shard = shard;
+            this.slot = slot;
+        }
+
+        @Override
+        public double getBalance() {
+            return fromCents(shard.balance(slot));
+        }
+
+        @Override
+        public void setBalance(double balance) {
+            shard.set(slot, toCents(balance));
+        }
+
+        @Override
+        public boolean deductBalance(double amount) {
+            return shard.deduct(slot, toCents(amount));
+        }
+
+        @Override
+        public void addBalance(double amount) {
+            shard.add(slot, toCents(amount));
+        }
+
+        @Override
+        public boolean hasSufficientBalance(double amount) {
+            return shard.balance(slot) >= toCents(amount);
+        }
+    }
+
+    /**
+     * Reusable buffer of parsed CSV rows grouped by shard at flush time
+     */
+    private final class ImportBatch {
+        static final int CAPACITY = 8192;
+        private final String[] names = new String[CAPACITY];
+        private final long[] balances = new long[CAPACITY];
+        private final int[] shardIndexes = new int[CAPACITY];
+        private final int[] counts;
+        private int size;
+
+        ImportBatch(int shardCount) {
+            this.counts = new int[shardCount];
+        }
+
+        void add(int shardIndex, String name, long balanceCents) {
+            names[size] = name;
+            balances[size] = balanceCents;
+            shardIndexes[size] = shardIndex;
+            size++;
+        }
+
+        int flush(Shard[] targets) {
+            if (size == 0) {
+                return 0;
+            }
+            // Counting sort by shard so each shard receives one contiguous run under a single lock
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < size; i++) {
+                counts[shardIndexes[i]]++;
+            }
+            int[] starts = new int[counts.length + 1];
+            for (int s = 0; s < counts.length; s++) {
+                starts[s + 1] = starts[s] + counts[s];
+            }
+            String[] sortedNames = new String[size];
+            long[] sortedBalances = new long[size];
+            int[] cursor = Arrays.copyOf(starts, counts.length);
+            for (int i = 0; i < size; i++) {
+                int target = cursor[shardIndexes[i]]++;
+                sortedNames[target] = names[i];
+                sortedBalances[target] = balances[i];
+            }
+            for (int s = 0; s < counts.length; s++) {
+                if (counts[s] > 0) {
+                    registerRun(targets[s], s, sortedNames, sortedBalances, starts[s], starts[s + 1]);
+                }
+            }
+            int flushed = size;
+            Arrays.fill(names, 0, size, null);
+            size = 0;
+            return flushed;
+        }
+    }
+
+    private void registerRun(Shard shard, int shardIndex, String[] names, long[] balances, int from, int to) {
+        shard.writeLock.lock();
+        try {
+            for (int i = from; i < to; i++) {
+                shard.index(names[i], encodeId(shardIndex, shard.append(names[i], balances[i])));
+            }
+        } finally {
+            shard.writeLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.fawry.ecommerce.repository;
+
+import com.fawry.ecommerce.model.product.Product;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Repository of catalog products indexed by product id
+ */
+public class ProductRepository {
+    private final Map<Long, Product> products;
+
+    /**
+     * Constructor for an empty ProductRepository
+     */
+    public ProductRepository() {
+        this.products = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Register a product
+     * @param product the product to register
+     */
+    public void register(Product product) {
+        products.put(product.getId(), product);
+    }
+
+    /**
+     * Register a batch of products
+     * @param batch the products to register
+     */
+    public void registerAll(Collection<? extends Product> batch) {
+        for (Product product : batch) {
+            products.put(product.getId(), product);
+        }
+    }
+
+    /**
+     * Find a product by id
+     * @param id the product id
+     * @return the product, or empty if not registered
+     */
+    public Optional<Product> findById(long id) {
+        return Optional.ofNullable(products.get(id));
+    }
+
+    /**
+     * Get all registered products
+     * @return a snapshot list of the products, in no particular order
+     */
+    public List<Product> findAll() {
+        return new ArrayList<>(products.values());
+    }
+
+    /**
+     * Get the number of registered products
+     * @return the product count
+     */
+    public int size() {
+        return products.size();
+    }
+}
@@ -0,0 +1,234 @@
+package com.fawry.ecommerce.service;
+
+import com.fawry.ecommerce.model.product.Dimensions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Standard shipping boxes with a precomputed smallest-box lookup
+ *
+ * Sides are measured on a grid of {@code gridStep} centimetres: a box covers the grid
+ * cells its sides reach rounded down, an item falls in the cell its sides reach rounded
+ * up, and the smallest box covering each cell of sorted sides is stored in a dense
+ * table when the catalog is built. Picking a box is then one array read, never a box
+ * that is too small, and at worst one size larger than needed for items within a grid
+ * step of a box's side.
+ * Items are billed the greater of their weight and the volumetric weight of their box,
+ * or of their own dimensions if no box fits; items without dimensions by weight only.
+ */
+public final class BoxCatalog {
+    /** Cubic centimetres per billed kilogram used by most parcel carriers */
+    public static final double STANDARD_DIVISOR = 5_000;
+
+    private static final BoxCatalog STANDARD = builder()
+            .box("S", 25, 20, 10)
+            .box("M", 40, 30, 20)
+            .box("L", 60, 40, 40)
+            .box("XL", 80, 60, 50)
+            .box("TV", 130, 85, 20)
+            .build();
+
+    private final List<Box> boxes;
+    private final double divisor;
+    private final double gridStep;
+    private final int cells;
+    // Index of the smallest covering box per cell, -1 if none; indexed by sorted sides
+    private final byte[] smallest;
+
+    private BoxCatalog(Builder builder) {
+        List<Box> sorted = new ArrayList<>(builder.boxes);
+        sorted.sort(Comparator.comparingDouble((Box box) -> box.getDimensions().getVolume()));
+        this.boxes = List.copyOf(sorted);
+        this.divisor = builder.divisor;
+        this.gridStep = builder.gridStep;
+        int largest = 0;
+        for (Box box : boxes) {
+            largest = Math.max(largest, floorCell(box.getDimensions().getLongest()));
+        }
+        this.cells = largest + 1;
+        this.smallest = new byte[cells * cells * cells];
+        Arrays.fill(smallest, (byte) -1);
+        // Larger boxes first, so each cell ends up holding the smallest box covering it
+        for (int b = boxes.size() - 1; b >= 0; b--) {
+            Dimensions dimensions = boxes.get(b).getDimensions();
+            int longest = floorCell(dimensions.getLongest());
+            int middle = floorCell(dimensions.getMiddle());
+            int shortest = floorCell(dimensions.getShortest());
+            for (int i = 0; i <= longest; i++) {
+                for (int j = 0; j <= Math.min(i, middle); j++) {
+                    for (int k = 0; k <= Math.min(j, shortest); k++) {
+                        smallest[(i * cells + j) * cells + k] = (byte) b;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the shared catalog of common box sizes, billed with the standard divisor
+     * @return the standard catalog
+     */
+    public static BoxCatalog standard() {
+        return STANDARD;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Get the boxes, smallest volume first
+     * @return the boxes
+     */
+    public List<Box> getBoxes() {
+        return boxes;
+    }
+
+    public double getDivisor() {
+        return divisor;
+    }
+
+    /**
+     * Find the smallest box an item fits in
+     * @param dimensions the item's dimensions
+     * @return the box, or null if the item is larger than every box
+     */
+    public Box boxFor(Dimensions dimensions) {
+        int longest = ceilCell(dimensions.getLongest());
+        if (longest >= cells) {
+            return null;
+        }
+        int index = smallest[(longest * cells + ceilCell(dimensions.getMiddle())) * cells
+                + ceilCell(dimensions.getShortest())];
+        return index < 0 ? null : boxes.get(index);
+    }
+
+    /**
+     * Get the weight billed for shipping one unit of an item
+     * @param item the item
+     * @return the greater of the actual and the volumetric weight, in kilograms
+     */
+    public double chargeableWeight(ShippingItem item) {
+        Dimensions dimensions = item.getDimensions();
+        if (dimensions == null) {
+            return item.getWeight();
+        }
+        Box box = boxFor(dimensions);
+        Dimensions packed = box != null ? box.getDimensions() : dimensions;
+        return Math.max(item.getWeight(), packed.volumetricWeight(divisor));
+    }
+
+    private int floorCell(double side) {
+        return (int) Math.floor(side / gridStep);
+    }
+
+    private int ceilCell(double side) {
+        return (int) Math.ceil(side / gridStep);
+    }
+
+    /**
+     * A standard box size
+     */
+    public static final class Box {
+        private final String name;
+        private final Dimensions dimensions;
+
+        Box(String name, Dimensions dimensions) {
+            this.name = name;
+            this.dimensions = dimensions;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Dimensions getDimensions() {
+            return dimensions;
+        }
+
+        @Override
+        public String toString() {
+            return name + " " + dimensions;
+        }
+    }
+
+    /**
+     * Builder for BoxCatalog
+     */
+    public static final class Builder {
+        // Cells are stored as bytes, and the table grows with the cube of the grid size
+        private static final int MAX_BOXES = 127;
+        private static final int MAX_CELLS = 256;
+
+        private final List<Box> boxes = new ArrayList<>();
+        private double divisor = STANDARD_DIVISOR;
+        private double gridStep = 2.0;
+
+        private Builder() {
+        }
+
+        /**
+         * Add a box size
+         * @param name the box name
+         * @param length the inner length in centimetres
+         * @param width the inner width in centimetres
+         * @param height the inner height in centimetres
+         * @return this builder
+         * @throws IllegalArgumentException if the name is blank or too many boxes were added
+         */
+        public Builder box(String name, double length, double width, double height) {
+            if (name == null || name.isBlank()) {
+                throw new IllegalArgumentException("Box name must not be blank");
+            }
+            if (boxes.size() == MAX_BOXES) {
+                throw new IllegalArgumentException("A catalog holds at most " + MAX_BOXES + " boxes");
+            }
+            boxes.add(new Box(name, new Dimensions(length, width, height)));
+            return this;
+        }
+
+        /**
+         * Set the carrier's volumetric divisor
+         * @param divisor the cubic centimetres per billed kilogram
+         * @return this builder
+         */
+        public Builder divisor(double divisor) {
+            if (!(divisor > 0)) {
+                throw new IllegalArgumentException("Divisor must be greater than 0");
+            }
+            this.divisor = divisor;
+            return this;
+        }
+
+        /**
+         * Set the resolution of the lookup table
+         * @param gridStep the cell size in centimetres
+         * @return this builder
+         */
+        public Builder gridStep(double gridStep) {
+            if (!(gridStep > 0)) {
+                throw new IllegalArgumentException("Grid step must be greater than 0");
+            }
+            this.gridStep = gridStep;
+            return this;
+        }
+
+        /**
+         * Build the catalog and its lookup table
+         * @return the catalog
+         * @throws IllegalArgumentException if the largest box spans too many grid cells
+         */
+        public BoxCatalog build() {
+            for (Box box : boxes) {
+                if (box.getDimensions().getLongest() / gridStep >= MAX_CELLS) {
+                    throw new IllegalArgumentException("Box " + box.getName() + " spans more than "
+                            + MAX_CELLS + " grid cells; use a larger grid step");
+                }
+            }
+            return new BoxCatalog(this);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.fawry.ecommerce.service;
+
+import com.fawry.ecommerce.order.Order;
+
+/**
+ * Interface for components notified of every completed checkout
+ * Listeners run on the checkout thread after payment and stock updates are applied
+ */
+public interface CheckoutListener {
+    /**
+     * Called once an order has been paid for and its stock reserved
+     * @param order the completed order
+     */
+    void onCheckoutCompleted(Order order);
+
+    /**
+     * Called once an order has been paid for, with what the order holds until it is delivered or cancelled
+     * Listeners that give those resources back, such as a refund engine, override this method
+     * @param order the completed order
+     * @param reservations the order's warehouse allocation, delivery slot and stock lots
+     */
+    default void onCheckoutCompleted(Order order, OrderReservations reservations) {
+        onCheckoutCompleted(order);
+    }
+
+    /**
+     * Receiver of listener failures, which cannot undo the paid order they were notified of
+     */
+    @FunctionalInterface
+    interface FailureHandler {
+        /** Handler printing the failure to {@code System.err} */
+        FailureHandler PRINT = (listener, order, error) ->
+            System.err.println("Checkout listener failed for order " + order.getOrderId() + ": " + error.getMessage());
+
+        /**
+         * Receive a listener failure; runs on the notifying thread and must not throw
+         * @param listener the failed listener
+         * @param order the order it was notified of
+         * @param error the error it threw
+         */
+        void onListenerFailed(CheckoutListener listener, Order order, RuntimeException error);
+    }
+}
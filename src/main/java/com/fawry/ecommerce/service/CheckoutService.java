@@ -1,31 +1,88 @@
 package com.fawry.ecommerce.service;
 
+import com.fawry.ecommerce.delivery.DeliverySchedule;
+import com.fawry.ecommerce.delivery.SlotBooking;
+import com.fawry.ecommerce.digital.DigitalOrder;
+import com.fawry.ecommerce.digital.VoucherPool;
+import com.fawry.ecommerce.limit.PurchaseLimiter;
 import com.fawry.ecommerce.model.Cart;
 import com.fawry.ecommerce.model.CartItem;
 import com.fawry.ecommerce.model.customer.Customer;
+import com.fawry.ecommerce.model.product.ExpirableProduct;
 import com.fawry.ecommerce.model.product.Product;
+import com.fawry.ecommerce.model.product.ScratchCard;
 import com.fawry.ecommerce.model.product.Shippable;
 import com.fawry.ecommerce.exception.InsufficientBalanceException;
 import com.fawry.ecommerce.exception.InsufficientStockException;
 import com.fawry.ecommerce.exception.ProductExpiredException;
+import com.fawry.ecommerce.exception.PurchaseLimitExceededException;
+import com.fawry.ecommerce.exception.RateLimitExceededException;
+import com.fawry.ecommerce.order.FulfillmentStatus;
+import com.fawry.ecommerce.order.LineOutcome;
+import com.fawry.ecommerce.order.Order;
+import com.fawry.ecommerce.order.OrderLine;
+import com.fawry.ecommerce.order.PartialCheckoutResult;
+import com.fawry.ecommerce.promotion.PricingResult;
+import com.fawry.ecommerce.promotion.PromotionTable;
 import com.fawry.ecommerce.service.ShippingService.ShippableCartItem;
+import com.fawry.ecommerce.text.TextRenderer;
+import com.fawry.ecommerce.warehouse.Allocation;
+import com.fawry.ecommerce.warehouse.Shipment;
+import com.fawry.ecommerce.warehouse.WarehouseAllocator;
 
+import java.io.PrintStream;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Service class for handling checkout operations
- * Implements Singleton Pattern to ensure only one checkout service instance
+ * Implements Singleton Pattern for the shared instance; independent instances wired to
+ * their own shipping service are created per tenant or region, usually through
+ * {@link ServiceContext}
  */
 public class CheckoutService {
+    public static final int DEFAULT_IDEMPOTENCY_KEYS = 100_000;
+    public static final long DEFAULT_IDEMPOTENCY_TTL_MILLIS = TimeUnit.MINUTES.toMillis(10);
     private static volatile CheckoutService instance;
-    private ShippingService shippingService;
+    private final ShippingService shippingService;
+    private final List<CheckoutListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile PromotionTable promotions = PromotionTable.EMPTY;
+    private volatile WarehouseAllocator warehouseAllocator;
+    private volatile DeliverySchedule deliverySchedule;
+    private volatile PurchaseLimiter purchaseLimiter;
+    private volatile VoucherPool voucherPool;
+    private volatile PrintStream output;
+    private volatile CheckoutListener.FailureHandler listenerFailureHandler = CheckoutListener.FailureHandler.PRINT;
+    private final LongAdder listenerFailures = new LongAdder();
+    private volatile IdempotencyCache<Order> idempotencyCache =
+            new IdempotencyCache<>(DEFAULT_IDEMPOTENCY_KEYS, DEFAULT_IDEMPOTENCY_TTL_MILLIS);
     
     /**
-     * Private constructor for CheckoutService (Singleton Pattern)
+     * Private constructor for the shared CheckoutService (Singleton Pattern)
      */
     private CheckoutService() {
-        this.shippingService = ShippingService.getInstance();
+        this(ShippingService.getInstance());
+    }
+    
+    /**
+     * Constructor for an independent CheckoutService
+     * @param shippingService the shipping service pricing and processing its shipments
+     * @throws IllegalArgumentException if the shipping service is null
+     */
+    public CheckoutService(ShippingService shippingService) {
+        if (shippingService == null) {
+            throw new IllegalArgumentException("Shipping service must not be null");
+        }
+        this.shippingService = shippingService;
     }
     
     /**
@@ -44,16 +101,236 @@ public class CheckoutService {
         return instance;
     }
     
+    /**
+     * Print receipts and delivery slots to a stream instead of {@code System.out}
+     * Shipment notices are printed by the shipping service, see {@link ShippingService#setOutput}
+     * @param output the stream, e.g. one discarding its input under load, or null for {@code System.out}
+     */
+    public void setOutput(PrintStream output) {
+        this.output = output;
+    }
+    
+    /**
+     * Get the stream receipts are printed to
+     * @return the injected stream, or the current {@code System.out}
+     */
+    public PrintStream getOutput() {
+        PrintStream out = output;
+        return out != null ? out : System.out;
+    }
+    
+    /**
+     * Register a listener notified after every completed checkout
+     * @param listener the listener to add
+     */
+    public void addCheckoutListener(CheckoutListener listener) {
+        listeners.add(listener);
+    }
+    
+    /**
+     * Unregister a checkout listener
+     * @param listener the listener to remove
+     */
+    public void removeCheckoutListener(CheckoutListener listener) {
+        listeners.remove(listener);
+    }
+    
+    /**
+     * Set the receiver of checkout listener failures, printing to {@code System.err} by default
+     * @param handler the handler
+     * @throws IllegalArgumentException if the handler is null
+     */
+    public void setListenerFailureHandler(CheckoutListener.FailureHandler handler) {
+        if (handler == null) {
+            throw new IllegalArgumentException("Listener failure handler must not be null");
+        }
+        this.listenerFailureHandler = handler;
+    }
+    
+    public CheckoutListener.FailureHandler getListenerFailureHandler() {
+        return listenerFailureHandler;
+    }
+    
+    /**
+     * Get the number of times a checkout listener threw
+     * @return the listener failure count
+     */
+    public long getListenerFailureCount() {
+        return listenerFailures.sum();
+    }
+    
+    /**
+     * Replace the active promotions
+     * The table is swapped atomically, so checkouts in flight keep the table they started with
+     * @param promotions the compiled promotion table
+     * @throws IllegalArgumentException if the table is null
+     */
+    public void setPromotions(PromotionTable promotions) {
+        if (promotions == null) {
+            throw new IllegalArgumentException("Promotion table must not be null");
+        }
+        this.promotions = promotions;
+    }
+    
+    public PromotionTable getPromotions() {
+        return promotions;
+    }
+    
+    /**
+     * Enable allocation of shipments across warehouses for carts with a delivery zone
+     * @param warehouseAllocator the allocator, or null to ship everything as one package
+     */
+    public void setWarehouseAllocator(WarehouseAllocator warehouseAllocator) {
+        this.warehouseAllocator = warehouseAllocator;
+    }
+    
+    /**
+     * Require a delivery slot for carts with a delivery zone and shippable items
+     * Each such checkout books the zone's earliest free slot and fails if the calendar is full
+     * @param deliverySchedule the schedule, or null to ship without slots
+     */
+    public void setDeliverySchedule(DeliverySchedule deliverySchedule) {
+        this.deliverySchedule = deliverySchedule;
+    }
+    
+    public DeliverySchedule getDeliverySchedule() {
+        return deliverySchedule;
+    }
+    
+    /**
+     * Enforce per-customer request rates and purchase caps before any stock is validated
+     * @param purchaseLimiter the limiter, or null for no limits
+     */
+    public void setPurchaseLimiter(PurchaseLimiter purchaseLimiter) {
+        this.purchaseLimiter = purchaseLimiter;
+    }
+    
+    public PurchaseLimiter getPurchaseLimiter() {
+        return purchaseLimiter;
+    }
+    
+    /**
+     * Enable the digital fulfillment path of {@link #checkoutDigital}
+     * @param voucherPool the pool issuing voucher codes, or null to disable it
+     */
+    public void setVoucherPool(VoucherPool voucherPool) {
+        this.voucherPool = voucherPool;
+    }
+    
+    public VoucherPool getVoucherPool() {
+        return voucherPool;
+    }
+    
+    public ShippingService getShippingService() {
+        return shippingService;
+    }
+    
+    public WarehouseAllocator getWarehouseAllocator() {
+        return warehouseAllocator;
+    }
+    
+    /**
+     * Replace the cache remembering the outcomes of keyed checkouts
+     * Keys remembered by the previous cache are forgotten
+     * @param idempotencyCache the cache
+     * @throws IllegalArgumentException if the cache is null
+     */
+    public void setIdempotencyCache(IdempotencyCache<Order> idempotencyCache) {
+        if (idempotencyCache == null) {
+            throw new IllegalArgumentException("Idempotency cache must not be null");
+        }
+        this.idempotencyCache = idempotencyCache;
+    }
+    
+    public IdempotencyCache<Order> getIdempotencyCache() {
+        return idempotencyCache;
+    }
+    
+    /**
+     * Process checkout at most once per customer and idempotency key
+     * The first call with a key checks out normally; a retry by the same customer with the
+     * same key, while the key is remembered, gets the first call's order or rejection back
+     * without validating or charging again, waiting for it if the first call is still running.
+     * Only terminal outcomes are remembered: an order, or a rejection for balance, stock or
+     * expiry. Runtime failures such as rate limiting or a full delivery calendar, and errors,
+     * are reported to the callers waiting at the time and then forgotten, so a later retry runs again.
+     * @param customer the customer
+     * @param cart the shopping cart
+     * @param idempotencyKey the client-chosen request id, reused on retries
+     * @return the order of the first call with this key
+     * @throws InsufficientBalanceException if the first call was rejected for insufficient balance
+     * @throws InsufficientStockException if the first call was rejected for insufficient stock
+     * @throws ProductExpiredException if the first call was rejected for an expired item
+     * @throws IllegalArgumentException if the key is blank
+     */
+    public Order checkout(Customer customer, Cart cart, String idempotencyKey)
+            throws InsufficientBalanceException, InsufficientStockException, ProductExpiredException {
+        CompletableFuture<Order> outcome = new CompletableFuture<>();
+        IdempotencyCache<Order> cache = idempotencyCache;
+        CompletableFuture<Order> original = cache.putIfAbsent(customer.getId(), idempotencyKey, outcome);
+        if (original != null) {
+            return awaitOutcome(original);
+        }
+        try {
+            Order order = checkout(customer, cart);
+            outcome.complete(order);
+            return order;
+        } catch (InsufficientBalanceException | InsufficientStockException | ProductExpiredException e) {
+            outcome.completeExceptionally(e);
+            throw e;
+        } catch (RuntimeException | Error e) {
+            cache.remove(customer.getId(), idempotencyKey, outcome);
+            outcome.completeExceptionally(e);
+            throw e;
+        }
+    }
+    
+    /**
+     * Wait for the outcome of an earlier keyed checkout and replay it
+     * @param original the earlier outcome
+     * @return the earlier order
+     * @throws InsufficientBalanceException if the earlier checkout was rejected for insufficient balance
+     * @throws InsufficientStockException if the earlier checkout was rejected for insufficient stock
+     * @throws ProductExpiredException if the earlier checkout was rejected for an expired item
+     */
+    private Order awaitOutcome(CompletableFuture<Order> original)
+            throws InsufficientBalanceException, InsufficientStockException, ProductExpiredException {
+        try {
+            return original.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof InsufficientBalanceException) {
+                throw (InsufficientBalanceException) cause;
+            }
+            if (cause instanceof InsufficientStockException) {
+                throw (InsufficientStockException) cause;
+            }
+            if (cause instanceof ProductExpiredException) {
+                throw (ProductExpiredException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+    
     /**
      * Process checkout for a customer's cart
      * @param customer the customer
      * @param cart the shopping cart
+     * @return the completed order
      * @throws InsufficientBalanceException if customer has insufficient balance
      * @throws InsufficientStockException if any item is out of stock
      * @throws ProductExpiredException if any item is expired
+     * @throws RateLimitExceededException if the customer sends checkouts too fast
+     * @throws PurchaseLimitExceededException if the order would exceed a purchase cap
      * @throws IllegalArgumentException if cart is empty
      */
-    public void checkout(Customer customer, Cart cart) 
+    public Order checkout(Customer customer, Cart cart) 
             throws InsufficientBalanceException, InsufficientStockException, 
                    ProductExpiredException, IllegalStateException {
         
@@ -62,44 +339,522 @@ public class CheckoutService {
             throw new IllegalStateException("Cart is empty");
         }
         
+        // Turn away abusive traffic before it competes for product counters
+        PurchaseLimiter limiter = purchaseLimiter;
+        if (limiter == null) {
+            return placeOrder(customer, cart);
+        }
+        long key = PurchaseLimiter.keyOf(customer);
+        limiter.acquire(key);
+        List<CartItem> items = cart.getItems();
+        limiter.reserve(key, items);
+        boolean placed = false;
+        try {
+            Order order = placeOrder(customer, cart);
+            placed = true;
+            return order;
+        } finally {
+            if (!placed) {
+                limiter.release(key, items);
+            }
+        }
+    }
+    
+    /**
+     * Validate, charge and ship a non-empty cart
+     * @param customer the customer
+     * @param cart the shopping cart
+     * @return the completed order
+     */
+    private Order placeOrder(Customer customer, Cart cart)
+            throws InsufficientBalanceException, InsufficientStockException, ProductExpiredException {
         // Validate all items before processing
         validateCartItems(cart);
         
         // Calculate totals
-        double subtotal = cart.getSubtotal();
-        List<ShippableCartItem> shippableItems = getShippableItems(cart);
-        double shippingFee = shippingService.calculateShippingFee(
+        PricingResult pricing = promotions.evaluate(cart.getItems(), cart.getCouponCodes());
+        double subtotal = pricing.getSubtotal();
+        double discount = pricing.getTotalDiscount();
+        List<ShippableCartItem> shippableItems = getShippableItems(cart.getItems());
+        Allocation allocation = allocateWarehouses(cart.getDeliveryZone(), cart.getItems());
+        double shippingFee = allocation != null ? allocation.getShippingFee() : shippingService.calculateShippingFee(
             shippableItems.stream()
                 .map(item -> (ShippingItem) item)
                 .collect(java.util.stream.Collectors.toList())
         );
-        double totalAmount = subtotal + shippingFee;
+        double totalAmount = subtotal - discount + shippingFee;
         
         // Check customer balance
         if (!customer.hasSufficientBalance(totalAmount)) {
+            if (allocation != null) {
+                allocation.release();
+            }
             throw new InsufficientBalanceException(
                 String.format("Insufficient balance. Required: $%.2f, Available: $%.2f", 
                             totalAmount, customer.getBalance()));
         }
         
-        // Process payment
-        customer.deductBalance(totalAmount);
+        // Hold a delivery slot before touching stock, so a full calendar rejects the order cheaply
+        SlotBooking delivery = bookDelivery(cart.getDeliveryZone(), shippableItems, allocation);
         
-        // Reduce product quantities
-        for (CartItem item : cart.getItems()) {
-            item.getProduct().reduceQuantity(item.getQuantity());
+        // Reduce product quantities before payment, so a concurrent sale of the last units fails cleanly
+        Map<Long, SortedMap<LocalDate, Integer>> lots = new HashMap<>();
+        try {
+            reserveStock(cart, allocation, lots);
+        } catch (InsufficientStockException e) {
+            if (delivery != null) {
+                delivery.release();
+            }
+            throw e;
         }
         
-        // Process shipment if there are shippable items
-        if (!shippableItems.isEmpty()) {
+        // Process payment; a concurrent debit may have spent the balance since the check
+        if (!customer.deductBalance(totalAmount)) {
+            returnStock(cart.getItems(), lots);
+            if (allocation != null) {
+                allocation.release();
+            }
+            if (delivery != null) {
+                delivery.release();
+            }
+            throw new InsufficientBalanceException(
+                String.format("Insufficient balance. Required: $%.2f, Available: $%.2f", 
+                            totalAmount, customer.getBalance()));
+        }
+        
+        // Process shipment if there are shippable items, once per warehouse when allocated
+        if (allocation != null) {
+            for (Shipment shipment : allocation.getShipments()) {
+                shippingService.processShipment(shipment.getShippableItems());
+            }
+        } else if (!shippableItems.isEmpty()) {
             shippingService.processShipment(shippableItems);
         }
+        printDeliverySlot(delivery);
         
         // Print checkout receipt
-        printCheckoutReceipt(cart, subtotal, shippingFee, totalAmount, customer.getBalance());
+        printCheckoutReceipt(cart.getItems(), subtotal, discount, shippingFee, totalAmount, customer.getBalance());
+        
+        // Record the order before the cart is cleared
+        Order order = createOrder(customer, cart.getItems(), subtotal, discount, shippingFee, totalAmount);
         
         // Clear the cart
         cart.clear();
+        
+        notifyListeners(order, new OrderReservations(allocation, delivery, lots));
+        return order;
+    }
+    
+    /**
+     * Process checkout of a cart holding only digital goods
+     * The fast path for scratch card top-ups: stock is reserved, voucher codes are
+     * issued from the pool and the customer is charged, with no shipping, warehouse
+     * allocation, delivery slot or printed receipt. Limits and promotions still apply.
+     * @param customer the customer
+     * @param cart the shopping cart
+     * @return the order and its voucher codes
+     * @throws InsufficientBalanceException if customer has insufficient balance
+     * @throws InsufficientStockException if the stock or the voucher pool cannot cover a line
+     * @throws RateLimitExceededException if the customer sends checkouts too fast
+     * @throws PurchaseLimitExceededException if the order would exceed a purchase cap
+     * @throws IllegalArgumentException if the cart holds a physical product
+     * @throws IllegalStateException if cart is empty or no voucher pool is set
+     */
+    public DigitalOrder checkoutDigital(Customer customer, Cart cart)
+            throws InsufficientBalanceException, InsufficientStockException {
+        VoucherPool pool = voucherPool;
+        if (pool == null) {
+            throw new IllegalStateException("Digital checkout requires a voucher pool");
+        }
+        if (cart.isEmpty()) {
+            throw new IllegalStateException("Cart is empty");
+        }
+        List<CartItem> items = cart.getItems();
+        for (CartItem item : items) {
+            if (!(item.getProduct() instanceof ScratchCard)) {
+                throw new IllegalArgumentException("Product " + item.getProduct().getName() + " is not a digital good");
+            }
+        }
+        
+        PurchaseLimiter limiter = purchaseLimiter;
+        if (limiter == null) {
+            return placeDigitalOrder(customer, cart, items, pool);
+        }
+        long key = PurchaseLimiter.keyOf(customer);
+        limiter.acquire(key);
+        limiter.reserve(key, items);
+        boolean placed = false;
+        try {
+            DigitalOrder order = placeDigitalOrder(customer, cart, items, pool);
+            placed = true;
+            return order;
+        } finally {
+            if (!placed) {
+                limiter.release(key, items);
+            }
+        }
+    }
+    
+    /**
+     * Reserve, issue and charge a digital-only cart
+     * @param customer the customer
+     * @param cart the shopping cart
+     * @param items the cart's items
+     * @param pool the voucher pool
+     * @return the order and its voucher codes
+     */
+    private DigitalOrder placeDigitalOrder(Customer customer, Cart cart, List<CartItem> items, VoucherPool pool)
+            throws InsufficientBalanceException, InsufficientStockException {
+        Map<Long, SortedMap<LocalDate, Integer>> lots = new HashMap<>();
+        reserveStock(cart, null, lots);
+        Map<Long, List<String>> vouchers = new HashMap<>();
+        String[][] issued = new String[items.size()][];
+        for (int i = 0; i < items.size(); i++) {
+            CartItem item = items.get(i);
+            long productId = item.getProduct().getId();
+            issued[i] = pool.issue(productId, item.getQuantity());
+            if (issued[i] == null) {
+                undoDigital(items, lots, issued, pool);
+                throw new InsufficientStockException("Not enough vouchers left for " + item.getProduct().getName());
+            }
+            vouchers.put(productId, List.of(issued[i]));
+        }
+        
+        PricingResult pricing = promotions.evaluate(items, cart.getCouponCodes());
+        double subtotal = pricing.getSubtotal();
+        double discount = pricing.getTotalDiscount();
+        double totalAmount = subtotal - discount;
+        if (!customer.deductBalance(totalAmount)) {
+            undoDigital(items, lots, issued, pool);
+            throw new InsufficientBalanceException(
+                String.format("Insufficient balance. Required: $%.2f, Available: $%.2f", 
+                            totalAmount, customer.getBalance()));
+        }
+        
+        Order order = createOrder(customer, items, subtotal, discount, 0.0, totalAmount);
+        cart.clear();
+        notifyListeners(order, new OrderReservations(null, null, lots, vouchers));
+        return new DigitalOrder(order, vouchers);
+    }
+    
+    /**
+     * Give back the stock and voucher codes of a failed digital checkout
+     * @param items the reserved items
+     * @param lots the lots taken for lot-tracked items
+     * @param issued the codes issued so far, by line
+     * @param pool the voucher pool
+     */
+    private void undoDigital(List<CartItem> items, Map<Long, SortedMap<LocalDate, Integer>> lots,
+                             String[][] issued, VoucherPool pool) {
+        returnStock(items, lots);
+        for (int i = 0; i < items.size(); i++) {
+            pool.restore(items.get(i).getProduct().getId(), issued[i]);
+        }
+    }
+    
+    /**
+     * Process checkout of whatever the cart's stock allows
+     * Every line is classified and its available quantity reserved in one pass: expired
+     * lines and sold-out lines are skipped, short lines ship what is left. The customer
+     * is charged, and shipping is computed, for the fulfilled quantities only. Fulfilled
+     * quantities leave the cart, while the unfulfilled rest stays in it for a later try.
+     * Warehouse allocation, when configured, must still cover all fulfilled lines.
+     * @param customer the customer
+     * @param cart the shopping cart
+     * @return the order for the fulfilled lines, if any, and the outcome of every line
+     * @throws InsufficientBalanceException if customer cannot pay for the fulfilled lines
+     * @throws InsufficientStockException if the warehouses serving the zone cannot cover the fulfilled lines
+     * @throws RateLimitExceededException if the customer sends checkouts too fast
+     * @throws PurchaseLimitExceededException if the requested quantities would exceed a purchase cap
+     * @throws IllegalStateException if cart is empty
+     */
+    public PartialCheckoutResult checkoutPartial(Customer customer, Cart cart)
+            throws InsufficientBalanceException, InsufficientStockException {
+        if (cart.isEmpty()) {
+            throw new IllegalStateException("Cart is empty");
+        }
+        
+        // Caps count the requested quantities up front; the unfulfilled rest is given back
+        List<CartItem> items = cart.getItems();
+        PurchaseLimiter limiter = purchaseLimiter;
+        if (limiter == null) {
+            return placePartialOrder(customer, cart, items);
+        }
+        long key = PurchaseLimiter.keyOf(customer);
+        limiter.acquire(key);
+        limiter.reserve(key, items);
+        PartialCheckoutResult result = null;
+        try {
+            result = placePartialOrder(customer, cart, items);
+            return result;
+        } finally {
+            if (result == null || !result.hasOrder()) {
+                limiter.release(key, items);
+            } else {
+                for (int i = 0; i < items.size(); i++) {
+                    limiter.release(key, items.get(i).getProduct(),
+                                    result.getLines().get(i).getMissingQuantity());
+                }
+            }
+        }
+    }
+    
+    /**
+     * Reserve, charge and ship whatever the stock allows of a non-empty cart
+     * @param customer the customer
+     * @param cart the shopping cart
+     * @param items the cart's items
+     * @return the order for the fulfilled lines, if any, and the outcome of every line
+     */
+    private PartialCheckoutResult placePartialOrder(Customer customer, Cart cart, List<CartItem> items)
+            throws InsufficientBalanceException, InsufficientStockException {
+        List<LineOutcome> outcomes = new ArrayList<>(items.size());
+        List<CartItem> fulfilled = new ArrayList<>(items.size());
+        Map<Long, SortedMap<LocalDate, Integer>> lots = new HashMap<>();
+        for (CartItem item : items) {
+            Product product = item.getProduct();
+            int requested = item.getQuantity();
+            FulfillmentStatus status;
+            int taken = 0;
+            if (isExpired(product)) {
+                status = FulfillmentStatus.EXPIRED;
+            } else {
+                taken = takeAvailable(product, requested, lots);
+                status = taken == requested ? FulfillmentStatus.FULFILLED
+                        : taken > 0 ? FulfillmentStatus.SHORT_SHIPPED : FulfillmentStatus.REJECTED;
+            }
+            if (taken > 0) {
+                fulfilled.add(new CartItem(product, taken));
+            }
+            outcomes.add(new LineOutcome(product.getId(), product.getName(), requested, taken, status));
+        }
+        if (fulfilled.isEmpty()) {
+            return new PartialCheckoutResult(null, outcomes);
+        }
+        
+        // Calculate totals over the fulfilled quantities
+        PricingResult pricing = promotions.evaluate(fulfilled, cart.getCouponCodes());
+        double subtotal = pricing.getSubtotal();
+        double discount = pricing.getTotalDiscount();
+        List<ShippableCartItem> shippableItems = getShippableItems(fulfilled);
+        Allocation allocation;
+        try {
+            allocation = allocateWarehouses(cart.getDeliveryZone(), fulfilled);
+        } catch (InsufficientStockException e) {
+            returnStock(fulfilled, lots);
+            throw e;
+        }
+        double shippingFee = allocation != null ? allocation.getShippingFee()
+                : shippingService.calculateShippingFee(shippableItems, 1.0);
+        double totalAmount = subtotal - discount + shippingFee;
+        
+        // Hold a delivery slot for the shipped lines; a full calendar gives the stock back
+        SlotBooking delivery;
+        try {
+            delivery = bookDelivery(cart.getDeliveryZone(), shippableItems, allocation);
+        } catch (RuntimeException e) {
+            returnStock(fulfilled, lots);
+            throw e;
+        }
+        
+        // Check and debit in one step, so a concurrent debit cannot leave the order unpaid
+        if (!customer.deductBalance(totalAmount)) {
+            returnStock(fulfilled, lots);
+            if (allocation != null) {
+                allocation.release();
+            }
+            if (delivery != null) {
+                delivery.release();
+            }
+            throw new InsufficientBalanceException(
+                String.format("Insufficient balance. Required: $%.2f, Available: $%.2f", 
+                            totalAmount, customer.getBalance()));
+        }
+        
+        if (allocation != null) {
+            for (Shipment shipment : allocation.getShipments()) {
+                shippingService.processShipment(shipment.getShippableItems());
+            }
+        } else if (!shippableItems.isEmpty()) {
+            shippingService.processShipment(shippableItems);
+        }
+        printDeliverySlot(delivery);
+        printCheckoutReceipt(fulfilled, subtotal, discount, shippingFee, totalAmount, customer.getBalance());
+        Order order = createOrder(customer, fulfilled, subtotal, discount, shippingFee, totalAmount);
+        
+        for (CartItem item : fulfilled) {
+            cart.removeQuantity(item.getProduct(), item.getQuantity());
+        }
+        if (cart.isEmpty()) {
+            cart.clear();
+        }
+        
+        notifyListeners(order, new OrderReservations(allocation, delivery, lots));
+        return new PartialCheckoutResult(order, outcomes);
+    }
+    
+    /**
+     * Reserve as much of the requested quantity as the stock holds
+     * @param product the product
+     * @param requested the requested quantity
+     * @param lots receives the lots taken for a lot-tracked product
+     * @return the reserved quantity, 0 if sold out
+     */
+    private int takeAvailable(Product product, int requested, Map<Long, SortedMap<LocalDate, Integer>> lots) {
+        while (true) {
+            int onSale = product instanceof ExpirableProduct
+                    ? ((ExpirableProduct) product).getSellableQuantity() : product.getQuantity();
+            int taken = Math.min(requested, onSale);
+            if (taken <= 0) {
+                return 0;
+            }
+            // A concurrent sale may shrink the stock between the read and the reduction
+            if (take(product, taken, lots)) {
+                return taken;
+            }
+        }
+    }
+    
+    /**
+     * Reduce a product's quantity, recording the lots a lot-tracked product's units came from
+     * @param product the product
+     * @param quantity the quantity to take
+     * @param lots receives the lots taken, by product id
+     * @return true if taken, false if not enough units are on sale
+     */
+    private static boolean take(Product product, int quantity, Map<Long, SortedMap<LocalDate, Integer>> lots) {
+        if (!(product instanceof ExpirableProduct)) {
+            return product.reduceQuantity(quantity);
+        }
+        SortedMap<LocalDate, Integer> taken = ((ExpirableProduct) product).takeLots(quantity);
+        if (taken == null) {
+            return false;
+        }
+        lots.put(product.getId(), taken);
+        return true;
+    }
+    
+    /**
+     * Give reserved quantities back to stock, lot-tracked units to the lots they came from
+     * @param items the reserved items
+     * @param lots the lots taken, by product id; returned entries are removed
+     */
+    private static void returnStock(List<CartItem> items, Map<Long, SortedMap<LocalDate, Integer>> lots) {
+        for (CartItem item : items) {
+            SortedMap<LocalDate, Integer> taken = lots.remove(item.getProduct().getId());
+            if (taken != null) {
+                ((ExpirableProduct) item.getProduct()).returnLots(taken);
+            } else {
+                item.getProduct().increaseQuantity(item.getQuantity());
+            }
+        }
+    }
+    
+    private boolean isExpired(Product product) {
+        return product instanceof ExpirableProduct && ((ExpirableProduct) product).isExpired();
+    }
+    
+    /**
+     * Reduce the quantity of every cart item, undoing earlier reductions if one fails
+     * @param cart the cart
+     * @param allocation the warehouse allocation to release on failure, or null
+     * @param lots receives the lots taken for lot-tracked items
+     * @throws InsufficientStockException if a product sold out since validation
+     */
+    private void reserveStock(Cart cart, Allocation allocation, Map<Long, SortedMap<LocalDate, Integer>> lots)
+            throws InsufficientStockException {
+        List<CartItem> items = cart.getItems();
+        for (int i = 0; i < items.size(); i++) {
+            CartItem item = items.get(i);
+            if (!take(item.getProduct(), item.getQuantity(), lots)) {
+                returnStock(items.subList(0, i), lots);
+                if (allocation != null) {
+                    allocation.release();
+                }
+                throw new InsufficientStockException("Product " + item.getProduct().getName() + " sold out during checkout");
+            }
+        }
+    }
+    
+    /**
+     * Book the earliest free delivery slot of the cart's zone
+     * @param deliveryZone the cart's delivery zone, or null
+     * @param shippableItems the items to ship
+     * @param allocation the warehouse allocation to release if no slot is booked, or null
+     * @return the booking, or null if delivery slots do not apply to the cart
+     * @throws IllegalStateException if every slot of the zone is full
+     * @throws IllegalArgumentException if the schedule does not serve the zone
+     */
+    private SlotBooking bookDelivery(String deliveryZone, List<ShippableCartItem> shippableItems,
+                                     Allocation allocation) {
+        DeliverySchedule schedule = deliverySchedule;
+        if (schedule == null || deliveryZone == null || shippableItems.isEmpty()) {
+            return null;
+        }
+        SlotBooking booking = null;
+        try {
+            booking = schedule.bookNext(deliveryZone).orElseThrow(
+                () -> new IllegalStateException("No delivery slot available for zone " + deliveryZone));
+            return booking;
+        } finally {
+            if (booking == null && allocation != null) {
+                allocation.release();
+            }
+        }
+    }
+    
+    /**
+     * Reserve warehouse stock for the cart's delivery zone
+     * @param deliveryZone the cart's delivery zone, or null
+     * @param items the items to ship
+     * @return the allocation, or null if warehouse allocation does not apply to the cart
+     * @throws InsufficientStockException if the warehouses serving the zone cannot cover the items
+     */
+    private Allocation allocateWarehouses(String deliveryZone, List<CartItem> items) throws InsufficientStockException {
+        WarehouseAllocator allocator = warehouseAllocator;
+        if (allocator == null || deliveryZone == null) {
+            return null;
+        }
+        return allocator.allocate(deliveryZone, items);
+    }
+    
+    /**
+     * Build the immutable order record of a completed checkout
+     * @param customer the customer
+     * @param items the ordered items
+     * @param subtotal the subtotal
+     * @param discount the promotional discount
+     * @param shippingFee the shipping fee
+     * @param totalAmount the total amount
+     * @return the order
+     */
+    private Order createOrder(Customer customer, List<CartItem> items, double subtotal, double discount,
+                              double shippingFee, double totalAmount) {
+        List<OrderLine> lines = new ArrayList<>();
+        for (CartItem item : items) {
+            Product product = item.getProduct();
+            lines.add(new OrderLine(product.getId(), product.getName(), item.getQuantity(), product.getPrice()));
+        }
+        return new Order(Order.nextOrderId(), customer.getId(), customer.getName(), 
+                         System.currentTimeMillis(), lines, subtotal, discount, shippingFee, totalAmount);
+    }
+    
+    /**
+     * Notify listeners of a completed order
+     * A failing listener must not undo a paid order, so its error is counted, handed to
+     * the failure handler and skipped
+     * @param order the completed order
+     * @param reservations what the order holds
+     */
+    private void notifyListeners(Order order, OrderReservations reservations) {
+        for (CheckoutListener listener : listeners) {
+            try {
+                listener.onCheckoutCompleted(order, reservations);
+            } catch (RuntimeException e) {
+                listenerFailures.increment();
+                listenerFailureHandler.onListenerFailed(listener, order, e);
+            }
+        }
     }
     
     /**
@@ -113,14 +868,7 @@ public class CheckoutService {
         for (CartItem item : cart.getItems()) {
             Product product = item.getProduct();
             
-            // Check stock availability
-            if (!product.isAvailable(item.getQuantity())) {
-                throw new InsufficientStockException(
-                    String.format("Product %s is not available in requested quantity. Available: %d, Requested: %d",
-                                product.getName(), product.getQuantity(), item.getQuantity()));
-            }
-            
-            // Check if product is expired
+            // Check if product is expired; expired lots do not count as available
             if (product instanceof com.fawry.ecommerce.model.product.ExpirableProduct) {
                 com.fawry.ecommerce.model.product.ExpirableProduct expirable = 
                     (com.fawry.ecommerce.model.product.ExpirableProduct) product;
@@ -128,18 +876,25 @@ public class CheckoutService {
                     throw new ProductExpiredException("Product " + product.getName() + " is expired");
                 }
             }
+            
+            // Check stock availability
+            if (!product.isAvailable(item.getQuantity())) {
+                throw new InsufficientStockException(
+                    String.format("Product %s is not available in requested quantity. Available: %d, Requested: %d",
+                                product.getName(), product.getQuantity(), item.getQuantity()));
+            }
         }
     }
     
     /**
      * Get shippable items from the cart
-     * @param cart the cart
+     * @param items the cart items
      * @return list of shippable cart items
      */
-    private List<ShippableCartItem> getShippableItems(Cart cart) {
+    private List<ShippableCartItem> getShippableItems(List<CartItem> items) {
         List<ShippableCartItem> shippableItems = new ArrayList<>();
         
-        for (CartItem item : cart.getItems()) {
+        for (CartItem item : items) {
             Product product = item.getProduct();
             if (product instanceof Shippable) {
                 Shippable shippableProduct = (Shippable) product;
@@ -152,30 +907,29 @@ public class CheckoutService {
         return shippableItems;
     }
     
+    /**
+     * Print the booked delivery slot
+     * @param delivery the booking, or null if the order has no delivery slot
+     */
+    private void printDeliverySlot(SlotBooking delivery) {
+        if (delivery != null) {
+            TextRenderer.forCurrentThread().renderDeliverySlot(delivery.getSlot()).writeTo(getOutput());
+        }
+    }
+    
     /**
      * Print the checkout receipt
-     * @param cart the cart
+     * @param items the charged items
      * @param subtotal the subtotal
+     * @param discount the promotional discount, only printed when applied
      * @param shippingFee the shipping fee
      * @param totalAmount the total amount
      * @param remainingBalance the customer's remaining balance
      */
-    private void printCheckoutReceipt(Cart cart, double subtotal, double shippingFee, 
+    private void printCheckoutReceipt(List<CartItem> items, double subtotal, double discount, double shippingFee, 
                                     double totalAmount, double remainingBalance) {
-        System.out.println("** Checkout receipt **");
-        
-        // Print items
-        for (CartItem item : cart.getItems()) {
-            System.out.printf("%dx %s %.0f%n", 
-                item.getQuantity(), 
-                item.getProduct().getName(), 
-                item.getTotalPrice());
-        }
-        
-        System.out.println("----------------------");
-        System.out.printf("Subtotal %.0f%n", subtotal);
-        System.out.printf("Shipping %.0f%n", shippingFee);
-        System.out.printf("Amount %.0f%n", totalAmount);
-        System.out.printf("Customer balance after payment: $%.2f%n", remainingBalance);
+        TextRenderer.forCurrentThread()
+            .renderReceipt(items, subtotal, discount, shippingFee, totalAmount, remainingBalance)
+            .writeTo(getOutput());
     }
 } 
\ No newline at end of file
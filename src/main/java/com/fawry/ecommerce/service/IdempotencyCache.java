@@ -0,0 +1,204 @@
+package com.fawry.ecommerce.service;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded, time-expiring cache of request outcomes keyed by owner and idempotency key
+ *
+ * The first request with a key registers a pending outcome; later requests of the same
+ * owner with the same key get that outcome back, waiting for it if the first one is
+ * still running. Owners, e.g. customers, never see each other's keys. Entries are also
+ * kept in insertion order, and every insertion evicts from the oldest end anything
+ * expired or over capacity, so memory stays bounded at any request rate without a
+ * cleanup thread. Capacity never evicts a pending outcome, since a retry arriving
+ * meanwhile would run the request a second time; pending entries are moved to the
+ * young end instead, so the cache exceeds its capacity by at most the requests in flight.
+ * @param <V> the result type
+ */
+public class IdempotencyCache<V> {
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+    private final Map<Key, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final Queue<Entry<V>> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+
+    /**
+     * Constructor for IdempotencyCache
+     * @param maxEntries the maximum number of remembered keys
+     * @param ttlMillis how long a key is remembered, in milliseconds
+     */
+    public IdempotencyCache(int maxEntries, long ttlMillis) {
+        this(maxEntries, ttlMillis, System::currentTimeMillis);
+    }
+
+    /**
+     * Constructor for IdempotencyCache
+     * @param maxEntries the maximum number of remembered keys
+     * @param ttlMillis how long a key is remembered, in milliseconds
+     * @param clock the time source in epoch milliseconds
+     * @throws IllegalArgumentException if the capacity or time to live is not positive
+     */
+    public IdempotencyCache(int maxEntries, long ttlMillis, LongSupplier clock) {
+        if (maxEntries <= 0 || ttlMillis <= 0) {
+            throw new IllegalArgumentException("Capacity and time to live must be greater than 0");
+        }
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Register the pending outcome of a request unless its key is already known
+     * Keys registered this way are shared by every caller
+     * @param key the idempotency key
+     * @param outcome the outcome the caller will complete
+     * @return the outcome of the earlier request with this key, or null if the caller owns the key
+     * @throws IllegalArgumentException if the key is blank
+     */
+    public CompletableFuture<V> putIfAbsent(String key, CompletableFuture<V> outcome) {
+        return putIfAbsent(0, key, outcome);
+    }
+
+    /**
+     * Register the pending outcome of an owner's request unless the owner already used its key
+     * @param owner the owner of the key, e.g. a customer id
+     * @param key the idempotency key
+     * @param outcome the outcome the caller will complete
+     * @return the outcome of the owner's earlier request with this key, or null if the caller owns the key
+     * @throws IllegalArgumentException if the key is blank
+     */
+    public CompletableFuture<V> putIfAbsent(long owner, String key, CompletableFuture<V> outcome) {
+        if (key == null || key.isBlank()) {
+            throw new IllegalArgumentException("Idempotency key must not be blank");
+        }
+        long now = clock.getAsLong();
+        Entry<V> fresh = new Entry<>(new Key(owner, key), outcome, now);
+        while (true) {
+            Entry<V> existing = entries.putIfAbsent(fresh.key, fresh);
+            if (existing == null || (isExpired(existing, now) && entries.replace(fresh.key, existing, fresh))) {
+                insertionOrder.offer(fresh);
+                queued.incrementAndGet();
+                evict(now);
+                return null;
+            }
+            if (!isExpired(existing, now)) {
+                return existing.outcome;
+            }
+        }
+    }
+
+    /**
+     * Get the outcome remembered for a key
+     * @param key the idempotency key
+     * @return the outcome, or null if the key is unknown or expired
+     */
+    public CompletableFuture<V> get(String key) {
+        return get(0, key);
+    }
+
+    /**
+     * Get the outcome remembered for an owner's key
+     * @param owner the owner of the key
+     * @param key the idempotency key
+     * @return the outcome, or null if the key is unknown or expired
+     */
+    public CompletableFuture<V> get(long owner, String key) {
+        Entry<V> entry = entries.get(new Key(owner, key));
+        return entry == null || isExpired(entry, clock.getAsLong()) ? null : entry.outcome;
+    }
+
+    /**
+     * Forget an owner's key if it still maps to an outcome, e.g. when the request failed
+     * for a transient reason and a retry should run it again
+     * Callers waiting on the outcome still receive it.
+     * @param owner the owner of the key
+     * @param key the idempotency key
+     * @param outcome the outcome registered by the caller
+     * @return true if the key was forgotten, false if it maps to another outcome or none
+     */
+    public boolean remove(long owner, String key, CompletableFuture<V> outcome) {
+        Key lookup = new Key(owner, key);
+        Entry<V> entry = entries.get(lookup);
+        return entry != null && entry.outcome == outcome && entries.remove(lookup, entry);
+    }
+
+    /**
+     * Get the number of remembered keys, including expired ones not yet evicted
+     * @return the key count
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    private boolean isExpired(Entry<V> entry, long now) {
+        return now - entry.createdAt >= ttlMillis;
+    }
+
+    private void evict(long now) {
+        // Each entry is looked at once per call, so requeued pending entries cannot spin
+        int budget = queued.get();
+        Entry<V> oldest;
+        while (budget-- > 0 && (oldest = insertionOrder.peek()) != null) {
+            boolean expired = isExpired(oldest, now);
+            if (!expired && queued.get() <= maxEntries) {
+                return;
+            }
+            if (!insertionOrder.remove(oldest)) {
+                continue;
+            }
+            if (!expired && !oldest.outcome.isDone() && entries.get(oldest.key) == oldest) {
+                insertionOrder.offer(oldest);
+                continue;
+            }
+            queued.decrementAndGet();
+            // A key re-used after expiry has a newer entry that must survive
+            entries.remove(oldest.key, oldest);
+        }
+    }
+
+    /**
+     * Idempotency key scoped to its owner
+     */
+    private static final class Key {
+        private final long owner;
+        private final String key;
+
+        Key(long owner, String key) {
+            this.owner = owner;
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key that = (Key) other;
+            return owner == that.owner && key.equals(that.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(owner) * 31 + key.hashCode();
+        }
+    }
+
+    private static final class Entry<V> {
+        private final Key key;
+        private final CompletableFuture<V> outcome;
+        private final long createdAt;
+
+        Entry(Key key, CompletableFuture<V> outcome, long createdAt) {
+            this.key = key;
+            this.outcome = outcome;
+            this.createdAt = createdAt;
+        }
+    }
+}
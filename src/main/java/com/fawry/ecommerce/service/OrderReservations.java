@@ -0,0 +1,111 @@
+package com.fawry.ecommerce.service;
+
+import com.fawry.ecommerce.delivery.SlotBooking;
+import com.fawry.ecommerce.warehouse.Allocation;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * What a placed order holds besides the customer's money: the warehouse allocation,
+ * the delivery slot booking, the stock lots its units were taken from and the voucher
+ * codes issued for it
+ *
+ * Handed to checkout listeners with the order, so a cancellation can give every
+ * resource back to where it came from.
+ */
+public final class OrderReservations {
+    /**
+     * Reservations of an order that holds no allocation, slot or lot
+     */
+    public static final OrderReservations NONE = new OrderReservations(null, null, Map.of());
+
+    private final Allocation allocation;
+    private final SlotBooking delivery;
+    private final Map<Long, SortedMap<LocalDate, Integer>> lots;
+    private final Map<Long, List<String>> vouchers;
+
+    /**
+     * Constructor for OrderReservations
+     * @param allocation the warehouse allocation, or null
+     * @param delivery the delivery slot booking, or null
+     * @param lots the units taken per expiration date, by product id, for lot-tracked products
+     */
+    public OrderReservations(Allocation allocation, SlotBooking delivery, Map<Long, SortedMap<LocalDate, Integer>> lots) {
+        this(allocation, delivery, lots, Map.of());
+    }
+
+    /**
+     * Constructor for OrderReservations of an order that issued voucher codes
+     * @param allocation the warehouse allocation, or null
+     * @param delivery the delivery slot booking, or null
+     * @param lots the units taken per expiration date, by product id, for lot-tracked products
+     * @param vouchers the issued codes by product id
+     */
+    public OrderReservations(Allocation allocation, SlotBooking delivery, Map<Long, SortedMap<LocalDate, Integer>> lots,
+                             Map<Long, List<String>> vouchers) {
+        this.allocation = allocation;
+        this.delivery = delivery;
+        this.lots = Map.copyOf(lots);
+        this.vouchers = Map.copyOf(vouchers);
+    }
+
+    /**
+     * Get the warehouse allocation
+     * @return the allocation, or null if the order was not allocated to warehouses
+     */
+    public Allocation getAllocation() {
+        return allocation;
+    }
+
+    /**
+     * Get the delivery slot booking
+     * @return the booking, or null if the order has no delivery slot
+     */
+    public SlotBooking getDelivery() {
+        return delivery;
+    }
+
+    /**
+     * Get the lots one product's units were taken from
+     * @param productId the product id
+     * @return the units per expiration date, undated units under a null key; empty if not lot-tracked
+     */
+    public SortedMap<LocalDate, Integer> getLots(long productId) {
+        SortedMap<LocalDate, Integer> taken = lots.get(productId);
+        return taken == null ? Collections.emptySortedMap() : Collections.unmodifiableSortedMap(taken);
+    }
+
+    /**
+     * Check if voucher codes were issued for the order
+     * Issued codes are in the customer's hands and cannot be taken back
+     * @return true if the order issued codes, false otherwise
+     */
+    public boolean hasVouchers() {
+        return !vouchers.isEmpty();
+    }
+
+    /**
+     * Get the issued voucher codes
+     * @return the codes by product id
+     */
+    public Map<Long, List<String>> getVouchers() {
+        return vouchers;
+    }
+
+    /**
+     * Give back the warehouse stock and the delivery slot, e.g. when the order is cancelled
+     * Releasing more than once has no further effect.
+     */
+    public void release() {
+        if (allocation != null) {
+            allocation.release();
+        }
+        if (delivery != null) {
+            delivery.release();
+        }
+    }
+}
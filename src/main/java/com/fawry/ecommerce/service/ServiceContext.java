@@ -0,0 +1,275 @@
+package com.fawry.ecommerce.service;
+
+import com.fawry.ecommerce.delivery.DeliverySchedule;
+import com.fawry.ecommerce.digital.VoucherPool;
+import com.fawry.ecommerce.engine.ShardedCheckoutEngine;
+import com.fawry.ecommerce.limit.PurchaseLimiter;
+import com.fawry.ecommerce.promotion.PromotionTable;
+import com.fawry.ecommerce.refund.RefundEngine;
+import com.fawry.ecommerce.refund.Wallet;
+import com.fawry.ecommerce.repository.ProductRepository;
+import com.fawry.ecommerce.warehouse.WarehouseAllocator;
+import com.fawry.ecommerce.warehouse.WarehouseNetwork;
+import com.fawry.ecommerce.warehouse.WarehouseStock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Independent set of shipping and checkout services for one tenant or region
+ *
+ * Every context is wired by plain constructor calls and owns its own services, shipping
+ * rates, promotions, warehouse allocator, idempotency cache and shipping quote cache, so contexts share no
+ * mutable state and can be driven from separate thread pools. Warehouse stock, the
+ * delivery schedule and the voucher pool are handed in by the caller and should not be
+ * shared between contexts either. The shared singletons
+ * returned by {@code getInstance()} are not affected.
+ * Shipping rates are fixed for the life of a context; switching tariffs means building
+ * a new context, which starts with an empty quote cache.
+ */
+public final class ServiceContext {
+    private final String name;
+    private final ShippingService shippingService;
+    private final CheckoutService checkoutService;
+    private final ShippingQuoteCache shippingQuotes;
+    private final List<CheckoutListener> listeners;
+
+    private ServiceContext(Builder builder) {
+        this.name = builder.name;
+        this.shippingService = new ShippingService(builder.shippingRates, builder.packaging);
+        this.checkoutService = new CheckoutService(shippingService);
+        this.shippingQuotes = new ShippingQuoteCache(shippingService, builder.network, builder.shippingQuotes);
+        this.listeners = List.copyOf(builder.listeners);
+        checkoutService.setPromotions(builder.promotions);
+        checkoutService.setPurchaseLimiter(builder.purchaseLimiter);
+        checkoutService.setIdempotencyCache(new IdempotencyCache<>(builder.idempotencyKeys, builder.idempotencyTtlMillis));
+        if (builder.network != null) {
+            checkoutService.setWarehouseAllocator(new WarehouseAllocator(builder.network, builder.stock, shippingService));
+        }
+        checkoutService.setDeliverySchedule(builder.deliverySchedule);
+        checkoutService.setVoucherPool(builder.voucherPool);
+        checkoutService.setListenerFailureHandler(builder.listenerFailureHandler);
+        for (CheckoutListener listener : listeners) {
+            checkoutService.addCheckoutListener(listener);
+        }
+    }
+
+    /**
+     * Create a builder for ServiceContext
+     * @param name the tenant or region name
+     * @return the builder
+     * @throws IllegalArgumentException if the name is blank
+     */
+    public static Builder builder(String name) {
+        if (name == null || name.isBlank()) {
+            throw new IllegalArgumentException("Context name must not be blank");
+        }
+        return new Builder(name);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public ShippingService getShippingService() {
+        return shippingService;
+    }
+
+    public CheckoutService getCheckoutService() {
+        return checkoutService;
+    }
+
+    /**
+     * Get the cache of shipping estimates, priced with this context's rates and warehouses
+     * @return the quote cache
+     */
+    public ShippingQuoteCache getShippingQuotes() {
+        return shippingQuotes;
+    }
+
+    /**
+     * Create a sharded checkout engine wired to this context's shipping service,
+     * promotions, purchase limits and listeners; the caller owns and closes the engine
+     * @param shardCount the number of shards and writer threads
+     * @param ringCapacity the command capacity of each shard's ring buffer
+     * @param coordinator the executor deciding cross-shard outcomes and notifying listeners
+     * @return the engine
+     */
+    public ShardedCheckoutEngine newShardedEngine(int shardCount, int ringCapacity, Executor coordinator) {
+        ShardedCheckoutEngine engine = new ShardedCheckoutEngine(shardCount, ringCapacity, coordinator, shippingService);
+        engine.setPromotions(checkoutService.getPromotions());
+        engine.setPurchaseLimiter(checkoutService.getPurchaseLimiter());
+        engine.setListenerFailureHandler(checkoutService.getListenerFailureHandler());
+        for (CheckoutListener listener : listeners) {
+            engine.addCheckoutListener(listener);
+        }
+        return engine;
+    }
+
+    /**
+     * Create a refund engine voiding this context's shipments, registered as a listener
+     * of the context's checkout service so it learns every order placed there
+     * @param products the repository resolving ordered products
+     * @param wallet the wallet credited with refunds
+     * @return the engine
+     */
+    public RefundEngine newRefundEngine(ProductRepository products, Wallet wallet) {
+        RefundEngine engine = new RefundEngine(products, wallet, shippingService);
+        checkoutService.addCheckoutListener(engine);
+        return engine;
+    }
+
+    @Override
+    public String toString() {
+        return "ServiceContext{name='" + name + "', rates=" + shippingService.getRates() + "}";
+    }
+
+    /**
+     * Builder for ServiceContext
+     */
+    public static final class Builder {
+        private final String name;
+        private ShippingRates shippingRates = ShippingRates.DEFAULT;
+        private BoxCatalog packaging = BoxCatalog.standard();
+        private PromotionTable promotions = PromotionTable.EMPTY;
+        private WarehouseNetwork network;
+        private WarehouseStock stock;
+        private int idempotencyKeys = CheckoutService.DEFAULT_IDEMPOTENCY_KEYS;
+        private long idempotencyTtlMillis = CheckoutService.DEFAULT_IDEMPOTENCY_TTL_MILLIS;
+        private int shippingQuotes = ShippingQuoteCache.DEFAULT_MAX_ENTRIES;
+        private PurchaseLimiter purchaseLimiter;
+        private DeliverySchedule deliverySchedule;
+        private VoucherPool voucherPool;
+        private final List<CheckoutListener> listeners = new ArrayList<>();
+        private CheckoutListener.FailureHandler listenerFailureHandler = CheckoutListener.FailureHandler.PRINT;
+
+        private Builder(String name) {
+            this.name = name;
+        }
+
+        public Builder shippingRates(ShippingRates shippingRates) {
+            if (shippingRates == null) {
+                throw new IllegalArgumentException("Shipping rates must not be null");
+            }
+            this.shippingRates = shippingRates;
+            return this;
+        }
+
+        public Builder packaging(BoxCatalog packaging) {
+            if (packaging == null) {
+                throw new IllegalArgumentException("Packaging must not be null");
+            }
+            this.packaging = packaging;
+            return this;
+        }
+
+        public Builder promotions(PromotionTable promotions) {
+            if (promotions == null) {
+                throw new IllegalArgumentException("Promotion table must not be null");
+            }
+            this.promotions = promotions;
+            return this;
+        }
+
+        /**
+         * Allocate shipments across this context's warehouses
+         * @param network the warehouse network
+         * @param stock the per-warehouse stock
+         * @return this builder
+         */
+        public Builder warehouses(WarehouseNetwork network, WarehouseStock stock) {
+            if (network == null || stock == null) {
+                throw new IllegalArgumentException("Warehouse network and stock must not be null");
+            }
+            this.network = network;
+            this.stock = stock;
+            return this;
+        }
+
+        /**
+         * Size the cache deduplicating keyed checkouts
+         * @param maxKeys the maximum number of remembered keys
+         * @param ttlMillis how long a key is remembered, in milliseconds
+         * @return this builder
+         */
+        public Builder idempotency(int maxKeys, long ttlMillis) {
+            if (maxKeys <= 0 || ttlMillis <= 0) {
+                throw new IllegalArgumentException("Capacity and time to live must be greater than 0");
+            }
+            this.idempotencyKeys = maxKeys;
+            this.idempotencyTtlMillis = ttlMillis;
+            return this;
+        }
+
+        /**
+         * Size the cache of shipping estimates
+         * @param maxEntries the maximum number of cached quotes
+         * @return this builder
+         */
+        public Builder shippingQuotes(int maxEntries) {
+            if (maxEntries <= 0) {
+                throw new IllegalArgumentException("Capacity must be greater than 0");
+            }
+            this.shippingQuotes = maxEntries;
+            return this;
+        }
+
+        /**
+         * Enforce per-customer request rates and purchase caps at checkout
+         * @param purchaseLimiter the limiter, or null for no limits
+         * @return this builder
+         */
+        public Builder purchaseLimits(PurchaseLimiter purchaseLimiter) {
+            this.purchaseLimiter = purchaseLimiter;
+            return this;
+        }
+
+        /**
+         * Book delivery slots for shipped orders of carts with a delivery zone
+         * @param deliverySchedule the schedule, or null to ship without slots
+         * @return this builder
+         */
+        public Builder deliverySchedule(DeliverySchedule deliverySchedule) {
+            this.deliverySchedule = deliverySchedule;
+            return this;
+        }
+
+        /**
+         * Enable digital checkout, issuing voucher codes from a pool
+         * @param voucherPool the pool, or null to disable digital checkout
+         * @return this builder
+         */
+        public Builder voucherPool(VoucherPool voucherPool) {
+            this.voucherPool = voucherPool;
+            return this;
+        }
+
+        public Builder listener(CheckoutListener listener) {
+            listeners.add(listener);
+            return this;
+        }
+
+        /**
+         * Receive failures of the context's checkout listeners, e.g. to alert or count them
+         * @param handler the handler, printing to {@code System.err} by default
+         * @return this builder
+         * @throws IllegalArgumentException if the handler is null
+         */
+        public Builder listenerFailureHandler(CheckoutListener.FailureHandler handler) {
+            if (handler == null) {
+                throw new IllegalArgumentException("Listener failure handler must not be null");
+            }
+            this.listenerFailureHandler = handler;
+            return this;
+        }
+
+        /**
+         * Build the context and its services
+         * @return the context
+         */
+        public ServiceContext build() {
+            return new ServiceContext(this);
+        }
+    }
+}
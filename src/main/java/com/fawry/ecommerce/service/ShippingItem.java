@@ -1,5 +1,7 @@
 package com.fawry.ecommerce.service;
 
+import com.fawry.ecommerce.model.product.Dimensions;
+
 /**
  * Interface for items that can be shipped
  * Required by ShippingService
@@ -16,4 +18,12 @@ public interface ShippingItem {
      * @return the weight in kilograms
      */
     double getWeight();
+    
+    /**
+     * Get the packed dimensions of the item
+     * @return the dimensions, or null if unknown, in which case only the weight is billed
+     */
+    default Dimensions getDimensions() {
+        return null;
+    }
 } 
\ No newline at end of file
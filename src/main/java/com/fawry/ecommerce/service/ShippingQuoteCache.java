@@ -0,0 +1,220 @@
+package com.fawry.ecommerce.service;
+
+import com.fawry.ecommerce.model.Cart;
+import com.fawry.ecommerce.model.CartItem;
+import com.fawry.ecommerce.model.product.Product;
+import com.fawry.ecommerce.model.product.Shippable;
+import com.fawry.ecommerce.warehouse.WarehouseNetwork;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of shipping estimates for cart views
+ *
+ * The fee depends only on the weight to ship and the destination, so quotes are keyed
+ * by the cart's total shippable weight and delivery zone, and carts with the same weight
+ * profile share one entry. A zone is priced from its cheapest warehouse, as a single
+ * shipment; the fee charged at checkout may differ when stock is split across
+ * warehouses. A shipping service keeps its tariff for life, so quotes never go stale
+ * with it; a new tariff comes with a new service and cache, e.g. a new {@link ServiceContext}.
+ * Entries are evicted oldest first once the cache is full.
+ */
+public class ShippingQuoteCache {
+    public static final int DEFAULT_MAX_ENTRIES = 10_000;
+
+    private final ShippingService shippingService;
+    private final ShippingRates rates;
+    private final WarehouseNetwork network;
+    private final int maxEntries;
+    private final Map<QuoteKey, Double> quotes = new ConcurrentHashMap<>();
+    private final Queue<QuoteKey> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * Constructor for ShippingQuoteCache quoting without warehouses
+     * @param shippingService the service whose tariff prices the quotes
+     * @param maxEntries the maximum number of cached quotes
+     */
+    public ShippingQuoteCache(ShippingService shippingService, int maxEntries) {
+        this(shippingService, null, maxEntries);
+    }
+
+    /**
+     * Constructor for ShippingQuoteCache
+     * @param shippingService the service whose tariff prices the quotes
+     * @param network the warehouses pricing delivery zones, or null to ignore zones
+     * @param maxEntries the maximum number of cached quotes
+     * @throws IllegalArgumentException if the service is null or the capacity is not positive
+     */
+    public ShippingQuoteCache(ShippingService shippingService, WarehouseNetwork network, int maxEntries) {
+        if (shippingService == null) {
+            throw new IllegalArgumentException("Shipping service must not be null");
+        }
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Capacity must be greater than 0");
+        }
+        this.shippingService = shippingService;
+        this.network = network;
+        this.maxEntries = maxEntries;
+        this.rates = shippingService.getRates();
+    }
+
+    /**
+     * Quote the shipping fee of a cart to its delivery zone
+     * @param cart the cart
+     * @return the estimated fee, 0 if nothing needs shipping
+     * @throws IllegalArgumentException if the cart's zone is unknown to the warehouse network
+     */
+    public double quote(Cart cart) {
+        List<CartItem> items = cart.getItems();
+        double totalWeight = 0.0;
+        boolean shipped = false;
+        for (int i = 0; i < items.size(); i++) {
+            Product product = items.get(i).getProduct();
+            if (product instanceof Shippable && ((Shippable) product).requiresShipping()) {
+                // Weighed as CheckoutService weighs shipments without warehouses
+                totalWeight += shippingService.getPackaging().chargeableWeight(product);
+                shipped = true;
+            }
+        }
+        return shipped ? quote(totalWeight, cart.getDeliveryZone()) : 0.0;
+    }
+
+    /**
+     * Quote the shipping fee of a package
+     * @param totalWeight the billed package weight in kilograms
+     * @param zone the delivery zone, or null to price without a warehouse multiplier
+     * @return the estimated fee
+     * @throws IllegalArgumentException if the zone is unknown to the warehouse network
+     */
+    public double quote(double totalWeight, String zone) {
+        QuoteKey key = new QuoteKey(network == null ? null : zone, Double.doubleToLongBits(totalWeight));
+        Double cached = quotes.get(key);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        double fee = rates.fee(totalWeight, rateMultiplier(key.zone));
+        if (quotes.put(key, fee) == null) {
+            insertionOrder.offer(key);
+            if (queued.incrementAndGet() > maxEntries) {
+                evict();
+            }
+        }
+        return fee;
+    }
+
+    private double rateMultiplier(String zone) {
+        if (zone == null) {
+            return 1.0;
+        }
+        int zoneIndex = network.zoneIndex(zone);
+        double cheapest = WarehouseNetwork.UNREACHABLE;
+        for (int warehouse = 0; warehouse < network.warehouseCount(); warehouse++) {
+            cheapest = Math.min(cheapest, network.rate(warehouse, zoneIndex));
+        }
+        if (cheapest == WarehouseNetwork.UNREACHABLE) {
+            throw new IllegalArgumentException("No warehouse serves delivery zone: " + zone);
+        }
+        return cheapest;
+    }
+
+    private void evict() {
+        while (queued.get() > maxEntries) {
+            QuoteKey oldest = insertionOrder.poll();
+            if (oldest == null) {
+                return;
+            }
+            queued.decrementAndGet();
+            if (quotes.remove(oldest) != null) {
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Drop every cached quote, e.g. after the warehouse rates were renegotiated
+     */
+    public void invalidate() {
+        // Clearing the order first leaves at worst keys without quotes, never quotes without keys
+        insertionOrder.clear();
+        queued.set(0);
+        quotes.clear();
+        invalidations.increment();
+    }
+
+    public int size() {
+        return quotes.size();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Get the share of lookups served from the cache
+     * @return the hit rate between 0 and 1, or 0 before the first lookup
+     */
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0.0 : (double) hitCount / total;
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public long getInvalidationCount() {
+        return invalidations.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ShippingQuoteCache{size=%d, hits=%d, misses=%d, evictions=%d}",
+                size(), getHitCount(), getMissCount(), getEvictionCount());
+    }
+
+    private static final class QuoteKey {
+        private final String zone;
+        private final long weightBits;
+
+        QuoteKey(String zone, long weightBits) {
+            this.zone = zone;
+            this.weightBits = weightBits;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof QuoteKey)) {
+                return false;
+            }
+            QuoteKey other = (QuoteKey) o;
+            return weightBits == other.weightBits && Objects.equals(zone, other.zone);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(weightBits) + Objects.hashCode(zone);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.fawry.ecommerce.service;
+
+import java.util.Objects;
+
+/**
+ * Immutable shipping tariff: a base fee per package plus a rate per kilogram
+ */
+public final class ShippingRates {
+    /** The tariff of the shared {@link ShippingService}: $5 per package plus $25 per kg */
+    public static final ShippingRates DEFAULT = new ShippingRates(5.0, 25.0);
+
+    private final double baseFee;
+    private final double ratePerKg;
+
+    /**
+     * Constructor for ShippingRates
+     * @param baseFee the fee charged once per package
+     * @param ratePerKg the fee charged per kilogram
+     * @throws IllegalArgumentException if a fee is negative
+     */
+    public ShippingRates(double baseFee, double ratePerKg) {
+        if (baseFee < 0 || ratePerKg < 0) {
+            throw new IllegalArgumentException("Shipping fees cannot be negative");
+        }
+        this.baseFee = baseFee;
+        this.ratePerKg = ratePerKg;
+    }
+
+    public double getBaseFee() {
+        return baseFee;
+    }
+
+    public double getRatePerKg() {
+        return ratePerKg;
+    }
+
+    /**
+     * Price one package
+     * @param totalWeight the package weight in kilograms
+     * @param rateMultiplier the multiplier applied to the per-kg rate, e.g. for the warehouse distance
+     * @return the fee
+     */
+    public double fee(double totalWeight, double rateMultiplier) {
+        return baseFee + (totalWeight * ratePerKg * rateMultiplier);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ShippingRates)) {
+            return false;
+        }
+        ShippingRates other = (ShippingRates) o;
+        return Double.compare(baseFee, other.baseFee) == 0 && Double.compare(ratePerKg, other.ratePerKg) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(baseFee, ratePerKg);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ShippingRates{baseFee=%.2f, ratePerKg=%.2f}", baseFee, ratePerKg);
+    }
+}
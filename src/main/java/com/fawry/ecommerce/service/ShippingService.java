@@ -1,21 +1,51 @@
 package com.fawry.ecommerce.service;
 
+import com.fawry.ecommerce.model.product.Dimensions;
+import com.fawry.ecommerce.text.TextRenderer;
+
+import java.io.PrintStream;
 import java.util.List;
 
 /**
  * Service class for handling shipping operations
- * Implements Singleton Pattern to ensure only one shipping service instance
+ * Implements Singleton Pattern for the shared instance; independent instances with their
+ * own rates are created per tenant or region, usually through {@link ServiceContext}.
+ * The rates of an instance never change, so a new tariff takes a new instance.
  */
 public class ShippingService {
     private static volatile ShippingService instance;
-    private static final double SHIPPING_RATE_PER_KG = 25.0; // $25 per kg
-    private static final double BASE_SHIPPING_FEE = 5.0; // Base fee of $5
+    private final ShippingRates rates;
+    private final BoxCatalog packaging;
+    private volatile PrintStream output;
     
     /**
-     * Private constructor for ShippingService (Singleton Pattern)
+     * Private constructor for the shared ShippingService (Singleton Pattern)
      */
     private ShippingService() {
-        // Private constructor to prevent direct instantiation
+        this(ShippingRates.DEFAULT);
+    }
+    
+    /**
+     * Constructor for an independent ShippingService packing into the standard boxes
+     * @param rates the shipping tariff
+     * @throws IllegalArgumentException if the rates are null
+     */
+    public ShippingService(ShippingRates rates) {
+        this(rates, BoxCatalog.standard());
+    }
+    
+    /**
+     * Constructor for an independent ShippingService
+     * @param rates the shipping tariff
+     * @param packaging the boxes measured items are packed and billed in
+     * @throws IllegalArgumentException if the rates or the packaging are null
+     */
+    public ShippingService(ShippingRates rates, BoxCatalog packaging) {
+        if (rates == null || packaging == null) {
+            throw new IllegalArgumentException("Shipping rates and packaging must not be null");
+        }
+        this.rates = rates;
+        this.packaging = packaging;
     }
     
     /**
@@ -34,21 +64,59 @@ public class ShippingService {
         return instance;
     }
     
+    public ShippingRates getRates() {
+        return rates;
+    }
+    
+    public BoxCatalog getPackaging() {
+        return packaging;
+    }
+    
+    /**
+     * Print shipment notices to a stream instead of {@code System.out}
+     * @param output the stream, e.g. one discarding its input under load, or null for {@code System.out}
+     */
+    public void setOutput(PrintStream output) {
+        this.output = output;
+    }
+    
+    /**
+     * Get the stream notices are printed to
+     * @return the injected stream, or the current {@code System.out}
+     */
+    public PrintStream getOutput() {
+        PrintStream out = output;
+        return out != null ? out : System.out;
+    }
+    
+    
     /**
      * Calculate shipping fee based on items
      * @param items list of shippable items
      * @return the total shipping fee
      */
     public double calculateShippingFee(List<ShippingItem> items) {
+        return calculateShippingFee(items, 1.0);
+    }
+    
+    /**
+     * Calculate shipping fee of a shipment whose route scales the per-kg rate
+     * Items with dimensions are billed by the volumetric weight of their box when it exceeds their weight
+     * @param items list of shippable items
+     * @param rateMultiplier the multiplier applied to the per-kg rate, e.g. for the warehouse distance
+     * @return the total shipping fee
+     */
+    public double calculateShippingFee(List<? extends ShippingItem> items, double rateMultiplier) {
         if (items.isEmpty()) {
             return 0.0;
         }
         
-        double totalWeight = items.stream()
-                .mapToDouble(ShippingItem::getWeight)
-                .sum();
+        double totalWeight = 0.0;
+        for (int i = 0; i < items.size(); i++) {
+            totalWeight += packaging.chargeableWeight(items.get(i));
+        }
         
-        return BASE_SHIPPING_FEE + (totalWeight * SHIPPING_RATE_PER_KG);
+        return rates.fee(totalWeight, rateMultiplier);
     }
     
     /**
@@ -56,25 +124,15 @@ public class ShippingService {
      * @param items list of shippable items with quantities
      */
     public void processShipment(List<ShippableCartItem> items) {
-        if (items.isEmpty()) {
-            System.out.println("No items to ship");
-            return;
-        }
-        
-        System.out.println("** Shipment notice **");
-        
-        double totalWeight = 0.0;
-        for (ShippableCartItem item : items) {
-            double itemWeight = item.getWeight() * item.getQuantity();
-            totalWeight += itemWeight;
-            
-            System.out.printf("%dx %s %.0fg%n", 
-                item.getQuantity(), 
-                item.getName(), 
-                item.getWeight() * 1000); // Convert to grams for display
-        }
-        
-        System.out.printf("Total package weight %.1fkg%n", totalWeight);
+        TextRenderer.forCurrentThread().renderShipmentNotice(items).writeTo(getOutput());
+    }
+    
+    /**
+     * Void the shipment of a cancelled order and print a void notice
+     * @param orderId the cancelled order
+     */
+    public void voidShipment(long orderId) {
+        TextRenderer.forCurrentThread().renderShipmentVoided(orderId).writeTo(getOutput());
     }
     
     /**
@@ -89,6 +147,14 @@ public class ShippingService {
             this.quantity = quantity;
         }
         
+        /**
+         * Get the wrapped item, e.g. to render an interned product name
+         * @return the item
+         */
+        public ShippingItem getItem() {
+            return item;
+        }
+        
         @Override
         public String getName() {
             return item.getName();
@@ -99,6 +165,11 @@ public class ShippingService {
             return item.getWeight();
         }
         
+        @Override
+        public Dimensions getDimensions() {
+            return item.getDimensions();
+        }
+        
         public int getQuantity() {
             return quantity;
         }
@@ -0,0 +1,135 @@
+package com.fawry.ecommerce.text;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Symbol table interning names to dense integer ids
+ *
+ * Every distinct name is stored once, together with its encoded bytes, so products
+ * sharing a name share one String and renderers copy the bytes instead of encoding
+ * the name on every receipt line. Lookups of known names and ids never lock; adding
+ * a name copies the id arrays under the table's lock.
+ * Ids are never reused, so a table holds at most a fixed number of names instead of
+ * evicting them; once full, new names are left to their callers to encode.
+ */
+public final class NameTable {
+    /** Most distinct names the product name table interns */
+    public static final int PRODUCT_NAME_LIMIT = 1 << 16;
+    private static final NameTable PRODUCT_NAMES = new NameTable(Charset.defaultCharset(), PRODUCT_NAME_LIMIT);
+
+    private final Charset charset;
+    private final int maxSize;
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[16];
+    private volatile byte[][] encoded = new byte[16][];
+    private volatile int size;
+
+    /**
+     * Constructor for NameTable without a size limit
+     * @param charset the charset names are encoded with
+     */
+    public NameTable(Charset charset) {
+        this(charset, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Constructor for NameTable holding a limited number of names
+     * @param charset the charset names are encoded with
+     * @param maxSize the most distinct names the table interns
+     * @throws IllegalArgumentException if the limit is not positive
+     */
+    public NameTable(Charset charset, int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Name table size must be greater than 0");
+        }
+        this.charset = charset;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Get the table shared by all products, encoding with the platform charset
+     * It holds up to {@value #PRODUCT_NAME_LIMIT} names; products named after that keep their own String
+     * @return the product name table
+     */
+    public static NameTable productNames() {
+        return PRODUCT_NAMES;
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * Get the id of a name, adding the name if it is new
+     * @param name the name
+     * @return the id, stable for the lifetime of the table, or -1 if the name is new and the table is full
+     * @throws IllegalArgumentException if the name is null
+     */
+    public int intern(String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("Name must not be null");
+        }
+        Integer id = ids.get(name);
+        return id != null ? id : add(name);
+    }
+
+    private synchronized int add(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        int next = size;
+        if (next == maxSize) {
+            return -1;
+        }
+        if (next == names.length) {
+            int capacity = (int) Math.min(maxSize, next * 2L);
+            encoded = Arrays.copyOf(encoded, capacity);
+            names = Arrays.copyOf(names, capacity);
+        }
+        encoded[next] = name.getBytes(charset);
+        names[next] = name;
+        // Publishing the size last makes the new slot visible to lock-free readers
+        size = next + 1;
+        ids.put(name, next);
+        return next;
+    }
+
+    /**
+     * Get the canonical String of an id
+     * @param id the id
+     * @return the name
+     * @throws IllegalArgumentException if the id is unknown
+     */
+    public String name(int id) {
+        checkId(id);
+        return names[id];
+    }
+
+    /**
+     * Get the encoded bytes of an id; the array is shared and must not be modified
+     * @param id the id
+     * @return the name's bytes in the table's charset
+     */
+    byte[] encoded(int id) {
+        checkId(id);
+        return encoded[id];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    private void checkId(int id) {
+        if (id < 0 || id >= size) {
+            throw new IllegalArgumentException("Unknown name id: " + id);
+        }
+    }
+}
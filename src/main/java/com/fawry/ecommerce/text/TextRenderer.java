@@ -0,0 +1,334 @@
+package com.fawry.ecommerce.text;
+
+import com.fawry.ecommerce.delivery.DeliverySlot;
+import com.fawry.ecommerce.model.Cart;
+import com.fawry.ecommerce.model.CartItem;
+import com.fawry.ecommerce.model.product.Product;
+import com.fawry.ecommerce.service.ShippingService.ShippableCartItem;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.text.DecimalFormatSymbols;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Renderer writing receipts, shipment notices, delivery slots and cart summaries into a reusable byte buffer
+ *
+ * The output is byte-for-byte what the {@code String.format} based code printed, but
+ * product names are copied from {@link NameTable} and numbers are formatted by hand,
+ * so rendering into a warmed-up renderer allocates nothing. Two cases still go through
+ * {@code String.format} to keep the output identical: numbers within rounding noise of
+ * a half-way point or too large to scale exactly, and default locales whose digits,
+ * decimal separator or minus sign differ from ASCII.
+ * A renderer is not thread-safe; {@link #forCurrentThread()} hands out one per thread.
+ */
+public final class TextRenderer {
+    private static final ThreadLocal<TextRenderer> PER_THREAD = ThreadLocal.withInitial(TextRenderer::new);
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(NameTable.productNames().getCharset());
+    private static final long[] POWERS_OF_TEN = {1, 10, 100, 1_000, 10_000, 100_000, 1_000_000};
+    // Largest scaled value whose double spacing is far below HALF_WAY_MARGIN
+    private static final double MAX_EXACT_SCALED = 1e9;
+    private static final double HALF_WAY_MARGIN = 1e-6;
+    private static final String[] FORMATS = {"%.0f", "%.1f", "%.2f", "%.3f", "%.4f", "%.5f", "%.6f"};
+
+    private final NameTable names;
+    private final boolean asciiLocale;
+    private byte[] buffer;
+    private int size;
+
+    /**
+     * Constructor for TextRenderer rendering product names from the product name table
+     */
+    public TextRenderer() {
+        this(NameTable.productNames(), 512);
+    }
+
+    /**
+     * Constructor for TextRenderer
+     * @param names the table resolving name ids
+     * @param initialCapacity the initial buffer size in bytes
+     */
+    public TextRenderer(NameTable names, int initialCapacity) {
+        this.names = names;
+        this.buffer = new byte[Math.max(16, initialCapacity)];
+        DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(Locale.getDefault(Locale.Category.FORMAT));
+        this.asciiLocale = symbols.getZeroDigit() == '0' && symbols.getDecimalSeparator() == '.'
+                && symbols.getMinusSign() == '-';
+    }
+
+    /**
+     * Get the calling thread's renderer, emptied
+     * @return the renderer
+     */
+    public static TextRenderer forCurrentThread() {
+        return PER_THREAD.get().reset();
+    }
+
+    /**
+     * Discard the rendered text, keeping the buffer
+     * @return this renderer
+     */
+    public TextRenderer reset() {
+        size = 0;
+        return this;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Append text; non-ASCII text is encoded in the name table's charset
+     * @param text the text
+     * @return this renderer
+     */
+    public TextRenderer append(String text) {
+        if (text == null) {
+            return append("null");
+        }
+        int length = text.length();
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80) {
+                size -= i;
+                return append(text.getBytes(names.getCharset()));
+            }
+            buffer[size++] = (byte) c;
+        }
+        return this;
+    }
+
+    private TextRenderer append(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, size, bytes.length);
+        size += bytes.length;
+        return this;
+    }
+
+    private TextRenderer append(char c) {
+        ensureCapacity(1);
+        buffer[size++] = (byte) c;
+        return this;
+    }
+
+    /**
+     * Append an interned name
+     * @param nameId the id in this renderer's name table, or -1 for no name
+     * @return this renderer
+     */
+    public TextRenderer appendName(int nameId) {
+        return nameId < 0 ? append("null") : append(names.encoded(nameId));
+    }
+
+    /**
+     * Append a product's name, from the name table when it was interned there
+     * @param product the product
+     * @return this renderer
+     */
+    public TextRenderer appendName(Product product) {
+        int nameId = product.getNameId();
+        return names == NameTable.productNames() && nameId >= 0 ? appendName(nameId) : append(product.getName());
+    }
+
+    /**
+     * Append an integer as {@code %d} would
+     * @param value the value
+     * @return this renderer
+     */
+    public TextRenderer append(long value) {
+        if (!asciiLocale) {
+            return append(String.format("%d", value));
+        }
+        if (value < 0) {
+            if (value == Long.MIN_VALUE) {
+                return append("-9223372036854775808");
+            }
+            append('-');
+            value = -value;
+        }
+        appendDigits(value, 1);
+        return this;
+    }
+
+    /**
+     * Append a number with a fixed count of decimals as {@code %.<decimals>f} would
+     * @param value the value
+     * @param decimals the number of decimals, from 0 to 6
+     * @return this renderer
+     * @throws IllegalArgumentException if the number of decimals is out of range
+     */
+    public TextRenderer appendFixed(double value, int decimals) {
+        if (decimals < 0 || decimals >= POWERS_OF_TEN.length) {
+            throw new IllegalArgumentException("Decimals must be between 0 and " + (POWERS_OF_TEN.length - 1));
+        }
+        long scale = POWERS_OF_TEN[decimals];
+        double scaled = Math.abs(value) * scale;
+        double fraction = scaled - Math.floor(scaled);
+        // The formatter rounds the shortest decimal form half-up; near a tie, or with NaN
+        // or infinities, only the formatter itself knows which way that goes
+        if (!asciiLocale || !(scaled < MAX_EXACT_SCALED) || Math.abs(fraction - 0.5) < HALF_WAY_MARGIN) {
+            return append(String.format(FORMATS[decimals], value));
+        }
+        long units = (long) (scaled + 0.5);
+        if (Double.doubleToRawLongBits(value) < 0) {
+            append('-');
+        }
+        appendDigits(units / scale, 1);
+        if (decimals > 0) {
+            append('.');
+            appendDigits(units % scale, decimals);
+        }
+        return this;
+    }
+
+    private void appendDigits(long value, int minDigits) {
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        digits = Math.max(digits, minDigits);
+        ensureCapacity(digits);
+        for (int i = size + digits - 1; i >= size; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        size += digits;
+    }
+
+    /**
+     * End the current line with the platform line separator, as {@code %n} does
+     * @return this renderer
+     */
+    public TextRenderer newLine() {
+        return append(LINE_SEPARATOR);
+    }
+
+    /**
+     * Render the checkout receipt printed by {@link com.fawry.ecommerce.service.CheckoutService}
+     * @param items the checked out items
+     * @param subtotal the subtotal
+     * @param discount the promotional discount, only rendered when applied
+     * @param shippingFee the shipping fee
+     * @param totalAmount the total amount
+     * @param remainingBalance the customer's remaining balance
+     * @return this renderer
+     */
+    public TextRenderer renderReceipt(List<CartItem> items, double subtotal, double discount,
+                                      double shippingFee, double totalAmount, double remainingBalance) {
+        append("** Checkout receipt **").newLine();
+        for (int i = 0; i < items.size(); i++) {
+            CartItem item = items.get(i);
+            append(item.getQuantity()).append("x ").appendName(item.getProduct()).append(' ')
+                    .appendFixed(item.getTotalPrice(), 0).newLine();
+        }
+        append("----------------------").newLine();
+        append("Subtotal ").appendFixed(subtotal, 0).newLine();
+        if (discount > 0) {
+            append("Discount ").appendFixed(discount, 0).newLine();
+        }
+        append("Shipping ").appendFixed(shippingFee, 0).newLine();
+        append("Amount ").appendFixed(totalAmount, 0).newLine();
+        return append("Customer balance after payment: $").appendFixed(remainingBalance, 2).newLine();
+    }
+
+    /**
+     * Render the shipment notice printed by {@link com.fawry.ecommerce.service.ShippingService}
+     * @param items the shipped items with quantities
+     * @return this renderer
+     */
+    public TextRenderer renderShipmentNotice(List<ShippableCartItem> items) {
+        if (items.isEmpty()) {
+            return append("No items to ship").newLine();
+        }
+        append("** Shipment notice **").newLine();
+        double totalWeight = 0.0;
+        for (int i = 0; i < items.size(); i++) {
+            ShippableCartItem item = items.get(i);
+            totalWeight += item.getWeight() * item.getQuantity();
+            append(item.getQuantity()).append("x ");
+            if (item.getItem() instanceof Product) {
+                appendName((Product) item.getItem());
+            } else {
+                append(item.getName());
+            }
+            append(' ').appendFixed(item.getWeight() * 1000, 0).append('g').newLine();
+        }
+        return append("Total package weight ").appendFixed(totalWeight, 1).append("kg").newLine();
+    }
+
+    /**
+     * Render the void notice printed by {@link com.fawry.ecommerce.service.ShippingService} for a cancelled order
+     * @param orderId the cancelled order
+     * @return this renderer
+     */
+    public TextRenderer renderShipmentVoided(long orderId) {
+        return append("Shipment of order ").append(orderId).append(" voided").newLine();
+    }
+
+    /**
+     * Render the delivery slot line printed after a checkout booked one
+     * @param slot the booked slot
+     * @return this renderer
+     */
+    public TextRenderer renderDeliverySlot(DeliverySlot slot) {
+        return append("Delivery slot: ").append(slot.toString()).newLine();
+    }
+
+    /**
+     * Render the summary returned by {@link Cart#toString()}, without a trailing line break
+     * @param cart the cart
+     * @return this renderer
+     */
+    public TextRenderer renderCartSummary(Cart cart) {
+        if (cart.isEmpty()) {
+            return append("Cart is empty");
+        }
+        append("Cart Contents:\n");
+        for (CartItem item : cart.getItems()) {
+            append("- ").append(item.getQuantity()).append("x ").appendName(item.getProduct())
+                    .append(" ($").appendFixed(item.getTotalPrice(), 2).append(")\n");
+        }
+        return append("Subtotal: $").appendFixed(cart.getSubtotal(), 2);
+    }
+
+    /**
+     * Write the rendered bytes
+     * @param out the target stream
+     * @throws UncheckedIOException if writing fails
+     */
+    public void writeTo(OutputStream out) {
+        try {
+            out.write(buffer, 0, size);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Write the rendered bytes to a print stream, which reports errors through its error flag
+     * @param out the target stream
+     */
+    public void writeTo(PrintStream out) {
+        out.write(buffer, 0, size);
+    }
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+        }
+    }
+
+    /**
+     * Decode the rendered bytes, mainly for tests and logging
+     * @return the rendered text
+     */
+    @Override
+    public String toString() {
+        return new String(buffer, 0, size, names.getCharset());
+    }
+}
@@ -0,0 +1,174 @@
+package com.fawry.ecommerce.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Utility class for LEB128 variable-length integer and string encoding
+ *
+ * Unsigned values use 7 bits per byte with the high bit as continuation flag, so small
+ * ids, quantities and amounts in cents take one to three bytes. Signed values are
+ * zigzag-mapped first so small negative numbers stay small as well.
+ */
+public final class Varint {
+    /**
+     * Maximum number of bytes a 64-bit varint can occupy
+     */
+    public static final int MAX_LONG_BYTES = 10;
+
+    private Varint() {
+        // Utility class
+    }
+
+    /**
+     * Write an unsigned varint
+     * @param buffer the target buffer
+     * @param value the value, interpreted as unsigned
+     */
+    public static void writeUnsigned(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Read an unsigned varint
+     * @param buffer the source buffer
+     * @return the decoded value
+     * @throws IllegalArgumentException if the varint is longer than 10 bytes
+     */
+    public static long readUnsigned(ByteBuffer buffer) {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            result |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    /**
+     * Write a signed varint using zigzag encoding
+     * @param buffer the target buffer
+     * @param value the signed value
+     */
+    public static void writeSigned(ByteBuffer buffer, long value) {
+        writeUnsigned(buffer, (value << 1) ^ (value >> 63));
+    }
+
+    /**
+     * Read a zigzag encoded signed varint
+     * @param buffer the source buffer
+     * @return the decoded value
+     */
+    public static long readSigned(ByteBuffer buffer) {
+        long raw = readUnsigned(buffer);
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+
+    /**
+     * Read an unsigned varint that must fit in a non-negative int
+     * @param buffer the source buffer
+     * @return the decoded value
+     * @throws IllegalArgumentException if the value is out of int range
+     */
+    public static int readUnsignedInt(ByteBuffer buffer) {
+        long value = readUnsigned(buffer);
+        if (value > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Varint out of int range: " + value);
+        }
+        return (int) value;
+    }
+
+    /**
+     * Get the encoded size of an unsigned varint
+     * @param value the value, interpreted as unsigned
+     * @return the number of bytes
+     */
+    public static int sizeOfUnsigned(long value) {
+        int bits = 64 - Long.numberOfLeadingZeros(value | 1);
+        return (bits + 6) / 7;
+    }
+
+    /**
+     * Get the encoded size of a zigzag signed varint
+     * @param value the signed value
+     * @return the number of bytes
+     */
+    public static int sizeOfSigned(long value) {
+        return sizeOfUnsigned((value << 1) ^ (value >> 63));
+    }
+
+    /**
+     * Write a string as a varint byte length followed by its UTF-8 bytes
+     * @param buffer the target buffer
+     * @param value the string
+     */
+    public static void writeString(ByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeUnsigned(buffer, bytes.length);
+        buffer.put(bytes);
+    }
+
+    /**
+     * Read a length-prefixed UTF-8 string
+     * @param buffer the source buffer
+     * @return the decoded string
+     */
+    public static String readString(ByteBuffer buffer) {
+        int length = readUnsignedInt(buffer);
+        if (length > buffer.remaining()) {
+            throw new IllegalArgumentException("String length exceeds buffer: " + length);
+        }
+        String value;
+        if (buffer.hasArray()) {
+            value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        } else {
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    /**
+     * Get the encoded size of a length-prefixed UTF-8 string
+     * @param value the string
+     * @return the number of bytes
+     */
+    public static int sizeOfString(String value) {
+        int length = utf8Length(value);
+        return sizeOfUnsigned(length) + length;
+    }
+
+    /**
+     * Count UTF-8 bytes without encoding the string
+     * @param value the string
+     * @return the UTF-8 byte length
+     */
+    public static int utf8Length(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length++; // unpaired surrogates are replaced by '?'
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,54 @@
+package com.fawry.ecommerce.warehouse;
+
+import com.fawry.ecommerce.model.CartItem;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Warehouse stock reserved for one order, split into shipments
+ */
+public final class Allocation {
+    private final WarehouseStock stock;
+    private final List<Shipment> shipments;
+    private final double shippingFee;
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    Allocation(WarehouseStock stock, List<Shipment> shipments, double shippingFee) {
+        this.stock = stock;
+        this.shipments = List.copyOf(shipments);
+        this.shippingFee = shippingFee;
+    }
+
+    public List<Shipment> getShipments() {
+        return shipments;
+    }
+
+    /**
+     * Get the shipping fee of all shipments together
+     * @return the shipping fee
+     */
+    public double getShippingFee() {
+        return shippingFee;
+    }
+
+    /**
+     * Return the reserved stock to its warehouses, e.g. when payment fails
+     * Releasing more than once has no further effect.
+     */
+    public void release() {
+        if (!released.compareAndSet(false, true)) {
+            return;
+        }
+        for (Shipment shipment : shipments) {
+            for (CartItem item : shipment.getItems()) {
+                stock.release(item.getProduct().getId(), shipment.getWarehouse(), item.getQuantity());
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Allocation of %d shipments, Shipping: $%.2f", shipments.size(), shippingFee);
+    }
+}
@@ -0,0 +1,64 @@
+package com.fawry.ecommerce.warehouse;
+
+import com.fawry.ecommerce.model.CartItem;
+import com.fawry.ecommerce.service.ShippingService.ShippableCartItem;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Part of an order shipped from a single warehouse
+ */
+public final class Shipment {
+    private final int warehouse;
+    private final String warehouseName;
+    private final double rateMultiplier;
+    private final List<CartItem> items;
+
+    /**
+     * Constructor for Shipment
+     * @param warehouse the warehouse index
+     * @param warehouseName the warehouse name
+     * @param rateMultiplier the rate multiplier from the warehouse to the delivery zone
+     * @param items the products and quantities shipped from the warehouse
+     */
+    Shipment(int warehouse, String warehouseName, double rateMultiplier, List<CartItem> items) {
+        this.warehouse = warehouse;
+        this.warehouseName = warehouseName;
+        this.rateMultiplier = rateMultiplier;
+        this.items = List.copyOf(items);
+    }
+
+    public int getWarehouse() {
+        return warehouse;
+    }
+
+    public String getWarehouseName() {
+        return warehouseName;
+    }
+
+    public double getRateMultiplier() {
+        return rateMultiplier;
+    }
+
+    public List<CartItem> getItems() {
+        return items;
+    }
+
+    /**
+     * Get the shipment contents in the form consumed by the shipping service
+     * @return the shippable items
+     */
+    public List<ShippableCartItem> getShippableItems() {
+        List<ShippableCartItem> shippable = new ArrayList<>(items.size());
+        for (CartItem item : items) {
+            shippable.add(new ShippableCartItem(item.getProduct(), item.getQuantity()));
+        }
+        return shippable;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Shipment from %s: %d lines", warehouseName, items.size());
+    }
+}
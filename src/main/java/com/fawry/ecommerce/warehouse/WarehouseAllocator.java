@@ -0,0 +1,180 @@
+package com.fawry.ecommerce.warehouse;
+
+import com.fawry.ecommerce.exception.InsufficientStockException;
+import com.fawry.ecommerce.model.CartItem;
+import com.fawry.ecommerce.model.product.Product;
+import com.fawry.ecommerce.model.product.Shippable;
+import com.fawry.ecommerce.service.ShippingService;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Allocator choosing the warehouses an order ships from
+ *
+ * Warehouses are tried in the zone's precomputed cost ranking. The cheapest warehouse
+ * able to ship the whole order wins; otherwise the order is split greedily, each round
+ * taking the warehouse that covers the most of what is left (the cheaper one on ties),
+ * which keeps the number of shipments and so the repeated base fees low. Stock is
+ * reserved while allocating and handed back if the order cannot be completed.
+ */
+public class WarehouseAllocator {
+    private final WarehouseNetwork network;
+    private final WarehouseStock stock;
+    private final ShippingService shippingService;
+
+    /**
+     * Constructor for WarehouseAllocator
+     * @param network the warehouse network
+     * @param stock the per-warehouse stock
+     * @param shippingService the service pricing each shipment
+     */
+    public WarehouseAllocator(WarehouseNetwork network, WarehouseStock stock, ShippingService shippingService) {
+        this.network = network;
+        this.stock = stock;
+        this.shippingService = shippingService;
+    }
+
+    public WarehouseNetwork getNetwork() {
+        return network;
+    }
+
+    public WarehouseStock getStock() {
+        return stock;
+    }
+
+    /**
+     * Reserve warehouse stock for the shippable lines of an order
+     * @param zone the delivery zone
+     * @param items the order lines; lines that do not require shipping are ignored
+     * @return the allocation holding the reserved stock
+     * @throws InsufficientStockException if the warehouses serving the zone cannot cover the order
+     * @throws IllegalArgumentException if the zone is unknown
+     */
+    public Allocation allocate(String zone, List<CartItem> items) throws InsufficientStockException {
+        int zoneIndex = network.zoneIndex(zone);
+        int[] ranking = network.ranking(zoneIndex);
+        List<CartItem> lines = new ArrayList<>(items.size());
+        for (CartItem item : items) {
+            Product product = item.getProduct();
+            if (product instanceof Shippable && ((Shippable) product).requiresShipping()) {
+                lines.add(item);
+            }
+        }
+        if (lines.isEmpty()) {
+            return new Allocation(stock, List.of(), 0.0);
+        }
+
+        for (int warehouse : ranking) {
+            if (covers(warehouse, lines) && reserveAll(warehouse, lines)) {
+                return allocation(List.of(shipment(warehouse, zoneIndex, lines)));
+            }
+        }
+        return split(zone, zoneIndex, ranking, lines);
+    }
+
+    private Allocation split(String zone, int zoneIndex, int[] ranking, List<CartItem> lines)
+            throws InsufficientStockException {
+        int lineCount = lines.size();
+        int[] remaining = new int[lineCount];
+        int unitsLeft = 0;
+        for (int i = 0; i < lineCount; i++) {
+            remaining[i] = lines.get(i).getQuantity();
+            unitsLeft += remaining[i];
+        }
+        boolean[] used = new boolean[network.warehouseCount()];
+        List<Shipment> shipments = new ArrayList<>();
+
+        while (unitsLeft > 0) {
+            int best = -1;
+            long bestUnits = 0;
+            for (int warehouse : ranking) {
+                if (used[warehouse]) {
+                    continue;
+                }
+                long units = 0;
+                for (int i = 0; i < lineCount; i++) {
+                    if (remaining[i] > 0) {
+                        units += Math.min(remaining[i], stock.getStock(lines.get(i).getProduct().getId(), warehouse));
+                    }
+                }
+                if (units > bestUnits) {
+                    best = warehouse;
+                    bestUnits = units;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            used[best] = true;
+            List<CartItem> taken = new ArrayList<>();
+            for (int i = 0; i < lineCount; i++) {
+                if (remaining[i] > 0) {
+                    Product product = lines.get(i).getProduct();
+                    int quantity = stock.reserve(product.getId(), best, remaining[i]);
+                    if (quantity > 0) {
+                        taken.add(new CartItem(product, quantity));
+                        remaining[i] -= quantity;
+                        unitsLeft -= quantity;
+                    }
+                }
+            }
+            if (!taken.isEmpty()) {
+                shipments.add(shipment(best, zoneIndex, taken));
+            }
+        }
+
+        Allocation allocation = allocation(shipments);
+        if (unitsLeft > 0) {
+            allocation.release();
+            for (int i = 0; i < lineCount; i++) {
+                if (remaining[i] > 0) {
+                    throw new InsufficientStockException(String.format(
+                            "Product %s is not available in requested quantity for delivery zone %s",
+                            lines.get(i).getProduct().getName(), zone));
+                }
+            }
+        }
+        return allocation;
+    }
+
+    private boolean covers(int warehouse, List<CartItem> lines) {
+        for (CartItem line : lines) {
+            if (stock.getStock(line.getProduct().getId(), warehouse) < line.getQuantity()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reserve every line in full from one warehouse, undoing partial work if a concurrent order won
+     */
+    private boolean reserveAll(int warehouse, List<CartItem> lines) {
+        for (int i = 0; i < lines.size(); i++) {
+            CartItem line = lines.get(i);
+            long productId = line.getProduct().getId();
+            int quantity = stock.reserve(productId, warehouse, line.getQuantity());
+            if (quantity < line.getQuantity()) {
+                stock.release(productId, warehouse, quantity);
+                for (int j = 0; j < i; j++) {
+                    stock.release(lines.get(j).getProduct().getId(), warehouse, lines.get(j).getQuantity());
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Shipment shipment(int warehouse, int zoneIndex, List<CartItem> items) {
+        return new Shipment(warehouse, network.warehouseName(warehouse), network.rate(warehouse, zoneIndex), items);
+    }
+
+    private Allocation allocation(List<Shipment> shipments) {
+        double fee = 0.0;
+        for (Shipment shipment : shipments) {
+            fee += shippingService.calculateShippingFee(shipment.getShippableItems(), shipment.getRateMultiplier());
+        }
+        return new Allocation(stock, shipments, fee);
+    }
+}
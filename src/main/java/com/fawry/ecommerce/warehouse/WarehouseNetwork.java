@@ -0,0 +1,178 @@
+package com.fawry.ecommerce.warehouse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Immutable set of warehouses and delivery zones with the shipping cost between them
+ *
+ * Each (warehouse, zone) pair has a rate multiplier applied to the weight based part
+ * of the shipping fee. The per-zone ranking of warehouses from cheapest to most
+ * expensive is computed once at build time, so allocation never sorts.
+ */
+public final class WarehouseNetwork {
+    /**
+     * Multiplier of warehouses that do not serve a zone
+     */
+    public static final double UNREACHABLE = Double.POSITIVE_INFINITY;
+
+    private final String[] warehouses;
+    private final Map<String, Integer> zoneIndex;
+    private final double[][] rates;
+    private final int[][] rankings;
+
+    private WarehouseNetwork(Builder builder) {
+        this.warehouses = builder.warehouses.toArray(new String[0]);
+        this.zoneIndex = new HashMap<>(builder.zoneIndex);
+        int zones = builder.zones.size();
+        this.rates = new double[zones][];
+        this.rankings = new int[zones][];
+        for (int zone = 0; zone < zones; zone++) {
+            double[] zoneRates = new double[warehouses.length];
+            Arrays.fill(zoneRates, UNREACHABLE);
+            for (Map.Entry<Integer, Double> rate : builder.rates.get(zone).entrySet()) {
+                zoneRates[rate.getKey()] = rate.getValue();
+            }
+            rates[zone] = zoneRates;
+            rankings[zone] = IntStream.range(0, warehouses.length)
+                    .filter(warehouse -> zoneRates[warehouse] != UNREACHABLE)
+                    .boxed()
+                    .sorted(Comparator.comparingDouble(warehouse -> zoneRates[warehouse]))
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Get the number of warehouses
+     * @return the warehouse count
+     */
+    public int warehouseCount() {
+        return warehouses.length;
+    }
+
+    /**
+     * Get the name of a warehouse
+     * @param warehouse the warehouse index
+     * @return the warehouse name
+     */
+    public String warehouseName(int warehouse) {
+        return warehouses[warehouse];
+    }
+
+    /**
+     * Get the index of a warehouse
+     * @param name the warehouse name
+     * @return the warehouse index
+     * @throws IllegalArgumentException if the warehouse is unknown
+     */
+    public int warehouseIndex(String name) {
+        for (int i = 0; i < warehouses.length; i++) {
+            if (warehouses[i].equals(name)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown warehouse: " + name);
+    }
+
+    /**
+     * Get the index of a delivery zone
+     * @param zone the zone name
+     * @return the zone index
+     * @throws IllegalArgumentException if the zone is unknown
+     */
+    public int zoneIndex(String zone) {
+        Integer index = zoneIndex.get(zone);
+        if (index == null) {
+            throw new IllegalArgumentException("Unknown delivery zone: " + zone);
+        }
+        return index;
+    }
+
+    /**
+     * Get the rate multiplier of shipping from a warehouse to a zone
+     * @param warehouse the warehouse index
+     * @param zone the zone index
+     * @return the multiplier, or {@link #UNREACHABLE}
+     */
+    public double rate(int warehouse, int zone) {
+        return rates[zone][warehouse];
+    }
+
+    /**
+     * Get the warehouses serving a zone, cheapest first
+     * @param zone the zone index
+     * @return the ranking; callers must not modify it
+     */
+    int[] ranking(int zone) {
+        return rankings[zone];
+    }
+
+    /**
+     * Builder for WarehouseNetwork
+     */
+    public static final class Builder {
+        private final List<String> warehouses = new ArrayList<>();
+        private final List<String> zones = new ArrayList<>();
+        private final Map<String, Integer> zoneIndex = new HashMap<>();
+        private final List<Map<Integer, Double>> rates = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Add a warehouse
+         * @param name the unique warehouse name
+         * @return this builder
+         * @throws IllegalArgumentException if the name is blank or already used
+         */
+        public Builder warehouse(String name) {
+            if (name == null || name.isBlank() || warehouses.contains(name)) {
+                throw new IllegalArgumentException("Warehouse name must be unique and not blank: " + name);
+            }
+            warehouses.add(name);
+            return this;
+        }
+
+        /**
+         * Declare the rate multiplier of shipping from a warehouse to a zone, adding the zone if new
+         * @param warehouse the warehouse name
+         * @param zone the zone name
+         * @param rateMultiplier the multiplier of the per-kg rate
+         * @return this builder
+         * @throws IllegalArgumentException if the warehouse is unknown or the multiplier is negative
+         */
+        public Builder route(String warehouse, String zone, double rateMultiplier) {
+            int warehouseIndex = warehouses.indexOf(warehouse);
+            if (warehouseIndex < 0) {
+                throw new IllegalArgumentException("Unknown warehouse: " + warehouse);
+            }
+            if (!(rateMultiplier >= 0) || rateMultiplier == UNREACHABLE) {
+                throw new IllegalArgumentException("Rate multiplier must be a non-negative number");
+            }
+            int zoneIndex = this.zoneIndex.computeIfAbsent(zone, name -> {
+                zones.add(name);
+                rates.add(new HashMap<>());
+                return zones.size() - 1;
+            });
+            rates.get(zoneIndex).put(warehouseIndex, rateMultiplier);
+            return this;
+        }
+
+        public WarehouseNetwork build() {
+            if (warehouses.isEmpty()) {
+                throw new IllegalStateException("Network has no warehouses");
+            }
+            return new WarehouseNetwork(this);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.fawry.ecommerce.warehouse;
+
+import com.fawry.ecommerce.model.product.Product;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Per-warehouse stock counters of every product
+ *
+ * Each product owns one atomic counter per warehouse, so reservations against
+ * different products or warehouses never contend and a reservation is a single
+ * compare-and-set on the hot path.
+ *
+ * {@link Product#getQuantity()} stays the source of truth for how many units can be
+ * sold; these counters only say where the units sit. Checkout takes an order's units
+ * from both and a cancellation returns them to both, and goods can only be received
+ * through {@link #receive}, which adds to both, so the two always agree.
+ */
+public class WarehouseStock {
+    private final int warehouseCount;
+    private final Map<Long, AtomicIntegerArray> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor for WarehouseStock
+     * @param network the warehouse network the counters are laid out for
+     */
+    public WarehouseStock(WarehouseNetwork network) {
+        this.warehouseCount = network.warehouseCount();
+    }
+
+    /**
+     * Set the stock of a product in a warehouse without touching the product's quantity
+     * @param productId the product id
+     * @param warehouse the warehouse index
+     * @param quantity the quantity on hand
+     * @throws IllegalArgumentException if the quantity is negative
+     */
+    void setStock(long productId, int warehouse, int quantity) {
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Quantity must not be negative");
+        }
+        countersOf(productId).set(warehouse, quantity);
+    }
+
+    /**
+     * Add stock of a product to a warehouse without touching the product's quantity
+     * @param productId the product id
+     * @param warehouse the warehouse index
+     * @param quantity the received quantity
+     * @throws IllegalArgumentException if the quantity is negative
+     */
+    void addStock(long productId, int warehouse, int quantity) {
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Quantity must not be negative");
+        }
+        countersOf(productId).addAndGet(warehouse, quantity);
+    }
+
+    /**
+     * Receive new units of a product into a warehouse, adding them to the product's quantity as well
+     * @param product the product
+     * @param warehouse the warehouse index
+     * @param quantity the received quantity
+     * @throws IllegalArgumentException if the quantity is negative
+     */
+    public void receive(Product product, int warehouse, int quantity) {
+        addStock(product.getId(), warehouse, quantity);
+        product.increaseQuantity(quantity);
+    }
+
+    /**
+     * Get the stock of a product in a warehouse
+     * @param productId the product id
+     * @param warehouse the warehouse index
+     * @return the quantity on hand
+     */
+    public int getStock(long productId, int warehouse) {
+        AtomicIntegerArray stock = counters.get(productId);
+        return stock == null ? 0 : stock.get(warehouse);
+    }
+
+    /**
+     * Get the stock of a product across all warehouses
+     * @param productId the product id
+     * @return the total quantity on hand
+     */
+    public int getTotalStock(long productId) {
+        AtomicIntegerArray stock = counters.get(productId);
+        if (stock == null) {
+            return 0;
+        }
+        int total = 0;
+        for (int i = 0; i < warehouseCount; i++) {
+            total += stock.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * Take up to a quantity of a product from a warehouse
+     * @param productId the product id
+     * @param warehouse the warehouse index
+     * @param quantity the wanted quantity
+     * @return the quantity actually taken, between 0 and the wanted quantity
+     */
+    int reserve(long productId, int warehouse, int quantity) {
+        AtomicIntegerArray stock = counters.get(productId);
+        if (stock == null) {
+            return 0;
+        }
+        while (true) {
+            int available = stock.get(warehouse);
+            int taken = Math.min(available, quantity);
+            if (taken <= 0 || stock.compareAndSet(warehouse, available, available - taken)) {
+                return Math.max(taken, 0);
+            }
+        }
+    }
+
+    /**
+     * Return previously reserved stock
+     * @param productId the product id
+     * @param warehouse the warehouse index
+     * @param quantity the quantity to return
+     */
+    void release(long productId, int warehouse, int quantity) {
+        countersOf(productId).addAndGet(warehouse, quantity);
+    }
+
+    private AtomicIntegerArray countersOf(long productId) {
+        return counters.computeIfAbsent(productId, id -> new AtomicIntegerArray(warehouseCount));
+    }
+}
@@ -144,6 +144,27 @@ class EcommerceEdgeCaseTest {
         assertEquals(0, c.getBalance(), 0.01);
     }
 
+    @Test
+    void balance_spent_concurrently_rejects_the_order_and_returns_stock() throws Exception {
+        TV tv = ProductFactory.createTV("Raced TV", 100, 2, 1);
+        // Another debit lands between the balance check and the payment
+        Customer raced = new Customer("Raced Buyer", 1_000) {
+            @Override
+            public boolean hasSufficientBalance(double amount) {
+                boolean sufficient = super.hasSufficientBalance(amount);
+                deductBalance(getBalance());
+                return sufficient;
+            }
+        };
+
+        Cart cart = new Cart();
+        cart.addProduct(tv, 1);
+
+        assertThrows(InsufficientBalanceException.class, () -> checkout.checkout(raced, cart));
+        assertEquals(2, tv.getQuantity());
+        assertFalse(cart.isEmpty());
+    }
+
     // ---------- 4. Expiry edge cases ----------
 
     @Test
@@ -0,0 +1,175 @@
+package com.fawry.ecommerce.analytics;
+
+import com.fawry.ecommerce.order.Order;
+import com.fawry.ecommerce.order.OrderLine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Coverage for the streaming sales analytics: windowed counters, per-product revenue,
+ * depletion rates, the best-seller sketch with its late publications and the bounded
+ * sketch queue.
+ */
+class SalesAnalyticsTest {
+
+    private final AtomicLong now = new AtomicLong(1_700_000_000_000L);
+
+    private static Order order(OrderLine... lines) {
+        double subtotal = 0;
+        for (OrderLine line : lines) {
+            subtotal += line.getTotalPrice();
+        }
+        return new Order(Order.nextOrderId(), 1, "Buyer", 0, List.of(lines), subtotal, 0, subtotal);
+    }
+
+    @Test
+    void windows_expire_old_sales() {
+        SalesAnalytics analytics = new SalesAnalytics(3, now::get);
+        analytics.onCheckoutCompleted(order(new OrderLine(1, "TV", 2, 800)));
+
+        assertEquals(1, analytics.ordersLastMinute());
+        assertEquals(1600.0, analytics.revenueLastMinute(), 0.001);
+        assertEquals(2, analytics.unitsSoldLastMinute(1));
+
+        now.addAndGet(61_000);
+        assertEquals(0, analytics.ordersLastMinute());
+        assertEquals(1, analytics.ordersLastHour());
+        assertEquals(2, analytics.unitsSoldLastHour(1));
+
+        now.addAndGet(3_600_000);
+        assertEquals(0, analytics.ordersLastHour());
+        assertEquals(2, analytics.unitsSold(1), "running totals never expire");
+        assertEquals(1600.0, analytics.revenue(1), 0.001);
+    }
+
+    @Test
+    void depletion_rate_and_stockout_estimate() {
+        SalesAnalytics analytics = new SalesAnalytics(3, now::get);
+        for (int i = 0; i < 60; i++) {
+            analytics.onCheckoutCompleted(order(new OrderLine(5, "Mobile", 2, 1200)));
+            now.addAndGet(1_000);
+        }
+
+        assertEquals(2.0, analytics.depletionRatePerMinute(5), 0.001);
+        assertEquals(5.0, analytics.minutesToStockout(5, 10), 0.001);
+        assertEquals(Double.POSITIVE_INFINITY, analytics.minutesToStockout(6, 10));
+    }
+
+    @Test
+    void best_sellers_rank_heaviest_products_first() {
+        SalesAnalytics analytics = new SalesAnalytics(2, now::get);
+        for (int i = 0; i < 500; i++) {
+            analytics.onCheckoutCompleted(order(
+                    new OrderLine(1, "TV", 1, 800),
+                    new OrderLine(1000 + i, "Long tail " + i, 1, 5)));
+            if (i % 2 == 0) {
+                analytics.onCheckoutCompleted(order(new OrderLine(2, "Cheese", 3, 100)));
+            }
+        }
+        analytics.refresh();
+
+        List<ProductSales> top = analytics.bestSellers();
+        assertEquals(2, top.size());
+        assertEquals(2, top.get(0).getProductId());
+        assertEquals("Cheese", top.get(0).getProductName());
+        assertEquals(750, top.get(0).getUnitsSold());
+        assertEquals(1, top.get(1).getProductId());
+    }
+
+    @Test
+    void stale_best_sellers_catch_up_once_checkouts_stop() {
+        List<Runnable> scheduled = new ArrayList<>();
+        SalesAnalytics analytics = new SalesAnalytics(2, now::get, scheduled::add);
+        analytics.onCheckoutCompleted(order(new OrderLine(1, "TV", 1, 800)));
+        for (int i = 0; i < SalesAnalytics.DRAIN_BATCH * 3; i++) {
+            analytics.onCheckoutCompleted(order(new OrderLine(2, "Cheese", 1, 100)));
+        }
+        assertEquals(1, analytics.bestSellers().get(0).getProductId(), "published within the interval");
+        assertEquals(1, scheduled.size(), "one late publication is scheduled");
+
+        now.addAndGet(SalesAnalytics.SNAPSHOT_INTERVAL_MILLIS);
+        assertEquals(1, analytics.bestSellers().get(0).getProductId(), "queries never drain");
+        scheduled.remove(0).run();
+        List<ProductSales> top = analytics.bestSellers();
+
+        assertEquals(2, top.get(0).getProductId());
+        assertEquals(SalesAnalytics.DRAIN_BATCH * 3, top.get(0).getUnitsSold());
+        assertTrue(scheduled.isEmpty());
+    }
+
+    @Test
+    void a_full_queue_is_drained_by_the_checkout_that_finds_it_full() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicReference<Thread> holding = new AtomicReference<>();
+        LongSupplier clock = () -> {
+            if (Thread.currentThread() == holding.get()) {
+                awaitQuietly(release);
+            }
+            return now.get();
+        };
+        SalesAnalytics analytics = new SalesAnalytics(2, clock, task -> { });
+        // Holds the sketch lock until released, so checkouts cannot drain
+        Thread holder = new Thread(analytics::refresh);
+        holding.set(holder);
+        holder.start();
+        awaitState(holder, Thread.State.WAITING);
+
+        for (int i = 0; i < SalesAnalytics.MAX_PENDING; i++) {
+            analytics.onCheckoutCompleted(order(new OrderLine(3, "Mug", 1, 10)));
+        }
+        Thread blocked = new Thread(() -> analytics.onCheckoutCompleted(order(new OrderLine(3, "Mug", 1, 10))));
+        blocked.start();
+        awaitState(blocked, Thread.State.WAITING);
+
+        release.countDown();
+        holder.join();
+        blocked.join();
+        analytics.refresh();
+        assertEquals(SalesAnalytics.MAX_PENDING + 1, analytics.bestSellers().get(0).getUnitsSold());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void awaitState(Thread thread, Thread.State state) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (thread.getState() != state) {
+            assertTrue(System.nanoTime() < deadline, thread.getName() + " never reached " + state);
+            Thread.onSpinWait();
+        }
+    }
+
+    @Test
+    void concurrent_checkouts_are_counted_exactly() throws InterruptedException {
+        SalesAnalytics analytics = new SalesAnalytics(5, now::get);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8_000; i++) {
+            pool.execute(() -> analytics.onCheckoutCompleted(order(new OrderLine(9, "Card", 1, 50))));
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        analytics.refresh();
+
+        assertEquals(8_000, analytics.ordersLastMinute());
+        assertEquals(8_000, analytics.unitsSoldLastHour(9));
+        assertEquals(400_000.0, analytics.totalRevenue(), 0.001);
+        assertEquals(8_000, analytics.bestSellers().get(0).getUnitsSold());
+    }
+}
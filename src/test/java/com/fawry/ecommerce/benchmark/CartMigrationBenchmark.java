@@ -0,0 +1,76 @@
+package com.fawry.ecommerce.benchmark;
+
+import com.fawry.ecommerce.factory.ProductFactory;
+import com.fawry.ecommerce.model.Cart;
+import com.fawry.ecommerce.model.CartItem;
+import com.fawry.ecommerce.model.CartMigration;
+import com.fawry.ecommerce.model.product.Product;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmark migrating guest carts into customer carts
+ *
+ * Compares replaying {@link Cart#addProduct} per guest line, a single-pass
+ * {@link Cart#merge} per pair, and the batched {@link CartMigration}.
+ * Run with: java -cp target/classes:target/test-classes com.fawry.ecommerce.benchmark.CartMigrationBenchmark
+ */
+public final class CartMigrationBenchmark {
+    private static final int PRODUCTS = 2_000;
+    private static final int PAIRS = 200_000;
+    private static final int LINES = 6;
+    private static final int ROUNDS = 3;
+
+    private CartMigrationBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Random random = new Random(5);
+        List<Product> products = new ArrayList<>(PRODUCTS);
+        for (int i = 0; i < PRODUCTS; i++) {
+            products.add(i % 2 == 0
+                    ? ProductFactory.createCheese("Cheese " + i, 10, 1_000_000, LocalDate.now().plusDays(30), 0.2)
+                    : ProductFactory.createTV("TV " + i, 500, 1_000_000, 10));
+        }
+
+        for (int round = 0; round < ROUNDS; round++) {
+            List<Cart> guests = carts(random, products);
+            List<Cart> targets = carts(random, products);
+            long start = System.nanoTime();
+            for (int i = 0; i < PAIRS; i++) {
+                for (CartItem item : guests.get(i).getItems()) {
+                    targets.get(i).addProduct(item.getProduct(), item.getQuantity());
+                }
+            }
+            long replay = System.nanoTime() - start;
+
+            targets = carts(random, products);
+            start = System.nanoTime();
+            for (int i = 0; i < PAIRS; i++) {
+                targets.get(i).merge(guests.get(i));
+            }
+            long merge = System.nanoTime() - start;
+
+            targets = carts(random, products);
+            CartMigration.Result result = new CartMigration().migrate(guests, targets);
+
+            System.out.printf("Round %d: addProduct replay %.0f ms | merge %.0f ms | batched %.0f ms (%d merged)%n",
+                    round + 1, replay / 1e6, merge / 1e6, result.getElapsedNanos() / 1e6, result.getMerged());
+        }
+    }
+
+    private static List<Cart> carts(Random random, List<Product> products) throws Exception {
+        List<Cart> carts = new ArrayList<>(PAIRS);
+        for (int i = 0; i < PAIRS; i++) {
+            Cart cart = new Cart();
+            for (int l = 0; l < LINES; l++) {
+                cart.addProduct(products.get(random.nextInt(PRODUCTS)), 1 + random.nextInt(3));
+            }
+            carts.add(cart);
+        }
+        return carts;
+    }
+}
@@ -0,0 +1,89 @@
+package com.fawry.ecommerce.benchmark;
+
+import com.fawry.ecommerce.digital.VoucherPool;
+import com.fawry.ecommerce.factory.ProductFactory;
+import com.fawry.ecommerce.model.Cart;
+import com.fawry.ecommerce.model.customer.Customer;
+import com.fawry.ecommerce.model.product.ScratchCard;
+import com.fawry.ecommerce.service.CheckoutService;
+import com.fawry.ecommerce.service.ShippingRates;
+import com.fawry.ecommerce.service.ShippingService;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark scratch card top-ups through the full and the digital checkout
+ *
+ * Every checkout buys one card. The full path runs validation, shipping and the printed
+ * receipt, with standard output discarded so only the work is measured; the digital
+ * path reserves stock, issues a voucher code and charges. A final run drives the
+ * digital path from several threads against one product, as during a top-up spike.
+ * Run with: java -cp target/classes:target/test-classes com.fawry.ecommerce.benchmark.DigitalCheckoutBenchmark
+ */
+public final class DigitalCheckoutBenchmark {
+    private static final int CHECKOUTS = 200_000;
+    private static final int ROUNDS = 5;
+    private static final int THREADS = 8;
+
+    private DigitalCheckoutBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CheckoutService checkout = new CheckoutService(new ShippingService(ShippingRates.DEFAULT));
+        VoucherPool pool = new VoucherPool();
+        checkout.setVoucherPool(pool);
+        int total = CHECKOUTS * (ROUNDS * 2 + THREADS);
+        ScratchCard card = ProductFactory.createScratchCard("Benchmark Top-up", 10, total);
+        pool.generate(card.getId(), total);
+        Customer customer = new Customer(1, "Benchmark Buyer", 10.0 * total);
+        PrintStream out = System.out;
+        PrintStream sink = new PrintStream(OutputStream.nullOutputStream());
+
+        for (int round = 0; round < ROUNDS; round++) {
+            System.setOut(sink);
+            long start = System.nanoTime();
+            for (int i = 0; i < CHECKOUTS; i++) {
+                Cart cart = new Cart();
+                cart.addProduct(card, 1);
+                checkout.checkout(customer, cart);
+            }
+            long fullNanos = System.nanoTime() - start;
+            System.setOut(out);
+
+            start = System.nanoTime();
+            for (int i = 0; i < CHECKOUTS; i++) {
+                Cart cart = new Cart();
+                cart.addProduct(card, 1);
+                checkout.checkoutDigital(customer, cart);
+            }
+            long digitalNanos = System.nanoTime() - start;
+            System.out.printf("Round %d: full %.2f us | digital %.2f us per checkout%n",
+                    round + 1, fullNanos / 1e3 / CHECKOUTS, digitalNanos / 1e3 / CHECKOUTS);
+        }
+
+        ExecutorService workers = Executors.newFixedThreadPool(THREADS);
+        long start = System.nanoTime();
+        for (int t = 0; t < THREADS; t++) {
+            workers.execute(() -> {
+                for (int i = 0; i < CHECKOUTS; i++) {
+                    try {
+                        Cart cart = new Cart();
+                        cart.addProduct(card, 1);
+                        checkout.checkoutDigital(customer, cart);
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+        }
+        workers.shutdown();
+        workers.awaitTermination(5, TimeUnit.MINUTES);
+        long nanos = System.nanoTime() - start;
+        System.out.printf("%d threads: %.0f digital checkouts/s, %d vouchers left%n",
+                THREADS, THREADS * (double) CHECKOUTS / nanos * 1e9, pool.available(card.getId()));
+    }
+}
@@ -0,0 +1,158 @@
+package com.fawry.ecommerce.benchmark;
+
+import com.fawry.ecommerce.factory.ProductFactory;
+import com.fawry.ecommerce.model.CartItem;
+import com.fawry.ecommerce.model.product.Product;
+import com.fawry.ecommerce.model.product.ProductType;
+import com.fawry.ecommerce.promotion.Promotion;
+import com.fawry.ecommerce.promotion.PromotionEngine;
+import com.fawry.ecommerce.promotion.PromotionTable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Benchmark pricing carts against thousands of active promotions
+ *
+ * Compares the compiled decision table with a naive scan of every promotion for every
+ * line, then prices carts from several threads sharing one table.
+ * Run with: java -cp target/classes:target/test-classes com.fawry.ecommerce.benchmark.PromotionEngineBenchmark
+ */
+public final class PromotionEngineBenchmark {
+    private static final int PRODUCTS = 5_000;
+    private static final int PROMOTIONS = 10_000;
+    private static final int CART_LINES = 20;
+    private static final int CARTS = 2_000;
+    private static final int ROUNDS = 5;
+
+    private PromotionEngineBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Random random = new Random(31);
+        List<Product> products = new ArrayList<>(PRODUCTS);
+        for (int i = 0; i < PRODUCTS; i++) {
+            products.add(i % 2 == 0
+                    ? ProductFactory.createTV("TV " + i, 100 + random.nextInt(900), 1_000, 10)
+                    : ProductFactory.createMobile("Mobile " + i, 50 + random.nextInt(450), 1_000, 0.3));
+        }
+        List<Promotion> promotions = new ArrayList<>(PROMOTIONS);
+        for (int i = 0; i < PROMOTIONS; i++) {
+            long productId = products.get(random.nextInt(PRODUCTS)).getId();
+            switch (i % 10) {
+                case 0:
+                    promotions.add(Promotion.buyXGetY("bxgy-" + i, productId, 2 + random.nextInt(3), 1));
+                    break;
+                case 1:
+                    promotions.add(Promotion.categoryCoupon("coupon-" + i,
+                            i % 20 == 1 ? ProductType.TV : ProductType.MOBILE, "CODE" + (i % 50), 5 + random.nextInt(20)));
+                    break;
+                case 2:
+                    promotions.add(Promotion.basketThreshold("basket-" + i, random.nextInt(20_000), 10 + random.nextInt(200)));
+                    break;
+                default:
+                    promotions.add(Promotion.percentOff("pct-" + i, productId, 1 + random.nextInt(40)));
+            }
+        }
+        List<List<CartItem>> carts = new ArrayList<>(CARTS);
+        for (int c = 0; c < CARTS; c++) {
+            List<CartItem> cart = new ArrayList<>(CART_LINES);
+            for (int l = 0; l < CART_LINES; l++) {
+                cart.add(new CartItem(products.get(random.nextInt(PRODUCTS)), 1 + random.nextInt(6)));
+            }
+            carts.add(cart);
+        }
+        Set<String> coupons = Set.of("CODE1", "CODE21");
+
+        long compileStart = System.nanoTime();
+        PromotionTable table = PromotionEngine.compile(promotions);
+        System.out.printf("Compiled %d promotions in %.1f ms%n", table.size(), (System.nanoTime() - compileStart) / 1e6);
+
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            double compiled = 0;
+            for (List<CartItem> cart : carts) {
+                compiled += table.evaluate(cart, coupons).getTotalDiscount();
+            }
+            long compiledNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            double naive = 0;
+            for (List<CartItem> cart : carts) {
+                naive += naiveDiscount(promotions, cart, coupons);
+            }
+            long naiveNanos = System.nanoTime() - start;
+
+            System.out.printf("Round %d: compiled %.2f us/cart, naive %.2f us/cart (discounts %.0f / %.0f)%n",
+                    round + 1, compiledNanos / 1e3 / CARTS, naiveNanos / 1e3 / CARTS, compiled, naive);
+        }
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            long start = System.nanoTime();
+            List<Future<Double>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                results.add(executor.submit(() -> {
+                    double total = 0;
+                    for (int round = 0; round < ROUNDS; round++) {
+                        for (List<CartItem> cart : carts) {
+                            total += table.evaluate(cart, coupons).getTotalDiscount();
+                        }
+                    }
+                    return total;
+                }));
+            }
+            for (Future<Double> result : results) {
+                result.get();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%d threads: %.0f carts/s%n", threads, threads * ROUNDS * CARTS / seconds);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Reference evaluation scanning every promotion for every line, O(lines x promotions)
+     */
+    private static double naiveDiscount(List<Promotion> promotions, List<CartItem> cart, Set<String> coupons) {
+        double subtotal = 0;
+        double lineDiscounts = 0;
+        for (CartItem item : cart) {
+            subtotal += item.getTotalPrice();
+            ProductType type = ProductType.of(item.getProduct());
+            double best = 0;
+            for (Promotion promotion : promotions) {
+                boolean applies;
+                switch (promotion.getType()) {
+                    case CATEGORY_COUPON:
+                        applies = promotion.getCategory() == type && coupons.contains(promotion.getCouponCode());
+                        break;
+                    case BASKET_THRESHOLD:
+                        applies = false;
+                        break;
+                    default:
+                        applies = promotion.getProductId() == item.getProduct().getId();
+                }
+                if (applies) {
+                    best = Math.max(best, promotion.lineDiscount(item));
+                }
+            }
+            lineDiscounts += Math.min(best, item.getTotalPrice());
+        }
+        double remaining = subtotal - lineDiscounts;
+        double basket = 0;
+        for (Promotion promotion : promotions) {
+            if (promotion.getType() == Promotion.Type.BASKET_THRESHOLD && promotion.getMinimumSubtotal() <= remaining) {
+                basket = Math.max(basket, promotion.getAmountOff());
+            }
+        }
+        return lineDiscounts + Math.min(basket, remaining);
+    }
+}
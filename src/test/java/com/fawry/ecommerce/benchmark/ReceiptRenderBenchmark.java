@@ -0,0 +1,86 @@
+package com.fawry.ecommerce.benchmark;
+
+import com.fawry.ecommerce.factory.ProductFactory;
+import com.fawry.ecommerce.model.CartItem;
+import com.fawry.ecommerce.model.product.Product;
+import com.fawry.ecommerce.text.TextRenderer;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmark rendering checkout receipts
+ *
+ * Compares the former printf path with the reusable byte-buffer renderer, reporting the
+ * time and the bytes allocated per receipt by the benchmark thread. Both write to a
+ * discarding stream so only formatting is measured.
+ * Run with: java -cp target/classes:target/test-classes com.fawry.ecommerce.benchmark.ReceiptRenderBenchmark
+ */
+public final class ReceiptRenderBenchmark {
+    private static final int RECEIPTS = 200_000;
+    private static final int LINES = 8;
+    private static final int ROUNDS = 5;
+
+    private ReceiptRenderBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        Random random = new Random(17);
+        List<CartItem> items = new ArrayList<>(LINES);
+        double subtotal = 0;
+        for (int i = 0; i < LINES; i++) {
+            Product product = ProductFactory.createTV("Receipt TV " + i, 100 + random.nextInt(900), 1_000, 10);
+            CartItem item = new CartItem(product, 1 + random.nextInt(4));
+            items.add(item);
+            subtotal += item.getTotalPrice();
+        }
+        double shipping = 205;
+        double amount = subtotal + shipping;
+        double balance = 12_345.67;
+        PrintStream sink = new PrintStream(OutputStream.nullOutputStream());
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        for (int round = 0; round < ROUNDS; round++) {
+            long allocated = threads.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            for (int r = 0; r < RECEIPTS; r++) {
+                printfReceipt(sink, items, subtotal, shipping, amount, balance);
+            }
+            long printfNanos = System.nanoTime() - start;
+            long printfBytes = threads.getThreadAllocatedBytes(thread) - allocated;
+
+            allocated = threads.getThreadAllocatedBytes(thread);
+            start = System.nanoTime();
+            for (int r = 0; r < RECEIPTS; r++) {
+                TextRenderer.forCurrentThread()
+                        .renderReceipt(items, subtotal, 0, shipping, amount, balance)
+                        .writeTo(sink);
+            }
+            long rendererNanos = System.nanoTime() - start;
+            long rendererBytes = threads.getThreadAllocatedBytes(thread) - allocated;
+
+            System.out.printf("Round %d: printf %.2f us, %d B/receipt | renderer %.2f us, %d B/receipt%n",
+                    round + 1, printfNanos / 1e3 / RECEIPTS, printfBytes / RECEIPTS,
+                    rendererNanos / 1e3 / RECEIPTS, rendererBytes / RECEIPTS);
+        }
+    }
+
+    // The receipt as CheckoutService printed it before the renderer
+    private static void printfReceipt(PrintStream out, List<CartItem> items, double subtotal,
+                                      double shipping, double amount, double balance) {
+        out.println("** Checkout receipt **");
+        for (CartItem item : items) {
+            out.printf("%dx %s %.0f%n", item.getQuantity(), item.getProduct().getName(), item.getTotalPrice());
+        }
+        out.println("----------------------");
+        out.printf("Subtotal %.0f%n", subtotal);
+        out.printf("Shipping %.0f%n", shipping);
+        out.printf("Amount %.0f%n", amount);
+        out.printf("Customer balance after payment: $%.2f%n", balance);
+    }
+}
@@ -0,0 +1,125 @@
+package com.fawry.ecommerce.benchmark;
+
+import com.fawry.ecommerce.factory.ProductFactory;
+import com.fawry.ecommerce.model.Cart;
+import com.fawry.ecommerce.model.CartItem;
+import com.fawry.ecommerce.model.SessionCodec;
+import com.fawry.ecommerce.model.customer.Customer;
+import com.fawry.ecommerce.model.product.Product;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmark encoding and decoding customer sessions
+ *
+ * A session is a customer and a cart of eight lines. The binary codec is compared with
+ * a straightforward DataOutputStream encoding writing product names and doubles, the
+ * nearest hand-written alternative without varints or product id references. Reports
+ * the bytes per session and the encode and decode throughput.
+ * Run with: java -cp target/classes:target/test-classes com.fawry.ecommerce.benchmark.SessionCodecBenchmark
+ */
+public final class SessionCodecBenchmark {
+    private static final int SESSIONS = 1_000_000;
+    private static final int LINES = 8;
+    private static final int ROUNDS = 5;
+
+    private SessionCodecBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Random random = new Random(23);
+        Product[] catalog = new Product[256];
+        for (int i = 0; i < catalog.length; i++) {
+            catalog[i] = ProductFactory.createMobile("Session Phone " + i, 100 + random.nextInt(900), 1_000_000, 0.2);
+        }
+        Customer customer = new Customer(1_234, "Session Customer", 5_000.25);
+        Cart cart = new Cart();
+        for (int i = 0; i < LINES; i++) {
+            cart.addProduct(catalog[random.nextInt(catalog.length)], 1 + random.nextInt(3));
+        }
+        cart.applyCoupon("SAVE10");
+        cart.setDeliveryZone("giza");
+        long firstId = catalog[0].getId();
+
+        ByteBuffer buffer = ByteBuffer.allocate(SessionCodec.encodedSize(customer) + SessionCodec.encodedSize(cart));
+        byte[] streamBytes = streamEncode(customer, cart);
+        System.out.printf("Session size: codec %d B | data stream %d B%n", buffer.capacity(), streamBytes.length);
+
+        long checksum = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int s = 0; s < SESSIONS; s++) {
+                buffer.clear();
+                SessionCodec.encode(customer, buffer);
+                SessionCodec.encode(cart, buffer);
+            }
+            long encodeNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int s = 0; s < SESSIONS; s++) {
+                buffer.flip();
+                Customer decodedCustomer = SessionCodec.decodeCustomer(buffer);
+                Cart decodedCart = SessionCodec.decodeCart(buffer, id -> catalog[(int) (id - firstId)]);
+                checksum += decodedCustomer.getId() + decodedCart.getTotalItemCount();
+                buffer.position(buffer.limit());
+            }
+            long decodeNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int s = 0; s < SESSIONS / 10; s++) {
+                checksum += streamDecode(streamEncode(customer, cart));
+            }
+            long streamNanos = (System.nanoTime() - start) * 10;
+
+            System.out.printf("Round %d: codec encode %.1f M/s, decode %.1f M/s | data stream round trip %.1f M/s%n",
+                    round + 1, SESSIONS * 1e3 / encodeNanos, SESSIONS * 1e3 / decodeNanos, SESSIONS * 1e3 / streamNanos);
+        }
+        System.out.println("Checksum " + checksum);
+    }
+
+    private static byte[] streamEncode(Customer customer, Cart cart) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(customer.getId());
+        out.writeUTF(customer.getName());
+        out.writeDouble(customer.getBalance());
+        out.writeUTF(cart.getDeliveryZone());
+        List<String> coupons = new ArrayList<>(cart.getCouponCodes());
+        out.writeInt(coupons.size());
+        for (String code : coupons) {
+            out.writeUTF(code);
+        }
+        out.writeInt(cart.getItems().size());
+        for (CartItem item : cart.getItems()) {
+            out.writeUTF(item.getProduct().getName());
+            out.writeDouble(item.getProduct().getPrice());
+            out.writeInt(item.getQuantity());
+        }
+        return bytes.toByteArray();
+    }
+
+    private static long streamDecode(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        long sum = in.readLong();
+        in.readUTF();
+        in.readDouble();
+        in.readUTF();
+        for (int i = in.readInt(); i > 0; i--) {
+            in.readUTF();
+        }
+        for (int i = in.readInt(); i > 0; i--) {
+            in.readUTF();
+            in.readDouble();
+            sum += in.readInt();
+        }
+        return sum;
+    }
+}
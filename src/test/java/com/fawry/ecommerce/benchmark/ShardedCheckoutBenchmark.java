@@ -0,0 +1,98 @@
+package com.fawry.ecommerce.benchmark;
+
+import com.fawry.ecommerce.engine.ShardedCheckoutEngine;
+import com.fawry.ecommerce.factory.ProductFactory;
+import com.fawry.ecommerce.model.Cart;
+import com.fawry.ecommerce.model.customer.Customer;
+import com.fawry.ecommerce.model.product.Product;
+import com.fawry.ecommerce.order.Order;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Benchmark checkout throughput of the sharded engine as the shard count grows
+ *
+ * Client threads submit carts of one to three lines over a uniform catalog, keeping a
+ * bounded window of checkouts in flight each, and the run reports orders per second
+ * for every shard count from one up to the number of processors.
+ * Run with: java -cp target/classes:target/test-classes com.fawry.ecommerce.benchmark.ShardedCheckoutBenchmark
+ */
+public final class ShardedCheckoutBenchmark {
+    private static final int PRODUCTS = 10_000;
+    private static final int CUSTOMERS = 10_000;
+    private static final int ORDERS_PER_CLIENT = 50_000;
+    private static final int WINDOW = 256;
+
+    private ShardedCheckoutBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int processors = Runtime.getRuntime().availableProcessors();
+        for (int shards = 1; shards <= processors; shards *= 2) {
+            run(shards, Math.max(1, processors / 2));
+        }
+        if (Integer.bitCount(processors) != 1) {
+            run(processors, Math.max(1, processors / 2));
+        }
+    }
+
+    private static void run(int shardCount, int clients) throws Exception {
+        List<Product> products = new ArrayList<>(PRODUCTS);
+        for (int i = 0; i < PRODUCTS; i++) {
+            products.add(ProductFactory.createMobile("Mobile " + i, 10, Integer.MAX_VALUE / 2, 0.2));
+        }
+        List<Customer> customers = new ArrayList<>(CUSTOMERS);
+        for (int i = 0; i < CUSTOMERS; i++) {
+            customers.add(new Customer(i + 1, "Customer " + i, Double.MAX_VALUE / 4));
+        }
+
+        try (ShardedCheckoutEngine engine = new ShardedCheckoutEngine(shardCount, 8192, ForkJoinPool.commonPool())) {
+            CountDownLatch done = new CountDownLatch(clients);
+            long start = System.nanoTime();
+            for (int c = 0; c < clients; c++) {
+                long seed = c;
+                Thread client = new Thread(() -> {
+                    try {
+                        submit(engine, products, customers, new Random(seed));
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    } finally {
+                        done.countDown();
+                    }
+                });
+                client.start();
+            }
+            done.await();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%d shards, %d clients: %.0f orders/s%n",
+                    shardCount, clients, clients * (double) ORDERS_PER_CLIENT / seconds);
+        }
+    }
+
+    private static void submit(ShardedCheckoutEngine engine, List<Product> products, List<Customer> customers,
+                               Random random) throws Exception {
+        List<CompletableFuture<Order>> window = new ArrayList<>(WINDOW);
+        for (int i = 0; i < ORDERS_PER_CLIENT; i++) {
+            Cart cart = new Cart();
+            int lines = 1 + random.nextInt(3);
+            for (int l = 0; l < lines; l++) {
+                cart.addProduct(products.get(random.nextInt(products.size())), 1);
+            }
+            window.add(engine.checkout(customers.get(random.nextInt(customers.size())), cart));
+            if (window.size() == WINDOW) {
+                for (CompletableFuture<Order> future : window) {
+                    future.join();
+                }
+                window.clear();
+            }
+        }
+        for (CompletableFuture<Order> future : window) {
+            future.join();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.fawry.ecommerce.benchmark;
+
+import com.fawry.ecommerce.model.product.SplitStockCounter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntPredicate;
+
+/**
+ * Contention benchmark for a single hot product's stock
+ *
+ * Compares one shared atomic counter with {@link SplitStockCounter} from 1 to 64
+ * threads, every thread selling single units of the same product, and checks that
+ * neither oversells.
+ * Run with: java -cp target/classes:target/test-classes com.fawry.ecommerce.benchmark.SplitStockBenchmark
+ */
+public final class SplitStockBenchmark {
+    private static final int SALES_PER_THREAD = 2_000_000;
+
+    private SplitStockBenchmark() {
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        for (int threads = 1; threads <= 64; threads *= 2) {
+            // Enough stock for 90% of the attempts, so the sold-out path is exercised too
+            int stock = threads * (SALES_PER_THREAD / 10 * 9);
+
+            AtomicInteger shared = new AtomicInteger(stock);
+            double sharedRate = run(threads, amount -> {
+                while (true) {
+                    int current = shared.get();
+                    if (current < amount) {
+                        return false;
+                    }
+                    if (shared.compareAndSet(current, current - amount)) {
+                        return true;
+                    }
+                }
+            });
+            check(shared.get() >= 0, "atomic counter oversold");
+
+            SplitStockCounter split = new SplitStockCounter(stock, threads, SplitStockCounter.DEFAULT_GRANT);
+            double splitRate = run(threads, split::tryAcquire);
+            check(split.available() >= 0, "split counter oversold");
+
+            System.out.printf("%2d threads: atomic %,.0f sales/s, split %,.0f sales/s%n", threads, sharedRate, splitRate);
+        }
+    }
+
+    private static double run(int threads, IntPredicate sell) throws InterruptedException {
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                ready.countDown();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < SALES_PER_THREAD; i++) {
+                    sell.test(1);
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        ready.await();
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return (double) threads * SALES_PER_THREAD / ((System.nanoTime() - begin) / 1e9);
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.fawry.ecommerce.catalog;
+
+import com.fawry.ecommerce.factory.ProductFactory;
+import com.fawry.ecommerce.model.product.Mobile;
+import com.fawry.ecommerce.model.product.TV;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Coverage for catalog snapshots: isolation of published versions, sharing of
+ * untouched views and readers never seeing half-applied batches.
+ */
+class ProductCatalogTest {
+
+    @Test
+    void published_versions_never_change() {
+        TV tv = ProductFactory.createTV("Sony TV", 900.0, 4, 12.0);
+        ProductCatalog catalog = ProductCatalog.of(List.of(tv));
+        CatalogSnapshot first = catalog.snapshot();
+
+        CatalogSnapshot second = catalog.batch().setPrice(tv, 850.0).setQuantity(tv, 2).publish();
+
+        assertEquals(1, first.getVersion());
+        assertEquals(2, second.getVersion());
+        assertSame(second, catalog.snapshot());
+        assertEquals(900.0, first.get(tv.getId()).getPrice());
+        assertEquals(4, first.get(tv.getId()).getQuantity());
+        assertEquals(850.0, second.get(tv.getId()).getPrice());
+        assertEquals(2, tv.getQuantity(), "the batch is applied to the live product");
+        assertEquals(tv.toString(), second.get(tv.getId()).toString());
+    }
+
+    @Test
+    void untouched_views_and_new_products_are_versioned_independently() {
+        List<Mobile> mobiles = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            mobiles.add(ProductFactory.createMobile("Phone " + i, 100.0 + i, 10, 0.2));
+        }
+        ProductCatalog catalog = ProductCatalog.of(mobiles);
+        CatalogSnapshot before = catalog.snapshot();
+        Mobile added = ProductFactory.createMobile("Phone X", 999.0, 1, 0.2);
+
+        mobiles.get(0).reduceQuantity(3);
+        CatalogSnapshot after = catalog.refresh(List.of(mobiles.get(0), added));
+
+        assertEquals(7, after.get(mobiles.get(0).getId()).getQuantity());
+        assertSame(before.get(mobiles.get(150).getId()), after.get(mobiles.get(150).getId()));
+        assertNull(before.get(added.getId()), "products added later are not in older versions");
+        assertEquals(201, after.size());
+        assertEquals("Phone X", after.views().get(200).getName());
+        ProductCatalog.Batch batch = catalog.batch();
+        batch.publish();
+        assertThrows(IllegalStateException.class, batch::publish);
+    }
+
+    @Test
+    void readers_see_whole_batches_only() throws InterruptedException {
+        TV tv = ProductFactory.createTV("LG TV", 0.0, 0, 10.0);
+        Mobile mobile = ProductFactory.createMobile("Pixel", 0.0, 0, 0.2);
+        ProductCatalog catalog = ProductCatalog.of(List.of(tv, mobile));
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<String> torn = new AtomicReference<>();
+
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < 4; r++) {
+            Thread reader = new Thread(() -> {
+                while (!done.get()) {
+                    CatalogSnapshot snapshot = catalog.snapshot();
+                    ProductView a = snapshot.get(tv.getId());
+                    ProductView b = snapshot.get(mobile.getId());
+                    if (a.getQuantity() != b.getQuantity() || a.getPrice() != a.getQuantity()) {
+                        torn.set("version " + snapshot.getVersion());
+                    }
+                }
+            });
+            readers.add(reader);
+            reader.start();
+        }
+        for (int i = 1; i <= 2_000; i++) {
+            catalog.batch().setPrice(tv, i).setQuantity(tv, i).setQuantity(mobile, i).publish();
+        }
+        done.set(true);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        assertNull(torn.get());
+        assertEquals(2_001, catalog.snapshot().getVersion());
+    }
+}
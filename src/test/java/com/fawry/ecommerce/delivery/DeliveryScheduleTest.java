@@ -0,0 +1,226 @@
+package com.fawry.ecommerce.delivery;
+
+import com.fawry.ecommerce.factory.ProductFactory;
+import com.fawry.ecommerce.model.Cart;
+import com.fawry.ecommerce.model.customer.Customer;
+import com.fawry.ecommerce.model.product.TV;
+import com.fawry.ecommerce.service.CheckoutService;
+import com.fawry.ecommerce.service.ShippingRates;
+import com.fawry.ecommerce.service.ShippingService;
+import com.fawry.ecommerce.warehouse.WarehouseAllocator;
+import com.fawry.ecommerce.warehouse.WarehouseNetwork;
+import com.fawry.ecommerce.warehouse.WarehouseStock;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Coverage for delivery slots: ordered booking that skips full slots, no overbooking
+ * under contention, releases reopening capacity, booking from the schedule's own clock,
+ * the calendar rolling forward and the checkout integration.
+ */
+class DeliveryScheduleTest {
+    private static final LocalDate DAY = LocalDate.of(2030, 3, 1);
+
+    @Test
+    void bookings_fill_slots_in_time_order_and_releases_reopen_them() {
+        DeliverySchedule schedule = DeliverySchedule.builder()
+                .calendar(DAY, 2)
+                .window(LocalTime.of(14, 0)).window(LocalTime.of(9, 0))
+                .zone("cairo", 2).zone("giza", 0)
+                .build();
+
+        DeliverySlot morning = schedule.slot("cairo", DAY, LocalTime.of(9, 0));
+        assertEquals(morning, schedule.nextAvailable("cairo", DAY.atTime(8, 30)).orElseThrow());
+        SlotBooking first = schedule.bookNext("cairo", DAY.atStartOfDay()).orElseThrow();
+        schedule.bookNext("cairo", DAY.atStartOfDay()).orElseThrow();
+        assertEquals(0, schedule.remaining(morning));
+        SlotBooking third = schedule.bookNext("cairo", DAY.atStartOfDay()).orElseThrow();
+        assertEquals(LocalTime.of(14, 0), third.getSlot().getStart().toLocalTime());
+        // Past the last window of the day rolls over to the next morning
+        assertEquals(DAY.plusDays(1).atTime(9, 0),
+                     schedule.nextAvailable("cairo", DAY.atTime(15, 0)).orElseThrow().getStart());
+        assertEquals(Optional.empty(), schedule.bookNext("giza", DAY.atStartOfDay()));
+        assertThrows(IllegalArgumentException.class, () -> schedule.bookNext("luxor", DAY.atStartOfDay()));
+
+        assertTrue(first.release());
+        assertFalse(first.release(), "releasing twice gives capacity back once");
+        assertEquals(1, schedule.remaining(morning));
+        assertEquals(morning, schedule.bookNext("cairo", DAY.atStartOfDay()).orElseThrow().getSlot());
+    }
+
+    @Test
+    void concurrent_bookings_never_overbook() throws Exception {
+        int slots = 3 * 100;
+        DeliverySchedule.Builder builder = DeliverySchedule.builder()
+                .calendar(DAY, 3)
+                .windowLength(Duration.ofMinutes(5));
+        for (int i = 0; i < 100; i++) {
+            builder.window(LocalTime.of(8, 0).plusMinutes(5L * i));
+        }
+        DeliverySchedule schedule = builder.zone("alex", 5).build();
+        ConcurrentLinkedQueue<SlotBooking> bookings = new ConcurrentLinkedQueue<>();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < 8; t++) {
+            pool.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 250; i++) {
+                    schedule.bookNext("alex", DAY.atStartOfDay()).ifPresent(booking -> {
+                        bookings.add(booking);
+                        // Churn releases so the open bitmap is cleared and set concurrently
+                        if (booking.hashCode() % 4 == 0) {
+                            booking.release();
+                        }
+                    });
+                }
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+
+        int[] held = new int[slots];
+        for (SlotBooking booking : bookings) {
+            if (!booking.isReleased()) {
+                held[booking.getSlot().getIndex()]++;
+            }
+        }
+        for (SlotBooking booking : bookings) {
+            DeliverySlot slot = booking.getSlot();
+            assertTrue(held[slot.getIndex()] <= 5, slot.toString());
+            assertEquals(5 - held[slot.getIndex()], schedule.remaining(slot), slot.toString());
+        }
+        assertEquals(0, schedule.remaining(schedule.slot("alex", DAY, LocalTime.of(8, 0))),
+                     "the earliest slot is always taken first");
+    }
+
+    @Test
+    void booking_from_now_uses_the_schedule_clock_and_time_zone() {
+        ZoneOffset cairo = ZoneOffset.ofHours(2);
+        AtomicLong now = new AtomicLong(DAY.atTime(10, 0).toInstant(ZoneOffset.UTC).toEpochMilli());
+        DeliverySchedule schedule = DeliverySchedule.builder()
+                .calendar(DAY, 2)
+                .window(LocalTime.of(9, 0)).window(LocalTime.of(14, 0)).window(LocalTime.of(11, 0))
+                .zone("cairo", 1)
+                .clock(now::get, cairo)
+                .build();
+
+        // 10:00 UTC is noon in the schedule's zone, so the morning windows have passed
+        assertEquals(DAY.atTime(14, 0), schedule.bookNext("cairo").orElseThrow().getSlot().getStart());
+        assertEquals(DAY.plusDays(1).atTime(9, 0), schedule.bookNext("cairo").orElseThrow().getSlot().getStart());
+    }
+
+    @Test
+    void calendar_rolls_forward_as_days_pass() {
+        AtomicLong now = new AtomicLong(DAY.atTime(6, 0).toInstant(ZoneOffset.UTC).toEpochMilli());
+        DeliverySchedule schedule = DeliverySchedule.builder()
+                .calendar(DAY, 2)
+                .window(LocalTime.of(10, 0))
+                .zone("cairo", 1)
+                .clock(now::get, ZoneOffset.UTC)
+                .build();
+        SlotBooking first = schedule.bookNext("cairo", DAY.atStartOfDay()).orElseThrow();
+        SlotBooking second = schedule.bookNext("cairo", DAY.atStartOfDay()).orElseThrow();
+        assertEquals(DAY.plusDays(1), second.getSlot().getStart().toLocalDate());
+        assertEquals(Optional.empty(), schedule.bookNext("cairo", DAY.atStartOfDay()));
+
+        now.addAndGet(TimeUnit.DAYS.toMillis(1));
+        assertEquals(DAY.plusDays(1), schedule.getFirstDay());
+        assertEquals(DAY.plusDays(2), schedule.getLastDay());
+        SlotBooking third = schedule.bookNext("cairo", DAY.atStartOfDay()).orElseThrow();
+        assertEquals(DAY.plusDays(2), third.getSlot().getStart().toLocalDate());
+        assertEquals(first.getSlot().getIndex(), third.getSlot().getIndex(), "the past day's slot is recycled");
+
+        // Capacity of a day that has passed is not handed to the day reusing its slot
+        assertTrue(first.release());
+        assertEquals(0, schedule.remaining(third.getSlot()));
+        assertEquals(0, schedule.remaining(first.getSlot()));
+        assertTrue(second.release());
+        assertEquals(1, schedule.remaining(second.getSlot()));
+
+        now.addAndGet(TimeUnit.DAYS.toMillis(10));
+        assertEquals(DAY.plusDays(11), schedule.nextAvailable("cairo", DAY.atStartOfDay()).orElseThrow()
+                .getStart().toLocalDate());
+        assertThrows(IllegalArgumentException.class, () -> schedule.slot("cairo", DAY.plusDays(2), LocalTime.of(10, 0)));
+    }
+
+    @Test
+    void checkout_books_a_slot_and_fails_when_the_calendar_is_full() throws Exception {
+        DeliverySchedule schedule = DeliverySchedule.builder()
+                .calendar(LocalDate.now(), 2)
+                .window(LocalTime.MIDNIGHT)
+                .zone("cairo", 1)
+                .build();
+        CheckoutService checkout = new CheckoutService(new ShippingService(ShippingRates.DEFAULT));
+        checkout.setDeliverySchedule(schedule);
+        TV tv = ProductFactory.createTV("Slot TV", 100, 5, 2.0);
+        Customer customer = new Customer(1, "Slot Buyer", 10_000);
+
+        // Today's midnight window has passed, so only tomorrow's slot can be booked
+        checkout.checkout(customer, cart(tv, "cairo"));
+        assertEquals(0, schedule.remaining(schedule.slot("cairo", LocalDate.now().plusDays(1), LocalTime.MIDNIGHT)));
+        Cart full = cart(tv, "cairo");
+        assertThrows(IllegalStateException.class, () -> checkout.checkout(customer, full));
+        assertEquals(4, tv.getQuantity(), "a full calendar does not touch stock");
+
+        Cart unzoned = cart(tv, null);
+        checkout.checkout(customer, unzoned);
+        assertEquals(3, tv.getQuantity());
+    }
+
+    private static Cart cart(TV tv, String zone) throws Exception {
+        Cart cart = new Cart();
+        cart.addProduct(tv, 1);
+        if (zone != null) {
+            cart.setDeliveryZone(zone);
+        }
+        return cart;
+    }
+
+    @Test
+    void partial_checkout_books_a_slot_and_unknown_zones_release_the_allocation() throws Exception {
+        WarehouseNetwork network = WarehouseNetwork.builder().warehouse("Cairo").route("Cairo", "Giza", 1.0)
+                .route("Cairo", "Alex", 2.0).build();
+        WarehouseStock stock = new WarehouseStock(network);
+        DeliverySchedule schedule = DeliverySchedule.builder()
+                .calendar(LocalDate.now().plusDays(1), 1)
+                .window(LocalTime.of(10, 0))
+                .zone("Giza", 1)
+                .build();
+        ShippingService shipping = new ShippingService(ShippingRates.DEFAULT);
+        CheckoutService checkout = new CheckoutService(shipping);
+        checkout.setWarehouseAllocator(new WarehouseAllocator(network, stock, shipping));
+        checkout.setDeliverySchedule(schedule);
+        TV tv = ProductFactory.createTV("Partial Slot TV", 100, 0, 2.0);
+        stock.receive(tv, network.warehouseIndex("Cairo"), 5);
+        Customer customer = new Customer(2, "Partial Slot Buyer", 10_000);
+
+        assertThrows(IllegalArgumentException.class, () -> checkout.checkout(customer, cart(tv, "Alex")));
+        assertEquals(5, stock.getTotalStock(tv.getId()), "the allocation is given back");
+        assertEquals(5, tv.getQuantity());
+
+        checkout.checkoutPartial(customer, cart(tv, "Giza"));
+        assertEquals(0, schedule.remaining(schedule.slot("Giza", LocalDate.now().plusDays(1), LocalTime.of(10, 0))));
+        assertThrows(IllegalStateException.class, () -> checkout.checkoutPartial(customer, cart(tv, "Giza")));
+        assertEquals(4, tv.getQuantity(), "a full calendar gives the partial order's stock back");
+        assertEquals(4, stock.getTotalStock(tv.getId()));
+    }
+}
@@ -0,0 +1,116 @@
+package com.fawry.ecommerce.digital;
+
+import com.fawry.ecommerce.exception.InsufficientBalanceException;
+import com.fawry.ecommerce.exception.InsufficientStockException;
+import com.fawry.ecommerce.factory.ProductFactory;
+import com.fawry.ecommerce.model.Cart;
+import com.fawry.ecommerce.model.customer.Customer;
+import com.fawry.ecommerce.model.product.ScratchCard;
+import com.fawry.ecommerce.service.CheckoutService;
+import com.fawry.ecommerce.service.ShippingRates;
+import com.fawry.ecommerce.service.ShippingService;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Coverage for digital fulfillment: unique codes under concurrent issue, the
+ * shipping-free checkout path and rollback of failed digital orders.
+ */
+class VoucherPoolTest {
+
+    @Test
+    void concurrent_issues_never_share_a_code_and_never_go_short() throws Exception {
+        VoucherPool pool = new VoucherPool(new Random(3));
+        for (int i = 0; i < 10; i++) {
+            pool.generate(1, 1_000);
+        }
+        ConcurrentLinkedQueue<String> issued = new ConcurrentLinkedQueue<>();
+        ExecutorService workers = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < 8; t++) {
+            int count = 1 + t % 3;
+            workers.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                String[] codes;
+                while ((codes = pool.issue(1, count)) != null) {
+                    assertEquals(count, codes.length);
+                    issued.addAll(List.of(codes));
+                }
+            });
+        }
+        start.countDown();
+        workers.shutdown();
+        assertTrue(workers.awaitTermination(30, TimeUnit.SECONDS));
+
+        Set<String> unique = new HashSet<>(issued);
+        assertEquals(issued.size(), unique.size());
+        assertTrue(issued.size() > 10_000 - 3, "only a remainder smaller than a request is left");
+        assertEquals(10_000 - issued.size(), pool.available(1));
+        assertTrue(unique.iterator().next().matches("[0-9A-Z]{4}(-[0-9A-Z]{4}){3}"));
+    }
+
+    @Test
+    void digital_checkout_issues_codes_without_shipping() throws Exception {
+        ScratchCard card = ProductFactory.createScratchCard("Top-up 20", 20, 50);
+        VoucherPool pool = new VoucherPool();
+        pool.stock(card.getId(), List.of("CODE-A", "CODE-B", "CODE-C"));
+        CheckoutService checkout = new CheckoutService(new ShippingService(ShippingRates.DEFAULT));
+        checkout.setVoucherPool(pool);
+        Customer customer = new Customer(9, "Top-up Buyer", 100);
+
+        Cart cart = new Cart();
+        cart.addProduct(card, 2);
+        DigitalOrder order = checkout.checkoutDigital(customer, cart);
+
+        assertEquals(List.of("CODE-A", "CODE-B"), order.getVoucherCodes(card.getId()));
+        assertEquals(0.0, order.getOrder().getShippingFee());
+        assertEquals(40, order.getOrder().getTotalAmount(), 0.001);
+        assertEquals(60, customer.getBalance(), 0.001);
+        assertEquals(48, card.getQuantity());
+        assertTrue(cart.isEmpty());
+
+        Cart physical = new Cart();
+        physical.addProduct(ProductFactory.createTV("Not Digital TV", 100, 1, 5.0), 1);
+        assertThrows(IllegalArgumentException.class, () -> checkout.checkoutDigital(customer, physical));
+    }
+
+    @Test
+    void failed_digital_checkouts_return_stock_and_codes() throws Exception {
+        ScratchCard card = ProductFactory.createScratchCard("Top-up 50", 50, 10);
+        VoucherPool pool = new VoucherPool(new Random(1));
+        pool.generate(card.getId(), 3);
+        CheckoutService checkout = new CheckoutService(new ShippingService(ShippingRates.DEFAULT));
+        checkout.setVoucherPool(pool);
+        Customer customer = new Customer(10, "Broke Buyer", 60);
+
+        Cart tooMany = new Cart();
+        tooMany.addProduct(card, 4);
+        assertThrows(InsufficientStockException.class, () -> checkout.checkoutDigital(customer, tooMany));
+        Cart tooPricey = new Cart();
+        tooPricey.addProduct(card, 2);
+        assertThrows(InsufficientBalanceException.class, () -> checkout.checkoutDigital(customer, tooPricey));
+
+        assertEquals(10, card.getQuantity());
+        assertEquals(3, pool.available(card.getId()));
+        assertEquals(60, customer.getBalance(), 0.001);
+        customer.addBalance(100);
+        assertEquals(2, checkout.checkoutDigital(customer, tooPricey).getVoucherCodes(card.getId()).size());
+        assertEquals(1, pool.available(card.getId()));
+    }
+}
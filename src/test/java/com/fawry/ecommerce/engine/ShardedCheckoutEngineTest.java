@@ -0,0 +1,224 @@
+package com.fawry.ecommerce.engine;
+
+import com.fawry.ecommerce.exception.InsufficientBalanceException;
+import com.fawry.ecommerce.exception.InsufficientStockException;
+import com.fawry.ecommerce.factory.ProductFactory;
+import com.fawry.ecommerce.model.Cart;
+import com.fawry.ecommerce.model.customer.Customer;
+import com.fawry.ecommerce.model.product.Mobile;
+import com.fawry.ecommerce.model.product.Product;
+import com.fawry.ecommerce.order.Order;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Coverage for the sharded engine: local and cross-shard commits, aborts that leave
+ * every shard untouched, rollback on close, surviving failed commands and no
+ * overselling under concurrent load.
+ */
+class ShardedCheckoutEngineTest {
+
+    private final ShardedCheckoutEngine engine = new ShardedCheckoutEngine(4, 64, ForkJoinPool.commonPool());
+
+    @AfterEach
+    void closeEngine() {
+        engine.close();
+    }
+
+    private Mobile productOnOtherShard(int shard) {
+        while (true) {
+            Mobile mobile = ProductFactory.createMobile("Sharded Mobile", 100, 5, 0.2);
+            if (engine.shardOf(mobile) != shard) {
+                return mobile;
+            }
+        }
+    }
+
+    private Order await(CompletableFuture<Order> future) throws Exception {
+        return future.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void single_shard_checkout_applies_all_changes() throws Exception {
+        Customer customer = new Customer(1, "Local Buyer", 1000);
+        Mobile mobile;
+        do {
+            mobile = ProductFactory.createMobile("Local Mobile", 200, 5, 0.2);
+        } while (engine.shardOf(mobile) != engine.shardOf(customer));
+        Cart cart = new Cart();
+        cart.addProduct(mobile, 2);
+
+        Order order = await(engine.checkout(customer, cart));
+
+        assertEquals(400, order.getTotalAmount(), 0.001);
+        assertEquals(600, customer.getBalance(), 0.001);
+        assertEquals(3, mobile.getQuantity());
+        assertTrue(cart.isEmpty());
+    }
+
+    @Test
+    void cross_shard_checkout_commits_on_every_participant() throws Exception {
+        Customer customer = new Customer(2, "Remote Buyer", 1000);
+        Mobile first = productOnOtherShard(engine.shardOf(customer));
+        Mobile second = productOnOtherShard(engine.shardOf(first));
+        Cart cart = new Cart();
+        cart.addProduct(first, 1);
+        cart.addProduct(second, 2);
+
+        Order order = await(engine.checkout(customer, cart));
+
+        assertEquals(2, order.getLines().size());
+        assertEquals(700, customer.getBalance(), 0.001);
+        assertEquals(4, first.getQuantity());
+        assertEquals(3, second.getQuantity());
+    }
+
+    @Test
+    void closing_mid_transaction_rolls_back_and_fails_the_order() throws Exception {
+        Queue<Runnable> callbacks = new ConcurrentLinkedQueue<>();
+        ShardedCheckoutEngine paused = new ShardedCheckoutEngine(4, 64, callbacks::add);
+        Customer customer = new Customer(6, "Interrupted Buyer", 1000);
+        Mobile first;
+        do {
+            first = ProductFactory.createMobile("Interrupted Mobile", 100, 5, 0.2);
+        } while (paused.shardOf(first) == paused.shardOf(customer));
+        Cart cart = new Cart();
+        cart.addProduct(first, 2);
+
+        CompletableFuture<Order> order = paused.checkout(customer, cart);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (callbacks.isEmpty() && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        paused.close(10, TimeUnit.MILLISECONDS);
+        assertThrows(IllegalStateException.class, () -> paused.checkout(customer, cart));
+        Runnable callback;
+        while ((callback = callbacks.poll()) != null) {
+            callback.run();
+        }
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> await(order));
+        assertInstanceOf(IllegalStateException.class, failure.getCause());
+        assertEquals(5, first.getQuantity());
+        assertEquals(1000, customer.getBalance(), 0.001);
+    }
+
+    @Test
+    void failing_commands_are_reported_and_the_shard_keeps_running() throws Exception {
+        List<Throwable> failures = new ArrayList<>();
+        ShardWorker worker = new ShardWorker(0, 8, (error, shard) -> failures.add(error));
+        worker.start();
+        CountDownLatch after = new CountDownLatch(1);
+
+        worker.submit(() -> {
+            throw new AssertionError("writer broke");
+        });
+        worker.submit(after::countDown);
+
+        assertTrue(after.await(5, TimeUnit.SECONDS));
+        worker.stop();
+        assertEquals(1, failures.size());
+        assertInstanceOf(AssertionError.class, failures.get(0));
+        assertThrows(IllegalStateException.class, () -> worker.submit(() -> { }));
+    }
+
+    @Test
+    void failed_vote_rolls_back_other_participants() throws Exception {
+        Customer customer = new Customer(3, "Short Buyer", 150);
+        Mobile first = productOnOtherShard(engine.shardOf(customer));
+        Mobile second = productOnOtherShard(engine.shardOf(first));
+        Cart cart = new Cart();
+        cart.addProduct(first, 1);
+        cart.addProduct(second, 1);
+        Cart retry = new Cart();
+        retry.addProduct(first, 5);
+        retry.addProduct(second, 5);
+
+        ExecutionException failure = assertThrows(ExecutionException.class,
+                () -> await(engine.checkout(customer, cart)));
+        assertInstanceOf(InsufficientBalanceException.class, failure.getCause());
+
+        // Resolutions are queued before the failure is reported, so a follow-up checkout sees the rollback
+        Customer rich = new Customer(3, "Rich Buyer", 10_000);
+        await(engine.checkout(rich, retry));
+        assertEquals(0, first.getQuantity());
+        assertEquals(0, second.getQuantity());
+        assertEquals(150, customer.getBalance(), 0.001);
+        assertFalse(cart.isEmpty(), "a rejected cart is kept");
+    }
+
+    @Test
+    void failed_reduction_votes_abort_and_restores_every_shard() throws Exception {
+        Customer customer = new Customer(4, "Vanishing Stock Buyer", 1000);
+        Mobile first = productOnOtherShard(engine.shardOf(customer));
+        // Stock sold outside the engine after validation must fail the vote, not be ignored
+        Mobile vanishing;
+        do {
+            vanishing = new Mobile("Vanishing Mobile", 100, 5, 0.2) {
+                @Override
+                public boolean reduceQuantity(int amount) {
+                    return false;
+                }
+            };
+        } while (engine.shardOf(vanishing) == engine.shardOf(first));
+        Cart cart = new Cart();
+        cart.addProduct(first, 2);
+        cart.addProduct(vanishing, 1);
+        Cart probe = new Cart();
+        probe.addProduct(first, 5);
+
+        ExecutionException failure = assertThrows(ExecutionException.class,
+                () -> await(engine.checkout(customer, cart)));
+        assertInstanceOf(InsufficientStockException.class, failure.getCause());
+
+        // Resolutions are queued before the failure is reported, so the probe sees the rollback
+        Customer next = new Customer(4, "Next Buyer", 1000);
+        await(engine.checkout(next, probe));
+        assertEquals(0, first.getQuantity());
+        assertEquals(1000, customer.getBalance(), 0.001);
+        assertEquals(5, vanishing.getQuantity());
+    }
+
+    @Test
+    void concurrent_checkouts_never_oversell() throws Exception {
+        Product hot = ProductFactory.createMobile("Hot Mobile", 1, 50, 0.2);
+        List<Cart> carts = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Cart cart = new Cart();
+            cart.addProduct(hot, 1);
+            carts.add(cart);
+        }
+        List<CompletableFuture<Order>> futures = new ArrayList<>();
+        for (int i = 0; i < carts.size(); i++) {
+            futures.add(engine.checkout(new Customer(100 + i, "Buyer " + i, 10), carts.get(i)));
+        }
+
+        int completed = 0;
+        int rejected = 0;
+        for (CompletableFuture<Order> future : futures) {
+            try {
+                await(future);
+                completed++;
+            } catch (ExecutionException e) {
+                assertInstanceOf(InsufficientStockException.class, e.getCause());
+                rejected++;
+            }
+        }
+        assertEquals(50, completed);
+        assertEquals(150, rejected);
+        assertEquals(0, hot.getQuantity());
+    }
+}
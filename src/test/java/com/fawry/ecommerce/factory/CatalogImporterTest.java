@@ -0,0 +1,104 @@
+package com.fawry.ecommerce.factory;
+
+import com.fawry.ecommerce.model.product.*;
+import com.fawry.ecommerce.repository.ProductRepository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Coverage for the parallel catalog importer: subtype construction, chunk boundaries,
+ * long decimals and malformed feed handling.
+ */
+class CatalogImporterTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void builds_every_product_subtype() throws IOException {
+        Path feed = directory.resolve("feed.csv");
+        Files.writeString(feed, "type,name,price,quantity,expirationDate,weight\r\n"
+                + "CHEESE,Cheddar Cheese,100,10,2030-01-31,0.2\r\n"
+                + "BISCUITS,Oreo Biscuits,75.5,15,2030-02-01,0.35\n"
+                + "TV,Samsung Smart TV,800,5,,15\n"
+                + "MOBILE,iPhone 14,1200,8,,0.2\n"
+                + "SCRATCH_CARD,Mobile Credit Card,50,20,,\n", StandardCharsets.UTF_8);
+        ProductRepository repository = new ProductRepository();
+
+        CatalogImporter.ImportResult result = new CatalogImporter().importCsv(feed, repository);
+
+        assertEquals(5, result.getRecords());
+        Map<String, Product> byName = repository.findAll().stream()
+                .collect(Collectors.toMap(Product::getName, Function.identity()));
+        Cheese cheese = (Cheese) byName.get("Cheddar Cheese");
+        assertEquals(LocalDate.of(2030, 1, 31), cheese.getExpirationDate());
+        assertEquals(0.2, cheese.getWeight());
+        assertEquals(75.5, byName.get("Oreo Biscuits").getPrice());
+        assertInstanceOf(TV.class, byName.get("Samsung Smart TV"));
+        assertEquals(8, byName.get("iPhone 14").getQuantity());
+        assertInstanceOf(ScratchCard.class, byName.get("Mobile Credit Card"));
+    }
+
+    @Test
+    void small_chunks_import_every_line_exactly_once() throws IOException {
+        int records = 20_000;
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < records; i++) {
+            csv.append("TV,TV ").append(i).append(',').append(100 + i % 7).append(".99,")
+               .append(i % 50).append(",,").append(i % 30).append('\n');
+        }
+        Path feed = directory.resolve("large.csv");
+        Files.writeString(feed, csv, StandardCharsets.UTF_8);
+        ProductRepository repository = new ProductRepository();
+
+        CatalogImporter importer = new CatalogImporter(new ForkJoinPool(4), 4096);
+        CatalogImporter.ImportResult result = importer.importCsv(feed, repository);
+
+        assertEquals(records, result.getRecords());
+        assertTrue(result.getChunks() > 1);
+        assertEquals(records, repository.size());
+        assertEquals(records, repository.findAll().stream().map(Product::getName).distinct().count());
+        assertTrue(result.recordsPerSecond() > 0);
+    }
+
+    @Test
+    void malformed_record_aborts_without_registering() throws IOException {
+        Path feed = directory.resolve("broken.csv");
+        Files.writeString(feed, "TV,Good TV,800,5,,15\nCHEESE,Dateless Cheese,10,1,,0.2\n",
+                StandardCharsets.UTF_8);
+        ProductRepository repository = new ProductRepository();
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> new CatalogImporter().importCsv(feed, repository));
+        assertTrue(error.getMessage().contains("byte 21"), error.getMessage());
+        assertEquals(0, repository.size());
+    }
+
+    @Test
+    void long_decimals_parse_like_double_parse_double() throws IOException {
+        Path feed = directory.resolve("precise.csv");
+        Files.writeString(feed, "TV,Precise TV,9007199254.7409931,1,,15\n"
+                + "MOBILE,Rounded Mobile,123456789012345678901.5,1,,0.2\n", StandardCharsets.UTF_8);
+        ProductRepository repository = new ProductRepository();
+
+        new CatalogImporter().importCsv(feed, repository);
+
+        Map<String, Product> byName = repository.findAll().stream()
+                .collect(Collectors.toMap(Product::getName, Function.identity()));
+        assertEquals(Double.parseDouble("9007199254.7409931"), byName.get("Precise TV").getPrice());
+        assertEquals(Double.parseDouble("123456789012345678901.5"), byName.get("Rounded Mobile").getPrice());
+    }
+}
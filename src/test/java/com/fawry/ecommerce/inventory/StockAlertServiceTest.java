@@ -0,0 +1,122 @@
+package com.fawry.ecommerce.inventory;
+
+import com.fawry.ecommerce.factory.ProductFactory;
+import com.fawry.ecommerce.model.product.Cheese;
+import com.fawry.ecommerce.model.product.TV;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Coverage for low-water-mark alerting: single firing per crossing, re-arming on restock,
+ * out-of-stock events, expired stock on watch, one observer per product and asynchronous dispatch.
+ */
+class StockAlertServiceTest {
+
+    private final List<ReplenishmentEvent> events = new ArrayList<>();
+
+    private StockAlertService directService() {
+        StockAlertService service = new StockAlertService(Runnable::run, () -> 42L);
+        service.addListener(events::add);
+        return service;
+    }
+
+    @Test
+    void crossing_fires_once_until_restocked() {
+        StockAlertService service = directService();
+        TV tv = ProductFactory.createTV("Flash Sale TV", 800, 10, 15);
+        service.watch(tv, 3);
+
+        tv.reduceQuantity(5);
+        assertTrue(events.isEmpty());
+        tv.reduceQuantity(2);
+        tv.reduceQuantity(1);
+        assertEquals(1, events.size());
+        assertEquals(ReplenishmentEvent.Type.LOW_STOCK, events.get(0).getType());
+        assertEquals(3, events.get(0).getQuantity());
+
+        tv.setQuantity(20);
+        tv.reduceQuantity(18);
+        assertEquals(2, events.size());
+        assertEquals(2, events.get(1).getQuantity());
+    }
+
+    @Test
+    void draining_stock_reports_out_of_stock() {
+        StockAlertService service = directService();
+        TV tv = ProductFactory.createTV("Last TV", 800, 2, 15);
+        service.watch(tv, 0);
+
+        tv.reduceQuantity(2);
+
+        assertEquals(2, events.size());
+        assertEquals(ReplenishmentEvent.Type.OUT_OF_STOCK, events.get(0).getType());
+        assertEquals(ReplenishmentEvent.Type.LOW_STOCK, events.get(1).getType());
+    }
+
+    @Test
+    void already_low_product_alerts_when_watched_and_unwatch_stops_alerts() {
+        StockAlertService service = directService();
+        TV tv = ProductFactory.createTV("Low TV", 800, 1, 15);
+        service.watch(tv, 5);
+        assertEquals(1, events.size());
+
+        service.unwatch(tv);
+        tv.setQuantity(10);
+        tv.reduceQuantity(9);
+        assertEquals(1, events.size());
+        assertNull(tv.getStockObserver());
+    }
+
+    @Test
+    void expired_units_do_not_count_when_watched() {
+        StockAlertService service = directService();
+        Cheese cheese = ProductFactory.createCheese("Stale Cheese", 50, 8, LocalDate.now().minusDays(1), 0.3);
+        service.watch(cheese, 2);
+
+        assertEquals(2, events.size());
+        assertEquals(ReplenishmentEvent.Type.OUT_OF_STOCK, events.get(0).getType());
+        assertEquals(0, events.get(0).getQuantity());
+    }
+
+    @Test
+    void a_product_watched_by_another_service_is_refused() {
+        StockAlertService service = directService();
+        StockAlertService other = new StockAlertService(Runnable::run, () -> 42L);
+        TV tv = ProductFactory.createTV("Contested TV", 800, 10, 15);
+        service.watch(tv, 3);
+        service.watch(tv, 5);
+
+        assertThrows(IllegalStateException.class, () -> other.watch(tv, 2));
+        other.unwatch(tv);
+        tv.reduceQuantity(5);
+        assertEquals(1, events.size());
+        assertEquals(5, events.get(0).getQuantity());
+    }
+
+    @Test
+    void default_service_dispatches_off_the_decrement_thread() throws InterruptedException {
+        StockAlertService service = new StockAlertService();
+        CountDownLatch delivered = new CountDownLatch(1);
+        List<String> threads = new ArrayList<>();
+        service.addListener(event -> {
+            threads.add(Thread.currentThread().getName());
+            delivered.countDown();
+        });
+        TV tv = ProductFactory.createTV("Async TV", 800, 5, 15);
+        service.watch(tv, 1);
+
+        tv.reduceQuantity(4);
+
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        assertEquals("stock-alert-dispatcher", threads.get(0));
+        service.shutdown();
+    }
+}
@@ -0,0 +1,199 @@
+package com.fawry.ecommerce.limit;
+
+import com.fawry.ecommerce.exception.InsufficientBalanceException;
+import com.fawry.ecommerce.exception.PurchaseLimitExceededException;
+import com.fawry.ecommerce.exception.RateLimitExceededException;
+import com.fawry.ecommerce.engine.ShardedCheckoutEngine;
+import com.fawry.ecommerce.factory.ProductFactory;
+import com.fawry.ecommerce.model.Cart;
+import com.fawry.ecommerce.model.CartItem;
+import com.fawry.ecommerce.model.customer.Customer;
+import com.fawry.ecommerce.model.product.Mobile;
+import com.fawry.ecommerce.service.CheckoutService;
+import com.fawry.ecommerce.service.ShippingRates;
+import com.fawry.ecommerce.service.ShippingService;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Coverage for purchase limits: token-bucket refill, caps per period, guest keys,
+ * idle expiry and the tracked customer bound, and enforcement in carts and checkout
+ * before any stock is touched.
+ */
+class PurchaseLimiterTest {
+
+    @Test
+    void bursts_are_admitted_and_then_refilled_at_the_sustained_rate() {
+        AtomicLong now = new AtomicLong(1_000_000);
+        PurchaseLimiter limiter = PurchaseLimiter.builder().requestRate(2, 3).clock(now::get).build();
+
+        for (int i = 0; i < 3; i++) {
+            limiter.acquire(7);
+        }
+        RateLimitExceededException e = assertThrows(RateLimitExceededException.class, () -> limiter.acquire(7));
+        assertEquals(500, e.getRetryAfterMillis());
+        limiter.acquire(8);
+
+        now.addAndGet(499);
+        assertThrows(RateLimitExceededException.class, () -> limiter.acquire(7));
+        now.addAndGet(1);
+        limiter.acquire(7);
+        now.addAndGet(60_000);
+        for (int i = 0; i < 3; i++) {
+            limiter.acquire(7);
+        }
+        assertThrows(RateLimitExceededException.class, () -> limiter.acquire(7), "refill stops at the burst");
+        assertEquals(3, limiter.getRateLimitedCount());
+    }
+
+    @Test
+    void caps_count_purchases_per_period_and_carts_check_them_before_stock() throws Exception {
+        AtomicLong now = new AtomicLong(0);
+        Mobile phone = ProductFactory.createMobile("Capped Phone", 100, 3, 0.2);
+        PurchaseLimiter limiter = PurchaseLimiter.builder()
+                .cap(phone.getId(), 2)
+                .capPeriod(1, TimeUnit.HOURS)
+                .clock(now::get)
+                .build();
+        CheckoutService checkout = new CheckoutService(new ShippingService(ShippingRates.DEFAULT));
+        checkout.setPurchaseLimiter(limiter);
+        Customer customer = new Customer(5, "Capped Buyer", 10_000);
+
+        Cart cart = new Cart();
+        cart.setPurchaseLimiter(limiter, customer);
+        cart.addProduct(phone, 2);
+        // The cap rejects the line even though the stock would not cover it either
+        assertThrows(PurchaseLimitExceededException.class, () -> cart.addProduct(phone, 5));
+        checkout.checkout(customer, cart);
+        assertEquals(2, limiter.purchased(customer.getId(), phone.getId()));
+
+        Cart again = new Cart();
+        again.addProduct(phone, 1);
+        assertThrows(PurchaseLimitExceededException.class, () -> checkout.checkout(customer, again));
+        assertEquals(1, phone.getQuantity(), "rejected before stock is reserved");
+
+        now.addAndGet(TimeUnit.HOURS.toMillis(1));
+        checkout.checkout(customer, again);
+        assertEquals(1, limiter.purchased(customer.getId(), phone.getId()));
+        assertEquals(2, limiter.getCapRejectedCount());
+    }
+
+    @Test
+    void failed_checkouts_give_their_cap_back() throws Exception {
+        Mobile phone = ProductFactory.createMobile("Pricey Phone", 900, 5, 0.2);
+        PurchaseLimiter limiter = PurchaseLimiter.builder().defaultCap(2).build();
+        CheckoutService checkout = new CheckoutService(new ShippingService(ShippingRates.DEFAULT));
+        checkout.setPurchaseLimiter(limiter);
+        Customer poor = new Customer(6, "Short Buyer", 1_000);
+
+        Cart cart = new Cart();
+        cart.addProduct(phone, 2);
+        assertThrows(InsufficientBalanceException.class, () -> checkout.checkout(poor, cart));
+        assertEquals(0, limiter.purchased(poor.getId(), phone.getId()));
+
+        poor.addBalance(1_000);
+        checkout.checkout(poor, cart);
+        assertEquals(2, limiter.purchased(poor.getId(), phone.getId()));
+    }
+
+    @Test
+    void guests_are_limited_by_name_across_sessions() throws Exception {
+        Mobile phone = ProductFactory.createMobile("Guest Phone", 10, 10, 0.2);
+        PurchaseLimiter limiter = PurchaseLimiter.builder().requestRate(1, 2).defaultCap(2)
+                .clock(() -> 0).build();
+        CheckoutService checkout = new CheckoutService(new ShippingService(ShippingRates.DEFAULT));
+        checkout.setPurchaseLimiter(limiter);
+        Customer first = new Customer("Returning Guest", 1_000);
+        Customer again = new Customer(" returning guest", 1_000);
+        Customer other = new Customer("Other Guest", 1_000);
+        assertNotEquals(first.getId(), again.getId());
+        assertEquals(PurchaseLimiter.keyOf(first), PurchaseLimiter.keyOf(again));
+        assertTrue(PurchaseLimiter.keyOf(first) < 0, "guest keys never collide with registered ids");
+
+        Cart firstCart = new Cart();
+        firstCart.addProduct(phone, 2);
+        checkout.checkout(first, firstCart);
+        Cart againCart = new Cart();
+        againCart.addProduct(phone, 1);
+        assertThrows(PurchaseLimitExceededException.class, () -> checkout.checkout(again, againCart),
+                "a new session does not reset the cap");
+        Cart otherCart = new Cart();
+        otherCart.addProduct(phone, 2);
+        checkout.checkout(other, otherCart);
+
+        assertEquals(2, limiter.purchased(PurchaseLimiter.keyOf(again), phone.getId()));
+        assertEquals(2, limiter.purchased(PurchaseLimiter.keyOf(other), phone.getId()));
+    }
+
+    @Test
+    void idle_customers_are_dropped_and_the_table_is_bounded() {
+        AtomicLong now = new AtomicLong(0);
+        Mobile phone = ProductFactory.createMobile("Tracked Phone", 10, 10, 0.2);
+        PurchaseLimiter limiter = PurchaseLimiter.builder().requestRate(1, 1).maxCustomers(2)
+                .cap(phone.getId(), 1).capPeriod(10, TimeUnit.SECONDS).clock(now::get).build();
+
+        limiter.acquire(1);
+        limiter.reserve(2, List.of(new CartItem(phone, 1)));
+        RateLimitExceededException full = assertThrows(RateLimitExceededException.class, () -> limiter.acquire(3));
+        assertEquals(1_000, full.getRetryAfterMillis());
+
+        // Customer 1 only used its bucket, customer 2 still counts against the cap period
+        now.set(1_000);
+        limiter.acquire(3);
+        assertEquals(2, limiter.getTrackedCustomerCount());
+        assertEquals(1, limiter.purchased(2, phone.getId()));
+        assertThrows(RateLimitExceededException.class, () -> limiter.acquire(1));
+
+        now.set(10_000);
+        limiter.acquire(1);
+        assertEquals(1, limiter.getTrackedCustomerCount());
+        assertEquals(0, limiter.purchased(2, phone.getId()));
+    }
+
+    @Test
+    void a_clock_reading_from_the_past_does_not_credit_tokens_twice() {
+        AtomicLong now = new AtomicLong(0);
+        PurchaseLimiter limiter = PurchaseLimiter.builder().requestRate(1, 2).clock(now::get).build();
+
+        now.set(1_000);
+        limiter.acquire(9);
+        now.set(0);
+        limiter.acquire(9);
+        now.set(1_000);
+        assertThrows(RateLimitExceededException.class, () -> limiter.acquire(9));
+    }
+
+    @Test
+    void sharded_engine_enforces_rates_and_caps() throws Exception {
+        Mobile phone = ProductFactory.createMobile("Engine Phone", 10, 10, 0.2);
+        PurchaseLimiter limiter = PurchaseLimiter.builder().requestRate(1, 2).defaultCap(3)
+                .clock(() -> 0).build();
+        try (ShardedCheckoutEngine engine = new ShardedCheckoutEngine(2, 64, ForkJoinPool.commonPool())) {
+            engine.setPurchaseLimiter(limiter);
+            Customer customer = new Customer(7, "Engine Buyer", 5);
+
+            Cart cart = new Cart();
+            cart.addProduct(phone, 2);
+            ExecutionException failed = assertThrows(ExecutionException.class,
+                    () -> engine.checkout(customer, cart).get(5, TimeUnit.SECONDS));
+            assertInstanceOf(InsufficientBalanceException.class, failed.getCause());
+            assertEquals(0, limiter.purchased(customer.getId(), phone.getId()));
+
+            customer.addBalance(1_000);
+            engine.checkout(customer, cart).get(5, TimeUnit.SECONDS);
+            assertEquals(2, limiter.purchased(customer.getId(), phone.getId()));
+
+            Cart over = new Cart();
+            over.addProduct(phone, 1);
+            assertThrows(RateLimitExceededException.class, () -> engine.checkout(customer, over));
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.fawry.ecommerce.loadgen;
+
+import com.fawry.ecommerce.model.product.Product;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Coverage for the load generator: reproducible traces and catalogs, trace
+ * record/replay, Zipf skew and report accounting.
+ */
+class LoadGeneratorTest {
+
+    private final LoadConfig config = LoadConfig.builder()
+            .seed(7)
+            .productCount(50)
+            .customerCount(20)
+            .requestCount(300)
+            .initialStock(20)
+            .balanceRange(0, 3_000)
+            .threads(1)
+            .build();
+
+    @Test
+    void same_seed_yields_same_trace_and_catalog() {
+        assertEquals(TrafficTrace.generate(config), TrafficTrace.generate(config));
+        assertNotEquals(TrafficTrace.generate(config), TrafficTrace.generate(config.toBuilder().seed(8).build()));
+
+        List<Product> first = LoadGenerator.createCatalog(config);
+        List<Product> second = LoadGenerator.createCatalog(config);
+        for (int i = 0; i < first.size(); i++) {
+            assertEquals(first.get(i).getName(), second.get(i).getName());
+            assertEquals(first.get(i).getPrice(), second.get(i).getPrice());
+        }
+    }
+
+    @Test
+    void recorded_trace_replays_identically(@TempDir Path directory) throws Exception {
+        TrafficTrace trace = TrafficTrace.generate(config);
+        Path file = directory.resolve("trace.txt");
+        trace.write(file);
+
+        TrafficTrace replayed = TrafficTrace.read(file, LoadConfig.builder().threads(1).build());
+
+        assertEquals(trace, replayed);
+        assertEquals(config.getSeed(), replayed.getConfig().getSeed());
+        assertEquals(config.getInitialStock(), replayed.getConfig().getInitialStock());
+
+        LoadReport original = new LoadGenerator().run(trace);
+        LoadReport replay = new LoadGenerator().run(replayed);
+        assertEquals(original.getCompleted(), replay.getCompleted());
+        assertEquals(original.getRejections(), replay.getRejections());
+    }
+
+    @Test
+    void zipf_favours_low_ranks() {
+        ZipfDistribution zipf = new ZipfDistribution(100, 1.0);
+        Random random = new Random(1);
+        int[] counts = new int[100];
+        for (int i = 0; i < 100_000; i++) {
+            counts[zipf.sample(random)]++;
+        }
+        assertTrue(counts[0] > counts[1] && counts[1] > counts[9] && counts[9] > counts[99]);
+        // Rank 0 holds 1/H(100), about 19% of the mass
+        assertEquals(0.193, counts[0] / 100_000.0, 0.01);
+    }
+
+    @Test
+    void report_accounts_for_every_request() throws Exception {
+        PrintStream console = System.out;
+        LoadReport report = new LoadGenerator().run(TrafficTrace.generate(config.toBuilder().threads(3).build()));
+        assertSame(console, System.out);
+
+        long rejected = report.getRejections().values().stream().mapToLong(Long::longValue).sum();
+        assertEquals(300, report.getRequests());
+        assertEquals(300, report.getCompleted() + rejected);
+        assertTrue(report.getCompleted() > 0);
+        assertTrue(rejected > 0, "low balances and stock produce rejections");
+        assertTrue(report.getLatencyPercentile(50) <= report.getLatencyPercentile(99));
+        assertTrue(report.toString().contains("Throughput"));
+    }
+}
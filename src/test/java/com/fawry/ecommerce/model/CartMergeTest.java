@@ -0,0 +1,99 @@
+package com.fawry.ecommerce.model;
+
+import com.fawry.ecommerce.exception.InsufficientStockException;
+import com.fawry.ecommerce.exception.ProductExpiredException;
+import com.fawry.ecommerce.factory.ProductFactory;
+import com.fawry.ecommerce.model.product.Cheese;
+import com.fawry.ecommerce.model.product.Mobile;
+import com.fawry.ecommerce.model.product.TV;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Coverage for cart merging: combined quantities, all-or-nothing validation reporting
+ * the available stock and batched migration reporting rejected pairs.
+ */
+class CartMergeTest {
+
+    @Test
+    void merge_combines_lines_coupons_and_zone() throws Exception {
+        TV tv = ProductFactory.createTV("Merge TV", 500, 5, 10);
+        Mobile mobile = ProductFactory.createMobile("Merge Mobile", 200, 5, 0.2);
+        Cart saved = new Cart();
+        saved.addProduct(tv, 1);
+        saved.applyCoupon("SAVED");
+        Cart guest = new Cart();
+        guest.addProduct(tv, 2);
+        guest.addProduct(mobile, 1);
+        guest.applyCoupon("GUEST");
+        guest.setDeliveryZone("Giza");
+
+        saved.merge(guest);
+
+        assertEquals(2, saved.getItems().size());
+        assertEquals(3, saved.getItems().get(0).getQuantity());
+        assertSame(mobile, saved.getItems().get(1).getProduct());
+        assertEquals(Set.of("SAVED", "GUEST"), saved.getCouponCodes());
+        assertEquals("Giza", saved.getDeliveryZone());
+        assertEquals(2, guest.getItems().get(0).getQuantity(), "the merged-in cart is unchanged");
+    }
+
+    @Test
+    void failed_merge_leaves_both_carts_unchanged() throws Exception {
+        Mobile mobile = ProductFactory.createMobile("Fine Mobile", 200, 5, 0.2);
+        TV tv = ProductFactory.createTV("Scarce TV", 500, 3, 10);
+        Cart saved = new Cart();
+        saved.addProduct(tv, 2);
+        Cart guest = new Cart();
+        guest.addProduct(mobile, 1);
+        guest.addProduct(tv, 2);
+
+        InsufficientStockException error = assertThrows(InsufficientStockException.class, () -> saved.merge(guest));
+        assertTrue(error.getMessage().contains("has only 3 available"), error.getMessage());
+        assertEquals(1, saved.getItems().size());
+        assertEquals(2, saved.getItems().get(0).getQuantity());
+
+        Cheese cheese = ProductFactory.createCheese("Merge Cheese", 10, 5, LocalDate.now().plusDays(1), 0.2);
+        Cart withCheese = new Cart();
+        withCheese.addProduct(cheese, 1);
+        cheese.setExpirationDate(LocalDate.now().minusDays(1));
+        assertThrows(ProductExpiredException.class, () -> new Cart().merge(withCheese));
+        assertThrows(IllegalArgumentException.class, () -> saved.merge(saved));
+    }
+
+    @Test
+    void batched_migration_merges_pairs_and_reports_rejections() throws Exception {
+        TV popular = ProductFactory.createTV("Popular TV", 500, 4, 10);
+        Mobile other = ProductFactory.createMobile("Other Mobile", 200, 100, 0.2);
+        List<Cart> guests = new ArrayList<>();
+        List<Cart> customers = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            Cart guest = new Cart();
+            guest.addProduct(other, 1);
+            guest.addProduct(popular, 1 + i % 2);
+            Cart customer = new Cart();
+            customer.addProduct(popular, 2 + i % 2);
+            guests.add(guest);
+            customers.add(customer);
+        }
+
+        CartMigration.Result result = new CartMigration(ForkJoinPool.commonPool(), 64).migrate(guests, customers);
+
+        // Odd pairs would hold 2 + 3 = 5 popular TVs against a stock of 4
+        assertEquals(500, result.getMerged());
+        assertEquals(500, result.getRejectedIndexes().size());
+        assertEquals(1, result.getRejectedIndexes().get(0));
+        assertEquals(999, result.getRejectedIndexes().get(499));
+        assertEquals(3, customers.get(0).getItems().get(0).getQuantity());
+        assertEquals(1, customers.get(1).getItems().size());
+        assertThrows(IllegalArgumentException.class, () -> new CartMigration().migrate(guests, List.of()));
+    }
+}
@@ -0,0 +1,161 @@
+package com.fawry.ecommerce.model;
+
+import com.fawry.ecommerce.factory.ProductFactory;
+import com.fawry.ecommerce.model.customer.Customer;
+import com.fawry.ecommerce.model.product.Cheese;
+import com.fawry.ecommerce.model.product.Dimensions;
+import com.fawry.ecommerce.model.product.Product;
+import com.fawry.ecommerce.model.product.ProductType;
+import com.fawry.ecommerce.model.product.ScratchCard;
+import com.fawry.ecommerce.model.product.TV;
+import com.fawry.ecommerce.repository.ProductRepository;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Round-trip coverage for the session codec: customers, every product type with
+ * its lots, carts resolved by product id, compact guest ids and rejection of foreign
+ * or truncated data.
+ */
+class SessionCodecTest {
+
+    @Test
+    void customers_and_products_round_trip() {
+        Customer customer = new Customer(42, "Mona", 1234.56);
+        ByteBuffer buffer = ByteBuffer.allocate(SessionCodec.encodedSize(customer));
+        SessionCodec.encode(customer, buffer);
+        assertFalse(buffer.hasRemaining(), "the size is exact");
+        buffer.flip();
+        Customer decoded = SessionCodec.decodeCustomer(buffer);
+        assertEquals(42, decoded.getId());
+        assertEquals("Mona", decoded.getName());
+        assertEquals(1234.56, decoded.getBalance());
+
+        LocalDate today = LocalDate.now();
+        Cheese cheese = ProductFactory.createCheese("Gouda", 120.5, 3, today.plusDays(9), 0.4);
+        cheese.addLot(5, today.plusDays(2));
+        TV measured = ProductFactory.createTV("Sharp TV", 700.0, 2, 14.5);
+        measured.setDimensions(new Dimensions(110, 70, 12));
+        List<Product> products = List.of(cheese, measured,
+                ProductFactory.createBiscuits("Café Biscuits", 9.99, 0, today.minusDays(3), 0.25),
+                ProductFactory.createScratchCard("Credit 50", 50.0, 100));
+        for (Product product : products) {
+            buffer = ByteBuffer.allocate(SessionCodec.encodedSize(product));
+            SessionCodec.encode(product, buffer);
+            assertFalse(buffer.hasRemaining());
+            buffer.flip();
+            Product copy = SessionCodec.decodeProduct(buffer);
+            assertEquals(product.getClass(), copy.getClass());
+            assertEquals(product.toString(), copy.toString());
+            assertEquals(product.getWeight(), copy.getWeight());
+            assertEquals(product.getDimensions(), copy.getDimensions());
+            assertEquals(product.getId(), copy.getId());
+        }
+    }
+
+    @Test
+    void carts_round_trip_through_product_ids() throws Exception {
+        ProductRepository repository = new ProductRepository();
+        TV tv = ProductFactory.createTV("Hisense TV", 500.0, 5, 12.0);
+        ScratchCard card = ProductFactory.createScratchCard("Credit 10", 10.0, 50);
+        repository.registerAll(List.of(tv, card));
+        Cart cart = new Cart();
+        cart.addProduct(tv, 2);
+        cart.addProduct(card, 7);
+        cart.applyCoupon("WELCOME10");
+        cart.setDeliveryZone("cairo");
+
+        ByteBuffer buffer = ByteBuffer.allocate(SessionCodec.encodedSize(cart));
+        SessionCodec.encode(cart, buffer);
+        buffer.flip();
+        Cart decoded = SessionCodec.decodeCart(buffer, repository);
+
+        assertEquals(cart.toString(), decoded.toString());
+        assertSame(tv, decoded.getItems().get(0).getProduct());
+        assertEquals(cart.getCouponCodes(), decoded.getCouponCodes());
+        assertEquals("cairo", decoded.getDeliveryZone());
+    }
+
+    @Test
+    void restored_products_keep_their_ids_and_resolve_saved_carts() throws Exception {
+        TV tv = ProductFactory.createTV("Restored TV", 300.0, 4, 9.0);
+        Cart cart = new Cart();
+        cart.addProduct(tv, 3);
+        ByteBuffer buffer = ByteBuffer.allocate(SessionCodec.encodedSize(tv) + SessionCodec.encodedSize(cart));
+        SessionCodec.encode(tv, buffer);
+        SessionCodec.encode(cart, buffer);
+        buffer.flip();
+
+        // A restarted process has none of the original products
+        ProductRepository restarted = new ProductRepository();
+        Product restored = SessionCodec.decodeProduct(buffer);
+        restarted.registerAll(List.of(restored));
+        Cart decoded = SessionCodec.decodeCart(buffer, restarted);
+
+        assertSame(restored, decoded.getItems().get(0).getProduct());
+        assertEquals(3, decoded.getItems().get(0).getQuantity());
+        assertTrue(ProductFactory.createTV("New TV", 100.0, 1, 5.0).getId() > restored.getId());
+        Product ahead = ProductFactory.restore(Product.nextProductId() + 1_000, ProductType.MOBILE, "Ahead Mobile",
+                50.0, 1, null, 0.2);
+        assertTrue(ProductFactory.createMobile("Later Mobile", 50.0, 1, 0.2).getId() > ahead.getId());
+    }
+
+    @Test
+    void foreign_versions_records_and_products_are_rejected() throws Exception {
+        TV tv = ProductFactory.createTV("Toshiba TV", 400.0, 1, 10.0);
+        Cart cart = new Cart();
+        cart.addProduct(tv, 1);
+        ByteBuffer buffer = ByteBuffer.allocate(SessionCodec.encodedSize(cart));
+        SessionCodec.encode(cart, buffer);
+
+        buffer.flip();
+        assertThrows(IllegalArgumentException.class, () -> SessionCodec.decodeCart(buffer, new ProductRepository()));
+        buffer.rewind();
+        assertThrows(IllegalArgumentException.class, () -> SessionCodec.decodeCustomer(buffer));
+        buffer.put(0, (byte) 9).rewind();
+        assertThrows(IllegalArgumentException.class, () -> SessionCodec.decodeCart(buffer, id -> tv));
+    }
+
+    @Test
+    void guest_ids_round_trip_compactly() {
+        Customer guest = new Customer(-3, "Guest", 10.0);
+        ByteBuffer buffer = ByteBuffer.allocate(SessionCodec.encodedSize(guest));
+        SessionCodec.encode(guest, buffer);
+        assertEquals(2 + 1 + 6 + 2, buffer.position(), "a small negative id takes one byte");
+        buffer.flip();
+        assertEquals(-3, SessionCodec.decodeCustomer(buffer).getId());
+
+        // Version 3 records wrote ids unsigned
+        ByteBuffer legacy = ByteBuffer.wrap(new byte[] {3, SessionCodec.CUSTOMER, 42, 2, 'A', 'l', 0});
+        Customer old = SessionCodec.decodeCustomer(legacy);
+        assertEquals(42, old.getId());
+        assertEquals("Al", old.getName());
+    }
+
+    @Test
+    void truncated_records_are_rejected_as_malformed() throws Exception {
+        TV tv = ProductFactory.createTV("Truncated TV", 250.0, 2, 8.0);
+        Cart cart = new Cart();
+        cart.addProduct(tv, 2);
+        Customer customer = new Customer(7, "Nour", 99.5);
+        ByteBuffer product = ByteBuffer.allocate(SessionCodec.encodedSize(tv));
+        SessionCodec.encode(tv, product);
+        ByteBuffer saved = ByteBuffer.allocate(SessionCodec.encodedSize(cart));
+        SessionCodec.encode(cart, saved);
+        ByteBuffer account = ByteBuffer.allocate(SessionCodec.encodedSize(customer));
+        SessionCodec.encode(customer, account);
+
+        product.flip().limit(product.limit() - 1);
+        saved.flip().limit(saved.limit() - 1);
+        account.flip().limit(account.limit() - 1);
+        assertThrows(IllegalArgumentException.class, () -> SessionCodec.decodeProduct(product));
+        assertThrows(IllegalArgumentException.class, () -> SessionCodec.decodeCart(saved, id -> tv));
+        assertThrows(IllegalArgumentException.class, () -> SessionCodec.decodeCustomer(account));
+    }
+}
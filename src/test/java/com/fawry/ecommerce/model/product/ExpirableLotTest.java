@@ -0,0 +1,139 @@
+package com.fawry.ecommerce.model.product;
+
+import com.fawry.ecommerce.exception.ProductExpiredException;
+import com.fawry.ecommerce.factory.ProductFactory;
+import com.fawry.ecommerce.model.Cart;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.SortedMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Coverage for lot-tracked expirable stock: first-expired-first-out picking,
+ * expired lots excluded from sale, restocking with fresher lots, lot-aware returns,
+ * lookups among many lots and expiry of sold-out products.
+ */
+class ExpirableLotTest {
+
+    @Test
+    void sales_pick_the_earliest_lot_first() {
+        LocalDate today = LocalDate.now();
+        Cheese cheese = ProductFactory.createCheese("Brie", 50.0, 3, today.plusDays(10), 0.2);
+        cheese.addLot(4, today.plusDays(2));
+        cheese.addLot(5, today.plusDays(6));
+
+        assertEquals(3, cheese.getLotCount());
+        assertEquals(today.plusDays(2), cheese.getExpirationDate());
+
+        assertTrue(cheese.reduceQuantity(6));
+        assertEquals(6, cheese.getQuantity());
+        assertEquals(2, cheese.getLotCount(), "the earliest lot is sold out");
+        assertEquals(today.plusDays(6), cheese.getExpirationDate());
+        assertFalse(cheese.reduceQuantity(7));
+    }
+
+    @Test
+    void expired_lots_are_not_sellable_until_written_off() throws Exception {
+        LocalDate today = LocalDate.now();
+        Cheese cheese = ProductFactory.createCheese("Feta", 40.0, 4, today.minusDays(1), 0.2);
+        cheese.addLot(3, today.plusDays(5));
+
+        assertFalse(cheese.isExpired(), "the fresh lot is still on sale");
+        assertEquals(7, cheese.getQuantity());
+        assertEquals(3, cheese.getSellableQuantity());
+        assertTrue(cheese.isAvailable(3));
+        assertFalse(cheese.isAvailable(4));
+        assertTrue(cheese.isExpired(today.plusDays(6)));
+
+        Cart cart = new Cart();
+        assertThrows(Exception.class, () -> cart.addProduct(cheese, 4));
+        cart.addProduct(cheese, 3);
+
+        assertEquals(4, cheese.writeOffExpired());
+        assertEquals(3, cheese.getQuantity());
+        assertEquals(3, cheese.getSellableQuantity());
+    }
+
+    @Test
+    void restocking_a_fully_expired_product_makes_it_sellable_again() throws Exception {
+        LocalDate today = LocalDate.now();
+        Biscuits biscuits = ProductFactory.createBiscuits("Oreo", 10.0, 5, today.minusDays(2), 0.1);
+        Cart cart = new Cart();
+        assertThrows(ProductExpiredException.class, () -> cart.addProduct(biscuits, 1));
+
+        biscuits.addLot(2, today.plusDays(30));
+        assertFalse(biscuits.isExpired());
+        assertEquals(today.plusDays(30), biscuits.getExpirationDate());
+        cart.addProduct(biscuits, 2);
+
+        biscuits.increaseQuantity(1);
+        assertEquals(3, biscuits.getSellableQuantity(), "returned units join the lot on sale");
+        biscuits.enableSplitStock(4, 2);
+        assertFalse(biscuits.isSplitStock(), "lots are never moved into split counters");
+    }
+
+    @Test
+    void returned_and_counted_units_keep_their_own_lots() {
+        LocalDate today = LocalDate.now();
+        Cheese cheese = ProductFactory.createCheese("Gouda", 30.0, 2, today.plusDays(1), 0.2);
+        cheese.addLot(5, today.plusDays(20));
+
+        SortedMap<LocalDate, Integer> taken = cheese.takeLots(4);
+        assertEquals(Map.of(today.plusDays(1), 2, today.plusDays(20), 2), taken);
+        assertNull(cheese.takeLots(4));
+
+        cheese.returnLots(taken);
+        assertEquals(Map.of(today.plusDays(1), 2, today.plusDays(20), 5), cheese.getLots());
+
+        // A stock count changes the total without merging the lots
+        cheese.setQuantity(5);
+        assertEquals(Map.of(today.plusDays(20), 5), cheese.getLots());
+        cheese.setLotQuantity(today.plusDays(10), 3);
+        assertEquals(8, cheese.getQuantity());
+        assertEquals(today.plusDays(10), cheese.getExpirationDate());
+        cheese.setLotQuantity(today.plusDays(10), 0);
+        assertEquals(Map.of(today.plusDays(20), 5), cheese.getLots());
+        assertThrows(IllegalArgumentException.class, () -> cheese.setLotQuantity(today.minusDays(1), 1));
+
+        // Units returned to a lot that expired since come back expired
+        cheese.returnLots(Map.of(today.minusDays(1), 2));
+        assertEquals(7, cheese.getQuantity());
+        assertEquals(5, cheese.getSellableQuantity());
+    }
+
+    @Test
+    void many_lots_are_found_by_day_and_counted_before_a_day() {
+        LocalDate today = LocalDate.now();
+        Cheese cheese = ProductFactory.createCheese("Cheddar", 20.0, 1, today.plusDays(200), 0.2);
+        for (int day = 199; day >= 1; day -= 2) {
+            cheese.addLot(day, today.plusDays(day));
+        }
+        cheese.addLot(10, today.plusDays(51));
+        cheese.setLotQuantity(today.plusDays(99), 0);
+
+        assertEquals(100, cheese.getLotCount());
+        assertEquals(9_912, cheese.getQuantity());
+        assertEquals(today.plusDays(1), cheese.getExpirationDate());
+        // Lots on odd days 1 to 59 hold 900 units, plus the 10 added to day 51
+        assertEquals(9_912 - 910, cheese.getSellableQuantity(today.plusDays(60)));
+    }
+
+    @Test
+    void a_sold_out_product_past_its_date_reads_as_expired() {
+        LocalDate today = LocalDate.now();
+        Biscuits biscuits = ProductFactory.createBiscuits("Stale Wafers", 10.0, 0, today.minusDays(1), 0.1);
+        Cheese cheese = ProductFactory.createCheese("Mozzarella", 30.0, 2, today.minusDays(1), 0.2);
+        cheese.addLot(1, today.plusDays(3));
+
+        assertTrue(biscuits.isExpired());
+        assertThrows(ProductExpiredException.class, () -> new Cart().addProduct(biscuits, 1));
+        // Reading the date skips the expired lot without purging it
+        assertEquals(today.plusDays(3), cheese.getExpirationDate());
+        assertEquals(3, cheese.getQuantity());
+        assertEquals(1, cheese.getSellableQuantity());
+    }
+}
@@ -0,0 +1,111 @@
+package com.fawry.ecommerce.model.product;
+
+import com.fawry.ecommerce.factory.ProductFactory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Coverage for price history: point-in-time and range queries against a brute-force
+ * scan, block breaks on large deltas and recording through the product.
+ */
+class PriceHistoryTest {
+
+    @Test
+    void lookups_match_a_full_scan_across_blocks() {
+        Random random = new Random(11);
+        int n = 200_000;
+        long[] times = new long[n];
+        long[] cents = new long[n];
+        PriceHistory history = new PriceHistory();
+        long time = 1_000_000;
+        long price = 5_000;
+        for (int i = 0; i < n; i++) {
+            // Mostly small steps, with equal times and deltas too large for an int mixed in
+            time += random.nextInt(20) == 0 ? 0 : random.nextInt(10) == 0 ? 3_000_000_000L : random.nextInt(1_000);
+            price = Math.max(1, price + (random.nextInt(50) == 0 ? 5_000_000_000L : random.nextInt(200) - 100));
+            if (price > 10_000_000_000L) {
+                price = 5_000;
+            }
+            times[i] = time;
+            cents[i] = price;
+            history.record(time, price / 100.0);
+        }
+        assertEquals(n, history.size());
+        assertTrue(Double.isNaN(history.priceAt(times[0] - 1)));
+
+        for (int q = 0; q < 2_000; q++) {
+            long at = times[random.nextInt(n)] + random.nextInt(3) - 1;
+            int last = -1;
+            for (int i = 0; i < n && times[i] <= at; i++) {
+                last = i;
+            }
+            assertEquals(last < 0 ? Double.NaN : cents[last] / 100.0, history.priceAt(at), "at " + at);
+
+            long to = at + random.nextInt(2_000_000);
+            int count = 0;
+            double lowest = last < 0 ? Double.NaN : cents[last] / 100.0;
+            double highest = lowest;
+            for (int i = 0; i < n; i++) {
+                if (times[i] >= at && times[i] <= to) {
+                    count++;
+                    lowest = Double.isNaN(lowest) ? cents[i] / 100.0 : Math.min(lowest, cents[i] / 100.0);
+                    highest = Double.isNaN(highest) ? cents[i] / 100.0 : Math.max(highest, cents[i] / 100.0);
+                }
+            }
+            assertEquals(count, history.countBetween(at, to));
+            assertEquals(lowest, history.lowestBetween(at, to));
+            assertEquals(highest, history.highestBetween(at, to));
+        }
+    }
+
+    @Test
+    void earlier_times_are_recorded_at_the_last_time() {
+        PriceHistory history = new PriceHistory();
+        history.record(100, 10);
+        history.record(50, 12);
+        history.record(200, 9.99);
+
+        assertEquals(12, history.priceAt(100));
+        assertEquals(12, history.highestBetween(0, 300));
+        assertEquals(9.99, history.lowestBetween(150, 300));
+        assertEquals(3, history.countBetween(Long.MIN_VALUE, Long.MAX_VALUE));
+    }
+
+    @Test
+    void products_record_every_price_change() {
+        TV tv = ProductFactory.createTV("History TV", 500, 1, 10);
+        long created = System.currentTimeMillis();
+        tv.setPriceClock(() -> created + 5);
+        tv.setPrice(450);
+
+        assertEquals(2, tv.getPriceHistory().size());
+        assertEquals(500, tv.getPriceAt(created + 4), 0.001);
+        assertEquals(500, tv.getPriceAt(0), 0.001, "before creation the initial price applies");
+        assertEquals(450, tv.getPriceAt(created + 5), 0.001);
+    }
+
+    @Test
+    void concurrent_price_changes_leave_field_and_history_agreeing() throws Exception {
+        TV tv = ProductFactory.createTV("Contended TV", 500, 1, 10);
+        Thread[] writers = new Thread[4];
+        for (int t = 0; t < writers.length; t++) {
+            int base = (t + 1) * 1_000;
+            writers[t] = new Thread(() -> {
+                for (int i = 0; i < 2_000; i++) {
+                    tv.setPrice(base + i);
+                }
+            });
+            writers[t].start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        assertEquals(8_001, tv.getPriceHistory().size());
+        assertEquals(tv.getPrice(), tv.getPriceAt(Long.MAX_VALUE), 0.001);
+    }
+}
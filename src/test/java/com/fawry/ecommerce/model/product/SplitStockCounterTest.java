@@ -0,0 +1,118 @@
+package com.fawry.ecommerce.model.product;
+
+import com.fawry.ecommerce.factory.ProductFactory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Coverage for split stock counters: local grants, exhaustion across stripes,
+ * resets racing refills, no overselling under contention and hot products behaving
+ * like regular ones.
+ */
+class SplitStockCounterTest {
+
+    @Test
+    void units_granted_to_other_stripes_are_swept_back_on_exhaustion() throws InterruptedException {
+        SplitStockCounter counter = new SplitStockCounter(100, 4, 64);
+        Thread other = new Thread(() -> assertTrue(counter.tryAcquire(1)));
+        other.start();
+        other.join();
+
+        assertEquals(99, counter.available());
+        assertTrue(counter.tryAcquire(99), "the other thread's grant is reclaimed");
+        assertFalse(counter.tryAcquire(1));
+        assertEquals(0, counter.available());
+
+        counter.release(3);
+        assertEquals(3, counter.available());
+        counter.reset(10);
+        assertEquals(10, counter.available());
+    }
+
+    @Test
+    void reset_during_refills_never_adds_units() throws InterruptedException {
+        for (int round = 0; round < 20; round++) {
+            SplitStockCounter counter = new SplitStockCounter(1_000_000, 8, 4);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Thread> sellers = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                Thread seller = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < 20_000; i++) {
+                        counter.tryAcquire(1);
+                    }
+                });
+                sellers.add(seller);
+                seller.start();
+            }
+            start.countDown();
+            for (int i = 0; i < 200; i++) {
+                counter.reset(500);
+            }
+            for (Thread seller : sellers) {
+                seller.join();
+            }
+            // Sellers only take units, so nothing can exceed the last counted quantity
+            assertTrue(counter.available() <= 500, "round " + round + ": " + counter.available());
+        }
+    }
+
+    @Test
+    void concurrent_sales_never_oversell() throws InterruptedException {
+        SplitStockCounter counter = new SplitStockCounter(10_000, 8, 32);
+        AtomicInteger sold = new AtomicInteger();
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 2_000; i++) {
+                    if (counter.tryAcquire(1 + i % 3)) {
+                        sold.addAndGet(1 + i % 3);
+                    }
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertEquals(10_000, sold.get() + counter.available());
+        assertTrue(sold.get() <= 10_000);
+    }
+
+    @Test
+    void hot_product_keeps_product_semantics() {
+        TV tv = ProductFactory.createTV("Hot TV", 800, 5, 15);
+        tv.enableSplitStock(4, 2);
+
+        assertTrue(tv.isSplitStock());
+        assertTrue(tv.reduceQuantity(3));
+        assertEquals(2, tv.getQuantity());
+        assertFalse(tv.reduceQuantity(3));
+        assertTrue(tv.isAvailable(2));
+        tv.increaseQuantity(1);
+        tv.setQuantity(tv.getQuantity() + 4);
+        assertEquals(7, tv.getQuantity());
+        assertTrue(tv.toString().contains("Qty: 7"));
+    }
+}
@@ -0,0 +1,197 @@
+package com.fawry.ecommerce.order;
+
+import com.fawry.ecommerce.factory.ProductFactory;
+import com.fawry.ecommerce.model.Cart;
+import com.fawry.ecommerce.model.customer.Customer;
+import com.fawry.ecommerce.model.product.TV;
+import com.fawry.ecommerce.service.CheckoutService;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Coverage for the segmented order event log: encoding round trips, segment rolling,
+ * per-customer history reads from sealed postings, guest ids, recovery after reopen,
+ * torn-tail truncation and the checkout writer thread.
+ */
+class OrderHistoryStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private static Order order(long customerId, int sequence) {
+        List<OrderLine> lines = List.of(
+                new OrderLine(7, "Cheddar Cheese", 2, 100.0),
+                new OrderLine(9, "Samsung Smart TV", 1, 800.0 + sequence));
+        double subtotal = 1000.0 + sequence;
+        return new Order(1000 + sequence, customerId, "Customer " + customerId,
+                1_700_000_000_000L + sequence, lines, subtotal, 385.0, subtotal + 385.0);
+    }
+
+    @Test
+    void codec_round_trips_orders() {
+        Order order = order(42, 3);
+        ByteBuffer buffer = ByteBuffer.allocate(OrderEventCodec.encodedSize(order));
+        OrderEventCodec.encode(order, buffer);
+        assertFalse(buffer.hasRemaining(), "encodedSize must be exact");
+
+        buffer.flip();
+        assertEquals(42, OrderEventCodec.peekCustomerId(buffer));
+        assertEquals(order, OrderEventCodec.decode(buffer));
+    }
+
+    @Test
+    void history_is_read_back_per_customer_across_segments() throws IOException {
+        try (OrderHistoryStore store = new OrderHistoryStore(directory, 512, 128)) {
+            for (int i = 0; i < 200; i++) {
+                store.append(order(i % 3 + 1, i));
+            }
+            assertTrue(store.segmentCount() > 1, "small segments should roll");
+
+            List<Order> history = store.historyOf(2);
+            assertEquals(67, history.size());
+            assertTrue(history.stream().allMatch(o -> o.getCustomerId() == 2));
+            assertEquals(order(2, 1), history.get(0));
+            assertEquals(order(2, 199), history.get(66));
+            assertTrue(store.historyOf(99).isEmpty());
+        }
+    }
+
+    @Test
+    void reopened_store_recovers_offsets_and_history() throws IOException {
+        try (OrderHistoryStore store = new OrderHistoryStore(directory, 512, 128)) {
+            for (int i = 0; i < 50; i++) {
+                store.append(order(i % 2, i));
+            }
+        }
+        try (OrderHistoryStore store = new OrderHistoryStore(directory, 512, 128)) {
+            assertEquals(50, store.nextOffset());
+            assertEquals(order(1, 49), store.read(49));
+            assertEquals(25, store.historyOf(0).size());
+
+            assertEquals(50, store.append(order(0, 50)));
+            assertEquals(26, store.historyOf(0).size());
+        }
+    }
+
+    @Test
+    void torn_tail_record_is_truncated_on_open() throws IOException {
+        try (OrderHistoryStore store = new OrderHistoryStore(directory)) {
+            store.append(order(5, 1));
+            store.append(order(5, 2));
+        }
+        Path log;
+        try (Stream<Path> files = Files.list(directory)) {
+            log = files.filter(p -> p.toString().endsWith(".log")).collect(Collectors.toList()).get(0);
+        }
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        try (OrderHistoryStore store = new OrderHistoryStore(directory)) {
+            assertEquals(1, store.nextOffset());
+            assertEquals(List.of(order(5, 1)), store.historyOf(5));
+        }
+    }
+
+    @Test
+    void checkout_publishes_orders_to_the_store() throws Exception {
+        CheckoutService checkout = CheckoutService.getInstance();
+        try (OrderHistoryStore store = new OrderHistoryStore(directory)) {
+            checkout.addCheckoutListener(store);
+            try {
+                TV tv = ProductFactory.createTV("History TV", 800, 2, 10);
+                Customer customer = new Customer(77, "Registered Buyer", 5000);
+                Cart cart = new Cart();
+                cart.addProduct(tv, 1);
+
+                Order placed = checkout.checkout(customer, cart);
+                store.flush();
+
+                List<Order> history = store.historyOf(77);
+                assertEquals(List.of(placed), history);
+                assertEquals(tv.getId(), history.get(0).getLines().get(0).getProductId());
+                assertEquals(1055.0, history.get(0).getTotalAmount(), 0.001);
+            } finally {
+                checkout.removeCheckoutListener(store);
+            }
+        }
+    }
+
+    @Test
+    void guest_ids_round_trip_compactly() throws IOException {
+        Order guest = order(-1_700_000_000_000L << 12, 4);
+        ByteBuffer buffer = ByteBuffer.allocate(OrderEventCodec.encodedSize(guest));
+        OrderEventCodec.encode(guest, buffer);
+        buffer.flip();
+        assertEquals(guest.getCustomerId(), OrderEventCodec.peekCustomerId(buffer));
+        assertEquals(guest, OrderEventCodec.decode(buffer));
+        assertTrue(OrderEventCodec.encodedSize(order(-5, 4)) < OrderEventCodec.encodedSize(guest));
+
+        try (OrderHistoryStore store = new OrderHistoryStore(directory, 512, 128)) {
+            for (int i = 0; i < 20; i++) {
+                store.append(order(-(i % 2) - 1, i));
+            }
+        }
+        try (OrderHistoryStore store = new OrderHistoryStore(directory, 512, 128)) {
+            assertEquals(10, store.historyOf(-2).size());
+            assertEquals(order(-1, 18), store.historyOf(-1).get(9));
+        }
+    }
+
+    @Test
+    void sealed_segments_look_customers_up_in_their_index_files() throws IOException {
+        try (OrderHistoryStore store = new OrderHistoryStore(directory, 16 << 10, 256)) {
+            for (int i = 0; i < 600; i++) {
+                store.append(order(i % 150 - 40, i));
+            }
+            assertTrue(store.segmentCount() > 2);
+            assertEquals(4, store.historyOf(-40).size());
+            assertEquals(order(109, 599), store.historyOf(109).get(3));
+            assertTrue(store.historyOf(-41).isEmpty());
+            assertTrue(store.historyOf(110).isEmpty());
+        }
+        try (OrderHistoryStore store = new OrderHistoryStore(directory, 16 << 10, 256)) {
+            for (int customer = -40; customer < 110; customer++) {
+                List<Order> history = store.historyOf(customer);
+                assertEquals(4, history.size());
+                assertEquals(customer, history.get(3).getCustomerId());
+            }
+        }
+    }
+
+    @Test
+    void checkout_orders_are_written_off_the_checkout_thread() throws Exception {
+        OrderHistoryStore store = new OrderHistoryStore(directory);
+        List<Throwable> failures = new ArrayList<>();
+        store.setFailureHandler((listener, order, error) -> failures.add(error));
+        for (int i = 0; i < 100; i++) {
+            store.onCheckoutCompleted(order(3, i));
+        }
+        store.flush();
+        assertEquals(100, store.nextOffset());
+        assertEquals(order(3, 99), store.historyOf(3).get(99));
+
+        store.onCheckoutCompleted(order(3, 100));
+        store.close();
+        assertThrows(IllegalStateException.class, () -> store.onCheckoutCompleted(order(3, 101)));
+        try (OrderHistoryStore reopened = new OrderHistoryStore(directory)) {
+            assertEquals(101, reopened.nextOffset(), "close writes the orders already handed over");
+        }
+        assertTrue(failures.isEmpty());
+        assertEquals(0, store.getFailedAppendCount());
+    }
+}
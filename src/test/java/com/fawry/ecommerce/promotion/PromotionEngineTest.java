@@ -0,0 +1,117 @@
+package com.fawry.ecommerce.promotion;
+
+import com.fawry.ecommerce.factory.ProductFactory;
+import com.fawry.ecommerce.model.Cart;
+import com.fawry.ecommerce.model.CartItem;
+import com.fawry.ecommerce.model.customer.Customer;
+import com.fawry.ecommerce.model.product.Biscuits;
+import com.fawry.ecommerce.model.product.Mobile;
+import com.fawry.ecommerce.model.product.ProductType;
+import com.fawry.ecommerce.model.product.TV;
+import com.fawry.ecommerce.order.Order;
+import com.fawry.ecommerce.service.CheckoutService;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Coverage for compiled promotions: each rule kind, best-offer selection without
+ * stacking, basket thresholds and the discount charged at checkout.
+ */
+class PromotionEngineTest {
+
+    private final TV tv = ProductFactory.createTV("Promo TV", 1000, 10, 15);
+    private final Mobile mobile = ProductFactory.createMobile("Promo Mobile", 500, 10, 0.3);
+    private final Biscuits biscuits = ProductFactory.createBiscuits("Promo Biscuits", 10, 50,
+                                                                  LocalDate.now().plusDays(30), 0.2);
+
+    @Test
+    void buy_x_get_y_frees_whole_groups_only() {
+        PromotionTable table = PromotionEngine.compile(List.of(
+                Promotion.buyXGetY("b2g1", biscuits.getId(), 2, 1)));
+
+        PricingResult result = table.evaluate(List.of(new CartItem(biscuits, 7)), Set.of());
+
+        assertEquals(70, result.getSubtotal(), 0.001);
+        assertEquals(20, result.getLineDiscount(0), 0.001);
+        assertEquals("b2g1", result.getLinePromotionId(0));
+    }
+
+    @Test
+    void line_gets_best_offer_without_stacking() {
+        PromotionTable table = PromotionEngine.compile(List.of(
+                Promotion.percentOff("tv10", tv.getId(), 10),
+                Promotion.percentOff("tv15", tv.getId(), 15),
+                Promotion.categoryCoupon("tv-coupon", ProductType.TV, "BIGSCREEN", 20),
+                Promotion.percentOff("mobile5", mobile.getId(), 5)));
+
+        List<CartItem> items = List.of(new CartItem(tv, 1), new CartItem(mobile, 2));
+        PricingResult withoutCoupon = table.evaluate(items, Set.of());
+        PricingResult withCoupon = table.evaluate(items, Set.of("BIGSCREEN"));
+
+        assertEquals(150, withoutCoupon.getLineDiscount(0), 0.001);
+        assertEquals("tv15", withoutCoupon.getLinePromotionId(0));
+        assertEquals(200, withCoupon.getLineDiscount(0), 0.001);
+        assertEquals("tv-coupon", withCoupon.getLinePromotionId(0));
+        assertEquals(50, withCoupon.getLineDiscount(1), 0.001);
+        assertEquals(4, table.size());
+    }
+
+    @Test
+    void best_reached_basket_threshold_applies_after_line_discounts() {
+        PromotionTable table = PromotionEngine.compile(List.of(
+                Promotion.basketThreshold("spend500", 500, 25),
+                Promotion.basketThreshold("spend1000", 1000, 100),
+                Promotion.basketThreshold("spend2000", 2000, 300),
+                Promotion.percentOff("tv10", tv.getId(), 10)));
+
+        PricingResult result = table.evaluate(List.of(new CartItem(tv, 1), new CartItem(mobile, 1)), Set.of());
+
+        // 1500 - 100 line discount leaves 1400, which reaches the 1000 threshold only
+        assertEquals("spend1000", result.getBasketPromotionId());
+        assertEquals(100, result.getBasketDiscount(), 0.001);
+        assertEquals(200, result.getTotalDiscount(), 0.001);
+        assertEquals(1300, result.getDiscountedSubtotal(), 0.001);
+
+        PricingResult small = table.evaluate(List.of(new CartItem(biscuits, 1)), Set.of());
+        assertNull(small.getBasketPromotionId());
+        assertEquals(0, small.getTotalDiscount(), 0.001);
+    }
+
+    @Test
+    void invalid_declarations_are_rejected() {
+        assertThrows(IllegalArgumentException.class, () -> Promotion.percentOff("p", 1, 0));
+        assertThrows(IllegalArgumentException.class, () -> Promotion.buyXGetY("p", 1, 0, 1));
+        assertThrows(IllegalArgumentException.class,
+                () -> Promotion.categoryCoupon("p", ProductType.TV, " ", 10));
+        assertThrows(IllegalArgumentException.class, () -> PromotionEngine.compile(List.of(
+                Promotion.percentOff("dup", 1, 10), Promotion.percentOff("dup", 2, 10))));
+    }
+
+    @Test
+    void checkout_charges_discounted_amount() throws Exception {
+        CheckoutService checkoutService = CheckoutService.getInstance();
+        checkoutService.setPromotions(PromotionEngine.compile(List.of(
+                Promotion.categoryCoupon("mobile-coupon", ProductType.MOBILE, "PHONE50", 50))));
+        try {
+            Customer customer = new Customer("Promo Buyer", 1000);
+            Cart cart = new Cart();
+            cart.addProduct(mobile, 1);
+            cart.applyCoupon("PHONE50");
+
+            Order order = checkoutService.checkout(customer, cart);
+
+            assertEquals(250, order.getDiscount(), 0.001);
+            assertEquals(250, order.getTotalAmount(), 0.001);
+            assertEquals(750, customer.getBalance(), 0.001);
+            assertTrue(cart.getCouponCodes().isEmpty());
+        } finally {
+            checkoutService.setPromotions(PromotionTable.EMPTY);
+        }
+    }
+}
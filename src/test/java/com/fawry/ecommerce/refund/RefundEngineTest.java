@@ -0,0 +1,278 @@
+package com.fawry.ecommerce.refund;
+
+import com.fawry.ecommerce.delivery.DeliverySchedule;
+import com.fawry.ecommerce.digital.DigitalOrder;
+import com.fawry.ecommerce.digital.VoucherPool;
+import com.fawry.ecommerce.factory.ProductFactory;
+import com.fawry.ecommerce.model.Cart;
+import com.fawry.ecommerce.model.customer.Customer;
+import com.fawry.ecommerce.model.product.Cheese;
+import com.fawry.ecommerce.model.product.Product;
+import com.fawry.ecommerce.model.product.ScratchCard;
+import com.fawry.ecommerce.model.product.TV;
+import com.fawry.ecommerce.order.Order;
+import com.fawry.ecommerce.repository.ProductRepository;
+import com.fawry.ecommerce.service.CheckoutService;
+import com.fawry.ecommerce.service.ShippingService;
+import com.fawry.ecommerce.warehouse.WarehouseAllocator;
+import com.fawry.ecommerce.warehouse.WarehouseNetwork;
+import com.fawry.ecommerce.warehouse.WarehouseStock;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Coverage for the refund engine: full reversal of an order and what it holds,
+ * at-most-once cancellation, parallel and lot-keyed recalls with their failure handling,
+ * bounded retention and price adjustments from the price history.
+ */
+class RefundEngineTest {
+
+    private final ProductRepository products = new ProductRepository();
+    private final List<Customer> customers = new ArrayList<>();
+    private final CheckoutService checkoutService = new CheckoutService(ShippingService.getInstance());
+
+    private RefundEngine engine(int recallThreads) {
+        RefundEngine engine = new RefundEngine(products, Wallet.of(customers), ShippingService.getInstance(),
+                                               new ForkJoinPool(recallThreads));
+        checkoutService.addCheckoutListener(engine);
+        return engine;
+    }
+
+    private Customer customer(String name, double balance) {
+        Customer customer = new Customer(customers.size() + 1, name, balance);
+        customers.add(customer);
+        return customer;
+    }
+
+    @Test
+    void cancel_reverses_payment_and_stock_once() throws Exception {
+        TV tv = ProductFactory.createTV("Refund TV", 300, 5, 2);
+        products.register(tv);
+        Customer customer = customer("Refund Buyer", 1_000);
+        RefundEngine engine = engine(1);
+        Cart cart = new Cart();
+        cart.addProduct(tv, 2);
+        Order order = checkoutService.checkout(customer, cart);
+        assertEquals(1_000 - 600 - 55, customer.getBalance(), 0.001);
+
+        Refund refund = engine.cancel(order.getOrderId());
+
+        assertEquals(655, refund.getAmount(), 0.001);
+        assertEquals(2, refund.getReturnedUnits());
+        assertEquals(1_000, customer.getBalance(), 0.001);
+        assertEquals(5, tv.getQuantity());
+        assertTrue(engine.isCancelled(order.getOrderId()));
+        assertThrows(IllegalStateException.class, () -> engine.cancel(order.getOrderId()));
+        assertThrows(IllegalArgumentException.class, () -> engine.cancel(-1));
+        assertEquals(1_000, customer.getBalance(), 0.001);
+    }
+
+    @Test
+    void recall_cancels_every_order_with_the_product_in_parallel() throws Exception {
+        Cheese recalled = ProductFactory.createCheese("Recalled Cheese", 20, 10_000, LocalDate.now().plusDays(5), 0.1);
+        ScratchCard safe = ProductFactory.createScratchCard("Safe Card", 10, 10_000);
+        products.register(recalled);
+        products.register(safe);
+        for (int i = 0; i < 2_000; i++) {
+            customer("Recall Buyer " + i, 500);
+        }
+        RefundEngine engine = engine(4);
+        List<Order> withCheese = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            Customer customer = customers.get(i);
+            Cart cart = new Cart();
+            cart.addProduct(safe, 1);
+            if (i % 2 == 0) {
+                cart.addProduct(recalled, 2);
+            }
+            Order order = checkoutService.checkout(customer, cart);
+            if (i % 2 == 0) {
+                withCheese.add(order);
+            }
+        }
+        engine.cancel(withCheese.get(0).getOrderId());
+
+        RecallReport report = engine.recall(recalled.getId());
+
+        assertEquals(999, report.getCancelledOrders());
+        assertEquals(1, report.getSkippedOrders());
+        assertEquals(10_000 - 2 * 999, recalled.getQuantity(), "recalled units are not restocked");
+        assertEquals(10_000 - 1_000, safe.getQuantity());
+        for (int i = 0; i < customers.size(); i++) {
+            assertEquals(i % 2 == 0 ? 500 : 490, customers.get(i).getBalance(), 0.001, "customer " + i);
+        }
+        assertEquals(0, engine.recall(recalled.getId()).getCancelledOrders());
+    }
+
+    @Test
+    void recalls_resolve_every_order_first_and_skip_failed_refunds() throws Exception {
+        ScratchCard recalled = ProductFactory.createScratchCard("Recalled Card", 10, 100);
+        ScratchCard unlisted = ProductFactory.createScratchCard("Unlisted Card", 20, 100);
+        products.register(recalled);
+        Customer known = customer("Known Recall Buyer", 500);
+        RefundEngine engine = engine(2);
+        // Added after the wallet was built, so refunds to this customer fail
+        Customer unknown = customer("Unknown Recall Buyer", 500);
+        Order first = checkout(known, recalled, 1);
+        Order failing = checkout(unknown, recalled, 1);
+        Cart cart = new Cart();
+        cart.addProduct(recalled, 1);
+        cart.addProduct(unlisted, 1);
+        checkoutService.checkout(known, cart);
+        double balance = known.getBalance();
+
+        assertThrows(IllegalStateException.class, () -> engine.recall(recalled.getId()));
+        assertFalse(engine.isCancelled(first.getOrderId()), "nothing is cancelled while an order cannot be resolved");
+        assertEquals(balance, known.getBalance(), 0.001);
+
+        products.register(unlisted);
+        RecallReport report = engine.recall(recalled.getId());
+        assertEquals(2, report.getCancelledOrders());
+        assertEquals(1, report.getSkippedOrders());
+        assertFalse(engine.isCancelled(failing.getOrderId()));
+        assertEquals(500, known.getBalance(), 0.001);
+    }
+
+    @Test
+    void lot_recall_cancels_only_orders_holding_that_lot() throws Exception {
+        LocalDate early = LocalDate.now().plusDays(2);
+        LocalDate late = LocalDate.now().plusDays(9);
+        Cheese cheese = ProductFactory.createCheese("Lot Cheese", 10, 3, early, 0.1);
+        cheese.addLot(10, late);
+        products.register(cheese);
+        Customer earlyBuyer = customer("Early Lot Buyer", 500);
+        Customer mixedBuyer = customer("Mixed Lot Buyer", 500);
+        Customer lateBuyer = customer("Late Lot Buyer", 500);
+        RefundEngine engine = engine(2);
+        Order earlyOnly = checkout(earlyBuyer, cheese, 2);
+        Order mixed = checkout(mixedBuyer, cheese, 3);
+        Order lateOnly = checkout(lateBuyer, cheese, 1);
+
+        RecallReport report = engine.recall(cheese.getId(), early);
+
+        assertEquals(2, report.getCancelledOrders());
+        assertEquals(early, report.getExpirationDate());
+        assertTrue(engine.isCancelled(earlyOnly.getOrderId()));
+        assertTrue(engine.isCancelled(mixed.getOrderId()));
+        assertFalse(engine.isCancelled(lateOnly.getOrderId()));
+        assertEquals(500, mixedBuyer.getBalance(), 0.001);
+        assertEquals(Map.of(late, 9), cheese.getLots(), "only the late units return, to their own lot");
+    }
+
+    @Test
+    void cancel_gives_back_the_warehouse_allocation_and_delivery_slot() throws Exception {
+        WarehouseNetwork network = WarehouseNetwork.builder().warehouse("Cairo").route("Cairo", "Giza", 1.0).build();
+        WarehouseStock stock = new WarehouseStock(network);
+        DeliverySchedule schedule = DeliverySchedule.builder()
+                .calendar(LocalDate.now().plusDays(1), 1)
+                .window(LocalTime.of(10, 0))
+                .zone("Giza", 1)
+                .build();
+        checkoutService.setWarehouseAllocator(new WarehouseAllocator(network, stock, ShippingService.getInstance()));
+        checkoutService.setDeliverySchedule(schedule);
+        TV tv = ProductFactory.createTV("Held TV", 300, 0, 2);
+        products.register(tv);
+        stock.receive(tv, network.warehouseIndex("Cairo"), 3);
+        Customer customer = customer("Held Buyer", 1_000);
+        RefundEngine engine = engine(1);
+        Cart cart = new Cart();
+        cart.setDeliveryZone("Giza");
+        cart.addProduct(tv, 1);
+        Order order = checkoutService.checkout(customer, cart);
+        assertEquals(2, stock.getTotalStock(tv.getId()));
+        assertTrue(schedule.nextAvailable("Giza", LocalDateTime.now()).isEmpty());
+
+        engine.cancel(order.getOrderId());
+
+        assertEquals(3, stock.getTotalStock(tv.getId()));
+        assertTrue(schedule.nextAvailable("Giza", LocalDateTime.now()).isPresent());
+    }
+
+    @Test
+    void orders_beyond_the_retention_bound_are_evicted() throws Exception {
+        ScratchCard card = ProductFactory.createScratchCard("Retained Card", 10, 10);
+        products.register(card);
+        Customer customer = customer("Retained Buyer", 100);
+        RefundEngine engine = new RefundEngine(products, Wallet.of(customers), ShippingService.getInstance(),
+                                               new ForkJoinPool(1), 2, 60_000);
+        checkoutService.addCheckoutListener(engine);
+        Order oldest = checkout(customer, card, 1);
+        checkout(customer, card, 1);
+        Order newest = checkout(customer, card, 1);
+
+        assertEquals(2, engine.getRetainedOrders());
+        assertThrows(IllegalArgumentException.class, () -> engine.cancel(oldest.getOrderId()));
+        assertEquals(2, engine.recall(card.getId()).getCancelledOrders());
+        assertTrue(engine.isCancelled(newest.getOrderId()));
+    }
+
+    @Test
+    void orders_that_issued_voucher_codes_are_never_cancelled() throws Exception {
+        ScratchCard card = ProductFactory.createScratchCard("Issued Card", 10, 5);
+        products.register(card);
+        VoucherPool pool = new VoucherPool();
+        pool.generate(card.getId(), 5);
+        checkoutService.setVoucherPool(pool);
+        Customer customer = customer("Digital Buyer", 100);
+        RefundEngine engine = engine(1);
+        Cart cart = new Cart();
+        cart.addProduct(card, 2);
+        DigitalOrder digital = checkoutService.checkoutDigital(customer, cart);
+
+        long orderId = digital.getOrder().getOrderId();
+        assertThrows(IllegalStateException.class, () -> engine.cancel(orderId));
+        assertEquals(1, engine.recall(card.getId()).getSkippedOrders());
+        assertFalse(engine.isCancelled(orderId));
+        assertEquals(80, customer.getBalance(), 0.001);
+        assertEquals(3, card.getQuantity());
+        assertEquals(3, pool.available(card.getId()));
+    }
+
+    private Order checkout(Customer customer, Product product, int quantity) throws Exception {
+        Cart cart = new Cart();
+        cart.addProduct(product, quantity);
+        return checkoutService.checkout(customer, cart);
+    }
+
+    @Test
+    void price_drops_after_the_order_are_refunded_once() throws Exception {
+        AtomicLong now = new AtomicLong(System.currentTimeMillis());
+        TV tv = ProductFactory.createTV("Adjusted TV", 400, 5, 1);
+        tv.setPriceClock(now::get);
+        products.register(tv);
+        Customer customer = customer("Adjusted Buyer", 2_000);
+        RefundEngine engine = new RefundEngine(products, Wallet.of(customers), ShippingService.getInstance(),
+                                               new ForkJoinPool(1), RefundEngine.DEFAULT_MAX_ORDERS,
+                                               RefundEngine.DEFAULT_RETENTION_MILLIS, now::get);
+        checkoutService.addCheckoutListener(engine);
+        Cart cart = new Cart();
+        cart.addProduct(tv, 2);
+        Order order = checkoutService.checkout(customer, cart);
+        double paid = 2_000 - customer.getBalance();
+        now.set(order.getTimestamp() + 1);
+        tv.setPrice(350);
+        now.set(order.getTimestamp() + 2);
+        tv.setPrice(380);
+        now.set(order.getTimestamp() + 3);
+
+        assertEquals(400, tv.getPriceAt(order.getTimestamp()), 0.001);
+        Refund adjustment = engine.adjustPrices(order.getOrderId(), 60_000);
+
+        assertEquals(100, adjustment.getAmount(), 0.001, "the lowest price in the window counts");
+        assertEquals(0, adjustment.getReturnedUnits());
+        assertThrows(IllegalStateException.class, () -> engine.adjustPrices(order.getOrderId(), 60_000));
+        assertEquals(paid - 100, engine.cancel(order.getOrderId()).getAmount(), 0.001);
+        assertEquals(2_000, customer.getBalance(), 0.001);
+    }
+}
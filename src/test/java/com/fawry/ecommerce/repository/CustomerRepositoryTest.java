@@ -0,0 +1,154 @@
+package com.fawry.ecommerce.repository;
+
+import com.fawry.ecommerce.model.customer.Customer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Coverage for the sharded customer repository: id stability, name lookups,
+ * atomic balance updates through the repository or live handles, shard count capping
+ * and all-or-nothing CSV bulk import.
+ */
+class CustomerRepositoryTest {
+
+    @Test
+    void registered_customer_is_found_by_id_and_name() {
+        CustomerRepository repository = new CustomerRepository(8);
+        long id = repository.register("Mohamed Hesham", 2000.0);
+
+        Customer byId = repository.findById(id).orElseThrow();
+        assertEquals(id, byId.getId());
+        assertEquals("Mohamed Hesham", byId.getName());
+        assertEquals(2000.0, byId.getBalance(), 0.001);
+        assertEquals(id, repository.findByName("Mohamed Hesham").orElseThrow().getId());
+        assertTrue(byId.isRegistered());
+    }
+
+    @Test
+    void found_customers_read_and_write_the_stored_balance() {
+        CustomerRepository repository = new CustomerRepository(4);
+        long id = repository.register("Live Handle", 100.0);
+        Customer handle = repository.findById(id).orElseThrow();
+        Customer other = repository.findByName("Live Handle").orElseThrow();
+
+        assertTrue(handle.deductBalance(60.0));
+        assertEquals(40.0, repository.getBalance(id), 0.001);
+        assertFalse(other.hasSufficientBalance(50.0), "every handle sees the debit");
+
+        repository.addBalance(id, 25.0);
+        assertEquals(65.0, handle.getBalance(), 0.001);
+        assertFalse(handle.deductBalance(70.0));
+        handle.setBalance(10.0);
+        assertEquals(10.0, repository.getBalance(id), 0.001);
+    }
+
+    @Test
+    void unknown_ids_are_not_found() {
+        CustomerRepository repository = new CustomerRepository(4);
+        repository.register("Mo", 10);
+
+        assertTrue(repository.findById(Customer.UNREGISTERED_ID).isEmpty());
+        assertTrue(repository.findById(-5).isEmpty());
+        assertTrue(repository.findById(1_000_000).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> repository.getBalance(1_000_000));
+    }
+
+    @Test
+    void duplicate_names_keep_every_id_in_registration_order() {
+        CustomerRepository repository = new CustomerRepository(4);
+        long first = repository.register("Sara", 10);
+        long second = repository.register("Sara", 20);
+
+        assertArrayEquals(new long[] {first, second}, repository.findIdsByName("Sara"));
+        assertNotEquals(first, second);
+    }
+
+    @Test
+    void deduct_fails_without_sufficient_balance() {
+        CustomerRepository repository = new CustomerRepository(2);
+        long id = repository.register("Poor Bob", 100);
+
+        assertFalse(repository.deductBalance(id, 100.01));
+        assertTrue(repository.deductBalance(id, 100));
+        assertEquals(0, repository.getBalance(id), 0.001);
+
+        repository.addBalance(id, 12.5);
+        assertTrue(repository.hasSufficientBalance(id, 12.5));
+    }
+
+    @Test
+    void concurrent_deductions_never_overdraw() throws InterruptedException {
+        CustomerRepository repository = new CustomerRepository(2);
+        long id = repository.register("Shared Wallet", 1000);
+        AtomicInteger successes = new AtomicInteger();
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 2000; i++) {
+            pool.execute(() -> {
+                if (repository.deductBalance(id, 1)) {
+                    successes.incrementAndGet();
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(1000, successes.get());
+        assertEquals(0, repository.getBalance(id), 0.001);
+    }
+
+    @Test
+    void csv_import_registers_all_rows_across_pages() throws IOException {
+        StringBuilder csv = new StringBuilder("name,balance\n");
+        int rows = 70_000; // more than one page per shard when using a single shard
+        for (int i = 0; i < rows; i++) {
+            csv.append("Customer, #").append(i).append(',').append(i % 500).append(".25\n");
+        }
+        CustomerRepository repository = new CustomerRepository(1);
+
+        assertEquals(rows, repository.importCsv(new StringReader(csv.toString())));
+        assertEquals(rows, repository.size());
+
+        Customer last = repository.findByName("Customer, #69999").orElseThrow();
+        assertEquals(499.25, last.getBalance(), 0.001);
+    }
+
+    @Test
+    void malformed_csv_line_reports_line_number() {
+        CustomerRepository repository = new CustomerRepository(4);
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> repository.importCsv(new StringReader("Ali,10\nBroken,abc\n")));
+        assertTrue(error.getMessage().contains("line 2"));
+    }
+
+    @Test
+    void malformed_csv_line_past_the_first_batch_imports_nothing() {
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            csv.append("Staged #").append(i).append(",1\n");
+        }
+        csv.append("Broken,abc\n");
+        CustomerRepository repository = new CustomerRepository(4);
+
+        assertThrows(IllegalArgumentException.class, () -> repository.importCsv(new StringReader(csv.toString())));
+        assertEquals(0, repository.size());
+        assertTrue(repository.findByName("Staged #0").isEmpty());
+    }
+
+    @Test
+    void huge_shard_counts_are_capped_instead_of_overflowing() {
+        CustomerRepository repository = new CustomerRepository(Integer.MAX_VALUE);
+        long id = repository.register("Capped", 5.0);
+        assertEquals(5.0, repository.getBalance(id), 0.001);
+    }
+}
@@ -0,0 +1,85 @@
+package com.fawry.ecommerce.service;
+
+import com.fawry.ecommerce.factory.ProductFactory;
+import com.fawry.ecommerce.model.product.Dimensions;
+import com.fawry.ecommerce.model.product.Mobile;
+import com.fawry.ecommerce.model.product.TV;
+import com.fawry.ecommerce.service.BoxCatalog.Box;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Coverage for volumetric shipping: the precomputed box lookup against a scan of the
+ * boxes, and fees billing the greater of actual and volumetric weight.
+ */
+class BoxCatalogTest {
+
+    @Test
+    void lookup_picks_the_smallest_box_in_any_orientation() {
+        BoxCatalog catalog = BoxCatalog.builder()
+                .box("big", 50, 50, 50)
+                .box("flat", 60, 40, 4)
+                .box("small", 20, 10, 10)
+                .gridStep(1)
+                .build();
+
+        assertEquals("small", catalog.boxFor(new Dimensions(10, 20, 10)).getName());
+        assertEquals("flat", catalog.boxFor(new Dimensions(3, 55, 30)).getName());
+        assertEquals("big", catalog.boxFor(new Dimensions(21, 10, 10)).getName());
+        assertNull(catalog.boxFor(new Dimensions(70, 10, 10)));
+
+        Random random = new Random(5);
+        for (int i = 0; i < 10_000; i++) {
+            Dimensions item = new Dimensions(1 + random.nextInt(70), 1 + random.nextInt(70), 1 + random.nextInt(70));
+            Box expected = scan(catalog.getBoxes(), item);
+            assertSame(expected, catalog.boxFor(item), item.toString());
+        }
+    }
+
+    @Test
+    void coarse_grids_never_pick_a_box_that_is_too_small() {
+        BoxCatalog catalog = BoxCatalog.standard();
+        Random random = new Random(9);
+        for (int i = 0; i < 10_000; i++) {
+            Dimensions item = new Dimensions(0.5 + random.nextDouble() * 140, 0.5 + random.nextDouble() * 90,
+                                             0.5 + random.nextDouble() * 60);
+            Box box = catalog.boxFor(item);
+            if (box != null) {
+                assertTrue(item.fitsIn(box.getDimensions()), item + " in " + box);
+            }
+        }
+    }
+
+    @Test
+    void bulky_items_are_billed_by_volume() {
+        ShippingService shipping = new ShippingService(ShippingRates.DEFAULT);
+        TV tv = ProductFactory.createTV("Bulky TV", 500, 5, 15.0);
+        Mobile mobile = ProductFactory.createMobile("Boxed Mobile", 300, 5, 0.2);
+        assertEquals(380, shipping.calculateShippingFee(List.of(tv)), 0.001);
+
+        // 125x80x15 packs into the 130x85x20 TV box: 44.2 kg volumetric
+        tv.setDimensions(new Dimensions(125, 80, 15));
+        mobile.setDimensions(new Dimensions(16, 8, 5));
+        assertEquals("TV", shipping.getPackaging().boxFor(tv.getDimensions()).getName());
+        assertEquals(5 + 44.2 * 25, shipping.calculateShippingFee(List.of(tv)), 0.001);
+        // The small box bills 1 kg, more than the phone weighs
+        assertEquals(1.0, shipping.getPackaging().chargeableWeight(mobile), 0.001);
+
+        ShippingQuoteCache quotes = new ShippingQuoteCache(shipping, 10);
+        assertEquals(5 + 44.2 * 25, quotes.quote(shipping.getPackaging().chargeableWeight(tv), null), 0.001);
+    }
+
+    private static Box scan(List<Box> boxes, Dimensions item) {
+        for (Box box : boxes) {
+            if (item.fitsIn(box.getDimensions())) {
+                return box;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,222 @@
+package com.fawry.ecommerce.service;
+
+import com.fawry.ecommerce.exception.InsufficientBalanceException;
+import com.fawry.ecommerce.exception.RateLimitExceededException;
+import com.fawry.ecommerce.factory.ProductFactory;
+import com.fawry.ecommerce.limit.PurchaseLimiter;
+import com.fawry.ecommerce.model.Cart;
+import com.fawry.ecommerce.model.customer.Customer;
+import com.fawry.ecommerce.model.product.ScratchCard;
+import com.fawry.ecommerce.order.Order;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Coverage for keyed checkout: retries replay the original order or rejection without
+ * charging again, concurrent duplicates charge once, keys are scoped per customer, transient
+ * failures and errors are retried, and the cache expires and stays bounded without dropping pending keys.
+ */
+class IdempotentCheckoutTest {
+
+    private final CheckoutService checkoutService = CheckoutService.getInstance();
+    private IdempotencyCache<Order> previousCache;
+
+    @BeforeEach
+    void useFreshCache() {
+        previousCache = checkoutService.getIdempotencyCache();
+        checkoutService.setIdempotencyCache(new IdempotencyCache<>(1_000, 60_000));
+    }
+
+    @AfterEach
+    void restoreCache() {
+        checkoutService.setIdempotencyCache(previousCache);
+    }
+
+    @Test
+    void retry_returns_original_order_without_charging_again() throws Exception {
+        Customer customer = new Customer(1, "Retrying Buyer", 500);
+        ScratchCard card = ProductFactory.createScratchCard("Idempotent Card", 100, 5);
+        Cart cart = new Cart();
+        cart.addProduct(card, 2);
+
+        Order first = checkoutService.checkout(customer, cart, "req-1");
+        // The cart was cleared by the first call; the retry must not re-validate it
+        Order retry = checkoutService.checkout(customer, cart, "req-1");
+
+        assertSame(first, retry);
+        assertEquals(300, customer.getBalance(), 0.001);
+        assertEquals(3, card.getQuantity());
+    }
+
+    @Test
+    void retry_replays_original_rejection_until_a_new_key_is_used() throws Exception {
+        Customer customer = new Customer(2, "Short Buyer", 50);
+        ScratchCard card = ProductFactory.createScratchCard("Pricey Card", 100, 5);
+        Cart cart = new Cart();
+        cart.addProduct(card, 1);
+
+        InsufficientBalanceException rejection = assertThrows(InsufficientBalanceException.class,
+                () -> checkoutService.checkout(customer, cart, "req-2"));
+        customer.addBalance(100);
+
+        assertSame(rejection, assertThrows(InsufficientBalanceException.class,
+                () -> checkoutService.checkout(customer, cart, "req-2")));
+        checkoutService.checkout(customer, cart, "req-3");
+        assertEquals(50, customer.getBalance(), 0.001);
+    }
+
+    @Test
+    void concurrent_duplicates_charge_once() throws Exception {
+        Customer customer = new Customer(3, "Impatient Buyer", 1_000);
+        ScratchCard card = ProductFactory.createScratchCard("Contended Card", 100, 10);
+        int threads = 8;
+        List<Cart> carts = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Cart cart = new Cart();
+            cart.addProduct(card, 1);
+            carts.add(cart);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Order>> results = new ArrayList<>();
+        try {
+            for (Cart cart : carts) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return checkoutService.checkout(customer, cart, "req-4");
+                }));
+            }
+            start.countDown();
+            Order order = results.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<Order> result : results) {
+                assertSame(order, result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(900, customer.getBalance(), 0.001);
+        assertEquals(9, card.getQuantity());
+    }
+
+    @Test
+    void cache_expires_keys_and_stays_bounded() {
+        AtomicLong now = new AtomicLong();
+        IdempotencyCache<String> cache = new IdempotencyCache<>(3, 1_000, now::get);
+        CompletableFuture<String> first = CompletableFuture.completedFuture("a");
+
+        assertNull(cache.putIfAbsent("a", first));
+        assertSame(first, cache.putIfAbsent("a", CompletableFuture.completedFuture("again")));
+
+        now.set(1_000);
+        assertNull(cache.get("a"));
+        assertNull(cache.putIfAbsent("a", CompletableFuture.completedFuture("fresh")));
+
+        for (int i = 0; i < 100; i++) {
+            cache.putIfAbsent("key-" + i, CompletableFuture.completedFuture("v"));
+        }
+        assertEquals(3, cache.size());
+        assertNotNull(cache.get("key-99"));
+        assertNull(cache.get("key-0"));
+        assertThrows(IllegalArgumentException.class, () -> cache.putIfAbsent(" ", first));
+    }
+
+    @Test
+    void customers_reusing_a_key_each_get_their_own_order() throws Exception {
+        ScratchCard card = ProductFactory.createScratchCard("Shared Key Card", 100, 5);
+        Customer first = new Customer(5, "First Keyholder", 500);
+        Customer second = new Customer(6, "Second Keyholder", 500);
+        Cart firstCart = new Cart();
+        firstCart.addProduct(card, 1);
+        Cart secondCart = new Cart();
+        secondCart.addProduct(card, 1);
+
+        Order firstOrder = checkoutService.checkout(first, firstCart, "req-shared");
+        Order secondOrder = checkoutService.checkout(second, secondCart, "req-shared");
+
+        assertNotSame(firstOrder, secondOrder);
+        assertEquals(second.getId(), secondOrder.getCustomerId());
+        assertEquals(400, second.getBalance(), 0.001);
+        assertEquals(3, card.getQuantity());
+    }
+
+    @Test
+    void transient_failures_are_not_replayed() throws Exception {
+        AtomicLong now = new AtomicLong();
+        CheckoutService service = new CheckoutService(new ShippingService(ShippingRates.DEFAULT));
+        service.setPurchaseLimiter(PurchaseLimiter.builder().requestRate(1, 1).clock(now::get).build());
+        Customer customer = new Customer(7, "Throttled Buyer", 500);
+        ScratchCard card = ProductFactory.createScratchCard("Throttled Card", 100, 5);
+        Cart earlier = new Cart();
+        earlier.addProduct(card, 1);
+        service.checkout(customer, earlier);
+
+        Cart cart = new Cart();
+        cart.addProduct(card, 1);
+        assertThrows(RateLimitExceededException.class, () -> service.checkout(customer, cart, "req-throttled"));
+        now.set(1_000);
+        Order order = service.checkout(customer, cart, "req-throttled");
+
+        assertSame(order, service.checkout(customer, cart, "req-throttled"));
+        assertEquals(300, customer.getBalance(), 0.001);
+    }
+
+    @Test
+    void errors_release_the_key_for_retries() throws Exception {
+        AtomicLong failures = new AtomicLong(1);
+        Customer customer = new Customer(8, "Unlucky Buyer", 500) {
+            @Override
+            public boolean hasSufficientBalance(double amount) {
+                if (failures.getAndDecrement() > 0) {
+                    throw new AssertionError("balance store unavailable");
+                }
+                return super.hasSufficientBalance(amount);
+            }
+        };
+        ScratchCard card = ProductFactory.createScratchCard("Erroring Card", 100, 5);
+        Cart cart = new Cart();
+        cart.addProduct(card, 1);
+
+        assertThrows(AssertionError.class, () -> checkoutService.checkout(customer, cart, "req-error"));
+        Order order = checkoutService.checkout(customer, cart, "req-error");
+
+        assertSame(order, checkoutService.checkout(customer, cart, "req-error"));
+        assertEquals(400, customer.getBalance(), 0.001);
+        assertEquals(4, card.getQuantity());
+    }
+
+    @Test
+    void capacity_never_evicts_pending_outcomes() {
+        IdempotencyCache<String> cache = new IdempotencyCache<>(2, 60_000, () -> 0);
+        CompletableFuture<String> pending = new CompletableFuture<>();
+        assertNull(cache.putIfAbsent(9, "in-flight", pending));
+
+        for (int i = 0; i < 10; i++) {
+            cache.putIfAbsent(9, "done-" + i, CompletableFuture.completedFuture("v"));
+        }
+        assertSame(pending, cache.get(9, "in-flight"));
+        assertNull(cache.get(10, "in-flight"));
+        assertNotNull(cache.get(9, "done-9"));
+        assertEquals(2, cache.size());
+
+        pending.complete("v");
+        cache.putIfAbsent(9, "after-1", CompletableFuture.completedFuture("v"));
+        cache.putIfAbsent(9, "after-2", CompletableFuture.completedFuture("v"));
+        assertEquals(2, cache.size());
+        assertNull(cache.get(9, "in-flight"));
+    }
+}
@@ -0,0 +1,98 @@
+package com.fawry.ecommerce.service;
+
+import com.fawry.ecommerce.exception.InsufficientBalanceException;
+import com.fawry.ecommerce.factory.ProductFactory;
+import com.fawry.ecommerce.model.Cart;
+import com.fawry.ecommerce.model.customer.Customer;
+import com.fawry.ecommerce.model.product.Cheese;
+import com.fawry.ecommerce.model.product.Mobile;
+import com.fawry.ecommerce.model.product.ScratchCard;
+import com.fawry.ecommerce.model.product.TV;
+import com.fawry.ecommerce.order.FulfillmentStatus;
+import com.fawry.ecommerce.order.LineOutcome;
+import com.fawry.ecommerce.order.PartialCheckoutResult;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Coverage for partial-fulfillment checkout: per-line outcomes, charges for fulfilled
+ * quantities only, and the unfulfilled rest left in the cart.
+ */
+class PartialCheckoutTest {
+
+    private final CheckoutService checkoutService = new CheckoutService(ShippingService.getInstance());
+
+    @Test
+    void fulfills_what_it_can_and_reports_every_line() throws Exception {
+        TV tv = ProductFactory.createTV("Short TV", 100, 5, 1);
+        Cheese cheese = ProductFactory.createCheese("Old Cheese", 10, 5, LocalDate.now().plusDays(1), 0.5);
+        Mobile mobile = ProductFactory.createMobile("Gone Mobile", 300, 5, 0.2);
+        ScratchCard card = ProductFactory.createScratchCard("Fine Card", 50, 5);
+        Cart cart = new Cart();
+        cart.addProduct(tv, 3);
+        cart.addProduct(cheese, 2);
+        cart.addProduct(mobile, 1);
+        cart.addProduct(card, 2);
+        tv.setQuantity(1);
+        cheese.setExpirationDate(LocalDate.now().minusDays(1));
+        mobile.setQuantity(0);
+        Customer customer = new Customer(1, "Partial Buyer", 1_000);
+
+        PartialCheckoutResult result = checkoutService.checkoutPartial(customer, cart);
+
+        List<LineOutcome> lines = result.getLines();
+        assertEquals(FulfillmentStatus.SHORT_SHIPPED, lines.get(0).getStatus());
+        assertEquals(1, lines.get(0).getFulfilledQuantity());
+        assertEquals(FulfillmentStatus.EXPIRED, lines.get(1).getStatus());
+        assertEquals(FulfillmentStatus.REJECTED, lines.get(2).getStatus());
+        assertEquals(FulfillmentStatus.FULFILLED, lines.get(3).getStatus());
+        assertFalse(result.isFullyFulfilled());
+
+        // 1 TV + 2 cards, shipping 5 + 25 x 1kg for the one TV
+        assertEquals(200, result.getOrder().getSubtotal(), 0.001);
+        assertEquals(30, result.getOrder().getShippingFee(), 0.001);
+        assertEquals(770, customer.getBalance(), 0.001);
+        assertEquals(0, tv.getQuantity());
+        assertEquals(3, card.getQuantity());
+        assertEquals(5, cheese.getQuantity());
+
+        // The unfulfilled rest stays in the cart
+        assertEquals(3, cart.getItems().size());
+        assertEquals(2, cart.getItems().get(0).getQuantity());
+        assertSame(tv, cart.getItems().get(0).getProduct());
+    }
+
+    @Test
+    void nothing_fulfillable_places_no_order() throws Exception {
+        Mobile mobile = ProductFactory.createMobile("Empty Mobile", 300, 5, 0.2);
+        Cart cart = new Cart();
+        cart.addProduct(mobile, 2);
+        mobile.setQuantity(0);
+        Customer customer = new Customer(2, "Unlucky Buyer", 1_000);
+
+        PartialCheckoutResult result = checkoutService.checkoutPartial(customer, cart);
+
+        assertFalse(result.hasOrder());
+        assertEquals(FulfillmentStatus.REJECTED, result.getLines().get(0).getStatus());
+        assertEquals(1_000, customer.getBalance(), 0.001);
+        assertEquals(1, cart.getItems().size());
+    }
+
+    @Test
+    void insufficient_balance_returns_reserved_stock() throws Exception {
+        ScratchCard card = ProductFactory.createScratchCard("Dear Card", 500, 5);
+        Cart cart = new Cart();
+        cart.addProduct(card, 2);
+        Customer customer = new Customer(3, "Poor Buyer", 100);
+
+        assertThrows(InsufficientBalanceException.class, () -> checkoutService.checkoutPartial(customer, cart));
+        assertEquals(5, card.getQuantity());
+        assertEquals(2, cart.getItems().get(0).getQuantity());
+        assertThrows(IllegalStateException.class, () -> checkoutService.checkoutPartial(customer, new Cart()));
+    }
+}
@@ -0,0 +1,174 @@
+package com.fawry.ecommerce.service;
+
+import com.fawry.ecommerce.delivery.DeliverySchedule;
+import com.fawry.ecommerce.digital.VoucherPool;
+import com.fawry.ecommerce.engine.ShardedCheckoutEngine;
+import com.fawry.ecommerce.factory.ProductFactory;
+import com.fawry.ecommerce.limit.PurchaseLimiter;
+import com.fawry.ecommerce.model.Cart;
+import com.fawry.ecommerce.model.customer.Customer;
+import com.fawry.ecommerce.model.product.Mobile;
+import com.fawry.ecommerce.model.product.TV;
+import com.fawry.ecommerce.order.Order;
+import com.fawry.ecommerce.refund.RefundEngine;
+import com.fawry.ecommerce.refund.Wallet;
+import com.fawry.ecommerce.repository.ProductRepository;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Coverage for service contexts: per-tenant rates, isolation from each other and from
+ * the shared singletons, and the engines they wire.
+ */
+class ServiceContextTest {
+
+    @Test
+    void contexts_price_shipping_with_their_own_rates() throws Exception {
+        ServiceContext cairo = ServiceContext.builder("cairo").build();
+        ServiceContext express = ServiceContext.builder("express")
+                .shippingRates(new ShippingRates(20, 50))
+                .build();
+        TV tv = ProductFactory.createTV("Tenant TV", 100, 10, 0.2);
+
+        Cart cart = new Cart();
+        cart.addProduct(tv, 1);
+        Order standard = cairo.getCheckoutService().checkout(new Customer(1, "Cairo Buyer", 1_000), cart);
+        cart.addProduct(tv, 1);
+        Order fast = express.getCheckoutService().checkout(new Customer(2, "Express Buyer", 1_000), cart);
+
+        assertEquals(10, standard.getShippingFee(), 0.001);
+        assertEquals(30, fast.getShippingFee(), 0.001);
+        assertEquals(ShippingRates.DEFAULT, ShippingService.getInstance().getRates());
+    }
+
+    @Test
+    void contexts_share_no_services_or_state() throws Exception {
+        List<Order> seen = new ArrayList<>();
+        ServiceContext first = ServiceContext.builder("first").listener(seen::add).build();
+        ServiceContext second = ServiceContext.builder("second").build();
+
+        assertNotSame(first.getCheckoutService(), second.getCheckoutService());
+        assertNotSame(first.getCheckoutService(), CheckoutService.getInstance());
+        assertSame(first.getShippingService(), first.getCheckoutService().getShippingService());
+        assertNotSame(first.getCheckoutService().getIdempotencyCache(),
+                      second.getCheckoutService().getIdempotencyCache());
+
+        Customer customer = new Customer(3, "Shared Key Buyer", 1_000);
+        Mobile mobile = ProductFactory.createMobile("Keyed Mobile", 100, 10, 0.2);
+        Cart cart = new Cart();
+        cart.addProduct(mobile, 1);
+        Order firstOrder = first.getCheckoutService().checkout(customer, cart, "same-key");
+        cart.addProduct(mobile, 1);
+        Order secondOrder = second.getCheckoutService().checkout(customer, cart, "same-key");
+
+        assertNotEquals(firstOrder.getOrderId(), secondOrder.getOrderId());
+        assertEquals(List.of(firstOrder), seen);
+        assertEquals(800, customer.getBalance(), 0.001);
+    }
+
+    @Test
+    void contexts_wire_their_delivery_schedule_and_voucher_pool() {
+        DeliverySchedule schedule = DeliverySchedule.builder().window(LocalTime.of(9, 0)).zone("cairo", 5).build();
+        VoucherPool pool = new VoucherPool();
+        ServiceContext context = ServiceContext.builder("delivering")
+                .deliverySchedule(schedule)
+                .voucherPool(pool)
+                .build();
+
+        assertSame(schedule, context.getCheckoutService().getDeliverySchedule());
+        assertSame(pool, context.getCheckoutService().getVoucherPool());
+        assertNull(ServiceContext.builder("plain").build().getCheckoutService().getDeliverySchedule());
+    }
+
+    @Test
+    void sharded_engines_share_the_context_limits() {
+        PurchaseLimiter limiter = PurchaseLimiter.builder().defaultCap(1).build();
+        ServiceContext context = ServiceContext.builder("limited").purchaseLimits(limiter).build();
+
+        try (ShardedCheckoutEngine engine = context.newShardedEngine(2, 64, ForkJoinPool.commonPool())) {
+            assertSame(limiter, engine.getPurchaseLimiter());
+        }
+    }
+
+    @Test
+    void refund_engines_learn_the_context_orders() throws Exception {
+        ServiceContext context = ServiceContext.builder("refunds").build();
+        TV tv = ProductFactory.createTV("Refunded TV", 100, 4, 0.2);
+        ProductRepository products = new ProductRepository();
+        products.register(tv);
+        Customer customer = new Customer(3, "Refund Buyer", 1_000);
+        RefundEngine engine = context.newRefundEngine(products, Wallet.of(List.of(customer)));
+
+        Cart cart = new Cart();
+        cart.addProduct(tv, 1);
+        Order order = context.getCheckoutService().checkout(customer, cart);
+        engine.cancel(order.getOrderId());
+
+        assertEquals(1_000, customer.getBalance(), 0.001);
+        assertEquals(4, tv.getQuantity());
+    }
+
+    @Test
+    void listener_failures_are_counted_and_handed_to_the_context_handler() throws Exception {
+        List<Long> failed = new ArrayList<>();
+        ServiceContext context = ServiceContext.builder("failing")
+                .listener(order -> {
+                    throw new IllegalStateException("listener down");
+                })
+                .listenerFailureHandler((listener, order, error) -> failed.add(order.getOrderId()))
+                .build();
+        Mobile mobile = ProductFactory.createMobile("Listened Mobile", 100, 10, 0.2);
+
+        Cart cart = new Cart();
+        cart.addProduct(mobile, 1);
+        Order order = context.getCheckoutService().checkout(new Customer(4, "Listened Buyer", 1_000), cart);
+        assertEquals(List.of(order.getOrderId()), failed);
+        assertEquals(1, context.getCheckoutService().getListenerFailureCount());
+
+        try (ShardedCheckoutEngine engine = context.newShardedEngine(2, 64, Runnable::run)) {
+            cart.addProduct(mobile, 1);
+            Order sharded = engine.checkout(new Customer(5, "Sharded Buyer", 1_000), cart).join();
+            assertEquals(List.of(order.getOrderId(), sharded.getOrderId()), failed);
+            assertEquals(1, engine.getListenerFailureCount());
+        }
+        assertThrows(IllegalArgumentException.class, () -> ServiceContext.builder("x").listenerFailureHandler(null));
+    }
+
+    @Test
+    void receipts_and_notices_print_to_the_injected_output() throws Exception {
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        PrintStream output = new PrintStream(sink, true);
+        PrintStream console = System.out;
+        ShippingService shippingService = new ShippingService(ShippingRates.DEFAULT);
+        shippingService.setOutput(output);
+        CheckoutService checkoutService = new CheckoutService(shippingService);
+        checkoutService.setOutput(output);
+        TV tv = ProductFactory.createTV("Quiet TV", 100, 10, 0.2);
+
+        Cart cart = new Cart();
+        cart.addProduct(tv, 1);
+        checkoutService.checkout(new Customer(3, "Quiet Buyer", 1_000), cart);
+
+        String printed = sink.toString();
+        assertTrue(printed.contains("Shipment notice"));
+        assertTrue(printed.contains("Checkout receipt"));
+        assertSame(console, System.out);
+        assertSame(System.out, CheckoutService.getInstance().getOutput());
+    }
+
+    @Test
+    void invalid_configuration_is_rejected() {
+        assertThrows(IllegalArgumentException.class, () -> ServiceContext.builder(" "));
+        assertThrows(IllegalArgumentException.class, () -> new ShippingRates(-1, 25));
+        assertThrows(IllegalArgumentException.class, () -> new CheckoutService(null));
+    }
+}
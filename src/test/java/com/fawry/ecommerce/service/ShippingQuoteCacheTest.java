@@ -0,0 +1,75 @@
+package com.fawry.ecommerce.service;
+
+import com.fawry.ecommerce.factory.ProductFactory;
+import com.fawry.ecommerce.model.Cart;
+import com.fawry.ecommerce.model.customer.Customer;
+import com.fawry.ecommerce.model.product.TV;
+import com.fawry.ecommerce.order.Order;
+import com.fawry.ecommerce.warehouse.WarehouseNetwork;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Coverage for the shipping quote cache: agreement with checkout fees, sharing by
+ * weight profile, zone pricing, bounded size and per-context tariffs.
+ */
+class ShippingQuoteCacheTest {
+
+    @Test
+    void carts_with_the_same_weight_profile_share_a_quote_matching_checkout() throws Exception {
+        ShippingService shipping = new ShippingService(ShippingRates.DEFAULT);
+        ShippingQuoteCache quotes = new ShippingQuoteCache(shipping, 100);
+        TV first = ProductFactory.createTV("Quote TV A", 100, 10, 0.4);
+        TV second = ProductFactory.createTV("Quote TV B", 300, 10, 0.4);
+        Cart cart = new Cart();
+        cart.addProduct(first, 1);
+        Cart other = new Cart();
+        other.addProduct(second, 2);
+        other.addProduct(ProductFactory.createScratchCard("Quote Card", 10, 10), 1);
+
+        double quoted = quotes.quote(cart);
+        assertEquals(quoted, quotes.quote(other), "same shippable weight, same quote");
+        assertEquals(1, quotes.getMissCount());
+        assertEquals(1, quotes.getHitCount());
+        assertEquals(0.5, quotes.getHitRate());
+        assertEquals(0.0, quotes.quote(new Cart()));
+
+        Order order = new CheckoutService(shipping).checkout(new Customer(1, "Quote Buyer", 1_000), cart);
+        assertEquals(order.getShippingFee(), quoted, 0.001);
+    }
+
+    @Test
+    void zones_are_priced_from_the_cheapest_warehouse_and_size_stays_bounded() {
+        WarehouseNetwork network = WarehouseNetwork.builder()
+                .warehouse("north").warehouse("south")
+                .route("north", "alex", 1.0).route("south", "alex", 2.0)
+                .route("south", "aswan", 1.5)
+                .build();
+        ShippingQuoteCache quotes = new ShippingQuoteCache(new ShippingService(ShippingRates.DEFAULT), network, 3);
+
+        assertEquals(30, quotes.quote(1.0, "alex"), 0.001);
+        assertEquals(42.5, quotes.quote(1.0, "aswan"), 0.001);
+        assertThrows(IllegalArgumentException.class, () -> quotes.quote(1.0, "luxor"));
+        for (int i = 0; i < 10; i++) {
+            quotes.quote(i, "alex");
+        }
+
+        assertTrue(quotes.size() <= 3);
+        assertTrue(quotes.getEvictionCount() >= 7);
+    }
+
+    @Test
+    void new_tariffs_are_quoted_by_a_new_context() {
+        ServiceContext standard = ServiceContext.builder("standard").build();
+        ServiceContext express = ServiceContext.builder("express").shippingRates(new ShippingRates(10, 50)).build();
+        assertEquals(30, standard.getShippingQuotes().quote(1.0, null), 0.001);
+        assertEquals(30, standard.getShippingQuotes().quote(1.0, null), 0.001);
+
+        assertEquals(60, express.getShippingQuotes().quote(1.0, null), 0.001);
+        assertEquals(1, standard.getShippingQuotes().getHitCount());
+        assertEquals(0, express.getShippingQuotes().getHitCount());
+        assertEquals(1, express.getShippingQuotes().size());
+    }
+}
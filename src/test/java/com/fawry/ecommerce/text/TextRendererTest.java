@@ -0,0 +1,106 @@
+package com.fawry.ecommerce.text;
+
+import com.fawry.ecommerce.factory.ProductFactory;
+import com.fawry.ecommerce.model.Cart;
+import com.fawry.ecommerce.model.CartItem;
+import com.fawry.ecommerce.model.product.Product;
+import com.fawry.ecommerce.model.product.TV;
+import com.fawry.ecommerce.service.ShippingService.ShippableCartItem;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Coverage for interned names and the renderer: number formatting and every rendered
+ * document must match the String.format output they replace byte for byte.
+ */
+class TextRendererTest {
+
+    @Test
+    void fixed_point_matches_string_format() {
+        TextRenderer renderer = new TextRenderer();
+        double[] edges = {0, -0.0, -0.4, 0.5, 2.5, -2.5, 2.675, 0.05, 1.005, 9.995, 999.9999,
+                          1e9, 1e20, -1e20, Double.NaN, Double.POSITIVE_INFINITY, 123456.785};
+        for (double value : edges) {
+            for (int decimals = 0; decimals <= 2; decimals++) {
+                assertFormatted(renderer, value, decimals);
+            }
+        }
+        Random random = new Random(3);
+        for (int i = 0; i < 20_000; i++) {
+            double value = (random.nextDouble() - 0.2) * Math.pow(10, random.nextInt(8));
+            assertFormatted(renderer, value, random.nextInt(3));
+        }
+    }
+
+    private void assertFormatted(TextRenderer renderer, double value, int decimals) {
+        String expected = String.format("%." + decimals + "f", value);
+        assertEquals(expected, renderer.reset().appendFixed(value, decimals).toString(), "value " + value);
+    }
+
+    @Test
+    void documents_match_the_formatted_originals() throws Exception {
+        Product tv = ProductFactory.createTV("Renderer TV", 1499.5, 10, 7.25);
+        Product card = ProductFactory.createScratchCard("Renderer Card", 50, 10);
+        Cart cart = new Cart();
+        cart.addProduct(tv, 2);
+        cart.addProduct(card, 3);
+        List<CartItem> items = cart.getItems();
+        String n = System.lineSeparator();
+
+        String receipt = new TextRenderer().renderReceipt(items, 3149, 100.5, 367.5, 3416, 83.125).toString();
+        assertEquals("** Checkout receipt **" + n
+                + String.format("2x Renderer TV %.0f%n", 2999.0)
+                + String.format("3x Renderer Card %.0f%n", 150.0)
+                + "----------------------" + n
+                + String.format("Subtotal %.0f%nDiscount %.0f%nShipping %.0f%nAmount %.0f%n", 3149.0, 100.5, 367.5, 3416.0)
+                + String.format("Customer balance after payment: $%.2f%n", 83.125), receipt);
+
+        String notice = new TextRenderer().renderShipmentNotice(List.of(new ShippableCartItem(tv, 2))).toString();
+        assertEquals("** Shipment notice **" + n + "2x Renderer TV 7250g" + n
+                + "Total package weight 14.5kg" + n, notice);
+        assertEquals("No items to ship" + n, new TextRenderer().renderShipmentNotice(List.of()).toString());
+
+        assertEquals("Cart Contents:\n- 2x Renderer TV ($2999.00)\n- 3x Renderer Card ($150.00)\nSubtotal: $3149.00",
+                     cart.toString());
+        assertEquals("Cart is empty", new Cart().toString());
+    }
+
+    @Test
+    void names_are_interned_once_and_encoded_bytes_are_reused() {
+        TV first = ProductFactory.createTV(new String("Shared Name"), 100, 1, 1);
+        TV second = ProductFactory.createTV(new String("Shared Name"), 100, 1, 1);
+        assertEquals(first.getNameId(), second.getNameId());
+        assertSame(first.getName(), second.getName());
+
+        NameTable table = new NameTable(StandardCharsets.UTF_8);
+        int id = table.intern("Jibna Rūmī");
+        assertEquals(id, table.intern("Jibna Rūmī"));
+        assertEquals("1x Jibna Rūmī", new TextRenderer(table, 4).append(1).append("x ").appendName(id).toString());
+        assertEquals("é and e", new TextRenderer(table, 4).append("é and e").toString());
+        assertThrows(IllegalArgumentException.class, () -> table.name(5));
+    }
+
+    @Test
+    void full_name_table_leaves_new_names_to_the_caller() {
+        NameTable table = new NameTable(StandardCharsets.UTF_8, 2);
+        int first = table.intern("First");
+        table.intern("Second");
+
+        assertEquals(-1, table.intern("Third"));
+        assertEquals(first, table.intern("First"));
+        assertEquals(2, table.size());
+        assertThrows(IllegalArgumentException.class, () -> new NameTable(StandardCharsets.UTF_8, 0));
+    }
+
+    @Test
+    void shipment_void_notice_matches_printf() {
+        assertEquals(String.format("Shipment of order %d voided%n", 42L),
+                     new TextRenderer().renderShipmentVoided(42).toString());
+    }
+}
@@ -0,0 +1,140 @@
+package com.fawry.ecommerce.warehouse;
+
+import com.fawry.ecommerce.exception.InsufficientBalanceException;
+import com.fawry.ecommerce.exception.InsufficientStockException;
+import com.fawry.ecommerce.factory.ProductFactory;
+import com.fawry.ecommerce.model.Cart;
+import com.fawry.ecommerce.model.CartItem;
+import com.fawry.ecommerce.model.customer.Customer;
+import com.fawry.ecommerce.model.product.Mobile;
+import com.fawry.ecommerce.model.product.TV;
+import com.fawry.ecommerce.order.Order;
+import com.fawry.ecommerce.service.CheckoutService;
+import com.fawry.ecommerce.service.ShippingService;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Coverage for warehouse allocation: nearest single warehouse, minimal splits,
+ * stock release on failure and the fee charged at checkout.
+ */
+class WarehouseAllocatorTest {
+
+    private final WarehouseNetwork network = WarehouseNetwork.builder()
+            .warehouse("Cairo")
+            .warehouse("Alexandria")
+            .warehouse("Aswan")
+            .route("Cairo", "Giza", 1.0)
+            .route("Alexandria", "Giza", 2.0)
+            .route("Aswan", "Giza", 4.0)
+            .route("Alexandria", "North Coast", 1.0)
+            .build();
+    private final WarehouseStock stock = new WarehouseStock(network);
+    private final WarehouseAllocator allocator = new WarehouseAllocator(network, stock, ShippingService.getInstance());
+
+    private final TV tv = ProductFactory.createTV("Warehouse TV", 800, 20, 10);
+    private final TV smallTv = ProductFactory.createTV("Warehouse Small TV", 300, 20, 4);
+    private final Mobile mobile = ProductFactory.createMobile("Warehouse Mobile", 500, 20, 0.3);
+
+    private int cairo() {
+        return network.warehouseIndex("Cairo");
+    }
+
+    private int alexandria() {
+        return network.warehouseIndex("Alexandria");
+    }
+
+    private int aswan() {
+        return network.warehouseIndex("Aswan");
+    }
+
+    @Test
+    void nearest_warehouse_covering_the_whole_order_wins() throws Exception {
+        stock.setStock(tv.getId(), cairo(), 1);
+        stock.setStock(tv.getId(), alexandria(), 5);
+        stock.setStock(smallTv.getId(), alexandria(), 5);
+
+        Allocation allocation = allocator.allocate("Giza",
+                List.of(new CartItem(tv, 2), new CartItem(smallTv, 1), new CartItem(mobile, 1)));
+
+        assertEquals(1, allocation.getShipments().size());
+        Shipment shipment = allocation.getShipments().get(0);
+        assertEquals("Alexandria", shipment.getWarehouseName());
+        assertEquals(2, shipment.getItems().size(), "non-shippable lines are not allocated");
+        assertEquals(5 + 14 * 25 * 2.0, allocation.getShippingFee(), 0.001);
+        assertEquals(3, stock.getStock(tv.getId(), alexandria()));
+        assertEquals(1, stock.getStock(tv.getId(), cairo()));
+    }
+
+    @Test
+    void split_takes_fewest_warehouses() throws Exception {
+        stock.setStock(tv.getId(), cairo(), 1);
+        stock.setStock(tv.getId(), alexandria(), 1);
+        stock.setStock(tv.getId(), aswan(), 3);
+        stock.setStock(smallTv.getId(), cairo(), 1);
+
+        Allocation allocation = allocator.allocate("Giza", List.of(new CartItem(tv, 3), new CartItem(smallTv, 1)));
+
+        assertEquals(2, allocation.getShipments().size());
+        assertEquals("Aswan", allocation.getShipments().get(0).getWarehouseName());
+        assertEquals("Cairo", allocation.getShipments().get(1).getWarehouseName());
+        assertEquals(1, stock.getStock(tv.getId(), alexandria()));
+        assertEquals(2, stock.getTotalStock(tv.getId()));
+    }
+
+    @Test
+    void unreachable_or_missing_stock_fails_and_releases_reservations() {
+        stock.setStock(tv.getId(), cairo(), 2);
+        stock.setStock(tv.getId(), aswan(), 2);
+
+        assertThrows(InsufficientStockException.class,
+                () -> allocator.allocate("North Coast", List.of(new CartItem(tv, 1))));
+        assertThrows(InsufficientStockException.class,
+                () -> allocator.allocate("Giza", List.of(new CartItem(tv, 5))));
+        assertEquals(4, stock.getTotalStock(tv.getId()));
+        assertThrows(IllegalArgumentException.class,
+                () -> allocator.allocate("Mars", List.of(new CartItem(tv, 1))));
+    }
+
+    @Test
+    void received_stock_counts_in_the_warehouse_and_the_product() {
+        stock.setStock(tv.getId(), cairo(), 20);
+        stock.receive(tv, alexandria(), 5);
+
+        assertEquals(25, tv.getQuantity());
+        assertEquals(tv.getQuantity(), stock.getTotalStock(tv.getId()));
+        assertThrows(IllegalArgumentException.class, () -> stock.receive(tv, cairo(), -1));
+        assertEquals(25, tv.getQuantity());
+    }
+
+    @Test
+    void checkout_charges_allocated_shipping() throws Exception {
+        CheckoutService checkoutService = CheckoutService.getInstance();
+        checkoutService.setWarehouseAllocator(allocator);
+        try {
+            stock.setStock(tv.getId(), alexandria(), 5);
+            Customer customer = new Customer("Warehouse Buyer", 2000);
+            Cart cart = new Cart();
+            cart.addProduct(tv, 1);
+            cart.setDeliveryZone("North Coast");
+
+            Order order = checkoutService.checkout(customer, cart);
+
+            assertEquals(255, order.getShippingFee(), 0.001);
+            assertEquals(4, stock.getStock(tv.getId(), alexandria()));
+
+            Customer poorCustomer = new Customer("Poor Buyer", 10);
+            Cart poorCart = new Cart();
+            poorCart.addProduct(tv, 1);
+            poorCart.setDeliveryZone("North Coast");
+            assertThrows(InsufficientBalanceException.class, () -> checkoutService.checkout(poorCustomer, poorCart));
+            assertEquals(4, stock.getStock(tv.getId(), alexandria()), "failed payment returns the stock");
+        } finally {
+            checkoutService.setWarehouseAllocator(null);
+        }
+    }
+}